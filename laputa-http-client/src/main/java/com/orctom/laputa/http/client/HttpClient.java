@@ -3,6 +3,8 @@ package com.orctom.laputa.http.client;
 import com.google.common.base.Strings;
 import com.orctom.laputa.http.client.core.ChannelExecutor;
 import com.orctom.laputa.http.client.core.HttpRequestFactory;
+import com.orctom.laputa.http.client.handler.FileAsyncHandler;
+import com.orctom.laputa.http.client.handler.StreamingAsyncHandler;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
@@ -17,11 +19,13 @@ import io.netty.handler.codec.http.cookie.DefaultCookie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import static io.netty.handler.codec.http.HttpHeaderNames.COOKIE;
 import static io.netty.handler.codec.http.HttpMethod.POST;
@@ -29,6 +33,7 @@ import static io.netty.handler.codec.http.HttpMethod.POST;
 public class HttpClient {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(HttpClient.class);
+  private static final int DEFAULT_PORT = 80;
 
   private ChannelExecutor channelExecutor;
   private HttpMethod httpMethod;
@@ -38,16 +43,23 @@ public class HttpClient {
   private Map<String, ?> headers;
   private Map<String, String> cookies;
 
-  private HttpClient(HttpClientConfig httpClientConfig) {
-    this.channelExecutor = ChannelExecutor.getInstance(httpClientConfig);
+  private HttpClient(ChannelExecutor channelExecutor) {
+    this.channelExecutor = channelExecutor;
   }
 
   public static HttpClient create() {
-    return new HttpClient(HttpClientConfig.DEFAULT);
+    return create(HttpClientConfig.DEFAULT);
   }
 
   public static HttpClient create(HttpClientConfig httpClientConfig) {
-    return new HttpClient(httpClientConfig);
+    return new HttpClient(ChannelExecutor.getInstance(httpClientConfig));
+  }
+
+  /**
+   * Sends by the given executor, such as one created by {@link ChannelExecutor#create(HttpClientConfig)}
+   */
+  public static HttpClient create(ChannelExecutor channelExecutor) {
+    return new HttpClient(channelExecutor);
   }
 
   public HttpClient get(String uri) {
@@ -92,14 +104,40 @@ public class HttpClient {
     return this;
   }
 
+  /**
+   * Content aggregated into the response
+   */
   public ResponseFuture execute() {
+    return execute(new ResponseFuture());
+  }
+
+  /**
+   * Content streamed to the consumer chunk by chunk, on the event loop, the chunks are released after consumed.
+   */
+  public ResponseFuture execute(Consumer<ByteBuf> contentConsumer) {
+    return execute(new ResponseFuture(future -> new StreamingAsyncHandler(future, contentConsumer)));
+  }
+
+  /**
+   * Content written to the file, see {@link Response#getFile()}
+   */
+  public ResponseFuture download(File file) {
+    return execute(new ResponseFuture(future -> new FileAsyncHandler(future, file)));
+  }
+
+  private ResponseFuture execute(ResponseFuture responseFuture) {
     URI transformedUri = transformedUri();
     DefaultFullHttpRequest request = HttpRequestFactory.create(httpMethod, transformedUri);
     setBody(request);
     setParams(request, transformedUri);
     setHeaders(request);
     setCookies(request);
-    return channelExecutor.execute(request, uri.getHost(), uri.getPort());
+    return channelExecutor.execute(request, uri.getHost(), getPort(), responseFuture);
+  }
+
+  private int getPort() {
+    int port = uri.getPort();
+    return port > 0 ? port : DEFAULT_PORT;
   }
 
   private URI transformedUri() {
@@ -8,6 +8,12 @@ public class HttpClientConfig {
   private int timeout = 7000;
   private boolean useNative = false;
 
+  private int maxConnectionsPerHost = 16;
+  private int maxPendingAcquires = 1024;
+  private int idleTimeout = 60_000;
+  private int maxContentLength = 0;
+  private boolean http2 = false;
+
   private HttpClientConfig() {
   }
 
@@ -17,10 +23,17 @@ public class HttpClientConfig {
     this.useNative = useNative;
   }
 
+  public static HttpClientConfigBuilder builder() {
+    return new HttpClientConfigBuilder();
+  }
+
   public int getThreads() {
     return threads;
   }
 
+  /**
+   * Timeout in milliseconds, of connecting, as well as waiting for a pooled connection
+   */
   public int getTimeout() {
     return timeout;
   }
@@ -29,6 +42,39 @@ public class HttpClientConfig {
     return useNative;
   }
 
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  /**
+   * Max requests waiting for a connection of a host, when all of its connections are in use.
+   */
+  public int getMaxPendingAcquires() {
+    return maxPendingAcquires;
+  }
+
+  /**
+   * Milliseconds after which the pooled connections not used are closed
+   */
+  public int getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  /**
+   * Max bytes of a response body, the ones larger are failed as soon as known to be, 0 for unlimited
+   */
+  public int getMaxContentLength() {
+    return maxContentLength;
+  }
+
+  /**
+   * Talks HTTP/2 over cleartext with prior knowledge (h2c), concurrent requests to a host share one connection.
+   * Only for servers known to be speaking HTTP/2, such as the internal ones.
+   */
+  public boolean isHttp2() {
+    return http2;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -38,7 +84,12 @@ public class HttpClientConfig {
 
     if (threads != that.threads) return false;
     if (timeout != that.timeout) return false;
-    return useNative == that.useNative;
+    if (useNative != that.useNative) return false;
+    if (maxConnectionsPerHost != that.maxConnectionsPerHost) return false;
+    if (maxPendingAcquires != that.maxPendingAcquires) return false;
+    if (idleTimeout != that.idleTimeout) return false;
+    if (maxContentLength != that.maxContentLength) return false;
+    return http2 == that.http2;
   }
 
   @Override
@@ -46,6 +97,78 @@ public class HttpClientConfig {
     int result = threads;
     result = 31 * result + timeout;
     result = 31 * result + (useNative ? 1 : 0);
+    result = 31 * result + maxConnectionsPerHost;
+    result = 31 * result + maxPendingAcquires;
+    result = 31 * result + idleTimeout;
+    result = 31 * result + maxContentLength;
+    result = 31 * result + (http2 ? 1 : 0);
     return result;
   }
+
+  public static class HttpClientConfigBuilder {
+    private int threads = DEFAULT.threads;
+    private int timeout = DEFAULT.timeout;
+    private boolean useNative = DEFAULT.useNative;
+    private int maxConnectionsPerHost = DEFAULT.maxConnectionsPerHost;
+    private int maxPendingAcquires = DEFAULT.maxPendingAcquires;
+    private int idleTimeout = DEFAULT.idleTimeout;
+    private int maxContentLength = DEFAULT.maxContentLength;
+    private boolean http2 = DEFAULT.http2;
+
+    public HttpClientConfigBuilder threads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    public HttpClientConfigBuilder timeout(int timeout) {
+      this.timeout = timeout;
+      return this;
+    }
+
+    public HttpClientConfigBuilder useNative(boolean useNative) {
+      this.useNative = useNative;
+      return this;
+    }
+
+    public HttpClientConfigBuilder maxConnectionsPerHost(int maxConnectionsPerHost) {
+      this.maxConnectionsPerHost = maxConnectionsPerHost;
+      return this;
+    }
+
+    public HttpClientConfigBuilder maxPendingAcquires(int maxPendingAcquires) {
+      this.maxPendingAcquires = maxPendingAcquires;
+      return this;
+    }
+
+    public HttpClientConfigBuilder idleTimeout(int idleTimeout) {
+      this.idleTimeout = idleTimeout;
+      return this;
+    }
+
+    public HttpClientConfigBuilder maxContentLength(int maxContentLength) {
+      this.maxContentLength = maxContentLength;
+      return this;
+    }
+
+    public HttpClientConfigBuilder http2(boolean http2) {
+      this.http2 = http2;
+      return this;
+    }
+
+    public HttpClientConfig build() {
+      if (maxConnectionsPerHost < 1) {
+        throw new IllegalArgumentException("maxConnectionsPerHost should be at least 1");
+      }
+      if (maxPendingAcquires < 1) {
+        throw new IllegalArgumentException("maxPendingAcquires should be at least 1");
+      }
+      HttpClientConfig config = new HttpClientConfig(threads, timeout, useNative);
+      config.maxConnectionsPerHost = maxConnectionsPerHost;
+      config.maxPendingAcquires = maxPendingAcquires;
+      config.idleTimeout = idleTimeout;
+      config.maxContentLength = maxContentLength;
+      config.http2 = http2;
+      return config;
+    }
+  }
 }
@@ -2,6 +2,7 @@ package com.orctom.laputa.http.client;
 
 import com.google.common.primitives.Bytes;
 
+import java.io.File;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
@@ -10,6 +11,7 @@ public class Response {
 
   private Map<String, ?> headers = new HashMap<>();
   private byte[] content;
+  private File file;
 
   public Map<String, ?> getHeaders() {
     return headers;
@@ -35,11 +37,22 @@ public class Response {
     }
   }
 
+  /**
+   * @return the file the content was downloaded to, null if not downloaded
+   */
+  public File getFile() {
+    return file;
+  }
+
+  public void setFile(File file) {
+    this.file = file;
+  }
+
   public String getResponseBody() {
-    return new String(content);
+    return null == content ? null : new String(content);
   }
 
   public String getResponseBody(Charset charset) {
-    return new String(content, charset);
+    return null == content ? null : new String(content, charset);
   }
 }
@@ -4,6 +4,7 @@ import com.orctom.laputa.http.client.handler.AsyncHandler;
 import com.orctom.laputa.http.client.handler.DefaultAsyncHandler;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public class ResponseFuture extends CompletableFuture<Response> {
 
@@ -13,6 +14,10 @@ public class ResponseFuture extends CompletableFuture<Response> {
     this.handler = new DefaultAsyncHandler(this);
   }
 
+  public ResponseFuture(Function<ResponseFuture, AsyncHandler> handlerFactory) {
+    this.handler = handlerFactory.apply(this);
+  }
+
   public AsyncHandler getHandler() {
     return handler;
   }
@@ -7,27 +7,55 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolMap;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.FixedChannelPool;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
 
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Sends requests over keep-alive connections, pooled per host.
+ * With {@link HttpClientConfig#isHttp2()}, requests to a host are multiplexed over one h2c connection instead.
+ * <p>
+ * Nothing blocks the calling thread, connecting, waiting for a pooled connection, writing and reading are all done
+ * on the event loops, the returned {@link ResponseFuture} gets completed by them.
+ */
 public class ChannelExecutor {
 
+  /**
+   * Pools are closed by tasks of their own loops, which close the channels on the other loops
+   */
+  private static final long SHUTDOWN_QUIET_PERIOD_MILLIS = 100;
+
   private static Map<HttpClientConfig, ChannelExecutor> executorMap = new WeakHashMap<>();
 
   private EventLoopGroup group;
 
-  private Bootstrap b;
+  private AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool> pools;
+
+  private Bootstrap http2Bootstrap;
+  private Map<InetSocketAddress, Future<Channel>> http2Connections;
+
+  private Thread shutdownHook = new Thread(this::shutdown);
 
   private ChannelExecutor(HttpClientConfig httpClientConfig) {
     group = new NioEventLoopGroup(httpClientConfig.getThreads(), new HttpClientThreadFactory());
-    b = new Bootstrap();
+    Bootstrap b = new Bootstrap();
     b.group(group);
     b.channel(NioSocketChannel.class);
     b.option(ChannelOption.TCP_NODELAY, true);
@@ -35,33 +63,182 @@ public class ChannelExecutor {
     b.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
     b.option(ChannelOption.SO_REUSEADDR, false);
     b.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, httpClientConfig.getTimeout());
-    b.handler(new ChannelInitializationHandler());
 
-    Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+    if (httpClientConfig.isHttp2()) {
+      http2Bootstrap = b.clone().handler(new Http2ChannelInitializer(httpClientConfig));
+      http2Connections = new ConcurrentHashMap<>();
+    }
+
+    pools = new AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool>() {
+      @Override
+      protected FixedChannelPool newPool(InetSocketAddress address) {
+        return new FixedChannelPool(
+            b.clone().remoteAddress(address),
+            new ChannelInitializationHandler(httpClientConfig),
+            ChannelHealthChecker.ACTIVE,
+            FixedChannelPool.AcquireTimeoutAction.FAIL,
+            httpClientConfig.getTimeout(),
+            httpClientConfig.getMaxConnectionsPerHost(),
+            httpClientConfig.getMaxPendingAcquires(),
+            true
+        );
+      }
+    };
+
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
   }
 
-  public static ChannelExecutor getInstance(HttpClientConfig httpClientConfig) {
+  /**
+   * @return the one shared by the clients with the same config, shut down with the JVM
+   */
+  public static synchronized ChannelExecutor getInstance(HttpClientConfig httpClientConfig) {
     return executorMap.computeIfAbsent(httpClientConfig, ChannelExecutor::new);
   }
 
+  /**
+   * @return a new one not shared with any other client, to be closed by the caller with {@link #close()}
+   */
+  public static ChannelExecutor create(HttpClientConfig httpClientConfig) {
+    return new ChannelExecutor(httpClientConfig);
+  }
+
+  /**
+   * Closes the pooled connections and shuts down the event loops
+   *
+   * @return completed once the event loops are terminated
+   */
+  public Future<?> close() {
+    try {
+      Runtime.getRuntime().removeShutdownHook(shutdownHook);
+    } catch (IllegalStateException ignored) {
+      // being shut down, by the hook as well
+    }
+    return shutdown();
+  }
+
   public ResponseFuture execute(HttpRequest request, String host, int port) {
-    ResponseFuture responseFuture = new ResponseFuture();
+    return execute(request, host, port, new ResponseFuture());
+  }
+
+  public ResponseFuture execute(HttpRequest request, String host, int port, ResponseFuture responseFuture) {
+    if (null != http2Connections) {
+      executeHttp2(request, InetSocketAddress.createUnresolved(host, port), responseFuture, true);
+      return responseFuture;
+    }
+
+    FixedChannelPool pool;
     try {
-      ChannelFuture channelFuture = b.connect(host, port);
-      channelFuture.addListener(new SimpleChannelFutureListener());
-      Channel ch = channelFuture.sync().channel();
-      Channels.setFutureAttribute(ch, responseFuture);
-      ch.writeAndFlush(request);
+      pool = pools.get(InetSocketAddress.createUnresolved(host, port));
     } catch (Exception e) {
+      ReferenceCountUtil.release(request);
       responseFuture.completeExceptionally(e);
+      return responseFuture;
     }
 
+    pool.acquire().addListener((FutureListener<Channel>) acquired -> {
+      if (!acquired.isSuccess()) {
+        ReferenceCountUtil.release(request);
+        responseFuture.completeExceptionally(acquired.cause());
+        return;
+      }
+
+      Channel channel = acquired.getNow();
+      Channels.setPoolAttribute(channel, pool);
+      Channels.setFutureAttribute(channel, responseFuture);
+      channel.writeAndFlush(request).addListener((ChannelFutureListener) written -> {
+        if (!written.isSuccess()) {
+          responseFuture.completeExceptionally(written.cause());
+          written.channel().close();
+        }
+      });
+    });
+
     return responseFuture;
   }
 
-  private void shutdown() {
-    if (group != null) {
-      group.shutdownGracefully(0, 10, TimeUnit.SECONDS);
+  private void executeHttp2(HttpRequest request,
+                            InetSocketAddress address,
+                            ResponseFuture responseFuture,
+                            boolean retry) {
+    Future<Channel> connecting = getHttp2Connection(address);
+    connecting.addListener((FutureListener<Channel>) connected -> {
+      if (!connected.isSuccess()) {
+        ReferenceCountUtil.release(request);
+        responseFuture.completeExceptionally(connected.cause());
+        return;
+      }
+
+      Http2ResponseHandler handler = connected.getNow().pipeline().get(Http2ResponseHandler.class);
+      if (null != handler && handler.isAcceptingStreams()) {
+        handler.send(request, responseFuture);
+        return;
+      }
+
+      http2Connections.remove(address, connecting);
+      if (retry) {
+        executeHttp2(request, address, responseFuture, false);
+      } else {
+        ReferenceCountUtil.release(request);
+        responseFuture.completeExceptionally(new ClosedChannelException());
+      }
+    });
+  }
+
+  private Future<Channel> getHttp2Connection(InetSocketAddress address) {
+    Future<Channel> connecting = http2Connections.get(address);
+    if (null != connecting) {
+      return connecting;
+    }
+
+    synchronized (http2Connections) {
+      connecting = http2Connections.get(address);
+      if (null == connecting) {
+        connecting = connectHttp2(address);
+      }
+      return connecting;
+    }
+  }
+
+  /**
+   * Completes once the connection preface is sent, requests written before that would be refused by the server.
+   */
+  private Future<Channel> connectHttp2(InetSocketAddress address) {
+    ChannelFuture connecting = http2Bootstrap.connect(address);
+    Channel channel = connecting.channel();
+    Promise<Channel> ready = channel.eventLoop().newPromise();
+    http2Connections.put(address, ready);
+    channel.closeFuture().addListener(closed -> {
+      http2Connections.remove(address, ready);
+      ready.tryFailure(new ClosedChannelException());
+    });
+
+    connecting.addListener((ChannelFutureListener) connected -> {
+      if (!connected.isSuccess()) {
+        ready.tryFailure(connected.cause());
+        return;
+      }
+      channel.pipeline().get(Http2ResponseHandler.class).activeFuture().addListener(active -> {
+        if (active.isSuccess()) {
+          ready.trySuccess(channel);
+        } else {
+          ready.tryFailure(active.cause());
+        }
+      });
+    });
+    return ready;
+  }
+
+  private Future<?> shutdown() {
+    if (pools != null) {
+      pools.close();
+    }
+    if (http2Connections != null) {
+      http2Connections.values().forEach(connecting -> {
+        if (connecting.isSuccess()) {
+          connecting.getNow().close();
+        }
+      });
     }
+    return group.shutdownGracefully(SHUTDOWN_QUIET_PERIOD_MILLIS, 10_000, TimeUnit.MILLISECONDS);
   }
 }
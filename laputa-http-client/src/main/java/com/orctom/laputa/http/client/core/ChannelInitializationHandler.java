@@ -1,20 +1,36 @@
 package com.orctom.laputa.http.client.core;
 
-import io.netty.channel.ChannelInitializer;
+import com.orctom.laputa.http.client.HttpClientConfig;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
 import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpContentDecompressor;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.timeout.IdleStateHandler;
 
-public class ChannelInitializationHandler extends ChannelInitializer<SocketChannel> {
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Initializes the channels newly created by the pools, the ones reused keep their pipelines.
+ */
+public class ChannelInitializationHandler extends AbstractChannelPoolHandler {
+
+  private final int idleTimeout;
+  private final int maxContentLength;
+
+  public ChannelInitializationHandler(HttpClientConfig httpClientConfig) {
+    this.idleTimeout = httpClientConfig.getIdleTimeout();
+    this.maxContentLength = httpClientConfig.getMaxContentLength();
+  }
 
   @Override
-  protected void initChannel(SocketChannel ch) throws Exception {
+  public void channelCreated(Channel ch) throws Exception {
     ChannelPipeline p = ch.pipeline();
+    p.addLast(new IdleStateHandler(0, 0, idleTimeout, TimeUnit.MILLISECONDS));
     p.addLast(new HttpClientCodec());
     p.addLast(new HttpContentDecompressor());
     p.addLast(new ChunkedWriteHandler());
-    p.addLast(new ResponseHandler());
+    p.addLast(new ResponseHandler(maxContentLength));
   }
 }
@@ -0,0 +1,50 @@
+package com.orctom.laputa.http.client.core;
+
+import com.orctom.laputa.http.client.HttpClientConfig;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http2.DefaultHttp2Connection;
+import io.netty.handler.codec.http2.DelegatingDecompressorFrameListener;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandler;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.InboundHttp2ToHttpAdapterBuilder;
+import io.netty.handler.timeout.IdleStateHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Initializes the h2c connections, requests are converted to HTTP/2 streams,
+ * and the streams back to aggregated responses.
+ */
+public class Http2ChannelInitializer extends ChannelInitializer<Channel> {
+
+  private final int idleTimeout;
+  private final int maxContentLength;
+
+  public Http2ChannelInitializer(HttpClientConfig httpClientConfig) {
+    this.idleTimeout = httpClientConfig.getIdleTimeout();
+    this.maxContentLength = httpClientConfig.getMaxContentLength();
+  }
+
+  @Override
+  protected void initChannel(Channel ch) {
+    Http2Connection connection = new DefaultHttp2Connection(false);
+    HttpToHttp2ConnectionHandler connectionHandler = new HttpToHttp2ConnectionHandlerBuilder()
+        .connection(connection)
+        .frameListener(new DelegatingDecompressorFrameListener(
+            connection,
+            new InboundHttp2ToHttpAdapterBuilder(connection)
+                .maxContentLength(maxContentLength > 0 ? maxContentLength : Integer.MAX_VALUE)
+                .propagateSettings(false)
+                .build()
+        ))
+        .build();
+
+    ChannelPipeline p = ch.pipeline();
+    p.addLast(new IdleStateHandler(0, 0, idleTimeout, TimeUnit.MILLISECONDS));
+    p.addLast(connectionHandler);
+    p.addLast(new Http2ResponseHandler(connectionHandler));
+  }
+}
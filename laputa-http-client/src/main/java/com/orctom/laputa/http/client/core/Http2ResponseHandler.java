@@ -0,0 +1,190 @@
+package com.orctom.laputa.http.client.core;
+
+import com.orctom.laputa.http.client.ResponseFuture;
+import com.orctom.laputa.http.client.handler.AsyncHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpScheme;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionAdapter;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.handler.codec.http2.HttpConversionUtil.ExtensionHeaderNames;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandler;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends the requests as streams of one HTTP/2 connection, and feeds each response to the handler of its stream.
+ * <p>
+ * Everything is done on the event loop of the connection, so are the calls to {@link #send(HttpRequest, ResponseFuture)}.
+ * A stream closed before its response arrived fails its request only, the other streams carry on.
+ */
+public class Http2ResponseHandler extends ChannelInboundHandlerAdapter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Http2ResponseHandler.class);
+
+  private final Http2Connection connection;
+  private final IntObjectMap<ResponseFuture> streams = new IntObjectHashMap<>();
+
+  private ChannelHandlerContext ctx;
+  private ChannelPromise activePromise;
+
+  public Http2ResponseHandler(HttpToHttp2ConnectionHandler connectionHandler) {
+    this.connection = connectionHandler.connection();
+    this.connection.addListener(new Http2ConnectionAdapter() {
+      @Override
+      public void onStreamClosed(Http2Stream stream) {
+        ResponseFuture future = streams.remove(stream.id());
+        if (null != future) {
+          fail(future, Http2Exception.streamError(
+              stream.id(), Http2Error.STREAM_CLOSED, "Stream %d closed without a response", stream.id()));
+        }
+      }
+    });
+  }
+
+  @Override
+  public void handlerAdded(ChannelHandlerContext ctx) {
+    this.ctx = ctx;
+    this.activePromise = ctx.newPromise();
+  }
+
+  /**
+   * Completes when the connection is active, with the connection preface sent by the handlers ahead of this one
+   */
+  ChannelFuture activeFuture() {
+    return activePromise;
+  }
+
+  @Override
+  public void channelActive(ChannelHandlerContext ctx) throws Exception {
+    activePromise.trySuccess();
+    super.channelActive(ctx);
+  }
+
+  /**
+   * Whether new streams can still be opened on this connection
+   */
+  boolean isAcceptingStreams() {
+    return ctx.channel().isActive() && !connection.goAwayReceived();
+  }
+
+  void send(HttpRequest request, ResponseFuture future) {
+    int streamId = connection.local().incrementAndGetNextStreamId();
+    request.headers().setInt(ExtensionHeaderNames.STREAM_ID.text(), streamId);
+    request.headers().set(ExtensionHeaderNames.SCHEME.text(), HttpScheme.HTTP.name());
+    streams.put(streamId, future);
+
+    ctx.writeAndFlush(request).addListener((ChannelFutureListener) written -> {
+      if (!written.isSuccess()) {
+        ResponseFuture failed = streams.remove(streamId);
+        if (null != failed) {
+          fail(failed, written.cause());
+        }
+      }
+    });
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) {
+    if (!(msg instanceof FullHttpResponse)) {
+      ReferenceCountUtil.release(msg);
+      return;
+    }
+
+    FullHttpResponse response = (FullHttpResponse) msg;
+    ResponseFuture future = null;
+    try {
+      Integer streamId = response.headers().getInt(ExtensionHeaderNames.STREAM_ID.text());
+      future = null == streamId ? null : streams.remove(streamId);
+      if (null == future || future.isDone()) {
+        return;
+      }
+
+      removeExtensionHeaders(response.headers());
+      AsyncHandler handler = future.getHandler();
+      handler.handleHeader(response.headers());
+      handler.handleLastContent(response.content());
+
+    } catch (Exception e) {
+      if (null != future) {
+        fail(future, e);
+      }
+
+    } finally {
+      ReferenceCountUtil.release(msg);
+    }
+  }
+
+  private void removeExtensionHeaders(HttpHeaders headers) {
+    for (ExtensionHeaderNames name : ExtensionHeaderNames.values()) {
+      headers.remove(name.text());
+    }
+  }
+
+  private void fail(ResponseFuture future, Throwable cause) {
+    if (future.isDone()) {
+      return;
+    }
+
+    try {
+      future.getHandler().handleFailure(cause);
+    } finally {
+      future.completeExceptionally(cause);
+    }
+  }
+
+  private void failAll(Throwable cause) {
+    List<ResponseFuture> futures = new ArrayList<>(streams.values());
+    streams.clear();
+    for (ResponseFuture future : futures) {
+      fail(future, cause);
+    }
+  }
+
+  @Override
+  public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+    if (evt instanceof IdleStateEvent && streams.isEmpty()) {
+      LOGGER.trace("Closing idle connection: {}", ctx.channel());
+      ctx.close();
+      return;
+    }
+
+    super.userEventTriggered(ctx, evt);
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    failAll(new ClosedChannelException());
+    activePromise.tryFailure(new ClosedChannelException());
+    super.channelInactive(ctx);
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+    if (cause instanceof Http2Exception.StreamException) {
+      LOGGER.debug(cause.getMessage());
+      return;
+    }
+
+    LOGGER.error(cause.getMessage(), cause);
+    failAll(cause);
+    ctx.close();
+  }
+}
@@ -18,7 +18,7 @@ public abstract class HttpRequestFactory {
     String path = getPath(httpMethod, uri);
     DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, httpMethod, path);
     request.headers().set(HOST, uri.getHost());
-    request.headers().set(CONNECTION, HttpHeaderValues.CLOSE);
+    request.headers().set(CONNECTION, HttpHeaderValues.KEEP_ALIVE);
     request.headers().set(ACCEPT_ENCODING, HttpHeaderValues.GZIP);
     if (POST == httpMethod) {
       request.headers().set(CONTENT_TYPE, HttpHeaderValues.APPLICATION_X_WWW_FORM_URLENCODED);
@@ -27,10 +27,10 @@ public abstract class HttpRequestFactory {
   }
 
   private static String getPath(HttpMethod httpMethod, URI uri) {
-    if (POST == httpMethod) {
+    if (POST == httpMethod || null == uri.getRawQuery()) {
       return uri.getPath();
     }
 
-    return uri.getPath() + SIGN_QUESTION + uri.getQuery();
+    return uri.getPath() + SIGN_QUESTION + uri.getRawQuery();
   }
 }
@@ -6,48 +6,132 @@ import com.orctom.laputa.http.client.util.Channels;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * Feeds the response to the handler of the request in flight,
+ * and hands the channel back to its pool once the response is done, unless the connection is not to be kept alive.
+ * <p>
+ * Responses larger than the max content length are failed as soon as known, dropping the connection.
+ */
 public class ResponseHandler extends ChannelInboundHandlerAdapter {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ResponseHandler.class);
 
+  private final int maxContentLength;
+
+  private boolean keepAlive;
+  private long received;
+
+  public ResponseHandler(int maxContentLength) {
+    this.maxContentLength = maxContentLength;
+  }
+
   @Override
   public void channelRead(ChannelHandlerContext ctx, Object msg) {
     Channel channel = ctx.channel();
     ResponseFuture future = Channels.getFutureAttribute(channel);
 
-    if (future.isDone()) {
+    if (null == future || future.isDone()) {
+      ReferenceCountUtil.release(msg);
       return;
     }
 
     AsyncHandler handler = future.getHandler();
-    if (msg instanceof HttpResponse) {
-      HttpResponse response = (HttpResponse) msg;
-      handler.handleHeader(response.headers());
+    try {
+      if (msg instanceof HttpResponse) {
+        HttpResponse response = (HttpResponse) msg;
+        keepAlive = HttpUtil.isKeepAlive(response);
+        received = 0;
+        checkContentLength(HttpUtil.getContentLength(response, 0L));
+        handler.handleHeader(response.headers());
+      }
+
+      if (msg instanceof HttpContent) {
+        HttpContent content = (HttpContent) msg;
+        received += content.content().readableBytes();
+        checkContentLength(received);
+
+        if (msg instanceof LastHttpContent) {
+          if (!keepAlive) {
+            ctx.close();
+          }
+          Channels.release(channel);
+          handler.handleLastContent(content.content());
+        } else {
+          handler.handleContent(content.content());
+        }
+      }
+
+    } catch (Exception e) {
+      fail(future, e);
+      if (future == Channels.getFutureAttribute(channel)) {
+        ctx.close();
+      }
+
+    } finally {
+      ReferenceCountUtil.release(msg);
+    }
+  }
+
+  private void checkContentLength(long length) {
+    if (maxContentLength > 0 && length > maxContentLength) {
+      throw new TooLongFrameException("Response content exceeds " + maxContentLength + " bytes");
+    }
+  }
+
+  private void fail(ResponseFuture future, Throwable cause) {
+    if (future.isDone()) {
       return;
     }
 
-    if (msg instanceof LastHttpContent) {
-      LastHttpContent lastHttpContent = (LastHttpContent) msg;
-      handler.handleLastContent(lastHttpContent.content());
+    try {
+      future.getHandler().handleFailure(cause);
+    } finally {
+      future.completeExceptionally(cause);
+    }
+  }
+
+  @Override
+  public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+    if (evt instanceof IdleStateEvent && null == Channels.getFutureAttribute(ctx.channel())) {
+      LOGGER.trace("Closing idle connection: {}", ctx.channel());
       ctx.close();
       return;
     }
 
-    if (msg instanceof HttpContent) {
-      HttpContent content = (HttpContent) msg;
-      handler.handleContent(content.content());
+    super.userEventTriggered(ctx, evt);
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    Channel channel = ctx.channel();
+    ResponseFuture future = Channels.getFutureAttribute(channel);
+    if (null != future) {
+      fail(future, new ClosedChannelException());
+      Channels.release(channel);
     }
+
+    super.channelInactive(ctx);
   }
 
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
     LOGGER.error(cause.getMessage(), cause);
+    ResponseFuture future = Channels.getFutureAttribute(ctx.channel());
+    if (null != future) {
+      fail(future, cause);
+    }
     ctx.close();
   }
 }
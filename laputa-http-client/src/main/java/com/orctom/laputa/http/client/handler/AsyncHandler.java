@@ -3,6 +3,11 @@ package com.orctom.laputa.http.client.handler;
 import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.HttpHeaders;
 
+/**
+ * Receives the response of a request, on the event loop of its connection.
+ * <p>
+ * The content buffers are released once handled, retain them to keep them around.
+ */
 public interface AsyncHandler {
 
   void handleHeader(HttpHeaders headers);
@@ -10,4 +15,10 @@ public interface AsyncHandler {
   void handleContent(ByteBuf content);
 
   void handleLastContent(ByteBuf content);
+
+  /**
+   * Called when the response failed half way, to clean up what's been handled so far
+   */
+  default void handleFailure(Throwable cause) {
+  }
 }
@@ -4,15 +4,21 @@ import com.orctom.laputa.http.client.Response;
 import com.orctom.laputa.http.client.ResponseFuture;
 import com.orctom.laputa.http.client.util.ByteBufs;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.handler.codec.http.HttpHeaders;
 
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Aggregates the content, the chunks are only referenced till the last one arrives, then copied out once.
+ */
 public class DefaultAsyncHandler implements AsyncHandler {
 
-  private ResponseFuture responseFuture;
-  private Response response = new Response();
+  protected ResponseFuture responseFuture;
+  protected Response response = new Response();
+
+  private CompositeByteBuf content;
 
   public DefaultAsyncHandler(ResponseFuture responseFuture) {
     this.responseFuture = responseFuture;
@@ -28,17 +34,41 @@ public class DefaultAsyncHandler implements AsyncHandler {
   }
 
   @Override
-  public void handleContent(ByteBuf content) {
-    response.appendContent(ByteBufs.toByteArray(content));
+  public void handleContent(ByteBuf chunk) {
+    if (!chunk.isReadable()) {
+      return;
+    }
+
+    if (null == content) {
+      content = chunk.alloc().compositeBuffer(Integer.MAX_VALUE);
+    }
+    content.addComponent(true, chunk.retain());
   }
 
   @Override
-  public void handleLastContent(ByteBuf content) {
-    try {
-      response.appendContent(ByteBufs.toByteArray(content));
-    } finally {
-      content.release();
+  public void handleLastContent(ByteBuf chunk) {
+    if (null == content) {
+      response.setContent(ByteBufs.toByteArray(chunk));
+    } else {
+      handleContent(chunk);
+      try {
+        response.setContent(ByteBufs.toByteArray(content));
+      } finally {
+        releaseContent();
+      }
     }
     responseFuture.complete(response);
   }
+
+  @Override
+  public void handleFailure(Throwable cause) {
+    releaseContent();
+  }
+
+  private void releaseContent() {
+    if (null != content) {
+      content.release();
+      content = null;
+    }
+  }
 }
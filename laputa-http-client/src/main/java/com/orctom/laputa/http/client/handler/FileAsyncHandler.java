@@ -0,0 +1,147 @@
+package com.orctom.laputa.http.client.handler;
+
+import com.orctom.laputa.http.client.ResponseFuture;
+import io.netty.buffer.ByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes the content chunks to the file as they arrive, the file is deleted if the response failed half way.
+ * <p>
+ * The writes are asynchronous, each chunk is written at its own position, off the event loop,
+ * the response is completed once the last chunk arrived and all the writes are done.
+ */
+public class FileAsyncHandler extends DefaultAsyncHandler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileAsyncHandler.class);
+
+  private final File file;
+  private AsynchronousFileChannel fileChannel;
+  private long position;
+
+  /**
+   * Writes in progress, plus one till the response ends
+   */
+  private final AtomicInteger pending = new AtomicInteger(1);
+  private final AtomicBoolean ended = new AtomicBoolean();
+  private volatile Throwable failure;
+
+  public FileAsyncHandler(ResponseFuture responseFuture, File file) {
+    super(responseFuture);
+    this.file = file;
+  }
+
+  @Override
+  public void handleContent(ByteBuf chunk) {
+    openFileChannel();
+    if (!chunk.isReadable() || null != failure) {
+      return;
+    }
+
+    ByteBuf retained = chunk.retain();
+    ByteBuffer buffer = retained.nioBuffer();
+    long start = position;
+    position += buffer.remaining();
+    pending.incrementAndGet();
+    write(retained, buffer, start);
+  }
+
+  private void openFileChannel() {
+    if (null != fileChannel) {
+      return;
+    }
+
+    try {
+      fileChannel = AsynchronousFileChannel.open(
+          file.toPath(),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING
+      );
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void write(ByteBuf chunk, ByteBuffer buffer, long start) {
+    int offset = buffer.position();
+    fileChannel.write(buffer, start, null, new CompletionHandler<Integer, Void>() {
+      @Override
+      public void completed(Integer written, Void attachment) {
+        if (buffer.hasRemaining() && null == failure) {
+          fileChannel.write(buffer, start + buffer.position() - offset, null, this);
+          return;
+        }
+        chunk.release();
+        writeDone();
+      }
+
+      @Override
+      public void failed(Throwable cause, Void attachment) {
+        failure = cause;
+        chunk.release();
+        writeDone();
+      }
+    });
+  }
+
+  @Override
+  public void handleLastContent(ByteBuf chunk) {
+    handleContent(chunk);
+    if (ended.compareAndSet(false, true)) {
+      writeDone();
+    }
+  }
+
+  @Override
+  public void handleFailure(Throwable cause) {
+    failure = cause;
+    if (ended.compareAndSet(false, true)) {
+      writeDone();
+    }
+  }
+
+  private void writeDone() {
+    if (0 != pending.decrementAndGet()) {
+      return;
+    }
+
+    closeFileChannel();
+    Throwable cause = failure;
+    if (null == cause) {
+      response.setFile(file);
+      responseFuture.complete(response);
+      return;
+    }
+
+    if (null != fileChannel && !file.delete()) {
+      LOGGER.warn("Failed to delete incomplete file: {}", file);
+    }
+    responseFuture.completeExceptionally(cause);
+  }
+
+  private void closeFileChannel() {
+    if (null == fileChannel) {
+      return;
+    }
+
+    try {
+      fileChannel.close();
+    } catch (IOException e) {
+      LOGGER.warn(e.getMessage(), e);
+      if (null == failure) {
+        failure = e;
+      }
+    }
+  }
+}
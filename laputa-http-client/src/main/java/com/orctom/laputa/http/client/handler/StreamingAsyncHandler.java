@@ -0,0 +1,32 @@
+package com.orctom.laputa.http.client.handler;
+
+import com.orctom.laputa.http.client.ResponseFuture;
+import io.netty.buffer.ByteBuf;
+
+import java.util.function.Consumer;
+
+/**
+ * Hands the content chunks over to the consumer as they arrive, the response is completed without content.
+ */
+public class StreamingAsyncHandler extends DefaultAsyncHandler {
+
+  private final Consumer<ByteBuf> consumer;
+
+  public StreamingAsyncHandler(ResponseFuture responseFuture, Consumer<ByteBuf> consumer) {
+    super(responseFuture);
+    this.consumer = consumer;
+  }
+
+  @Override
+  public void handleContent(ByteBuf chunk) {
+    if (chunk.isReadable()) {
+      consumer.accept(chunk);
+    }
+  }
+
+  @Override
+  public void handleLastContent(ByteBuf chunk) {
+    handleContent(chunk);
+    responseFuture.complete(response);
+  }
+}
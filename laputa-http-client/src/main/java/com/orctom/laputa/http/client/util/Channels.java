@@ -2,12 +2,14 @@ package com.orctom.laputa.http.client.util;
 
 import com.orctom.laputa.http.client.ResponseFuture;
 import io.netty.channel.Channel;
+import io.netty.channel.pool.ChannelPool;
 import io.netty.util.AttributeKey;
 
 public abstract class Channels {
 
   private static final AttributeKey<Object> ATTR_DEFAULT = AttributeKey.valueOf("default");
   private static final AttributeKey<ResponseFuture> ATTR_FUTURE = AttributeKey.valueOf("future");
+  private static final AttributeKey<ChannelPool> ATTR_POOL = AttributeKey.valueOf("pool");
 
   public static Object getAttribute(Channel channel) {
     return channel.attr(ATTR_DEFAULT).get();
@@ -24,4 +26,22 @@ public abstract class Channels {
   public static void setFutureAttribute(Channel channel, ResponseFuture future) {
     channel.attr(ATTR_FUTURE).set(future);
   }
+
+  public static void setPoolAttribute(Channel channel, ChannelPool pool) {
+    channel.attr(ATTR_POOL).set(pool);
+  }
+
+  /**
+   * Hands the channel back to the pool it was acquired from, once and only once per acquiring.
+   * Channels no longer active are dropped by the pool instead of being reused.
+   */
+  public static void release(Channel channel) {
+    ChannelPool pool = channel.attr(ATTR_POOL).getAndSet(null);
+    if (null == pool) {
+      return;
+    }
+
+    channel.attr(ATTR_FUTURE).set(null);
+    pool.release(channel);
+  }
 }
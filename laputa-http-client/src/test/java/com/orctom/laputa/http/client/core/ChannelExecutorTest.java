@@ -0,0 +1,291 @@
+package com.orctom.laputa.http.client.core;
+
+import com.orctom.laputa.http.client.HttpClient;
+import com.orctom.laputa.http.client.HttpClientConfig;
+import com.orctom.laputa.http.client.Response;
+import com.orctom.laputa.http.client.ResponseFuture;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.Http2Codec;
+import io.netty.handler.codec.http2.Http2ServerDowngrader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.netty.handler.codec.http.HttpHeaderNames.CONNECTION;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
+import static io.netty.handler.codec.http.HttpHeaderValues.CLOSE;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ChannelExecutorTest {
+
+  private static final int CHUNK_SIZE = 16 * 1024;
+  private static final int CHUNKS = 64;
+
+  private EventLoopGroup group;
+  private Channel server;
+  private Channel h2cServer;
+  private AtomicInteger connections = new AtomicInteger();
+  private Map<HttpClientConfig, ChannelExecutor> executors = new IdentityHashMap<>();
+  private volatile boolean closing;
+
+  @Before
+  public void setUp() throws Exception {
+    group = new NioEventLoopGroup(1);
+    server = new ServerBootstrap()
+        .group(group)
+        .channel(NioServerSocketChannel.class)
+        .childHandler(new ChannelInitializer<SocketChannel>() {
+          @Override
+          protected void initChannel(SocketChannel ch) {
+            connections.incrementAndGet();
+            ch.pipeline().addLast(new HttpServerCodec());
+            ch.pipeline().addLast(new HttpObjectAggregator(1024));
+            ch.pipeline().addLast(new EchoPathHandler());
+          }
+        })
+        .bind("127.0.0.1", 0)
+        .sync()
+        .channel();
+    h2cServer = new ServerBootstrap()
+        .group(group)
+        .channel(NioServerSocketChannel.class)
+        .childHandler(new ChannelInitializer<SocketChannel>() {
+          @Override
+          protected void initChannel(SocketChannel ch) {
+            connections.incrementAndGet();
+            ch.pipeline().addLast(new Http2Codec(true, new ChannelInitializer<Channel>() {
+              @Override
+              protected void initChannel(Channel stream) {
+                stream.pipeline().addLast(new Http2ServerDowngrader());
+                stream.pipeline().addLast(new HttpObjectAggregator(1024));
+                stream.pipeline().addLast(new EchoPathHandler());
+              }
+            }));
+          }
+        })
+        .bind("127.0.0.1", 0)
+        .sync()
+        .channel();
+  }
+
+  @After
+  public void tearDown() {
+    for (ChannelExecutor executor : executors.values()) {
+      executor.close().awaitUninterruptibly(5, TimeUnit.SECONDS);
+    }
+    server.close();
+    h2cServer.close();
+    group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Each test gets executors of its own, closed afterwards
+   */
+  private HttpClient client(HttpClientConfig config) {
+    return HttpClient.create(executors.computeIfAbsent(config, ChannelExecutor::create));
+  }
+
+  private String url(String path) {
+    return url(server, path);
+  }
+
+  private String url(Channel server, String path) {
+    return "http://127.0.0.1:" + ((InetSocketAddress) server.localAddress()).getPort() + path;
+  }
+
+  @Test
+  public void testKeepAlive() throws Exception {
+    HttpClientConfig config = HttpClientConfig.builder().maxConnectionsPerHost(4).build();
+    for (int i = 0; i < 20; i++) {
+      String body = client(config).get(url("/" + i)).execute().get(5, TimeUnit.SECONDS).getResponseBody();
+      assertThat(body, equalTo("/" + i));
+    }
+    assertThat(connections.get(), equalTo(1));
+  }
+
+  @Test
+  public void testMaxConnectionsPerHost() throws Exception {
+    HttpClientConfig config = HttpClientConfig.builder().maxConnectionsPerHost(2).build();
+    List<ResponseFuture> futures = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      futures.add(client(config).get(url("/concurrent")).execute());
+    }
+    for (ResponseFuture future : futures) {
+      assertThat(future.get(5, TimeUnit.SECONDS).getResponseBody(), equalTo("/concurrent"));
+    }
+    assertThat(connections.get(), lessThanOrEqualTo(2));
+  }
+
+  @Test
+  public void testConnectionClosedByServer() throws Exception {
+    closing = true;
+    HttpClientConfig config = HttpClientConfig.builder().maxConnectionsPerHost(1).build();
+    for (int i = 0; i < 3; i++) {
+      String body = client(config).get(url("/close")).execute().get(5, TimeUnit.SECONDS).getResponseBody();
+      assertThat(body, equalTo("/close"));
+    }
+    assertThat(connections.get(), equalTo(3));
+  }
+
+  @Test
+  public void testAggregated() throws Exception {
+    HttpClientConfig config = HttpClientConfig.builder().build();
+    Response response = client(config).get(url("/big")).execute().get(5, TimeUnit.SECONDS);
+    assertThat(response.getContent(), equalTo(bigContent()));
+  }
+
+  @Test
+  public void testStreaming() throws Exception {
+    HttpClientConfig config = HttpClientConfig.builder().build();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Response response = client(config)
+        .get(url("/big"))
+        .execute(chunk -> out.write(ByteBufUtil.getBytes(chunk), 0, chunk.readableBytes()))
+        .get(5, TimeUnit.SECONDS);
+    assertThat(response.getContent(), nullValue());
+    assertThat(out.toByteArray(), equalTo(bigContent()));
+  }
+
+  @Test
+  public void testDownload() throws Exception {
+    HttpClientConfig config = HttpClientConfig.builder().build();
+    File file = File.createTempFile("laputa-http-client", ".bin");
+    try {
+      Response response = client(config).get(url("/big")).download(file).get(5, TimeUnit.SECONDS);
+      assertThat(response.getFile(), equalTo(file));
+      assertThat(Files.readAllBytes(file.toPath()), equalTo(bigContent()));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testMaxContentLength() throws Exception {
+    HttpClientConfig config = HttpClientConfig.builder().maxContentLength(CHUNK_SIZE * 4).build();
+    assertTooLong(client(config).get(url("/big")).execute());
+    assertTooLong(client(config).get(url("/big?length=true")).execute());
+
+    String body = client(config).get(url("/small")).execute().get(5, TimeUnit.SECONDS).getResponseBody();
+    assertThat(body, equalTo("/small"));
+  }
+
+  @Test
+  public void testHttp2Multiplexed() throws Exception {
+    HttpClientConfig config = HttpClientConfig.builder().http2(true).build();
+    List<ResponseFuture> futures = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      futures.add(client(config).get(url(h2cServer, "/h2/" + i)).execute());
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      assertThat(futures.get(i).get(5, TimeUnit.SECONDS).getResponseBody(), equalTo("/h2/" + i));
+    }
+    assertThat(connections.get(), equalTo(1));
+  }
+
+  @Test
+  public void testHttp2Aggregated() throws Exception {
+    HttpClientConfig config = HttpClientConfig.builder().http2(true).build();
+    Response response = client(config).get(url(h2cServer, "/big")).execute().get(5, TimeUnit.SECONDS);
+    assertThat(response.getContent(), equalTo(bigContent()));
+
+    String body = client(config).get(url(h2cServer, "/small")).execute().get(5, TimeUnit.SECONDS)
+        .getResponseBody();
+    assertThat(body, equalTo("/small"));
+    assertThat(connections.get(), equalTo(1));
+  }
+
+  private void assertTooLong(ResponseFuture future) throws Exception {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("expecting TooLongFrameException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(TooLongFrameException.class));
+    }
+  }
+
+  private static byte[] bigContent() {
+    byte[] content = new byte[CHUNK_SIZE * CHUNKS];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) (i / CHUNK_SIZE);
+    }
+    return content;
+  }
+
+  private class EchoPathHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+      if (request.uri().startsWith("/big")) {
+        writeBig(ctx, request.uri().contains("length"));
+        return;
+      }
+
+      byte[] content = request.uri().getBytes(StandardCharsets.UTF_8);
+      FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, OK, Unpooled.wrappedBuffer(content));
+      response.headers().set(CONTENT_LENGTH, content.length);
+      if (closing || !HttpUtil.isKeepAlive(request)) {
+        response.headers().set(CONNECTION, CLOSE);
+        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+      } else {
+        ctx.writeAndFlush(response);
+      }
+    }
+
+    private void writeBig(ChannelHandlerContext ctx, boolean contentLength) {
+      byte[] content = bigContent();
+      HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
+      if (contentLength) {
+        response.headers().set(CONTENT_LENGTH, content.length);
+      } else {
+        HttpUtil.setTransferEncodingChunked(response, true);
+      }
+      ctx.write(response);
+      for (int i = 0; i < CHUNKS; i++) {
+        ctx.write(new DefaultHttpContent(Unpooled.wrappedBuffer(content, i * CHUNK_SIZE, CHUNK_SIZE)));
+      }
+      ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+    }
+  }
+}
@@ -7,8 +7,10 @@ import com.orctom.laputa.service.annotation.PATH;
 import com.orctom.laputa.service.annotation.POST;
 import com.orctom.laputa.service.annotation.Param;
 import com.orctom.laputa.service.annotation.RedirectTo;
+import com.orctom.laputa.service.annotation.Streaming;
 import com.orctom.laputa.service.example.model.Products;
 import com.orctom.laputa.service.example.model.SKU;
+import com.orctom.laputa.service.model.FileBodySink;
 import com.orctom.laputa.service.model.Messenger;
 import com.orctom.laputa.service.model.MultipartFile;
 import org.slf4j.Logger;
@@ -16,6 +18,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Controller;
 
 import javax.validation.constraints.Size;
+import java.util.concurrent.CompletableFuture;
 
 @Controller
 @PATH("/product")
@@ -59,6 +62,11 @@ public class Product {
     return new SKU(id, id + "-desc", 123456, 100000);
   }
 
+  @PATH("/sku/async/{id}")
+  public CompletableFuture<SKU> skuAsync(@Param("id") String id) {
+    return CompletableFuture.supplyAsync(() -> sku(id));
+  }
+
   // http://localhost:7000/product/sku/new?sku=sku&desc=desc&category=cate&stock=100
   // curl -X POST -d "sku=sku&desc=desc&category=cate&stock=100" ttp://localhost:7000/product/sku/new
   @PATH("/sku/new")
@@ -98,6 +106,22 @@ public class Product {
     return "uploaded: " + uploadedFile.toString();
   }
 
+  // curl -F "file=@large.iso" http://localhost:7000/product/upload/streaming
+  @POST
+  @Streaming
+  @PATH("/upload/streaming")
+  public String uploadStreaming(@Param("file") MultipartFile uploadedFile) {
+    return "uploaded: " + uploadedFile.getFile().length();
+  }
+
+  // curl -H "Content-Type: application/octet-stream" --data-binary @large.iso http://localhost:7000/product/upload/raw
+  @POST
+  @Streaming
+  @PATH("/upload/raw")
+  public String uploadRaw(FileBodySink body) {
+    return "received: " + body.getSize();
+  }
+
   @PATH("/hello/{name}")
   public String hello(@Size(min = 3, max = 5) @Param("name") String name) {
     return "hello " + name;
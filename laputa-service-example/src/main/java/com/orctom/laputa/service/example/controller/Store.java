@@ -10,7 +10,7 @@ import org.springframework.stereotype.Controller;
 @PATH("/store")
 public class Store {
 
-  @PATH("/{name}")
+  @PATH("/name/{name}")
   public String name() {
     return "name";
   }
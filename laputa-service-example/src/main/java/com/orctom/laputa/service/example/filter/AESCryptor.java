@@ -20,6 +20,12 @@ public class AESCryptor implements Filter {
 
   private static final byte[] KEY = "BGNJLEfl4MJaGXwYZc4DosxYHJaKTJmEAV55FaFfES+ecSIHomxK0d2exkxhDm+k".getBytes();
   private static final String UTF8 = "UTF-8";
+  private static final String[] PATHS = {"/product/**"};
+
+  @Override
+  public String[] getPaths() {
+    return PATHS;
+  }
 
   @Override
   public void doFilter(RequestWrapper requestWrapper, ResponseWrapper responseWrapper, FilterChain filterChain) {
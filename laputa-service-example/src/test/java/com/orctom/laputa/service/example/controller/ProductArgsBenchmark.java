@@ -0,0 +1,214 @@
+package com.orctom.laputa.service.example.controller;
+
+import com.orctom.laputa.service.annotation.Cookie;
+import com.orctom.laputa.service.annotation.Cookies;
+import com.orctom.laputa.service.annotation.HttpHeader;
+import com.orctom.laputa.service.annotation.HttpHeaders;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.example.model.SKU;
+import com.orctom.laputa.service.model.Messenger;
+import com.orctom.laputa.service.model.ParamInfo;
+import com.orctom.laputa.service.model.RequestMapping;
+import com.orctom.laputa.service.model.RequestWrapper;
+import com.orctom.laputa.service.util.BeanUtil;
+import com.orctom.laputa.utils.ClassUtils;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import org.apache.commons.beanutils.BeanUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Binding the args of {@link Product} handlers, with the generated binders of the mappings,
+ * against the reflective resolving they replaced (kept below as `legacy*`).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductArgsBenchmark {
+
+  private RequestMapping sku;
+  private RequestMapping hello;
+  private RequestMapping addSku;
+
+  private Map<String, String> skuParams;
+  private Map<String, String> helloParams;
+  private Map<String, String> addSkuParams;
+
+  private RequestWrapper requestWrapper;
+
+  @Setup
+  public void setUp() throws Exception {
+    Configurator.getInstance();
+    Product product = new Product();
+    sku = mapping(product, "/product/sku/{id}", Product.class.getMethod("sku", String.class));
+    hello = mapping(product, "/product/hello", Product.class.getMethod("hello2", String.class, String.class));
+    addSku = mapping(product, "/product/sku/new", Product.class.getMethod("addSKU", SKU.class));
+
+    skuParams = Collections.singletonMap("id", "315515");
+
+    helloParams = new HashMap<>();
+    helloParams.put("hello", "world");
+    helloParams.put("id", null);
+
+    addSkuParams = new HashMap<>();
+    addSkuParams.put("sku.sku", "315515");
+    addSkuParams.put("sku.desc", "folder");
+    addSkuParams.put("sku.category", "123456");
+    addSkuParams.put("sku.stock", "100000");
+
+    requestWrapper = new RequestWrapper(
+        HttpMethod.GET, new DefaultHttpHeaders(), "/product", "/product", Collections.emptyMap(), "");
+  }
+
+  private RequestMapping mapping(Product product, String uriPattern, Method method) {
+    return RequestMapping.builder()
+        .uriPattern(uriPattern)
+        .target(product)
+        .handlerClass(Product.class)
+        .handlerMethod(method)
+        .httpMethod("@get")
+        .build();
+  }
+
+  @Benchmark
+  public Object[] skuBinder() {
+    return bind(sku, skuParams);
+  }
+
+  @Benchmark
+  public Object[] skuLegacy() {
+    return legacy(sku, skuParams);
+  }
+
+  @Benchmark
+  public Object[] helloBinder() {
+    return bind(hello, helloParams);
+  }
+
+  @Benchmark
+  public Object[] helloLegacy() {
+    return legacy(hello, helloParams);
+  }
+
+  @Benchmark
+  public Object[] addSkuBinder() {
+    return bind(addSku, addSkuParams);
+  }
+
+  @Benchmark
+  public Object[] addSkuLegacy() {
+    return legacy(addSku, addSkuParams);
+  }
+
+  private Object[] bind(RequestMapping mapping, Map<String, String> params) {
+    return mapping.getArgsBinder().bind(new HashMap<>(params), requestWrapper, null);
+  }
+
+  private Object[] legacy(RequestMapping mapping, Map<String, String> params) {
+    return legacyResolveArgs(new HashMap<>(params), mapping.getHandlerParameters(), requestWrapper);
+  }
+
+  private static Object[] legacyResolveArgs(Map<String, String> paramValues,
+                                            Map<String, ParamInfo> parameters,
+                                            RequestWrapper requestWrapper) {
+    Object[] args = new Object[parameters.size()];
+    Map<Map.Entry<String, ParamInfo>, Integer> complexParameters = new HashMap<>();
+    int i = 0;
+    for (Map.Entry<String, ParamInfo> entry : parameters.entrySet()) {
+      ParamInfo paramInfo = entry.getValue();
+      if (null != paramInfo.getAnnotation(Cookies.class)) {
+        args[i++] = requestWrapper.getCookies();
+        continue;
+      }
+      Cookie cookie = paramInfo.getAnnotation(Cookie.class);
+      if (null != cookie) {
+        args[i++] = requestWrapper.getCookies().get(cookie.value());
+        continue;
+      }
+      if (null != paramInfo.getAnnotation(HttpHeaders.class)) {
+        args[i++] = requestWrapper.getHeaders().entries().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        continue;
+      }
+      HttpHeader httpHeader = paramInfo.getAnnotation(HttpHeader.class);
+      if (null != httpHeader) {
+        args[i++] = requestWrapper.getHeaders().get(httpHeader.value());
+        continue;
+      }
+
+      Class<?> type = paramInfo.getType();
+      if (ClassUtils.isSimpleValueType(type)) {
+        args[i++] = legacySimpleValue(paramValues.remove(entry.getKey()), type);
+      } else {
+        complexParameters.put(entry, i++);
+      }
+    }
+
+    for (Map.Entry<Map.Entry<String, ParamInfo>, Integer> entry : complexParameters.entrySet()) {
+      String paramName = entry.getKey().getKey();
+      Map<String, String> params = paramValues.entrySet().stream()
+          .filter(item -> item.getKey().startsWith(paramName) && item.getKey().length() > paramName.length())
+          .collect(Collectors.toMap(
+              item -> {
+                String param = paramName + ".";
+                String key = item.getKey();
+                int start = key.indexOf(param);
+                return start >= 0 ? key.substring(start + param.length()) : key;
+              },
+              Map.Entry::getValue));
+      if (params.isEmpty()) {
+        params = paramValues;
+      }
+
+      Object bean = BeanUtil.createNewInstance(entry.getKey().getValue().getType());
+      try {
+        BeanUtils.populate(bean, params);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+      args[entry.getValue()] = bean;
+    }
+    return args;
+  }
+
+  private static Object legacySimpleValue(String value, Class<?> type) {
+    if (String.class.isAssignableFrom(type)) {
+      return value;
+    } else if (Integer.class.isAssignableFrom(type)) {
+      return null == value ? null : Integer.valueOf(value);
+    } else if (int.class.isAssignableFrom(type)) {
+      return null == value ? 0 : Integer.valueOf(value);
+    } else if (Long.class.isAssignableFrom(type)) {
+      return null == value ? null : Long.valueOf(value);
+    } else if (long.class.isAssignableFrom(type)) {
+      return null == value ? 0 : Long.valueOf(value);
+    }
+    throw new IllegalArgumentException("Unsupported param type" + type);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ProductArgsBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -1,21 +1,22 @@
 package com.orctom.laputa.service.processor;
 
 import com.google.common.base.Strings;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.orctom.laputa.service.cache.StaticContent;
+import com.orctom.laputa.service.cache.StaticContentCache;
 import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.config.MappingConfig;
 import com.orctom.laputa.service.model.MediaType;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.service.model.RouteMatch;
+import com.orctom.laputa.service.model.StaticMapping;
 import com.orctom.laputa.service.translator.response.FileResponseTranslator;
 import com.orctom.laputa.service.translator.response.ResponseTranslators;
+import com.orctom.laputa.service.util.ConditionalRequests;
 import com.orctom.laputa.utils.FileUtils;
 import com.typesafe.config.Config;
-import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponseStatus;
-import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,9 +25,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Pattern;
 
 import static com.orctom.laputa.service.Constants.*;
@@ -37,40 +37,35 @@ public class WebRequestProcessor implements RequestProcessor {
   private static final Logger LOGGER = LoggerFactory.getLogger(WebRequestProcessor.class);
 
   private static final Configurator CONFIGURATOR = Configurator.getInstance();
-  private static final boolean isDebugEnabled = CONFIGURATOR.isDebugEnabled();
+  private static final StaticContentCache STATIC_CONTENT_CACHE = StaticContentCache.getInstance();
 
-  private static Map<String, String> staticFileMapping = new HashMap<>();
   private static final Pattern INSECURE_URI = Pattern.compile(".*[<>&\"].*");
 
-  private final LoadingCache<String, byte[]> classpathStaticFileContentCache = CacheBuilder.newBuilder()
-      .softValues()
-      .maximumSize(500)
-      .build(new CacheLoader<String, byte[]>() {
-        @Override
-        public byte[] load(String resource) throws Exception {
-          return getContentAsByteArray(resource);
-        }
-      });
-
   public WebRequestProcessor() {
     initStaticPaths();
     registerTranslator();
   }
 
+  /**
+   * Compiled into the router, so that each request is classified once, as static or not, by the longest uri prefix
+   */
   @SuppressWarnings("unchecked")
   private void initStaticPaths() {
     Config config = CONFIGURATOR.getConfig();
-    addToStaticFileMapping((List<Config>) config.getConfigList(CFG_URLS_STATIC_DEFAULT_MAPPINGS));
+    List<StaticMapping> staticMappings = new ArrayList<>();
+    addToStaticFileMapping((List<Config>) config.getConfigList(CFG_URLS_STATIC_DEFAULT_MAPPINGS), staticMappings);
     if (config.hasPath(CFG_URLS_STATIC_MAPPINGS)) {
-      addToStaticFileMapping((List<Config>) config.getConfigList(CFG_URLS_STATIC_MAPPINGS));
+      addToStaticFileMapping((List<Config>) config.getConfigList(CFG_URLS_STATIC_MAPPINGS), staticMappings);
     }
+    MappingConfig.getInstance().addStaticMappings(staticMappings);
   }
 
   private void registerTranslator() {
     ResponseTranslators.register(new FileResponseTranslator());
   }
 
-  private static void addToStaticFileMapping(List<Config> staticFileMappingsConfig) {
+  private static void addToStaticFileMapping(List<Config> staticFileMappingsConfig,
+                                             List<StaticMapping> staticMappings) {
     if (null == staticFileMappingsConfig || staticFileMappingsConfig.isEmpty()) {
       return;
     }
@@ -78,17 +73,17 @@ public class WebRequestProcessor implements RequestProcessor {
     for (Config staticFileMappingConfig : staticFileMappingsConfig) {
       String uri = staticFileMappingConfig.getString(CFG_URI);
       String path = staticFileMappingConfig.getString(CFG_PATH);
-      staticFileMapping.put(uri, path);
-      LOGGER.info("Added static content mapping: {} -> {}", uri, path);
+      staticMappings.add(new StaticMapping(uri, path));
     }
   }
 
   @Override
   public void handleRequest(final RequestWrapper requestWrapper, final ResponseWrapper responseWrapper) {
-    String staticFilePath = getStaticFileMappingPath(requestWrapper.getPath());
-    if (Strings.isNullOrEmpty(staticFilePath)) {
+    StaticMapping staticMapping = getStaticMapping(requestWrapper);
+    if (null == staticMapping) {
       return;
     }
+    String staticFilePath = staticMapping.getPath();
 
     if (HttpMethod.GET != requestWrapper.getHttpMethod()) {
       setResponseStatus(responseWrapper, METHOD_NOT_ALLOWED);
@@ -100,7 +95,7 @@ public class WebRequestProcessor implements RequestProcessor {
       return;
     }
 
-    String uri = getUri(requestWrapper);
+    String uri = staticMapping.getRelativePath(getUri(requestWrapper));
 
     if (Strings.isNullOrEmpty(staticFilePath)) {
       serveFromClasspath(requestWrapper, responseWrapper, PATH_THEME, uri);
@@ -124,37 +119,50 @@ public class WebRequestProcessor implements RequestProcessor {
     return uri;
   }
 
-  private String getStaticFileMappingPath(String uri) {
-    for (Map.Entry<String, String> entry : staticFileMapping.entrySet()) {
-      if (uri.startsWith(entry.getKey())) {
-        return entry.getValue();
-      }
+  /**
+   * Reuses the match routed ahead, unless the path got changed since.
+   */
+  private StaticMapping getStaticMapping(RequestWrapper requestWrapper) {
+    RouteMatch routeMatch = requestWrapper.getRouteMatch();
+    if (null != routeMatch) {
+      return routeMatch.getStaticMapping();
     }
-    return null;
+    return MappingConfig.getInstance().getStaticMapping(requestWrapper.getPath());
   }
 
   private void serveFromClasspath(RequestWrapper requestWrapper,
                                   ResponseWrapper responseWrapper,
                                   String staticPath,
                                   String uri) {
-    if (isModifiedSinceHeaderPresent(requestWrapper)) {
-      setResponseStatus(responseWrapper, NOT_MODIFIED);
-      return;
-    }
-
-    String resource = staticPath + removeTopDir(uri);
+    String resource = staticPath + uri;
     URL url = getClass().getResource(resource);
-    if (null == url) {
+    if (null == url || isDirectory(url)) {
       setResponseStatus(responseWrapper, NOT_FOUND);
       return;
     }
 
     try {
-      if (isDebugEnabled) {
-        responseWrapper.setContent(getContentAsByteArray(resource));
-
-      } else {
-        responseWrapper.setContent(classpathStaticFileContentCache.get(resource));
+      StaticContent cached = STATIC_CONTENT_CACHE.get(url);
+      byte[] content = null == cached ? getContentAsByteArray(resource) : null;
+      String eTag = null == cached ? ConditionalRequests.eTag(content) : cached.getETag();
+      long lastModified = null == cached ? 0 : cached.getLastModified();
+      responseWrapper.setETag(eTag);
+      ConditionalRequests.Outcome outcome = ConditionalRequests.evaluate(
+          requestWrapper.getHttpMethod(), requestWrapper.getHeaders(), eTag, lastModified
+      );
+      switch (outcome) {
+        case NOT_MODIFIED:
+          responseWrapper.setStatus(NOT_MODIFIED);
+          break;
+        case PRECONDITION_FAILED:
+          setResponseStatus(responseWrapper, PRECONDITION_FAILED);
+          break;
+        default:
+          if (null == cached) {
+            responseWrapper.setContent(content);
+          } else {
+            responseWrapper.setContent(cached.retainedContent());
+          }
       }
 
     } catch (Exception e) {
@@ -164,29 +172,23 @@ public class WebRequestProcessor implements RequestProcessor {
     }
   }
 
-  private boolean isModifiedSinceHeaderPresent(RequestWrapper requestWrapper) {
-    String ifModifiedSince = requestWrapper.getHeaders().get(HttpHeaderNames.IF_MODIFIED_SINCE);
-    return !Strings.isNullOrEmpty(ifModifiedSince);
-  }
-
   private void serveFromFileSystem(RequestWrapper requestWrapper,
                                    ResponseWrapper responseWrapper,
                                    String staticPath,
                                    String uri) {
-    File file = new File(staticPath + removeTopDir(uri));
+    File file = new File(staticPath + uri);
     if (isInvalidFile(file)) {
       setResponseStatus(responseWrapper, NOT_FOUND);
       return;
     }
 
-    if (isFileNotModified(requestWrapper, file)) {
-      setResponseStatus(responseWrapper, NOT_MODIFIED);
-      return;
-    }
-
     responseWrapper.setFile(file);
   }
 
+  private boolean isDirectory(URL url) {
+    return "file".equals(url.getProtocol()) && new File(url.getPath()).isDirectory();
+  }
+
   private boolean isInvalidFile(File file) {
     return !isValidFile(file);
   }
@@ -231,24 +233,4 @@ public class WebRequestProcessor implements RequestProcessor {
     responseWrapper.setStatus(status);
     responseWrapper.setContent(status.reasonPhrase().getBytes());
   }
-
-  private boolean isFileNotModified(RequestWrapper requestWrapper, File file) {
-    String ifModifiedSince = requestWrapper.getHeaders().get(HttpHeaderNames.IF_MODIFIED_SINCE);
-    if (Strings.isNullOrEmpty(ifModifiedSince)) {
-      return false;
-    }
-
-    long ifModifiedSinceSeconds = DateTime.parse(ifModifiedSince, HTTP_DATE_FORMATTER).getMillis() / 1000;
-    long fileLastModifiedSeconds = file.lastModified() / 1000;
-    return ifModifiedSinceSeconds == fileLastModifiedSeconds;
-  }
-
-  private String removeTopDir(String uri) {
-    int index = uri.indexOf(PATH_SEPARATOR, 1);
-    if (0 < index && index < uri.length()) {
-      return uri.substring(index);
-    }
-
-    return uri;
-  }
 }
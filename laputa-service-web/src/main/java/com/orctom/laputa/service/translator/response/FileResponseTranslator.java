@@ -1,17 +1,28 @@
 package com.orctom.laputa.service.translator.response;
 
+import com.google.common.collect.ImmutableMap;
+import com.orctom.laputa.service.cache.StaticContent;
+import com.orctom.laputa.service.cache.StaticContentCache;
 import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.model.ByteRange;
 import com.orctom.laputa.service.model.MediaType;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.service.util.ConditionalRequests;
+import com.orctom.laputa.service.util.HttpDateClock;
 import com.typesafe.config.Config;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.stream.ChunkedFile;
-import org.joda.time.DateTime;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.util.AsciiString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,9 +30,13 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static com.orctom.laputa.service.Constants.CFG_STATIC_FILE_CACHE;
-import static com.orctom.laputa.service.Constants.HTTP_DATE_FORMATTER;
 import static io.netty.handler.codec.http.HttpHeaderNames.*;
 import static io.netty.handler.codec.http.HttpResponseStatus.*;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
@@ -30,11 +45,26 @@ public class FileResponseTranslator extends AbstractResponseTranslator implement
 
   private static final Logger LOGGER = LoggerFactory.getLogger(FileResponseTranslator.class);
 
+  /**
+   * Encodings of the precompressed siblings, to their suffixes, in the order of preference
+   */
+  private static final Map<String, String> PRECOMPRESSED = ImmutableMap.of("br", ".br", "gzip", ".gz");
+
+  private static final String MULTIPART_BYTERANGES = "multipart/byteranges; boundary=";
+
+  private static final int CHUNK_SIZE = 8192;
+
+  private static final StaticContentCache STATIC_CONTENT_CACHE = StaticContentCache.getInstance();
+
   private static int staticFileCache;
+  private static AsciiString cacheControl;
+  private static HttpDateClock expires;
 
   static {
     Config config = Configurator.getInstance().getConfig();
     staticFileCache = config.getInt(CFG_STATIC_FILE_CACHE);
+    cacheControl = AsciiString.of("public, max-age=" + staticFileCache);
+    expires = new HttpDateClock(staticFileCache);
   }
 
   @Override
@@ -45,9 +75,12 @@ public class FileResponseTranslator extends AbstractResponseTranslator implement
   @Override
   public void translate(ChannelHandlerContext ctx, FullHttpRequest req, ResponseWrapper responseWrapper) {
     try {
-      RandomAccessFile file;
+      File file = responseWrapper.getFile();
+      String contentEncoding = getPrecompressedEncoding(file, req.headers().get(ACCEPT_ENCODING));
+      File content = null == contentEncoding ? file : new File(file.getPath() + PRECOMPRESSED.get(contentEncoding));
+      RandomAccessFile raf;
       try {
-        file = new RandomAccessFile(responseWrapper.getFile(), "r");
+        raf = new RandomAccessFile(content, "r");
       } catch (FileNotFoundException ignore) {
         ignore.printStackTrace();
         responseWrapper.setMediaType(MediaType.TEXT_PLAIN.getValue());
@@ -56,29 +89,57 @@ public class FileResponseTranslator extends AbstractResponseTranslator implement
         return;
       }
 
-      HttpResponse res = new DefaultHttpResponse(HTTP_1_1, OK);
-      long contentLength = file.length();
-      res.headers().set(CONTENT_LENGTH, contentLength);
-      res.headers().set(CONTENT_TYPE, responseWrapper.getMediaType());
-      setDateAndCacheHeaders(res, responseWrapper.getFile());
-      boolean keepAlive = HttpUtil.isKeepAlive(req);
-      if (keepAlive) {
-        res.headers().set(CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+      String eTag = ConditionalRequests.eTag(content);
+      long lastModified = file.lastModified();
+      ConditionalRequests.Outcome outcome = ConditionalRequests.evaluate(req.method(), req.headers(), eTag, lastModified);
+      if (ConditionalRequests.Outcome.PROCEED != outcome) {
+        raf.close();
+        HttpResponseStatus status = ConditionalRequests.Outcome.NOT_MODIFIED == outcome ? NOT_MODIFIED : PRECONDITION_FAILED;
+        sendConditionalStatus(ctx, req, status, eTag, file, contentEncoding);
+        return;
+      }
+
+      long contentLength = raf.length();
+      List<ByteRange> ranges = null;
+      if (ConditionalRequests.isRangeApplicable(req.headers(), eTag, lastModified)) {
+        ranges = ByteRange.parse(req.headers().get(RANGE), contentLength);
+      }
+      if (null != ranges && ranges.isEmpty()) {
+        raf.close();
+        sendRangeNotSatisfiable(ctx, req, contentLength);
+        return;
       }
 
-      ctx.write(res);
+      HttpResponse res = new DefaultHttpResponse(HTTP_1_1, null == ranges ? OK : PARTIAL_CONTENT);
+      setEntityHeaders(res, eTag, file, contentEncoding);
+      res.headers().set(ACCEPT_RANGES, HttpHeaderValues.BYTES);
+      boolean keepAlive = HttpUtil.isKeepAlive(req);
+      res.headers().set(CONNECTION, keepAlive ? HttpHeaderValues.KEEP_ALIVE : HttpHeaderValues.CLOSE);
+
+      boolean zeroCopy = isZeroCopySupported(ctx);
+      if ((zeroCopy || null != ranges) && null == contentEncoding) {
+        setUncompressed(res);
+      }
 
       ChannelFuture lastContentFuture;
-      if (null == ctx.pipeline().get(SslHandler.class)) {
-        ctx.write(new DefaultFileRegion(file.getChannel(), 0, contentLength), ctx.newProgressivePromise());
-        lastContentFuture = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+      if (null == ranges) {
+        res.headers().set(HttpHeaderNames.CONTENT_TYPE, responseWrapper.getMediaType());
+        res.headers().set(CONTENT_LENGTH, contentLength);
+        ctx.write(res);
+        lastContentFuture = writeContent(ctx, content, raf, new ByteRange(0, contentLength - 1), zeroCopy);
+
+      } else if (1 == ranges.size()) {
+        ByteRange range = ranges.get(0);
+        res.headers().set(HttpHeaderNames.CONTENT_TYPE, responseWrapper.getMediaType());
+        res.headers().set(CONTENT_RANGE, range.toContentRange(contentLength));
+        res.headers().set(CONTENT_LENGTH, range.getLength());
+        ctx.write(res);
+        lastContentFuture = writeContent(ctx, content, raf, range, zeroCopy);
 
       } else {
+        raf.close();
         lastContentFuture =
-            ctx.writeAndFlush(
-                new HttpChunkedInput(new ChunkedFile(file, 0, contentLength, 8192)),
-                ctx.newProgressivePromise()
-            );
+            writeMultipartContent(ctx, res, content, contentLength, ranges, responseWrapper.getMediaType(), zeroCopy);
       }
 
       if (!keepAlive) {
@@ -93,6 +154,182 @@ public class FileResponseTranslator extends AbstractResponseTranslator implement
     }
   }
 
+  /**
+   * Writes the range of the file, as the whole content of the response,
+   * from the static content cache if it can not be transferred from the file directly.
+   */
+  private ChannelFuture writeContent(ChannelHandlerContext ctx,
+                                     File content,
+                                     RandomAccessFile raf,
+                                     ByteRange range,
+                                     boolean zeroCopy) throws IOException {
+    if (zeroCopy) {
+      ctx.write(new DefaultFileRegion(raf.getChannel(), range.getStart(), range.getLength()), ctx.newProgressivePromise());
+      return ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+    }
+
+    StaticContent cached = STATIC_CONTENT_CACHE.get(content);
+    if (null != cached && range.getEnd() < cached.getLength()) {
+      raf.close();
+      ByteBuf buffer = cached.retainedContent().slice((int) range.getStart(), (int) range.getLength());
+      return ctx.writeAndFlush(new DefaultLastHttpContent(buffer));
+    }
+
+    return ctx.writeAndFlush(
+        new HttpChunkedInput(new ChunkedFile(raf, range.getStart(), range.getLength(), CHUNK_SIZE)),
+        ctx.newProgressivePromise()
+    );
+  }
+
+  /**
+   * Writes the ranges of the file as the parts of a `multipart/byteranges` content,
+   * each part reads the file on its own, which is closed once the part is written.
+   */
+  private ChannelFuture writeMultipartContent(ChannelHandlerContext ctx,
+                                              HttpResponse res,
+                                              File content,
+                                              long contentLength,
+                                              List<ByteRange> ranges,
+                                              String mediaType,
+                                              boolean zeroCopy) throws IOException {
+    String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+    long multipartLength = 0;
+    for (ByteRange range : ranges) {
+      byte[] partHeader = (
+          "\r\n--" + boundary + "\r\n" +
+              HttpHeaderNames.CONTENT_TYPE + ": " + mediaType + "\r\n" +
+              CONTENT_RANGE + ": " + range.toContentRange(contentLength) + "\r\n\r\n"
+      ).getBytes(StandardCharsets.US_ASCII);
+      partHeaders.add(partHeader);
+      multipartLength += partHeader.length + range.getLength();
+    }
+    byte[] closeDelimiter = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+    multipartLength += closeDelimiter.length;
+
+    res.headers().set(HttpHeaderNames.CONTENT_TYPE, MULTIPART_BYTERANGES + boundary);
+    res.headers().set(CONTENT_LENGTH, multipartLength);
+    ctx.write(res);
+
+    for (int i = 0; i < ranges.size(); i++) {
+      ByteRange range = ranges.get(i);
+      ctx.write(new DefaultHttpContent(Unpooled.wrappedBuffer(partHeaders.get(i))));
+      if (zeroCopy) {
+        ctx.write(new DefaultFileRegion(content, range.getStart(), range.getLength()));
+      } else {
+        RandomAccessFile raf = new RandomAccessFile(content, "r");
+        ctx.write(new HttpContentChunks(new ChunkedFile(raf, range.getStart(), range.getLength(), CHUNK_SIZE)));
+      }
+    }
+    return ctx.writeAndFlush(new DefaultLastHttpContent(Unpooled.wrappedBuffer(closeDelimiter)));
+  }
+
+  private void setEntityHeaders(HttpResponse res, String eTag, File file, String contentEncoding) {
+    setDateAndCacheHeaders(res, file);
+    res.headers().set(ETAG, eTag);
+    if (null != contentEncoding) {
+      res.headers().set(CONTENT_ENCODING, contentEncoding);
+    }
+    if (null != contentEncoding || hasPrecompressed(file)) {
+      res.headers().set(VARY, ACCEPT_ENCODING);
+    }
+  }
+
+  private void sendConditionalStatus(ChannelHandlerContext ctx,
+                                     FullHttpRequest req,
+                                     HttpResponseStatus status,
+                                     String eTag,
+                                     File file,
+                                     String contentEncoding) {
+    FullHttpResponse res = new DefaultFullHttpResponse(HTTP_1_1, status);
+    setEntityHeaders(res, eTag, file, contentEncoding);
+    if (PRECONDITION_FAILED == status) {
+      res.headers().remove(CONTENT_ENCODING);
+      res.headers().set(HttpHeaderNames.CONTENT_TYPE, MediaType.TEXT_PLAIN.getValue());
+      res.content().writeBytes(status.reasonPhrase().getBytes());
+    }
+    writeResponse(ctx, req, res, status);
+  }
+
+  private void sendRangeNotSatisfiable(ChannelHandlerContext ctx, FullHttpRequest req, long contentLength) {
+    FullHttpResponse res = new DefaultFullHttpResponse(HTTP_1_1, REQUESTED_RANGE_NOT_SATISFIABLE);
+    res.headers().set(CONTENT_RANGE, "bytes */" + contentLength);
+    res.headers().set(HttpHeaderNames.CONTENT_TYPE, MediaType.TEXT_PLAIN.getValue());
+    res.content().writeBytes(REQUESTED_RANGE_NOT_SATISFIABLE.reasonPhrase().getBytes());
+    setNoCacheHeader(res);
+    writeResponse(ctx, req, res, REQUESTED_RANGE_NOT_SATISFIABLE);
+  }
+
+  /**
+   * @return the encoding of the precompressed sibling of the file that's accepted, and not older than the file,
+   * null if there's none
+   */
+  private String getPrecompressedEncoding(File file, String acceptEncoding) {
+    if (null == acceptEncoding) {
+      return null;
+    }
+
+    for (Map.Entry<String, String> entry : PRECOMPRESSED.entrySet()) {
+      String encoding = entry.getKey();
+      if (!isAccepted(acceptEncoding, encoding)) {
+        continue;
+      }
+
+      if (isPrecompressed(file, entry.getValue())) {
+        return encoding;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The representation served depends on `Accept-Encoding` as long as there's a precompressed sibling,
+   * even if it's not the one served this time
+   */
+  private boolean hasPrecompressed(File file) {
+    for (String suffix : PRECOMPRESSED.values()) {
+      if (isPrecompressed(file, suffix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isPrecompressed(File file, String suffix) {
+    File sibling = new File(file.getPath() + suffix);
+    return sibling.isFile() && sibling.lastModified() >= file.lastModified();
+  }
+
+  private boolean isAccepted(String acceptEncoding, String encoding) {
+    for (String coding : acceptEncoding.split(",")) {
+      String[] params = coding.split(";");
+      String name = params[0].trim();
+      if (!name.equalsIgnoreCase(encoding)) {
+        continue;
+      }
+
+      for (int i = 1; i < params.length; i++) {
+        String param = params[i].trim();
+        if (param.startsWith("q=")) {
+          try {
+            return Double.parseDouble(param.substring(2)) > 0;
+          } catch (NumberFormatException e) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Neither TLS connections nor HTTP/2 streams (which are not socket channels) can transfer file regions
+   */
+  private boolean isZeroCopySupported(ChannelHandlerContext ctx) {
+    return ctx.channel() instanceof SocketChannel && null == ctx.pipeline().get(SslHandler.class);
+  }
+
   private void sendError(ChannelHandlerContext ctx, FullHttpRequest req, ResponseWrapper responseWrapper) {
     FullHttpResponse res = createHttpResponse(responseWrapper);
     res.headers().set(HttpHeaderNames.CONTENT_TYPE, MediaType.TEXT_PLAIN.getValue());
@@ -100,11 +337,54 @@ public class FileResponseTranslator extends AbstractResponseTranslator implement
     writeResponse(ctx, req, res, responseWrapper.getStatus());
   }
 
+  /**
+   * Takes the buffers read from a part of the file as the contents of the response, none of which is the last.
+   */
+  private static class HttpContentChunks implements ChunkedInput<HttpContent> {
+
+    private final ChunkedInput<ByteBuf> input;
+
+    HttpContentChunks(ChunkedInput<ByteBuf> input) {
+      this.input = input;
+    }
+
+    @Override
+    public boolean isEndOfInput() throws Exception {
+      return input.isEndOfInput();
+    }
+
+    @Override
+    public void close() throws Exception {
+      input.close();
+    }
+
+    @Deprecated
+    @Override
+    public HttpContent readChunk(ChannelHandlerContext ctx) throws Exception {
+      return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public HttpContent readChunk(ByteBufAllocator allocator) throws Exception {
+      ByteBuf buf = input.readChunk(allocator);
+      return null == buf ? null : new DefaultHttpContent(buf);
+    }
+
+    @Override
+    public long length() {
+      return input.length();
+    }
+
+    @Override
+    public long progress() {
+      return input.progress();
+    }
+  }
+
   private void setDateAndCacheHeaders(HttpResponse res, File file) {
-    DateTime now = DateTime.now();
-    res.headers().set(DATE, now.toString(HTTP_DATE_FORMATTER));
-    res.headers().set(LAST_MODIFIED, new DateTime(file.lastModified()).toString(HTTP_DATE_FORMATTER));
-    res.headers().set(EXPIRES, now.plusSeconds(staticFileCache).toString(HTTP_DATE_FORMATTER));
-    res.headers().set(CACHE_CONTROL, "public, max-age=" + staticFileCache);
+    res.headers().set(DATE, HttpDateClock.now());
+    res.headers().set(LAST_MODIFIED, HttpDateClock.format(file.lastModified()));
+    res.headers().set(EXPIRES, expires.get());
+    res.headers().set(CACHE_CONTROL, cacheControl);
   }
 }
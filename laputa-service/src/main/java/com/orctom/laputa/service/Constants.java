@@ -19,12 +19,52 @@ public class Constants {
   public static final String CFG_UPLOAD_DIR = "upload.dir";
   public static final String CFG_SERVER_USE_EPOLL = "server.epoll";
   public static final String CFG_STATIC_FILE_CACHE = "static.file.cache";
+  public static final String CFG_STATIC_CACHE_MAX_SIZE = "static.cache.maxSize";
+  public static final String CFG_STATIC_CACHE_MAX_FILE_SIZE = "static.cache.maxFileSize";
+  public static final String CFG_STATIC_CACHE_MAPPED_FILE_SIZE = "static.cache.mappedFileSize";
   public static final String CFG_SERVER_HTTP_PORT = "server.http.port";
   public static final String CFG_SERVER_HTTPS_PORT = "server.https.port";
+  public static final String CFG_SERVER_HTTP2_ENABLED = "server.http2.enabled";
+  public static final String CFG_SERVER_HTTP2_CLEARTEXT = "server.http2.cleartext";
+  public static final String CFG_SERVER_PIPELINING_MAX_IN_FLIGHT = "server.pipelining.maxInFlight";
+  public static final String CFG_SERVER_FLUSH_EXPLICIT_AFTER = "server.flush.explicitAfter";
+  public static final String CFG_SERVER_FLUSH_WHEN_NO_READ_IN_PROGRESS = "server.flush.whenNoReadInProgress";
+  public static final String CFG_SERVER_COMPRESSION_ENABLED = "server.compression.enabled";
+  public static final String CFG_SERVER_COMPRESSION_LEVEL = "server.compression.level";
+  public static final String CFG_SERVER_COMPRESSION_MIN_SIZE = "server.compression.minSize";
+  public static final String CFG_SERVER_COMPRESSION_MEDIA_TYPES = "server.compression.mediaTypes";
+  public static final String CFG_SERVER_COMPRESSION_EXCLUDED_MEDIA_TYPES = "server.compression.excludedMediaTypes";
   public static final String CFG_SERVER_CORS_ALLOWS_ORIGINS = "server.cors.allows.origins";
   public static final String CFG_SERVER_CORS_ALLOWS_CREDENTIALS = "server.cors.allows.credentials";
   public static final String CFG_WEBSOCKET_PATH = "server.websocket.path";
   public static final String CFG_THROTTLE = "server.throttle";
+  public static final String CFG_SERVER_ADMISSION_GLOBAL = "server.admission.global";
+  public static final String CFG_SERVER_ADMISSION_ROUTE = "server.admission.route";
+  public static final String CFG_SERVER_ADMISSION_CLIENT = "server.admission.client";
+  public static final String CFG_SERVER_ADMISSION_BURST = "server.admission.burst";
+  public static final String CFG_SERVER_ADMISSION_MAX_DELAY = "server.admission.maxDelay";
+  public static final String CFG_SERVER_ADMISSION_MAX_CLIENTS = "server.admission.maxClients";
+  public static final String CFG_SERVER_DISPATCH_MODE = "server.dispatch.mode";
+  public static final String CFG_SERVER_DISPATCH_THREADS = "server.dispatch.threads";
+  public static final String CFG_SERVER_DISPATCH_QUEUE = "server.dispatch.queue";
+  public static final String CFG_SERVER_VALIDATION_THREADS = "server.validation.threads";
+  public static final String CFG_SERVER_VALIDATION_QUEUE = "server.validation.queue";
+  public static final String CFG_SERVER_PUBLISHER_MAX_ELEMENTS = "server.publisher.maxElements";
+  public static final String CFG_SERVER_PUBLISHER_TIMEOUT = "server.publisher.timeout";
+  public static final String CFG_SERVER_EVENT_LOOP_ACCEPTORS = "server.eventLoop.acceptors";
+  public static final String CFG_SERVER_EVENT_LOOP_WORKERS = "server.eventLoop.workers";
+  public static final String CFG_SERVER_EVENT_LOOP_ADMIN = "server.eventLoop.admin";
+  public static final String CFG_SERVER_EVENT_LOOP_REUSE_PORT = "server.eventLoop.reusePort";
+  public static final String CFG_SERVER_EVENT_LOOP_MONITOR_ENABLED = "server.eventLoop.monitor.enabled";
+  public static final String CFG_SERVER_EVENT_LOOP_MONITOR_INTERVAL = "server.eventLoop.monitor.interval";
+  public static final String CFG_SERVER_EVENT_LOOP_MONITOR_BLOCKED_THRESHOLD = "server.eventLoop.monitor.blockedThreshold";
+  public static final String CFG_SERVER_METRICS_ENABLED = "server.metrics.enabled";
+  public static final String CFG_SERVER_METRICS_PATH = "server.metrics.path";
+  public static final String CFG_SERVER_METRICS_PORT = "server.metrics.port";
+  public static final String CFG_SERVER_SHUTDOWN_TIMEOUT = "server.shutdown.timeout";
+  public static final String CFG_SERVER_SHUTDOWN_QUIET_PERIOD = "server.shutdown.quietPeriod";
+  public static final String CFG_SERVER_MAX_CONTENT_LENGTH = "server.maxContentLength";
+  public static final String CFG_SERVER_STREAMING_MAX_CONTENT_LENGTH = "server.streaming.maxContentLength";
   public static final String CFG_POSTDATA_USEDISK_THRESHOLD = "server.postData.useDisk.threshold";
   public static final String CFG_SECURITY_RESOURCES = "security.resources";
   public static final String CFG_SECURITY_NON_RESOURCES = "security.non-resources";
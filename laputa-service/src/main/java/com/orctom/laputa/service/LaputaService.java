@@ -36,6 +36,8 @@ public class LaputaService {
 
   private AnnotationConfigApplicationContext applicationContext;
 
+  private Bootstrapper bootstrapper;
+
   private LaputaService() {
   }
 
@@ -89,6 +91,9 @@ public class LaputaService {
     loadMappings();
 
     LOGGER.info("Starting service...");
+    bootstrapper = new Bootstrapper();
+    Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "laputa-shutdown"));
+
     boolean bootstrapHttpsService = config.hasPath(CFG_SERVER_HTTPS_PORT);
     if (bootstrapHttpsService) {
       bootstrapHttpsService(config.getInt(CFG_SERVER_HTTPS_PORT));
@@ -102,6 +107,10 @@ public class LaputaService {
     if (!bootstrapHttpService && !bootstrapHttpsService) {
       bootstrapHttpService(DEFAULT_HTTP_PORT);
     }
+
+    if (config.getBoolean(CFG_SERVER_METRICS_ENABLED) && config.hasPath(CFG_SERVER_METRICS_PORT)) {
+      bootstrapper.listenMetrics(config.getInt(CFG_SERVER_METRICS_PORT));
+    }
   }
 
   private void loadMappings() {
@@ -109,11 +118,24 @@ public class LaputaService {
   }
 
   private void bootstrapHttpsService(int port) {
-    new Bootstrapper(port, true).start();
+    bootstrapper.listen(port, true);
   }
 
   private void bootstrapHttpService(int port) {
-    new Bootstrapper(port, false).start();
+    bootstrapper.listen(port, false);
+  }
+
+  /**
+   * Stops accepting, drains the requests in flight, then stops the server and the application context.
+   * Called by the shutdown hook as well.
+   */
+  public void shutdown() {
+    if (null != bootstrapper) {
+      bootstrapper.shutdown();
+    }
+    if (null != applicationContext) {
+      applicationContext.close();
+    }
   }
 
   private void printAsciiArt() {
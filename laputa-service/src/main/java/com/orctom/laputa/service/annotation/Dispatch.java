@@ -0,0 +1,22 @@
+package com.orctom.laputa.service.annotation;
+
+import com.orctom.laputa.service.model.DispatchMode;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Overrides `server.dispatch.mode` for a controller or a single @PATH method
+ */
+@Inherited
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Dispatch {
+
+  DispatchMode value();
+}
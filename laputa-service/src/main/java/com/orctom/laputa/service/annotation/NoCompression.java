@@ -0,0 +1,19 @@
+package com.orctom.laputa.service.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Responses of a controller or a single @PATH method are sent as is, never compressed by `server.compression`,
+ * such as for the ones already compressed, or too cheap to be worth it.
+ */
+@Inherited
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface NoCompression {
+}
@@ -0,0 +1,25 @@
+package com.orctom.laputa.service.annotation;
+
+import com.orctom.laputa.service.model.BodySink;
+import com.orctom.laputa.service.model.FileBodySink;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The request body is processed while being received, instead of being aggregated in memory,
+ * up to `server.streaming.maxContentLength` bytes.
+ * Forms (urlencoded or multipart) are decoded incrementally, uploaded files are spilled to disk progressively;
+ * other bodies are written to the {@link #sink()}, which can be declared as a parameter of the method.
+ * The body is not available as a String, so @Data is not supported.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Streaming {
+
+  Class<? extends BodySink> sink() default FileBodySink.class;
+}
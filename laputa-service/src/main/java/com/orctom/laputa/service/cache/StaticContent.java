@@ -0,0 +1,56 @@
+package com.orctom.laputa.service.cache;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.File;
+
+/**
+ * Content of a static file or classpath resource, kept in a read-only buffer shared by all the responses
+ */
+public class StaticContent {
+
+  private final ByteBuf content;
+  private final String eTag;
+  private final File file;
+  private final long lastModified;
+
+  /**
+   * @param file         the file the content was read from, null if it's not a file, such as a resource in a jar
+   * @param lastModified of the file, taken before it was read
+   */
+  StaticContent(ByteBuf content, String eTag, File file, long lastModified) {
+    this.content = content;
+    this.eTag = eTag;
+    this.file = file;
+    this.lastModified = lastModified;
+  }
+
+  /**
+   * @return a duplicate of the content that's owned by the caller, to be released once written
+   */
+  public ByteBuf retainedContent() {
+    return content.retainedDuplicate();
+  }
+
+  public int getLength() {
+    return content.readableBytes();
+  }
+
+  public String getETag() {
+    return eTag;
+  }
+
+  /**
+   * @return last modified time of the file, 0 if unknown, such as of the resources in jars
+   */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * @return true if the file has been modified since the content was read
+   */
+  boolean isStale() {
+    return null != file && (file.lastModified() != lastModified || file.length() != content.readableBytes());
+  }
+}
@@ -0,0 +1,211 @@
+package com.orctom.laputa.service.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.util.ConditionalRequests;
+import com.orctom.laputa.utils.SimpleMetrics;
+import com.typesafe.config.Config;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.orctom.laputa.service.Constants.*;
+
+/**
+ * Contents of static files and classpath resources, bounded by the total bytes of them.
+ * <p>
+ * Each one is read once, into a direct buffer, or memory mapped if it's not smaller than `mappedFileSize`,
+ * and is shared by all the responses as retained duplicates, nothing is copied per request.
+ * Evicted buffers are not released explicitly but freed by the GC, once no response refers to them,
+ * so that evicting never pulls a buffer from under a response being written.
+ * <p>
+ * A file is read again once its last modified time or length changes.
+ */
+public class StaticContentCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StaticContentCache.class);
+
+  private static final StaticContentCache INSTANCE = create(Configurator.getInstance().getConfig());
+
+  private final long maxFileSize;
+  private final long mappedFileSize;
+  private final Cache<String, StaticContent> cache;
+  private final AtomicLong bytes = new AtomicLong();
+
+  /**
+   * @param maxSize        total bytes of the contents to be kept
+   * @param maxFileSize    larger ones are not cached
+   * @param mappedFileSize files not smaller than this are memory mapped
+   */
+  StaticContentCache(long maxSize, long maxFileSize, long mappedFileSize) {
+    this.maxFileSize = Math.min(maxFileSize, Integer.MAX_VALUE);
+    this.mappedFileSize = mappedFileSize;
+    this.cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxSize)
+        .weigher((String key, StaticContent content) -> content.getLength())
+        .removalListener((RemovalListener<String, StaticContent>) removal ->
+            bytes.addAndGet(-removal.getValue().getLength())
+        )
+        .recordStats()
+        .build();
+  }
+
+  private static StaticContentCache create(Config config) {
+    StaticContentCache cache = new StaticContentCache(
+        config.getBytes(CFG_STATIC_CACHE_MAX_SIZE),
+        config.getBytes(CFG_STATIC_CACHE_MAX_FILE_SIZE),
+        config.getBytes(CFG_STATIC_CACHE_MAPPED_FILE_SIZE)
+    );
+
+    if (LOGGER.isInfoEnabled()) {
+      SimpleMetrics metrics = SimpleMetrics.create(LOGGER);
+      metrics.gauge("static.cache.hits", () -> String.valueOf(cache.getStats().hitCount()));
+      metrics.gauge("static.cache.misses", () -> String.valueOf(cache.getStats().missCount()));
+      metrics.gauge("static.cache.evictions", () -> String.valueOf(cache.getStats().evictionCount()));
+      metrics.gauge("static.cache.bytes", () -> String.valueOf(cache.getBytes()));
+    }
+    return cache;
+  }
+
+  public static StaticContentCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @return null if the file is larger than `maxFileSize`, which is to be read by the caller on its own
+   */
+  public StaticContent get(File file) throws IOException {
+    if (file.length() > maxFileSize) {
+      return null;
+    }
+    return get(file.getPath(), () -> read(file));
+  }
+
+  /**
+   * @return null if the resource is larger than `maxFileSize`, which is to be read by the caller on its own
+   */
+  public StaticContent get(URL resource) throws IOException {
+    File file = toFile(resource);
+    if (null != file) {
+      return get(file);
+    }
+    return get(resource.toString(), () -> read(resource));
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * @return total bytes of the contents kept
+   */
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  private StaticContent get(String key, Callable<StaticContent> loader) throws IOException {
+    try {
+      StaticContent content = cache.get(key, loader);
+      if (content.isStale()) {
+        cache.asMap().remove(key, content);
+        content = cache.get(key, loader);
+      }
+      return content;
+
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof TooLargeException) {
+        return null;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause.getMessage(), cause);
+    }
+  }
+
+  private StaticContent read(File file) throws IOException {
+    long lastModified = file.lastModified();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long length = channel.size();
+      if (length > maxFileSize) {
+        throw new TooLargeException();
+      }
+
+      ByteBuffer buffer;
+      if (length >= mappedFileSize) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      } else {
+        buffer = ByteBuffer.allocateDirect((int) length);
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) < 0) {
+            break;
+          }
+        }
+        buffer.flip();
+      }
+      return add(new StaticContent(wrap(buffer), ConditionalRequests.eTag(length, lastModified), file, lastModified));
+    }
+  }
+
+  private StaticContent read(URL resource) throws IOException {
+    URLConnection connection = resource.openConnection();
+    if (connection.getContentLengthLong() > maxFileSize) {
+      throw new TooLargeException();
+    }
+
+    try (InputStream input = connection.getInputStream()) {
+      byte[] bytes = ByteStreams.toByteArray(input);
+      if (bytes.length > maxFileSize) {
+        throw new TooLargeException();
+      }
+
+      ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+      buffer.put(bytes).flip();
+      return add(new StaticContent(wrap(buffer), ConditionalRequests.eTag(bytes), null, 0));
+    }
+  }
+
+  private ByteBuf wrap(ByteBuffer buffer) {
+    return Unpooled.wrappedBuffer(buffer).asReadOnly();
+  }
+
+  private StaticContent add(StaticContent content) {
+    bytes.addAndGet(content.getLength());
+    return content;
+  }
+
+  private File toFile(URL resource) {
+    if (!"file".equals(resource.getProtocol())) {
+      return null;
+    }
+
+    try {
+      return new File(resource.toURI());
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static class TooLargeException extends IOException {
+  }
+}
@@ -36,6 +36,8 @@ public class Configurator {
   private Charset charset;
   private Integer throttle;
   private long postDataUseDiskThreshold = DefaultHttpDataFactory.MINSIZE;
+  private int maxContentLength;
+  private long streamingMaxContentLength;
 
   private Configurator() {
     initConfig();
@@ -43,6 +45,7 @@ public class Configurator {
     loadDatePattern();
     loadCharset();
     loadPostDataUseDiskThreshold();
+    loadMaxContentLength();
     loadThrottle();
   }
 
@@ -98,6 +101,14 @@ public class Configurator {
     LOGGER.info("Setting `{}` to {} bytes.", CFG_POSTDATA_USEDISK_THRESHOLD, postDataUseDiskThreshold);
   }
 
+  private void loadMaxContentLength() {
+    maxContentLength = config.getBytes(CFG_SERVER_MAX_CONTENT_LENGTH).intValue();
+    streamingMaxContentLength = config.getBytes(CFG_SERVER_STREAMING_MAX_CONTENT_LENGTH);
+    LOGGER.info("Setting `{}` to {} bytes, `{}` to {} bytes.",
+        CFG_SERVER_MAX_CONTENT_LENGTH, maxContentLength,
+        CFG_SERVER_STREAMING_MAX_CONTENT_LENGTH, streamingMaxContentLength);
+  }
+
   private void loadThrottle() {
     if (config.hasPath(CFG_THROTTLE)) {
       throttle = config.getInt(CFG_THROTTLE);
@@ -125,4 +136,12 @@ public class Configurator {
   public long getPostDataUseDiskThreshold() {
     return postDataUseDiskThreshold;
   }
+
+  public int getMaxContentLength() {
+    return maxContentLength;
+  }
+
+  public long getStreamingMaxContentLength() {
+    return streamingMaxContentLength;
+  }
 }
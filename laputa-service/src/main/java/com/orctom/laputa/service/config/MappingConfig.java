@@ -10,10 +10,12 @@ import com.orctom.laputa.service.annotation.PATH;
 import com.orctom.laputa.service.annotation.POST;
 import com.orctom.laputa.service.annotation.PUT;
 import com.orctom.laputa.service.annotation.RedirectTo;
+import com.orctom.laputa.service.annotation.Streaming;
 import com.orctom.laputa.service.controller.DefaultController;
 import com.orctom.laputa.service.model.HTTPMethod;
-import com.orctom.laputa.service.model.PathTrie;
 import com.orctom.laputa.service.model.RequestMapping;
+import com.orctom.laputa.service.model.RouteMatch;
+import com.orctom.laputa.service.model.StaticMapping;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
@@ -21,17 +23,14 @@ import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.stereotype.Controller;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
-import static com.orctom.laputa.service.Constants.PATH_SEPARATOR;
-import static com.orctom.laputa.service.Constants.SIGN_DOT;
-
 /**
  * Holding url mappings...
  * Created by hao on 9/21/15.
@@ -41,12 +40,14 @@ public class MappingConfig {
   private static final Logger LOGGER = LoggerFactory.getLogger(MappingConfig.class);
   private static final Pattern PATTERN_DOUBLE_SLASHES = Pattern.compile("/+");
   private static final Pattern PATTERN_TAIL_SLASH = Pattern.compile("/$");
-  private static final String KEY_PATH_PARAM = "{*}";
-  private static final String MAPPING_404 = "/404/@get";
+  private static final String PATH_404 = "/404";
+  private static final int[] NO_CAPTURES = new int[0];
   private static final MappingConfig INSTANCE = new MappingConfig();
-  private static final String INDEX = "index";
-  private Map<String, RequestMapping> staticMappings = new HashMap<>();
-  private PathTrie wildcardMappings = new PathTrie();
+  private final Router router = new Router();
+  private RequestMapping mapping404;
+  private boolean streamingMappingsPresent;
+  private final Map<HTTPMethod, List<String>> streamingPrefixes = new EnumMap<>(HTTPMethod.class);
+  private boolean staticMappingsPresent;
 
   private MappingConfig() {
   }
@@ -55,104 +56,97 @@ public class MappingConfig {
     return INSTANCE;
   }
 
-  public RequestMapping getMapping(String uri, HTTPMethod httpMethod) {
-    String path = uri;
-
-    int dotIndex = path.lastIndexOf(SIGN_DOT);
-    if (dotIndex > 0) {
-      path = path.substring(0, dotIndex);
-    }
-
-    boolean isPathEndWithSlash = path.endsWith(PATH_SEPARATOR);
-    String key = isPathEndWithSlash ? path + httpMethod.getKey() : path + PATH_SEPARATOR + httpMethod.getKey();
-
-    RequestMapping handler = staticMappings.get(key);
-    if (null != handler) {
-      return handler;
-    }
+  public RequestMapping getMapping(String path, HTTPMethod httpMethod) {
+    return router.route(path, httpMethod, null);
+  }
 
-    if (isPathEndWithSlash) {
-      handler = staticMappings.get(path + INDEX + httpMethod.getKey());
-      if (null != handler) {
-        return handler;
+  /**
+   * Routes the path, capturing the path variables along, unless it falls in a static mapping, which comes first,
+   * except the one of the root `/`, which only takes the paths not routed.
+   *
+   * @return null if not found
+   */
+  public RouteMatch match(String path, HTTPMethod httpMethod) {
+    if (staticMappingsPresent) {
+      StaticMapping staticMapping = router.routeStatic(path);
+      if (null != staticMapping) {
+        return new RouteMatch(staticMapping, path);
       }
     }
 
-    handler = getHandlerForWildcardUri(path, httpMethod);
-    if (null != handler) {
-      return handler;
+    int variables = router.getMaxVariables();
+    int[] captures = 0 == variables ? NO_CAPTURES : new int[2 * variables];
+    RequestMapping mapping = router.route(path, httpMethod, captures);
+    if (null != mapping) {
+      return new RouteMatch(mapping, path, captures);
     }
 
-    if (isPathEndWithSlash) {
-      handler = getHandlerForWildcardUri(path + INDEX, httpMethod);
-      if (null != handler) {
-        return handler;
-      }
-    }
-
-    return null;
-  }
-
-  public RequestMapping _404() {
-    return staticMappings.get(MAPPING_404);
+    StaticMapping rootStaticMapping = router.getRootStaticMapping();
+    return null == rootStaticMapping ? null : new RouteMatch(rootStaticMapping, path);
   }
 
   /**
-   * There are 4 types of `paths`:<br/>
-   * <li>1) static at middle of the uri</li>
-   * <li>2) static at end of the uri</li>
-   * <li>3) dynamic at middle of the uri</li>
-   * <li>4) dynamic at end of the uri</li>
+   * @return the static mapping the path falls in, or the one of the root `/`, null if none
    */
-  private RequestMapping getHandlerForWildcardUri(String uri, HTTPMethod httpMethod) {
-    String[] paths = uri.split("/");
-    if (paths.length < 2) {
+  public StaticMapping getStaticMapping(String path) {
+    if (!staticMappingsPresent) {
       return null;
     }
 
-    PathTrie parent = wildcardMappings;
+    StaticMapping staticMapping = router.routeStatic(path);
+    return null != staticMapping ? staticMapping : router.getRootStaticMapping();
+  }
 
-    for (int i = 1; i < paths.length; i++) {
-      String path = paths[i];
-      if (Strings.isNullOrEmpty(path)) {
-        continue;
-      }
+  /**
+   * Adds the static mappings, by the longest uri prefix, before the server is started.
+   */
+  public synchronized void addStaticMappings(List<StaticMapping> staticMappings) {
+    for (StaticMapping staticMapping : staticMappings) {
+      String uri = PATTERN_DOUBLE_SLASHES.matcher("/" + staticMapping.getUri()).replaceAll("/");
+      uri = PATTERN_TAIL_SLASH.matcher(uri).replaceAll("");
+      router.addStaticMapping(new StaticMapping(uri, staticMapping.getPath()));
+      LOGGER.info("Added static content mapping: {}", staticMapping);
+    }
+    router.compile();
+    staticMappingsPresent = true;
+  }
 
-      boolean isEndPath = i == paths.length - 1;
+  /**
+   * @return whether any route is annotated with @Streaming, of which the requests need to be checked before aggregated
+   */
+  public boolean isStreamingMappingsPresent() {
+    return streamingMappingsPresent;
+  }
 
-      // 1) and 2)
-      PathTrie child = parent.getChildren().get(path);
-      if (null != child) {
-        if (isEndPath) {
-          return getRequestMappingFromChildren(httpMethod, child);
-        }
-        parent = child;
-        continue;
-      }
+  /**
+   * Checked before routing, so the requests of no @Streaming route are only routed once, after aggregated.
+   *
+   * @return whether the path starts with the literal part, up to the first path variable,
+   * of any @Streaming route of the method
+   */
+  public boolean isStreamingCandidate(String path, HTTPMethod httpMethod) {
+    List<String> prefixes = streamingPrefixes.get(httpMethod);
+    if (null == prefixes) {
+      return false;
+    }
 
-      // 3) and 4)
-      child = parent.getChildren().get(KEY_PATH_PARAM);
-      if (null != child) {
-        if (isEndPath) {
-          return getRequestMappingFromChildren(httpMethod, child);
-        }
-        parent = child;
+    for (String prefix : prefixes) {
+      if (path.startsWith(prefix)) {
+        return true;
       }
     }
+    return false;
+  }
 
-    return null;
+  public RequestMapping _404() {
+    return mapping404;
   }
 
-  private RequestMapping getRequestMappingFromChildren(HTTPMethod httpMethod, PathTrie child) {
-    Map<String, PathTrie> children = child.getChildren();
-    if (null == children || children.isEmpty()) {
-      return null;
-    }
-    PathTrie node = children.get(httpMethod.getKey());
-    if (null == node) {
-      return null;
-    }
-    return node.getHandler();
+  /**
+   * @return all the configured mappings, available once scanned
+   */
+  public List<RequestMapping> getMappings() {
+    return router.getMappings();
   }
 
   public void scan(ApplicationContext applicationContext) {
@@ -164,18 +158,16 @@ public class MappingConfig {
     configureMappings(applicationContext.getBean(DefaultController.class), DefaultController.class);
     controllers.values().forEach(bean -> configureMappings(bean, bean.getClass()));
 
+    router.compile();
+    mapping404 = router.route(PATH_404, HTTPMethod.GET, null);
+
     logMappingInfo();
   }
 
   private void logMappingInfo() {
     if (LOGGER.isInfoEnabled()) {
-      LOGGER.info("static mappings:");
-      for (RequestMapping handler : new TreeMap<>(staticMappings).values()) {
-        LOGGER.info(handler.toString());
-      }
-
-      LOGGER.info("dynamic mappings:");
-      for (RequestMapping handler : wildcardMappings.getChildrenMappings()) {
+      LOGGER.info("mappings:");
+      for (RequestMapping handler : router.getMappings()) {
         LOGGER.info(handler.toString());
       }
     }
@@ -198,6 +190,9 @@ public class MappingConfig {
             "Empty value of Path annotation on " + clazz.getCanonicalName() + " " + method.getName());
       }
       String uri = basePath + pathValue;
+      if (method.isAnnotationPresent(Streaming.class)) {
+        streamingMappingsPresent = true;
+      }
       addToMappings(instance, clazz, method, uri, path.honorExtension());
     }
   }
@@ -226,28 +221,25 @@ public class MappingConfig {
       return;
     }
 
+    boolean streaming = method.isAnnotationPresent(Streaming.class);
     for (HTTPMethod httpMethod : httpMethods) {
-      String httpMethodKey = httpMethod.getKey();
-      if (uri.contains("{")) {
-        addToWildCardMappings(instance, clazz, method, uri, httpMethodKey, honorException);
-      } else {
-        RequestMapping mapping = staticMappings.put(
-            uri + "/" + httpMethodKey,
-            RequestMapping.builder()
-                .uriPattern(uri)
-                .target(instance)
-                .handlerClass(clazz)
-                .handlerMethod(method)
-                .httpMethod(httpMethodKey)
-                .redirectTo(getRedirectTo(method))
-                .honorExtension(honorException)
-                .build()
-        );
-        if (null != mapping && !(mapping.getTarget() instanceof DefaultController)) {
-          throw new IllegalArgumentException("Conflicts found in configured @PATH:\n" + uri + ", " + httpMethodKey +
-              "\n\t\t" + mapping.getHandlerMethod().toString() + "\n\t\t" + method.toString());
-        }
+      if (streaming) {
+        int variable = uri.indexOf('{');
+        streamingPrefixes.computeIfAbsent(httpMethod, k -> new ArrayList<>())
+            .add(variable < 0 ? uri : uri.substring(0, variable));
       }
+      router.add(
+          httpMethod,
+          RequestMapping.builder()
+              .uriPattern(uri)
+              .target(instance)
+              .handlerClass(clazz)
+              .handlerMethod(method)
+              .httpMethod(httpMethod.getKey())
+              .redirectTo(getRedirectTo(method))
+              .honorExtension(honorException)
+              .build()
+      );
     }
   }
 
@@ -258,36 +250,6 @@ public class MappingConfig {
     return uri;
   }
 
-  private void addToWildCardMappings(Object instance,
-                                     Class<?> clazz,
-                                     Method method,
-                                     String uri,
-                                     String httpMethodKey,
-                                     boolean honorException) {
-    String[] paths = uri.split("/");
-
-    if (paths.length < 2) {
-      return;
-    }
-
-    Map<String, PathTrie> children = wildcardMappings.getChildren();
-
-    for (String path : paths) {
-      if (Strings.isNullOrEmpty(path)) {
-        continue;
-      }
-
-      boolean containsParam = path.contains("{");
-      String pathKey = containsParam ? KEY_PATH_PARAM : path;
-      PathTrie child = children.computeIfAbsent(pathKey, k -> new PathTrie());
-
-      children = child.getChildren();
-    }
-
-    PathTrie leaf = new PathTrie(uri, instance, clazz, method, httpMethodKey, getRedirectTo(method), honorException);
-    children.put(httpMethodKey, leaf);
-  }
-
   private String getRedirectTo(Method method) {
     RedirectTo redirectTo = method.getAnnotation(RedirectTo.class);
     if (null == redirectTo) {
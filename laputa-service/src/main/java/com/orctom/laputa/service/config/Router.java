@@ -0,0 +1,377 @@
+package com.orctom.laputa.service.config;
+
+import com.orctom.laputa.exception.IllegalConfigException;
+import com.orctom.laputa.service.controller.DefaultController;
+import com.orctom.laputa.service.model.HTTPMethod;
+import com.orctom.laputa.service.model.RequestMapping;
+import com.orctom.laputa.service.model.StaticMapping;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Route table compiled at scan time.
+ * <p>
+ * Every `/` separated segment of the uri patterns is a node, holding:
+ * <li>static children, in an open-addressing table probed with a hash computed over the path in place</li>
+ * <li>param children, like `{id}` or `say{sth}to`, tried after the static one, most specific first</li>
+ * <li>the mappings ending at the node, by http method</li>
+ * <p>
+ * Matching walks the path without any allocation, backtracking to param siblings if a static branch dead ends,
+ * and records the offsets of the path variables if asked.
+ * Only the last segment has the extension stripped, `index` is looked up for paths ending with `/`.
+ * <p>
+ * Static mappings share the same nodes, a path is looked up for the longest static uri prefix
+ * by whole segments, with the extensions kept. The one of the root `/` is not taken as a prefix,
+ * as it would shadow all the routes, but held as the fallback of the paths not routed.
+ */
+class Router {
+
+  private static final char SEPARATOR = '/';
+  private static final char EXTENSION = '.';
+  private static final String INDEX = "index";
+
+  private final Node root = new Node();
+  private int maxVariables;
+
+  /**
+   * Registers a mapping, in the building phase, before {@link #compile()}.
+   */
+  void add(HTTPMethod httpMethod, RequestMapping mapping) {
+    String pattern = mapping.getUriPattern();
+    Node node = root;
+    int variables = 0;
+    int pos = 0;
+    int length = pattern.length();
+    while (pos < length) {
+      if (SEPARATOR == pattern.charAt(pos)) {
+        pos++;
+        continue;
+      }
+
+      int end = pattern.indexOf(SEPARATOR, pos);
+      if (end < 0) {
+        end = length;
+      }
+
+      String segment = pattern.substring(pos, end);
+      if (segment.indexOf('{') >= 0) {
+        node = node.addParamChild(ParamSegment.parse(segment, pattern));
+        variables++;
+      } else {
+        node = node.addStaticChild(segment);
+      }
+      pos = end;
+    }
+
+    node.addHandler(httpMethod, mapping);
+    maxVariables = Math.max(maxVariables, variables);
+  }
+
+  /**
+   * Registers a static mapping, before {@link #compile()}.
+   */
+  void addStaticMapping(StaticMapping staticMapping) {
+    String uri = staticMapping.getUri();
+    Node node = root;
+    int pos = 0;
+    int length = uri.length();
+    while (pos < length) {
+      int end = uri.indexOf(SEPARATOR, pos + 1);
+      if (end < 0) {
+        end = length;
+      }
+      node = node.addStaticChild(uri.substring(pos + 1, end));
+      pos = end;
+    }
+    node.staticMapping = staticMapping;
+  }
+
+  /**
+   * Freezes the table into the lookup structures, anything added afterwards takes effect once compiled again.
+   */
+  void compile() {
+    root.compile();
+  }
+
+  /**
+   * @return how many path variables the longest pattern has, to size the captures passed to {@link #route}
+   */
+  int getMaxVariables() {
+    return maxVariables;
+  }
+
+  /**
+   * @param captures null if path variables are not needed, or an array of at least `2 * maxVariables`,
+   *                 that gets the start (inclusive) and end (exclusive) offsets of each variable, in order
+   */
+  RequestMapping route(String path, HTTPMethod httpMethod, int[] captures) {
+    int length = path.length();
+    int lastSeparator = path.lastIndexOf(SEPARATOR);
+    int dot = path.lastIndexOf(EXTENSION);
+    int end = dot > lastSeparator && dot > 0 ? dot : length;
+    boolean trailingSeparator = end > 0 && SEPARATOR == path.charAt(end - 1);
+
+    RequestMapping mapping = match(root, path, 0, end, httpMethod, captures, 0, trailingSeparator);
+    if (null != mapping && null != captures && end != length && mapping.isHonorExtension()) {
+      includeExtension(mapping, captures, end, length);
+    }
+    return mapping;
+  }
+
+  /**
+   * @return the static mapping of which the uri is the longest prefix of the path, null if none,
+   * found without any allocation, the one of the root `/` excluded
+   */
+  StaticMapping routeStatic(String path) {
+    Node node = root;
+    StaticMapping matched = null;
+    int length = path.length();
+    int pos = 0;
+    while (pos < length && SEPARATOR == path.charAt(pos)) {
+      int end = path.indexOf(SEPARATOR, pos + 1);
+      if (end < 0) {
+        end = length;
+      }
+
+      node = node.getStaticChild(path, pos + 1, end);
+      if (null == node) {
+        break;
+      }
+      if (null != node.staticMapping) {
+        matched = node.staticMapping;
+      }
+      pos = end;
+    }
+    return matched;
+  }
+
+  /**
+   * @return the static mapping of the root `/`, null if none
+   */
+  StaticMapping getRootStaticMapping() {
+    return root.staticMapping;
+  }
+
+  private void includeExtension(RequestMapping mapping, int[] captures, int end, int length) {
+    int variables = mapping.getPathVariables().length;
+    if (variables > 0 && end == captures[2 * variables - 1]) {
+      captures[2 * variables - 1] = length;
+    }
+  }
+
+  private RequestMapping match(Node node,
+                               String path,
+                               int pos,
+                               int end,
+                               HTTPMethod httpMethod,
+                               int[] captures,
+                               int captured,
+                               boolean trailingSeparator) {
+    while (pos < end && SEPARATOR == path.charAt(pos)) {
+      pos++;
+    }
+
+    if (pos == end) {
+      RequestMapping mapping = node.getHandler(httpMethod);
+      if (null == mapping && trailingSeparator) {
+        Node index = node.getStaticChild(INDEX, 0, INDEX.length());
+        mapping = null == index ? null : index.getHandler(httpMethod);
+      }
+      return mapping;
+    }
+
+    int segmentEnd = path.indexOf(SEPARATOR, pos);
+    if (segmentEnd < 0 || segmentEnd > end) {
+      segmentEnd = end;
+    }
+
+    Node child = node.getStaticChild(path, pos, segmentEnd);
+    if (null != child) {
+      RequestMapping mapping = match(child, path, segmentEnd, end, httpMethod, captures, captured, trailingSeparator);
+      if (null != mapping) {
+        return mapping;
+      }
+    }
+
+    for (ParamSegment param : node.params) {
+      if (!param.matches(path, pos, segmentEnd)) {
+        continue;
+      }
+
+      if (null != captures) {
+        captures[2 * captured] = pos + param.prefix.length();
+        captures[2 * captured + 1] = segmentEnd - param.suffix.length();
+      }
+      RequestMapping mapping = match(param.node, path, segmentEnd, end, httpMethod, captures, captured + 1, trailingSeparator);
+      if (null != mapping) {
+        return mapping;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * @return all the mappings, ordered by uri pattern
+   */
+  List<RequestMapping> getMappings() {
+    List<RequestMapping> mappings = new ArrayList<>();
+    root.collect(mappings);
+    mappings.sort(Comparator.comparing(RequestMapping::getUriPattern).thenComparing(RequestMapping::getHttpMethod));
+    return mappings;
+  }
+
+  private static final class Node {
+
+    private static final ParamSegment[] NO_PARAMS = new ParamSegment[0];
+
+    private Map<String, Node> staticChildren = new HashMap<>();
+    private List<ParamSegment> paramChildren = new ArrayList<>();
+    private EnumMap<HTTPMethod, RequestMapping> handlers;
+    private StaticMapping staticMapping;
+
+    private String[] keys;
+    private Node[] children;
+    private int mask;
+    private ParamSegment[] params = NO_PARAMS;
+
+    Node addStaticChild(String segment) {
+      return staticChildren.computeIfAbsent(segment, k -> new Node());
+    }
+
+    Node addParamChild(ParamSegment segment) {
+      for (ParamSegment existing : paramChildren) {
+        if (existing.isSameShape(segment)) {
+          return existing.node;
+        }
+      }
+      paramChildren.add(segment);
+      return segment.node;
+    }
+
+    void addHandler(HTTPMethod httpMethod, RequestMapping mapping) {
+      if (null == handlers) {
+        handlers = new EnumMap<>(HTTPMethod.class);
+      }
+      RequestMapping existing = handlers.put(httpMethod, mapping);
+      if (null != existing && !(existing.getTarget() instanceof DefaultController)) {
+        throw new IllegalArgumentException("Conflicts found in configured @PATH:\n" +
+            mapping.getUriPattern() + ", " + httpMethod.getKey() +
+            "\n\t\t" + existing.getHandlerMethod().toString() +
+            "\n\t\t" + mapping.getHandlerMethod().toString());
+      }
+    }
+
+    RequestMapping getHandler(HTTPMethod httpMethod) {
+      return null == handlers ? null : handlers.get(httpMethod);
+    }
+
+    void compile() {
+      int capacity = Integer.highestOneBit(Math.max(1, staticChildren.size() * 2 - 1)) << 1;
+      keys = new String[capacity];
+      children = new Node[capacity];
+      mask = capacity - 1;
+      for (Map.Entry<String, Node> entry : staticChildren.entrySet()) {
+        String key = entry.getKey();
+        int index = spread(key.hashCode()) & mask;
+        while (null != keys[index]) {
+          index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        children[index] = entry.getValue();
+        entry.getValue().compile();
+      }
+
+      paramChildren.sort(Comparator.comparingInt(ParamSegment::getFixedLength).reversed());
+      params = paramChildren.toArray(new ParamSegment[paramChildren.size()]);
+      for (ParamSegment param : params) {
+        param.node.compile();
+      }
+    }
+
+    /**
+     * Looks up the segment `[start, end)` of the path, without creating a String out of it.
+     */
+    Node getStaticChild(String path, int start, int end) {
+      if (null == keys) {
+        return null;
+      }
+
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + path.charAt(i);
+      }
+
+      int length = end - start;
+      int index = spread(hash) & mask;
+      String key;
+      while (null != (key = keys[index])) {
+        if (key.length() == length && key.regionMatches(0, path, start, length)) {
+          return children[index];
+        }
+        index = (index + 1) & mask;
+      }
+      return null;
+    }
+
+    private static int spread(int hash) {
+      return hash ^ (hash >>> 16);
+    }
+
+    void collect(List<RequestMapping> mappings) {
+      if (null != handlers) {
+        mappings.addAll(handlers.values());
+      }
+      staticChildren.values().forEach(child -> child.collect(mappings));
+      paramChildren.forEach(param -> param.node.collect(mappings));
+    }
+  }
+
+  /**
+   * A segment holding a path variable, with an optional static prefix and suffix, like `say{sth}to`
+   */
+  private static final class ParamSegment {
+
+    private final String prefix;
+    private final String suffix;
+    private final Node node = new Node();
+
+    private ParamSegment(String prefix, String suffix) {
+      this.prefix = prefix;
+      this.suffix = suffix;
+    }
+
+    static ParamSegment parse(String segment, String pattern) {
+      int start = segment.indexOf('{');
+      int end = segment.indexOf('}', start);
+      if (end < 0 || segment.indexOf('{', start + 1) >= 0 || end == start + 1) {
+        throw new IllegalConfigException("Only one named variable is supported per path segment, at: " + pattern);
+      }
+      return new ParamSegment(segment.substring(0, start), segment.substring(end + 1));
+    }
+
+    boolean isSameShape(ParamSegment other) {
+      return prefix.equals(other.prefix) && suffix.equals(other.suffix);
+    }
+
+    int getFixedLength() {
+      return prefix.length() + suffix.length();
+    }
+
+    /**
+     * The variable needs at least one char
+     */
+    boolean matches(String path, int start, int end) {
+      int prefixLength = prefix.length();
+      int suffixLength = suffix.length();
+      return end - start > prefixLength + suffixLength &&
+          path.regionMatches(start, prefix, 0, prefixLength) &&
+          path.regionMatches(end - suffixLength, suffix, 0, suffixLength);
+    }
+  }
+}
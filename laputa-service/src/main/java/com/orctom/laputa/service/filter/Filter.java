@@ -10,5 +10,14 @@ public interface Filter {
     return 0;
   }
 
+  /**
+   * Ant style patterns, like `/product/**`, of the routes this filter applies to, null or empty for all.
+   * They are matched against the `@PATH` of the routes once at startup, not against the requested paths,
+   * requests of the routes not matched won't go through this filter at all.
+   */
+  default String[] getPaths() {
+    return null;
+  }
+
   void doFilter(RequestWrapper requestWrapper, ResponseWrapper responseWrapper, FilterChain filterChain);
 }
@@ -0,0 +1,225 @@
+package com.orctom.laputa.service.internal;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.model.RequestMapping;
+import com.orctom.laputa.utils.StripedTokenBucket;
+import com.orctom.laputa.utils.TokenBucket;
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.orctom.laputa.service.Constants.*;
+
+/**
+ * Non-blocking admission control, with global, per-route (by uri pattern and http method) and per-client-IP limits.
+ * Limits are checked from the most specific one, so that a greedy client runs out of its own permits
+ * before draining the shared ones.
+ */
+class AdmissionController {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionController.class);
+
+  static final long REJECTED = TokenBucket.REJECTED;
+
+  private static final int CONCURRENCY = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Stripes get at least this many permits per second, or the striping would hurt accuracy
+   */
+  private static final int MIN_STRIPE_RATE = 64;
+
+  private final double burstSeconds;
+  private final long maxDelayNanos;
+
+  private final StripedTokenBucket global;
+  private final Double routeRate;
+  private final ConcurrentMap<RequestMapping, StripedTokenBucket> routes = new ConcurrentHashMap<>();
+  private final LoadingCache<InetAddress, TokenBucket> clients;
+
+  private final LongAdder admitted = new LongAdder();
+  private final LongAdder deferred = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  AdmissionController() {
+    this(Configurator.getInstance().getConfig());
+  }
+
+  private AdmissionController(Config config) {
+    this(
+        getGlobalRate(config),
+        getRate(config, CFG_SERVER_ADMISSION_ROUTE),
+        getRate(config, CFG_SERVER_ADMISSION_CLIENT),
+        config.hasPath(CFG_SERVER_ADMISSION_BURST) ? config.getDouble(CFG_SERVER_ADMISSION_BURST) : 1D,
+        config.hasPath(CFG_SERVER_ADMISSION_MAX_DELAY) ?
+            config.getDuration(CFG_SERVER_ADMISSION_MAX_DELAY, TimeUnit.NANOSECONDS) : 0L,
+        config.hasPath(CFG_SERVER_ADMISSION_MAX_CLIENTS) ? config.getLong(CFG_SERVER_ADMISSION_MAX_CLIENTS) : 100_000
+    );
+  }
+
+  /**
+   * @param globalRate null means no such limit, the same for `routeRate` and `clientRate`
+   */
+  AdmissionController(Double globalRate,
+                      Double routeRate,
+                      Double clientRate,
+                      double burstSeconds,
+                      long maxDelayNanos,
+                      long maxClients) {
+    this.burstSeconds = burstSeconds;
+    this.maxDelayNanos = maxDelayNanos;
+    this.global = null == globalRate ? null : createStriped(globalRate);
+    this.routeRate = routeRate;
+    this.clients = null == clientRate ? null : createClientBuckets(clientRate, maxClients);
+
+    LOGGER.info("Admission limits, global: {}/s, route: {}/s, client: {}/s", globalRate, routeRate, clientRate);
+  }
+
+  private static Double getGlobalRate(Config config) {
+    Double globalRate = getRate(config, CFG_SERVER_ADMISSION_GLOBAL);
+    if (null != globalRate) {
+      return globalRate;
+    }
+    Integer throttle = Configurator.getInstance().getThrottle();
+    return null == throttle ? null : throttle.doubleValue();
+  }
+
+  private static Double getRate(Config config, String key) {
+    if (!config.hasPath(key)) {
+      return null;
+    }
+    double rate = config.getDouble(key);
+    return rate > 0 ? rate : null;
+  }
+
+  private LoadingCache<InetAddress, TokenBucket> createClientBuckets(double clientRate, long maxClients) {
+    return CacheBuilder.newBuilder()
+        .concurrencyLevel(CONCURRENCY)
+        .maximumSize(maxClients)
+        .expireAfterAccess(Math.max(1L, (long) Math.ceil(burstSeconds)), TimeUnit.MINUTES)
+        .build(new CacheLoader<InetAddress, TokenBucket>() {
+          @Override
+          public TokenBucket load(InetAddress address) {
+            return new TokenBucket(clientRate, getBurst(clientRate));
+          }
+        });
+  }
+
+  private StripedTokenBucket createStriped(double rate) {
+    int concurrency = Math.min(CONCURRENCY, (int) (rate / MIN_STRIPE_RATE));
+    return new StripedTokenBucket(rate, getBurst(rate), concurrency);
+  }
+
+  private int getBurst(double rate) {
+    return (int) Math.max(1, rate * burstSeconds);
+  }
+
+  /**
+   * @return {@link #REJECTED}, or the nanos the request should be deferred, `0` means right away.
+   */
+  long admit(RequestMapping mapping, SocketAddress remoteAddress) {
+    long delay = 0L;
+
+    TokenBucket client = getClientBucket(remoteAddress);
+    if (null != client) {
+      delay = reserve(client, delay);
+    }
+
+    StripedTokenBucket route = getRouteBucket(mapping);
+    if (REJECTED != delay && null != route) {
+      delay = reserve(route, delay);
+      if (REJECTED == delay) {
+        refund(client, null);
+      }
+    }
+
+    if (REJECTED != delay && null != global) {
+      delay = reserve(global, delay);
+      if (REJECTED == delay) {
+        refund(client, route);
+      }
+    }
+
+    if (REJECTED == delay) {
+      rejected.increment();
+    } else if (delay > 0) {
+      deferred.increment();
+    } else {
+      admitted.increment();
+    }
+    return delay;
+  }
+
+  private TokenBucket getClientBucket(SocketAddress remoteAddress) {
+    if (null == clients || !(remoteAddress instanceof InetSocketAddress)) {
+      return null;
+    }
+
+    InetAddress address = ((InetSocketAddress) remoteAddress).getAddress();
+    return null == address ? null : clients.getUnchecked(address);
+  }
+
+  /**
+   * Gives back the permits taken from the more specific levels, when a less specific one rejects,
+   * or a request rejected by the global limit would still use up the permits of its client and route.
+   */
+  private void refund(TokenBucket client, StripedTokenBucket route) {
+    if (null != client) {
+      client.refund();
+    }
+    if (null != route) {
+      route.refund();
+    }
+  }
+
+  private long reserve(TokenBucket bucket, long delay) {
+    return max(delay, bucket.reserve(maxDelayNanos));
+  }
+
+  private long reserve(StripedTokenBucket bucket, long delay) {
+    return max(delay, bucket.reserve(maxDelayNanos));
+  }
+
+  private long max(long delay, long reserved) {
+    return REJECTED == reserved ? REJECTED : Math.max(delay, reserved);
+  }
+
+  private StripedTokenBucket getRouteBucket(RequestMapping mapping) {
+    if (null == mapping) {
+      return null;
+    }
+
+    Double rate = null != mapping.getThrottle() ? mapping.getThrottle() : routeRate;
+    if (null == rate || rate <= 0) {
+      return null;
+    }
+
+    StripedTokenBucket bucket = routes.get(mapping);
+    if (null != bucket) {
+      return bucket;
+    }
+    return routes.computeIfAbsent(mapping, key -> createStriped(rate));
+  }
+
+  long getAdmitted() {
+    return admitted.sum();
+  }
+
+  long getDeferred() {
+    return deferred.sum();
+  }
+
+  long getRejected() {
+    return rejected.sum();
+  }
+}
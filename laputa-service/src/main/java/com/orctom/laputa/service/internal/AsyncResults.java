@@ -0,0 +1,73 @@
+package com.orctom.laputa.service.internal;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Normalizes asynchronous controller results into {@link CompletionStage}s.
+ * A reactive-streams `Publisher` is supported only when it is present on the classpath,
+ * and is collected into a {@link java.util.List} of all its elements, see {@link PublisherAdapter}.
+ */
+final class AsyncResults {
+
+  private static final boolean REACTIVE_STREAMS_PRESENT = isPresent("org.reactivestreams.Publisher");
+
+  private AsyncResults() {
+  }
+
+  /**
+   * @return the result as a stage, or null if it is not an asynchronous result
+   */
+  static CompletionStage<?> toCompletionStage(Object result) {
+    if (null == result) {
+      return null;
+    }
+
+    if (result instanceof CompletionStage) {
+      return (CompletionStage<?>) result;
+    }
+
+    if (REACTIVE_STREAMS_PRESENT && PublisherAdapter.isPublisher(result)) {
+      return PublisherAdapter.collect(result);
+    }
+
+    return null;
+  }
+
+  /**
+   * Has the source cancelled along with the stage derived from it, such as when the connection is closed,
+   * so a publisher behind it stops emitting.
+   */
+  static void propagateCancellation(CompletionStage<?> derived, CompletionStage<?> source) {
+    if (!(source instanceof Future)) {
+      return;
+    }
+
+    derived.whenComplete((value, error) -> {
+      if (error instanceof CancellationException) {
+        ((Future<?>) source).cancel(false);
+      }
+    });
+  }
+
+  static Throwable unwrap(Throwable error) {
+    Throwable cause = error;
+    while ((cause instanceof CompletionException || cause instanceof ExecutionException) &&
+        null != cause.getCause()) {
+      cause = cause.getCause();
+    }
+    return cause;
+  }
+
+  private static boolean isPresent(String className) {
+    try {
+      Class.forName(className, false, AsyncResults.class.getClassLoader());
+      return true;
+    } catch (Throwable e) {
+      return false;
+    }
+  }
+}
@@ -5,118 +5,366 @@ import com.orctom.laputa.service.config.Configurator;
 import com.orctom.laputa.utils.HostUtils;
 import com.typesafe.config.Config;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.cors.CorsConfig;
 import io.netty.handler.codec.http.cors.CorsConfigBuilder;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.OpenSsl;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLException;
 import java.io.File;
-import java.io.IOException;
-import java.security.cert.CertificateException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.orctom.laputa.service.Constants.*;
 
 /**
  * boot netty service
+ * <p>
+ * All the listeners, the service ports over http and https, and the admin ones such as of the metrics,
+ * share one set of event loop groups: `acceptors` accepting the connections, `workers` doing the I/O,
+ * and `admin` doing the I/O of the admin listeners, so they are served even while the workers are busy.
+ * With epoll and `reusePort`, each port is bound by every acceptor with `SO_REUSEPORT`,
+ * and the kernel balances the connections over them.
+ * <p>
+ * On shutdown, accepting stops at once, and the connections are drained up to `server.shutdown.timeout`:
+ * HTTP/1 ones stop reading, and are closed after the requests already received are responded,
+ * the last response with `Connection: close`, right away if idle; HTTP/2 ones are sent GOAWAY,
+ * and closed once the open streams are done. Then the connections left are closed,
+ * the business executors and the event loops are stopped.
  * Created by hao on 1/6/16.
  */
-public class Bootstrapper extends Thread {
+public class Bootstrapper {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(Bootstrapper.class);
 
-  private static LaputaRequestProcessor requestProcessor = new LaputaRequestProcessor();
+  private static final String ACCEPTORS = "acceptors";
+  private static final String WORKERS = "workers";
+  private static final String ADMIN = "admin";
 
-  private int port;
-  private boolean useSSL;
+  private static final int ADMIN_MAX_CONTENT_LENGTH = 8192;
+  private static final long DRAIN_CHECK_INTERVAL_MILLIS = 50;
 
-  private SslContext sslContext;
+  private final LaputaRequestProcessor requestProcessor = new LaputaRequestProcessor();
 
-  private EventLoopGroup bossGroup;
-  private EventLoopGroup workerGroup;
+  private final boolean useNativeEpoll;
+  private final boolean reusePort;
+  private final int acceptors;
+  private final Class<? extends ServerSocketChannel> channelClass;
 
-  public Bootstrapper(int port, boolean useSSL) {
-    this.port = port;
-    this.useSSL = useSSL;
-  }
-
-  @Override
-  public void run() {
-    Config config = Configurator.getInstance().getConfig();
-    boolean useNativeEpoll = config.hasPath(CFG_SERVER_USE_EPOLL) && config.getBoolean(CFG_SERVER_USE_EPOLL);
+  private final EventLoopGroup acceptorGroup;
+  private final EventLoopGroup workerGroup;
+  private final EventLoopGroup adminGroup;
 
-    Class<? extends ServerSocketChannel> channelClass;
-    if (useNativeEpoll) {
-      bossGroup = new EpollEventLoopGroup(1);
-      workerGroup = new EpollEventLoopGroup();
-      channelClass = EpollServerSocketChannel.class;
+  private final List<Channel> listeners = new CopyOnWriteArrayList<>();
+  private final ChannelGroup connections = new DefaultChannelGroup("laputa-connections", GlobalEventExecutor.INSTANCE);
+  private final AtomicBoolean shutdown = new AtomicBoolean();
 
-    } else {
-      bossGroup = new NioEventLoopGroup(1);
-      workerGroup = new NioEventLoopGroup();
-      channelClass = NioServerSocketChannel.class;
+  public Bootstrapper() {
+    Config config = Configurator.getInstance().getConfig();
+    useNativeEpoll = config.hasPath(CFG_SERVER_USE_EPOLL) && config.getBoolean(CFG_SERVER_USE_EPOLL);
+    acceptors = Math.max(1, config.getInt(CFG_SERVER_EVENT_LOOP_ACCEPTORS));
+    reusePort = config.getBoolean(CFG_SERVER_EVENT_LOOP_REUSE_PORT) && isReusePortSupported();
+    channelClass = useNativeEpoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+
+    int workers = config.getInt(CFG_SERVER_EVENT_LOOP_WORKERS);
+    int admin = config.getInt(CFG_SERVER_EVENT_LOOP_ADMIN);
+    acceptorGroup = createGroup(acceptors, "laputa-acceptor");
+    workerGroup = createGroup(Math.max(0, workers), "laputa-worker");
+    adminGroup = admin > 0 ? createGroup(admin, "laputa-admin") : workerGroup;
+
+    EventLoopMonitor.register(ACCEPTORS, acceptorGroup);
+    EventLoopMonitor.register(WORKERS, workerGroup);
+    if (adminGroup != workerGroup) {
+      EventLoopMonitor.register(ADMIN, adminGroup);
     }
+    LOGGER.info("Event loops: {} acceptors, {} workers, {} admin{}.",
+        acceptors, count(workerGroup), adminGroup != workerGroup ? count(adminGroup) : "(shared)",
+        reusePort ? ", SO_REUSEPORT" : "");
+  }
 
-    try {
-      setupSSLContext();
+  /**
+   * @return the bound server channels, for tests
+   */
+  List<Channel> getListeners() {
+    return listeners;
+  }
 
-      ServerBootstrap b = new ServerBootstrap();
-      b.option(ChannelOption.SO_BACKLOG, 1024)
-          .group(bossGroup, workerGroup)
-          .channel(channelClass)
-          .handler(new LoggingHandler(LogLevel.INFO))
-          .childHandler(new LaputaServerInitializer(
-              sslContext,
-              getCorsConfig(config),
-              getWebSocketPath(config),
-              requestProcessor
-          ));
+  private boolean isReusePortSupported() {
+    if (!useNativeEpoll) {
+      LOGGER.warn("`{}` is only supported with `{}`, ignored.", CFG_SERVER_EVENT_LOOP_REUSE_PORT, CFG_SERVER_USE_EPOLL);
+      return false;
+    }
+    return true;
+  }
 
-      Channel ch = b.bind(port).sync().channel();
+  /**
+   * @param threads 0 means netty's default, 2 * available processors
+   */
+  private EventLoopGroup createGroup(int threads, String name) {
+    ThreadFactory threadFactory = new DefaultThreadFactory(name);
+    return useNativeEpoll ?
+        new EpollEventLoopGroup(threads, threadFactory) :
+        new NioEventLoopGroup(threads, threadFactory);
+  }
 
-      String ip = HostUtils.getIP();
-      LOGGER.info("Service started {}{}:{}", (useSSL ? "https://" : "http://"), ip, port);
+  private static int count(EventLoopGroup group) {
+    int count = 0;
+    for (Object ignored : group) {
+      count++;
+    }
+    return count;
+  }
 
-      ch.closeFuture().sync();
+  /**
+   * Binds a service port, failures are logged, the other listeners are not affected.
+   */
+  public void listen(int port, boolean useSSL) {
+    Config config = Configurator.getInstance().getConfig();
+    try {
+      SslContext sslContext = useSSL ? setupSSLContext() : null;
+      LaputaServerInitializer initializer = new LaputaServerInitializer(
+          sslContext,
+          getCorsConfig(config),
+          getWebSocketPath(config),
+          requestProcessor,
+          connections,
+          isHttp2Cleartext(config)
+      );
+
+      if (bind(port, workerGroup, initializer, new LoggingHandler(LogLevel.INFO))) {
+        LOGGER.info("Service started {}{}:{}", (useSSL ? "https://" : "http://"), HostUtils.getIP(), port);
+      }
 
     } catch (IllegalConfigException e) {
       LOGGER.error(e.getMessage());
 
-    } catch (IOException e) {
+    } catch (Exception e) {
       LOGGER.error(e.getMessage() + ", port: " + port, e);
+    }
+  }
+
+  /**
+   * Binds a port serving the metrics only, by the admin event loops
+   */
+  public void listenMetrics(int port) {
+    ChannelInitializer<SocketChannel> initializer = new ChannelInitializer<SocketChannel>() {
+      @Override
+      protected void initChannel(SocketChannel ch) {
+        connections.add(ch);
+        ChannelPipeline p = ch.pipeline();
+        p.addLast(new ReadTimeoutHandler(60, TimeUnit.SECONDS));
+        p.addLast(new HttpServerCodec());
+        p.addLast(new HttpObjectAggregator(ADMIN_MAX_CONTENT_LENGTH));
+        p.addLast(new MetricsEndpoint.Handler());
+      }
+    };
+
+    if (bind(port, adminGroup, initializer, null)) {
+      LOGGER.info("Metrics started http://{}:{}", HostUtils.getIP(), port);
+    }
+  }
+
+  /**
+   * @return false if failed
+   */
+  private boolean bind(int port, EventLoopGroup childGroup, ChannelHandler childHandler, ChannelHandler handler) {
+    if (shutdown.get()) {
+      return false;
+    }
+
+    ServerBootstrap b = new ServerBootstrap();
+    b.option(ChannelOption.SO_BACKLOG, 1024)
+        .group(acceptorGroup, childGroup)
+        .channel(channelClass)
+        .childHandler(childHandler);
+    if (null != handler) {
+      b.handler(handler);
+    }
+    if (reusePort) {
+      b.option(EpollChannelOption.SO_REUSEPORT, true);
+    }
+
+    int binds = reusePort ? acceptors : 1;
+    try {
+      for (int i = 0; i < binds; i++) {
+        listeners.add(b.bind(port).sync().channel());
+      }
+      return true;
 
     } catch (Exception e) {
-      LOGGER.error(e.getMessage(), e);
+      LOGGER.error(e.getMessage() + ", port: " + port, e);
+      return false;
+    }
+  }
 
-    } finally {
-      shutdown();
+  /**
+   * Drains the requests in flight up to `server.shutdown.timeout`, then stops everything, only the first call counts.
+   */
+  public void shutdown() {
+    if (!shutdown.compareAndSet(false, true)) {
+      return;
+    }
+
+    Config config = Configurator.getInstance().getConfig();
+    long timeout = config.getDuration(CFG_SERVER_SHUTDOWN_TIMEOUT, TimeUnit.NANOSECONDS);
+    long quietPeriod = config.getDuration(CFG_SERVER_SHUTDOWN_QUIET_PERIOD, TimeUnit.NANOSECONDS);
+    long deadline = System.nanoTime() + timeout;
+
+    LOGGER.warn("shutting down, stopped accepting connections...");
+    for (Channel listener : listeners) {
+      listener.close().awaitUninterruptibly();
+    }
+
+    requestProcessor.drain();
+    for (Channel connection : connections) {
+      connection.eventLoop().execute(() -> drain(connection, deadline));
+    }
+    awaitDrained(deadline);
+    connections.close().awaitUninterruptibly(remainingMillis(deadline));
+    requestProcessor.shutdown(deadline);
+
+    List<Future<?>> terminations = new ArrayList<>();
+    for (EventLoopGroup group : new EventLoopGroup[]{acceptorGroup, workerGroup, adminGroup}) {
+      long groupTimeout = Math.max(quietPeriod, deadline - System.nanoTime());
+      terminations.add(group.shutdownGracefully(quietPeriod, groupTimeout, TimeUnit.NANOSECONDS));
+    }
+    for (Future<?> termination : terminations) {
+      termination.awaitUninterruptibly(TimeUnit.NANOSECONDS.toMillis(Math.max(quietPeriod, timeout)) * 2);
+    }
+
+    EventLoopMonitor.unregister(ACCEPTORS);
+    EventLoopMonitor.unregister(WORKERS);
+    EventLoopMonitor.unregister(ADMIN);
+    LOGGER.warn("shut down.");
+  }
+
+  /**
+   * Done on the event loop of the connection. The ones neither HTTP/1 nor HTTP/2 yet, and the admin ones,
+   * of which the requests are responded as read, are closed once the responses written are flushed.
+   */
+  static void drain(Channel connection, long deadline) {
+    ChannelPipeline p = connection.pipeline();
+    LaputaServerHandler handler = p.get(LaputaServerHandler.class);
+    if (null != handler) {
+      handler.drain();
+      return;
+    }
+
+    Http2ConnectionHandler http2 = p.get(Http2ConnectionHandler.class);
+    if (null != http2) {
+      http2.gracefulShutdownTimeoutMillis(remainingMillis(deadline));
+      connection.close();
+      return;
+    }
+
+    connection.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+  }
+
+  /**
+   * Till the connections closed themselves, not only the requests in flight, which may drop to none
+   * between the pipelined requests of a connection.
+   */
+  private void awaitDrained(long deadline) {
+    long inFlight;
+    while (((inFlight = requestProcessor.getInFlight()) > 0 || !connections.isEmpty()) &&
+        System.nanoTime() < deadline) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(DRAIN_CHECK_INTERVAL_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+
+    if (inFlight > 0 || !connections.isEmpty()) {
+      LOGGER.warn("{} requests still in flight, {} connections open, closing them anyway.",
+          inFlight, connections.size());
     }
   }
 
-  private void setupSSLContext() throws CertificateException, SSLException {
-    if (useSSL) {
-      File certificate = new File(getConfigAsString("server.https.certificate"));
-      assertFileExist(certificate, "Failed to find certificate.");
+  private static long remainingMillis(long deadline) {
+    return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+  }
+
+  private SslContext setupSSLContext() throws SSLException {
+    File certificate = new File(getConfigAsString("server.https.certificate"));
+    assertFileExist(certificate, "Failed to find certificate.");
+
+    File privateKey = new File(getConfigAsString("server.https.privateKey"));
+    assertFileExist(privateKey, "Failed to find private key.");
+    return buildSSLContext(certificate, privateKey);
+  }
 
-      File privateKey = new File(getConfigAsString("server.https.privateKey"));
-      assertFileExist(privateKey, "Failed to find private key.");
-      sslContext = SslContextBuilder.forServer(certificate, privateKey).build();
+  /**
+   * With ALPN for HTTP/2 if enabled, falls back to HTTP/1.1 only if ALPN is not supported.
+   */
+  private SslContext buildSSLContext(File certificate, File privateKey) throws SSLException {
+    Config config = Configurator.getInstance().getConfig();
+    boolean http2 = !config.hasPath(CFG_SERVER_HTTP2_ENABLED) || config.getBoolean(CFG_SERVER_HTTP2_ENABLED);
+    if (!http2) {
+      return SslContextBuilder.forServer(certificate, privateKey).build();
+    }
+
+    SslProvider provider = OpenSsl.isAlpnSupported() ? SslProvider.OPENSSL : SslProvider.JDK;
+    try {
+      return SslContextBuilder.forServer(certificate, privateKey)
+          .sslProvider(provider)
+          .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+          .applicationProtocolConfig(new ApplicationProtocolConfig(
+              ApplicationProtocolConfig.Protocol.ALPN,
+              ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+              ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+              ApplicationProtocolNames.HTTP_2,
+              ApplicationProtocolNames.HTTP_1_1))
+          .build();
+    } catch (RuntimeException | LinkageError e) {
+      LOGGER.warn("ALPN is not supported, serving HTTP/1.1 only over https: {}", e.getMessage());
+      return SslContextBuilder.forServer(certificate, privateKey).build();
     }
   }
 
+  private boolean isHttp2Cleartext(Config config) {
+    return config.hasPath(CFG_SERVER_HTTP2_CLEARTEXT) && config.getBoolean(CFG_SERVER_HTTP2_CLEARTEXT);
+  }
+
   private String getConfigAsString(String key) {
     try {
       return Configurator.getInstance().getConfig().getString(key);
@@ -166,10 +414,4 @@ public class Bootstrapper extends Thread {
   private String getWebSocketPath(Config config) {
     return config.getString(CFG_WEBSOCKET_PATH);
   }
-
-  private void shutdown() {
-    LOGGER.warn("shutting down {}...", useSSL ? "https" : "http");
-    bossGroup.shutdownGracefully();
-    workerGroup.shutdownGracefully();
-  }
 }
@@ -0,0 +1,132 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.util.ConditionalRequests;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponse;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Compresses (gzip or deflate) only the responses worth it: of compressible media types,
+ * and not known to be smaller than the min size.
+ * <p>
+ * Responses already encoded are passed as they are, so are the ones marked with `Content-Encoding: identity`,
+ * of which the mark is taken off before any of them is written, including the ones never to be compressed,
+ * such as of `HEAD` or HTTP/1.0 requests, `1xx`, `204`, `304` and empty ones.
+ * Strong entity tags of the compressed ones are weakened, as the bytes differ from the ones the tags were made for.
+ */
+class ContentCompressor extends HttpContentCompressor {
+
+  private final Settings settings;
+
+  /**
+   * Whether the response being encoded was marked to be sent as is
+   */
+  private boolean uncompressed;
+
+  ContentCompressor(Settings settings) {
+    super(settings.level);
+    this.settings = settings;
+  }
+
+  @Override
+  protected void encode(ChannelHandlerContext ctx, HttpObject msg, List<Object> out) throws Exception {
+    if (msg instanceof HttpResponse) {
+      uncompressed = removeIdentityMark(((HttpResponse) msg).headers());
+    }
+    super.encode(ctx, msg, out);
+  }
+
+  private boolean removeIdentityMark(HttpHeaders headers) {
+    String contentEncoding = headers.get(HttpHeaderNames.CONTENT_ENCODING);
+    if (null == contentEncoding || !HttpHeaderValues.IDENTITY.contentEqualsIgnoreCase(contentEncoding)) {
+      return false;
+    }
+
+    headers.remove(HttpHeaderNames.CONTENT_ENCODING);
+    return true;
+  }
+
+  @Override
+  protected Result beginEncode(HttpResponse response, String acceptEncoding) throws Exception {
+    HttpHeaders headers = response.headers();
+    if (uncompressed || headers.contains(HttpHeaderNames.CONTENT_ENCODING)) {
+      return null;
+    }
+
+    if (!settings.enabled || !isCompressible(headers)) {
+      return null;
+    }
+
+    Result result = super.beginEncode(response, acceptEncoding);
+    String eTag = headers.get(HttpHeaderNames.ETAG);
+    if (null != result && null != eTag) {
+      headers.set(HttpHeaderNames.ETAG, ConditionalRequests.weaken(eTag));
+    }
+    return result;
+  }
+
+  private boolean isCompressible(HttpHeaders headers) {
+    String contentLength = headers.get(HttpHeaderNames.CONTENT_LENGTH);
+    if (null != contentLength && Long.parseLong(contentLength) < settings.minSize) {
+      return false;
+    }
+
+    String contentType = headers.get(HttpHeaderNames.CONTENT_TYPE);
+    if (null == contentType) {
+      return false;
+    }
+
+    int end = contentType.indexOf(';');
+    String mediaType = (end < 0 ? contentType : contentType.substring(0, end)).trim().toLowerCase();
+    return settings.mediaTypes.test(mediaType);
+  }
+
+  static class Settings {
+
+    private final boolean enabled;
+    private final int level;
+    private final long minSize;
+    private final Predicate<String> mediaTypes;
+
+    /**
+     * @param mediaTypes         compressible media types, `*` matches any part of them, like `text/*`
+     * @param excludedMediaTypes the ones not to be compressed even if matching the former
+     */
+    Settings(boolean enabled, int level, long minSize, List<String> mediaTypes, List<String> excludedMediaTypes) {
+      this.enabled = enabled;
+      this.level = level;
+      this.minSize = minSize;
+      Predicate<String> included = anyOf(mediaTypes);
+      Predicate<String> excluded = anyOf(excludedMediaTypes);
+      this.mediaTypes = mediaType -> included.test(mediaType) && !excluded.test(mediaType);
+    }
+
+    private static Predicate<String> anyOf(List<String> patterns) {
+      Predicate<String> predicate = mediaType -> false;
+      for (String pattern : patterns) {
+        predicate = predicate.or(matcher(pattern.trim().toLowerCase()));
+      }
+      return predicate;
+    }
+
+    private static Predicate<String> matcher(String pattern) {
+      int wildcard = pattern.indexOf('*');
+      if (wildcard < 0) {
+        return pattern::equals;
+      }
+
+      String prefix = pattern.substring(0, wildcard);
+      String suffix = pattern.substring(wildcard + 1);
+      return mediaType -> mediaType.length() >= prefix.length() + suffix.length() &&
+          mediaType.startsWith(prefix) &&
+          mediaType.endsWith(suffix);
+    }
+  }
+}
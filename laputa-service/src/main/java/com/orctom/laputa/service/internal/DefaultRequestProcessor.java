@@ -5,44 +5,44 @@ import com.google.common.base.Strings;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
-import com.orctom.laputa.service.LaputaService;
 import com.orctom.laputa.service.annotation.Template;
+import com.orctom.laputa.service.config.Configurator;
 import com.orctom.laputa.service.config.MappingConfig;
 import com.orctom.laputa.service.exception.ParameterValidationException;
 import com.orctom.laputa.service.exception.RequestProcessingException;
-import com.orctom.laputa.service.filter.Filter;
-import com.orctom.laputa.service.filter.FilterChain;
 import com.orctom.laputa.service.model.HTTPMethod;
 import com.orctom.laputa.service.model.ParamInfo;
 import com.orctom.laputa.service.model.RequestMapping;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.Response;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.service.model.RouteMatch;
 import com.orctom.laputa.service.model.ValidationError;
 import com.orctom.laputa.service.processor.RequestProcessor;
-import com.orctom.laputa.service.util.ArgsResolver;
 import com.orctom.laputa.service.util.ParamResolver;
+import com.orctom.laputa.service.util.ValidationUtil;
 import com.orctom.laputa.utils.ClassUtils;
-import io.netty.handler.codec.http.HttpMethod;
+import com.typesafe.config.Config;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cglib.reflect.FastMethod;
 
 import javax.validation.ConstraintViolation;
-import javax.validation.Validation;
-import javax.validation.Validator;
 import javax.validation.executable.ExecutableValidator;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import static com.orctom.laputa.service.Constants.*;
@@ -52,22 +52,10 @@ public class DefaultRequestProcessor implements RequestProcessor {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DefaultRequestProcessor.class);
 
-  private static final Map<HttpMethod, HTTPMethod> HTTP_METHODS = ImmutableMap.of(
-      HttpMethod.DELETE, HTTPMethod.DELETE,
-      HttpMethod.HEAD, HTTPMethod.HEAD,
-      HttpMethod.OPTIONS, HTTPMethod.OPTIONS,
-      HttpMethod.POST, HTTPMethod.POST,
-      HttpMethod.PUT, HTTPMethod.PUT
-  );
-
-  private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
-
   private static final Pattern BRACE_LEFT = Pattern.compile("\\{");
   private static final Pattern BRACE_RIGHT = Pattern.compile("}");
   private static final String EMPTY_STR = "";
 
-  private static List<Filter> filters;
-
   private static LoadingCache<RequestMapping, String> templates = CacheBuilder.newBuilder()
       .build(
           new CacheLoader<RequestMapping, String>() {
@@ -78,14 +66,60 @@ public class DefaultRequestProcessor implements RequestProcessor {
           }
       );
 
+  private final ExecutorService validationExecutor;
+
   DefaultRequestProcessor() {
-    initFilterChain();
+    this(Configurator.getInstance().getConfig());
+  }
+
+  private DefaultRequestProcessor(Config config) {
+    this(
+        config.hasPath(CFG_SERVER_VALIDATION_THREADS) ? config.getInt(CFG_SERVER_VALIDATION_THREADS) : 0,
+        config.hasPath(CFG_SERVER_VALIDATION_QUEUE) ? config.getInt(CFG_SERVER_VALIDATION_QUEUE) : 1024
+    );
+  }
+
+  /**
+   * @param threads to validate on, `0` means validating inline
+   * @param queue   requests waiting for a validation thread
+   */
+  DefaultRequestProcessor(int threads, int queue) {
+    validationExecutor = createValidationExecutor(threads, queue);
+  }
+
+  /**
+   * @return null if validating inline, on the thread processing the request
+   */
+  private ExecutorService createValidationExecutor(int threads, int queue) {
+    if (threads <= 0) {
+      return null;
+    }
+
+    LOGGER.info("Validating params of constrained handlers on {} threads.", threads);
+    return new ThreadPoolExecutor(
+        threads,
+        threads,
+        0,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(Math.max(1, queue)),
+        new DefaultThreadFactory("laputa-validation", true)
+    );
+  }
+
+  /**
+   * for tests
+   */
+  ExecutorService getValidationExecutor() {
+    return validationExecutor;
   }
 
-  private void initFilterChain() {
-    filters = new ArrayList<>(getBeansOfType(Filter.class));
-    if (!filters.isEmpty()) {
-      filters.sort(Comparator.comparingInt(Filter::getOrder));
+  /**
+   * @param deadline in {@link System#nanoTime()}
+   */
+  void shutdown(long deadline) {
+    if (null != validationExecutor) {
+      validationExecutor.shutdown();
+      Dispatcher.awaitTermination(validationExecutor, deadline);
     }
   }
 
@@ -94,10 +128,13 @@ public class DefaultRequestProcessor implements RequestProcessor {
     return 1000;
   }
 
+  /**
+   * Handles without the filters, which are linked ahead of the handler in {@link RequestPipeline}.
+   */
   @Override
   public void handleRequest(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
     try {
-      createFilterChain().doFilter(requestWrapper, responseWrapper);
+      service(requestWrapper, responseWrapper);
     } catch (RequestProcessingException e) {
       throw e;
     } catch (Exception e) {
@@ -108,57 +145,77 @@ public class DefaultRequestProcessor implements RequestProcessor {
     }
   }
 
-  private FilterChain createFilterChain() {
-    if (null == filters || filters.isEmpty()) {
-      return new LaputaFilterChain(this);
-    }
-
-    return new LaputaFilterChain(this, filters);
-  }
-
   void service(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
-    RequestMapping mapping = getRequestMapping(requestWrapper, responseWrapper);
+    RouteMatch routeMatch = getRouteMatch(requestWrapper, responseWrapper);
 
     Object result;
     try {
-      result = processRequest(requestWrapper, responseWrapper, mapping);
+      result = processRequest(requestWrapper, responseWrapper, routeMatch);
+
+      CompletionStage<?> stage = AsyncResults.toCompletionStage(result);
+      if (null != stage) {
+        CompletionStage<Object> handled = stage.handle((value, error) -> {
+          if (null == error) {
+            return value;
+          }
+
+          Throwable cause = AsyncResults.unwrap(error);
+          if (cause instanceof Exception) {
+            return onException((Exception) cause, responseWrapper);
+          }
+          throw new RequestProcessingException(cause.getMessage(), cause);
+        });
+        AsyncResults.propagateCancellation(handled, stage);
+        result = handled;
+      }
+
+    } catch (Exception e) {
+      result = onException(e, responseWrapper);
+    }
 
-    } catch (ParameterValidationException e) {
-      result = new ValidationError(e.getMessages());
+    responseWrapper.setResult(result);
+  }
+
+  private Object onException(Exception e, ResponseWrapper responseWrapper) {
+    if (e instanceof ParameterValidationException) {
       responseWrapper.setRedirectTo(PATH_403);
       responseWrapper.setData("error", e.getMessage());
+      return new ValidationError(((ParameterValidationException) e).getMessages());
+    }
 
-    } catch (IllegalArgumentException e) {
-      result = new Response(BAD_REQUEST.code(), Lists.newArrayList(BAD_REQUEST.reasonPhrase()));
+    if (e instanceof IllegalArgumentException) {
       responseWrapper.setRedirectTo(PATH_403);
       responseWrapper.setData("error", BAD_REQUEST.reasonPhrase());
       LOGGER.error(e.getMessage(), e);
+      return new Response(BAD_REQUEST.code(), Lists.newArrayList(BAD_REQUEST.reasonPhrase()));
+    }
 
-    } catch (Exception e) {
-      throw new RequestProcessingException(e.getMessage(), e);
-//      result = new Response(INTERNAL_SERVER_ERROR.code(), Lists.newArrayList(INTERNAL_SERVER_ERROR.reasonPhrase()));
-//      responseWrapper.setRedirectTo(PATH_500);
-//      responseWrapper.setData("error", INTERNAL_SERVER_ERROR.reasonPhrase());
-//      LOGGER.error(e.getMessage(), e);
+    if (e instanceof RequestProcessingException) {
+      throw (RequestProcessingException) e;
     }
 
-    responseWrapper.setResult(result);
+    throw new RequestProcessingException(e.getMessage(), e);
   }
 
-  private RequestMapping getRequestMapping(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
-    MappingConfig mappingConfig = MappingConfig.getInstance();
-    RequestMapping mapping = mappingConfig.getMapping(
-        requestWrapper.getPath(),
-        getHttpMethod(requestWrapper.getHttpMethod())
-    );
+  /**
+   * Reuses the match routed ahead in {@link LaputaRequestProcessor}, unless the path or method got changed since.
+   */
+  private RouteMatch getRouteMatch(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
+    RouteMatch routeMatch = requestWrapper.getRouteMatch();
+    if (null == routeMatch) {
+      routeMatch = MappingConfig.getInstance().match(
+          requestWrapper.getPath(),
+          HTTPMethod.of(requestWrapper.getHttpMethod())
+      );
+    }
 
-    if (null == mapping) {
-      mapping = mappingConfig._404();
+    if (null == routeMatch || null == routeMatch.getMapping()) {
+      routeMatch = new RouteMatch(MappingConfig.getInstance()._404(), requestWrapper.getPath(), null);
       responseWrapper.setStatus(NOT_FOUND);
     }
 
-    setTemplateName(responseWrapper, mapping);
-    return mapping;
+    setTemplateName(responseWrapper, routeMatch.getMapping());
+    return routeMatch;
   }
 
   private void setTemplateName(ResponseWrapper responseWrapper, RequestMapping mapping) {
@@ -201,34 +258,69 @@ public class DefaultRequestProcessor implements RequestProcessor {
     return template;
   }
 
-  private Object processRequest(RequestWrapper requestWrapper, ResponseWrapper responseWrapper, RequestMapping mapping)
+  /**
+   * Binding, including the validation, and invoking are timed separately into the response wrapper,
+   * on the validation executor for the ones validated there, of which the time queued is not counted
+   */
+  private Object processRequest(RequestWrapper requestWrapper, ResponseWrapper responseWrapper, RouteMatch routeMatch)
       throws InvocationTargetException {
+    RequestMapping mapping = routeMatch.getMapping();
     FastMethod handlerMethod = mapping.getHandlerMethod();
     Object target = mapping.getTarget();
+    long start = System.nanoTime();
 
     // process @Data
     Class<?> dataType = mapping.getDataType();
-    if (null != dataType) {
-      if (ClassUtils.isSimpleValueType(dataType)) {
-        return handlerMethod.invoke(target, new Object[]{requestWrapper.getData()});
-
-      } else {
-        Object arg = JSON.parseObject(requestWrapper.getData(), dataType);
-        return handlerMethod.invoke(target, new Object[]{arg});
+    Map<String, ParamInfo> parameters = mapping.getHandlerParameters();
+    if (null != dataType || parameters.isEmpty()) {
+      Object[] args = null == dataType ? null : new Object[]{getData(requestWrapper, dataType)};
+      long bound = bound(responseWrapper, start);
+      try {
+        return handlerMethod.invoke(target, args);
+      } finally {
+        responseWrapper.setInvokeNanos(System.nanoTime() - bound);
       }
     }
 
-    Map<String, ParamInfo> parameters = mapping.getHandlerParameters();
-    if (parameters.isEmpty()) {
-      return handlerMethod.invoke(target, null);
+    Map<String, String> params = ParamResolver.extractParams(routeMatch, requestWrapper);
+
+    Object[] args = mapping.getArgsBinder().bind(params, requestWrapper, responseWrapper.getMessenger());
+
+    if (mapping.isConstrained()) {
+      if (null != validationExecutor) {
+        try {
+          return validateAsync(handlerMethod, target, args, responseWrapper, System.nanoTime() - start);
+        } catch (RejectedExecutionException e) {
+          LOGGER.warn("Validation executor is saturated, rejecting: {}", requestWrapper.getPath());
+          responseWrapper.setStatus(SERVICE_UNAVAILABLE);
+          return null;
+        }
+      }
+      validate(target, handlerMethod.getJavaMethod(), args);
     }
 
-    Map<String, String> params = ParamResolver.extractParams(mapping, requestWrapper);
+    long bound = bound(responseWrapper, start);
+    try {
+      return invoke(handlerMethod, target, args);
+    } finally {
+      responseWrapper.setInvokeNanos(System.nanoTime() - bound);
+    }
+  }
 
-    Object[] args = ArgsResolver.resolveArgs(params, parameters, requestWrapper, responseWrapper.getMessenger());
+  private Object getData(RequestWrapper requestWrapper, Class<?> dataType) {
+    if (ClassUtils.isSimpleValueType(dataType)) {
+      return requestWrapper.getData();
+    }
+    return JSON.parseObject(requestWrapper.getData(), dataType);
+  }
 
-    validate(target, handlerMethod.getJavaMethod(), args);
+  private long bound(ResponseWrapper responseWrapper, long start) {
+    long bound = System.nanoTime();
+    responseWrapper.setBindingNanos(bound - start);
+    return bound;
+  }
 
+  private Object invoke(FastMethod handlerMethod, Object target, Object[] args) {
     try {
       return handlerMethod.invoke(target, args);
 
@@ -240,17 +332,37 @@ public class DefaultRequestProcessor implements RequestProcessor {
     }
   }
 
-  private HTTPMethod getHttpMethod(HttpMethod method) {
-    HTTPMethod httpMethod = HTTP_METHODS.get(method);
-    if (null != httpMethod) {
-      return httpMethod;
-    }
-
-    return HTTPMethod.GET;
+  /**
+   * Validates on the validation executor, where the handler gets invoked afterwards as well.
+   *
+   * @param bindingNanos spent on binding the args, before validating
+   */
+  @SuppressWarnings("unchecked")
+  private CompletionStage<Object> validateAsync(FastMethod handlerMethod,
+                                                Object target,
+                                                Object[] args,
+                                                ResponseWrapper responseWrapper,
+                                                long bindingNanos) {
+    return CompletableFuture
+        .supplyAsync(() -> {
+          long start = System.nanoTime();
+          validate(target, handlerMethod.getJavaMethod(), args);
+          long validated = System.nanoTime();
+          responseWrapper.setBindingNanos(bindingNanos + validated - start);
+          try {
+            return invoke(handlerMethod, target, args);
+          } finally {
+            responseWrapper.setInvokeNanos(System.nanoTime() - validated);
+          }
+        }, validationExecutor)
+        .thenCompose(result -> {
+          CompletionStage<?> stage = AsyncResults.toCompletionStage(result);
+          return null == stage ? CompletableFuture.completedFuture(result) : (CompletionStage<Object>) stage;
+        });
   }
 
   private void validate(Object target, Method method, Object[] args) {
-    ExecutableValidator executableValidator = VALIDATOR.forExecutables();
+    ExecutableValidator executableValidator = ValidationUtil.getValidator().forExecutables();
     Set<ConstraintViolation<Object>> violations = executableValidator.validateParameters(target, method, args);
     if (violations.isEmpty()) {
       return;
@@ -258,8 +370,4 @@ public class DefaultRequestProcessor implements RequestProcessor {
 
     throw new ParameterValidationException(violations);
   }
-
-  private <T> Collection<T> getBeansOfType(Class<T> type) {
-    return LaputaService.getInstance().getApplicationContext().getBeansOfType(type).values();
-  }
 }
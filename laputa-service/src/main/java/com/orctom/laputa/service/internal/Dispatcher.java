@@ -0,0 +1,142 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.exception.IllegalConfigException;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.model.DispatchMode;
+import com.orctom.laputa.service.model.RequestMapping;
+import com.typesafe.config.Config;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.orctom.laputa.service.Constants.*;
+
+/**
+ * Decides which executor a request gets processed on, `null` means inline on the event loop.
+ */
+class Dispatcher {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Dispatcher.class);
+
+  private final DispatchMode defaultMode;
+  private final ThreadPoolExecutor pool;
+  private final Executor virtual;
+
+  Dispatcher() {
+    this(Configurator.getInstance().getConfig());
+  }
+
+  private Dispatcher(Config config) {
+    this(getDefaultMode(config), getThreads(config), getQueue(config));
+  }
+
+  /**
+   * @param threads of the business pool
+   * @param queue   requests waiting for a business thread
+   */
+  Dispatcher(DispatchMode defaultMode, int threads, int queue) {
+    this.defaultMode = defaultMode;
+    pool = createPool(threads, queue);
+    virtual = createVirtualThreadExecutor();
+    LOGGER.info("Dispatching requests {} by default.", defaultMode);
+  }
+
+  private static DispatchMode getDefaultMode(Config config) {
+    if (!config.hasPath(CFG_SERVER_DISPATCH_MODE)) {
+      return DispatchMode.INLINE;
+    }
+
+    String mode = config.getString(CFG_SERVER_DISPATCH_MODE);
+    try {
+      return DispatchMode.valueOf(mode.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalConfigException("Unknown `" + CFG_SERVER_DISPATCH_MODE + "`: " + mode);
+    }
+  }
+
+  private static int getThreads(Config config) {
+    int threads = config.hasPath(CFG_SERVER_DISPATCH_THREADS) ? config.getInt(CFG_SERVER_DISPATCH_THREADS) : 0;
+    return threads > 0 ? threads : 2 * Runtime.getRuntime().availableProcessors();
+  }
+
+  private static int getQueue(Config config) {
+    return config.hasPath(CFG_SERVER_DISPATCH_QUEUE) ? config.getInt(CFG_SERVER_DISPATCH_QUEUE) : 1024;
+  }
+
+  private ThreadPoolExecutor createPool(int threads, int queue) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        threads,
+        threads,
+        60,
+        TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(Math.max(1, queue)),
+        new DefaultThreadFactory("laputa-dispatch", true)
+    );
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * The build targets java 8, so virtual threads can only be looked up at runtime.
+   */
+  private Executor createVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      if (DispatchMode.VIRTUAL == defaultMode) {
+        LOGGER.warn("Virtual threads are not supported by current JVM, falling back to the business pool.");
+      }
+      return pool;
+    }
+  }
+
+  /**
+   * Lets the requests dispatched finish, up to the deadline, no more are taken meanwhile
+   *
+   * @param deadline in {@link System#nanoTime()}
+   */
+  void shutdown(long deadline) {
+    pool.shutdown();
+    if (virtual instanceof ExecutorService && virtual != pool) {
+      ((ExecutorService) virtual).shutdown();
+    }
+    awaitTermination(pool, deadline);
+    if (virtual instanceof ExecutorService && virtual != pool) {
+      awaitTermination((ExecutorService) virtual, deadline);
+    }
+  }
+
+  static void awaitTermination(ExecutorService executor, long deadline) {
+    try {
+      if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+        LOGGER.warn("Tasks still running after the shutdown timeout, interrupting: {}", executor);
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return the executor to process the request on, or `null` to process it inline
+   */
+  Executor getExecutor(RequestMapping mapping) {
+    DispatchMode mode = null == mapping || null == mapping.getDispatchMode() ? defaultMode : mapping.getDispatchMode();
+    switch (mode) {
+      case POOL:
+        return pool;
+      case VIRTUAL:
+        return virtual;
+      default:
+        return null;
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package com.orctom.laputa.service.internal;
+
+import com.google.common.collect.Iterables;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.utils.SimpleHistogram;
+import com.orctom.laputa.utils.SimpleMeter;
+import com.orctom.laputa.utils.SimpleMetrics;
+import com.typesafe.config.Config;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.orctom.laputa.service.Constants.*;
+
+/**
+ * Watches the health of the event loops, from a thread of its own.
+ * <p>
+ * Every `interval`, each loop is handed a probe task, unless the previous one is still waiting.
+ * The probe records how long it waited to be run, the scheduling delay, and how many tasks are still queued behind it.
+ * A loop that has not run its probe for longer than `blockedThreshold` is taken as blocked,
+ * the stack of its thread is logged once per blockage, which points at the handler that should not be run on the loop.
+ * <p>
+ * The probes cost a task per loop per interval, the stacks are only taken from the loops found blocked.
+ */
+class EventLoopMonitor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EventLoopMonitor.class);
+
+  static final String PREFIX = "eventloop.";
+
+  private static final long LOWEST_DISCERNIBLE_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+  private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private static final boolean ENABLED;
+  private static final long INTERVAL_NANOS;
+  private static final long BLOCKED_THRESHOLD_NANOS;
+
+  private static final Map<String, Loop[]> GROUPS = new ConcurrentSkipListMap<>();
+
+  private static SimpleMetrics metrics;
+  private static ScheduledExecutorService watchdog;
+
+  static {
+    Config config = Configurator.getInstance().getConfig();
+    ENABLED = config.getBoolean(CFG_SERVER_EVENT_LOOP_MONITOR_ENABLED);
+    INTERVAL_NANOS = config.getDuration(CFG_SERVER_EVENT_LOOP_MONITOR_INTERVAL, TimeUnit.NANOSECONDS);
+    BLOCKED_THRESHOLD_NANOS = config.getDuration(CFG_SERVER_EVENT_LOOP_MONITOR_BLOCKED_THRESHOLD, TimeUnit.NANOSECONDS);
+  }
+
+  @FunctionalInterface
+  interface LoopVisitor {
+
+    void accept(String group, int index, Loop loop);
+  }
+
+  /**
+   * @param name such as `workers`, the one registered before with the same name is replaced
+   */
+  static synchronized void register(String name, EventLoopGroup group) {
+    if (!ENABLED) {
+      return;
+    }
+
+    if (null == watchdog) {
+      if (LOGGER.isInfoEnabled()) {
+        metrics = SimpleMetrics.create(LOGGER);
+      }
+      watchdog = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("laputa-event-loop-monitor", true));
+      watchdog.scheduleWithFixedDelay(EventLoopMonitor::check, INTERVAL_NANOS, INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    EventExecutor[] executors = Iterables.toArray(group, EventExecutor.class);
+    Loop[] loops = new Loop[executors.length];
+    for (int i = 0; i < executors.length; i++) {
+      loops[i] = new Loop(name + "." + i, executors[i]);
+    }
+    GROUPS.put(name, loops);
+  }
+
+  static void unregister(String name) {
+    GROUPS.remove(name);
+  }
+
+  static boolean isWatching() {
+    return !GROUPS.isEmpty();
+  }
+
+  /**
+   * Visits the loops being watched, grouped by the name they are registered with
+   */
+  static void forEach(LoopVisitor visitor) {
+    for (Map.Entry<String, Loop[]> entry : GROUPS.entrySet()) {
+      Loop[] loops = entry.getValue();
+      for (int i = 0; i < loops.length; i++) {
+        visitor.accept(entry.getKey(), i, loops[i]);
+      }
+    }
+  }
+
+  private static void check() {
+    long now = System.nanoTime();
+    for (Loop[] loops : GROUPS.values()) {
+      for (Loop loop : loops) {
+        try {
+          loop.check(now);
+        } catch (Exception e) {
+          LOGGER.error(e.getMessage(), e);
+        }
+      }
+    }
+  }
+
+  static class Loop {
+
+    private final String name;
+    private final EventExecutor executor;
+    private final SimpleHistogram delay;
+    private final SimpleMeter blocked;
+    private final Runnable probe = this::probe;
+
+    private volatile long submittedAt;
+    private volatile boolean outstanding;
+    private volatile Thread thread;
+    private volatile int pendingTasks;
+
+    private boolean reported;
+
+    private Loop(String name, EventExecutor executor) {
+      this.name = name;
+      this.executor = executor;
+      if (null != metrics) {
+        this.delay = metrics.histogram(PREFIX + "delay." + name, LOWEST_DISCERNIBLE_NANOS, HIGHEST_TRACKABLE_NANOS);
+        this.blocked = metrics.meter(PREFIX + "blocked." + name);
+      } else {
+        this.delay = new SimpleHistogram(LOWEST_DISCERNIBLE_NANOS, HIGHEST_TRACKABLE_NANOS);
+        this.blocked = new SimpleMeter();
+      }
+    }
+
+    /**
+     * On the loop
+     */
+    private void probe() {
+      delay.record(System.nanoTime() - submittedAt);
+      thread = Thread.currentThread();
+      if (executor instanceof SingleThreadEventExecutor) {
+        pendingTasks = ((SingleThreadEventExecutor) executor).pendingTasks();
+      }
+      outstanding = false;
+    }
+
+    /**
+     * On the watchdog
+     */
+    private void check(long now) {
+      if (outstanding) {
+        long waited = now - submittedAt;
+        if (!reported && waited > BLOCKED_THRESHOLD_NANOS) {
+          reported = true;
+          blocked.mark();
+          LOGGER.warn("Event loop `{}` has been blocked for {}ms, {}",
+              name, TimeUnit.NANOSECONDS.toMillis(waited), getStack());
+        }
+        return;
+      }
+
+      if (reported) {
+        reported = false;
+        LOGGER.warn("Event loop `{}` is running again.", name);
+      }
+
+      if (executor.isShuttingDown()) {
+        return;
+      }
+
+      submittedAt = now;
+      outstanding = true;
+      try {
+        executor.execute(probe);
+      } catch (RejectedExecutionException e) {
+        outstanding = false;
+      }
+    }
+
+    private String getStack() {
+      Thread current = thread;
+      if (null == current) {
+        return "before running any probe.";
+      }
+
+      StringBuilder stack = new StringBuilder("running:");
+      for (StackTraceElement element : current.getStackTrace()) {
+        stack.append("\n\tat ").append(element);
+      }
+      return stack.toString();
+    }
+
+    SimpleHistogram getDelay() {
+      return delay;
+    }
+
+    SimpleMeter getBlocked() {
+      return blocked;
+    }
+
+    int getPendingTasks() {
+      return pendingTasks;
+    }
+  }
+}
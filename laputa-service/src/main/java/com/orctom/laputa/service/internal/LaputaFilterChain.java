@@ -5,34 +5,21 @@ import com.orctom.laputa.service.filter.FilterChain;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
 
-import java.util.List;
-
+/**
+ * One link of a pre-linked chain, immutable, so shared by all the requests of the route.
+ */
 public class LaputaFilterChain implements FilterChain {
 
-  private DefaultRequestProcessor processor;
-  private List<Filter> filters;
-  private int pos = 0;
-  private int size = 0;
-
-  LaputaFilterChain(DefaultRequestProcessor processor) {
-    this.processor = processor;
-  }
+  private final Filter filter;
+  private final FilterChain next;
 
-  LaputaFilterChain(DefaultRequestProcessor processor, List<Filter> filters) {
-    this.processor = processor;
-    if (null == filters || filters.isEmpty()) {
-      return;
-    }
-    this.filters = filters;
-    size = filters.size();
+  LaputaFilterChain(Filter filter, FilterChain next) {
+    this.filter = filter;
+    this.next = next;
   }
 
   @Override
   public void doFilter(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
-    if (pos == size) {
-      processor.service(requestWrapper, responseWrapper);
-    } else {
-      filters.get(pos++).doFilter(requestWrapper, responseWrapper, this);
-    }
+    filter.doFilter(requestWrapper, responseWrapper, next);
   }
 }
@@ -2,13 +2,18 @@ package com.orctom.laputa.service.internal;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.RateLimiter;
+import com.orctom.laputa.service.LaputaService;
 import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.config.MappingConfig;
 import com.orctom.laputa.service.exception.FileUploadException;
 import com.orctom.laputa.service.exception.RequestProcessingException;
+import com.orctom.laputa.service.filter.Filter;
+import com.orctom.laputa.service.model.HTTPMethod;
 import com.orctom.laputa.service.model.MediaType;
+import com.orctom.laputa.service.model.RequestMapping;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.service.model.RouteMatch;
 import com.orctom.laputa.service.processor.RequestProcessor;
 import com.orctom.laputa.service.translator.content.ContentTranslator;
 import com.orctom.laputa.service.translator.content.ContentTranslators;
@@ -16,6 +21,9 @@ import com.orctom.laputa.service.translator.content.TemplateContentTranslator;
 import com.orctom.laputa.service.translator.response.ResponseTranslators;
 import com.orctom.laputa.utils.SimpleMeter;
 import com.orctom.laputa.utils.SimpleMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpMethod;
@@ -30,6 +38,7 @@ import io.netty.handler.codec.http.multipart.InterfaceHttpData.HttpDataType;
 import io.netty.util.CharsetUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
 
 import javax.activation.MimetypesFileTypeMap;
 import java.io.File;
@@ -41,7 +50,16 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
 
 import static com.orctom.laputa.service.Constants.PATH_500;
 import static com.orctom.laputa.service.model.MediaType.TEXT_PLAIN;
@@ -56,100 +74,403 @@ class LaputaRequestProcessor {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(LaputaRequestProcessor.class);
 
-  private static SimpleMeter simpleMeter;
   private static final String METER_REQUESTS = "requests";
 
   private static final String FILE = ".file";
   private static final String FILENAME = ".originalFilename";
 
-  private static final HttpDataFactory HTTP_DATA_FACTORY = new DefaultHttpDataFactory(
+  static final HttpDataFactory HTTP_DATA_FACTORY = new DefaultHttpDataFactory(
       Configurator.getInstance().getPostDataUseDiskThreshold(),
       Configurator.getInstance().getCharset()
   );
 
   private static final MimetypesFileTypeMap MIMETYPES_FILE_TYPE_MAP = new MimetypesFileTypeMap();
 
-  private List<RequestProcessor> requestProcessors = new ArrayList<>();
+  private final RequestPipeline pipeline;
 
-  private static RateLimiter rateLimiter;
+  private final AdmissionController admissionController = new AdmissionController();
+
+  private final Dispatcher dispatcher;
+
+  private final DefaultRequestProcessor handler;
+
+  /**
+   * Requests taken and not responded yet, for draining on shutdown
+   */
+  private final LongAdder inFlight = new LongAdder();
+
+  private volatile boolean draining;
 
   LaputaRequestProcessor() {
-    if (LOGGER.isInfoEnabled()) {
-      simpleMeter = SimpleMetrics.create(LOGGER).meter(METER_REQUESTS);
-    }
+    this(new Dispatcher(), new DefaultRequestProcessor());
+  }
 
-    initRateLimiter();
+  LaputaRequestProcessor(Dispatcher dispatcher, DefaultRequestProcessor handler) {
+    this.dispatcher = dispatcher;
+    this.handler = handler;
+    Metrics.ADMISSION_CONTROLLERS.add(admissionController);
+
+    pipeline = new RequestPipeline(
+        loadRequestProcessors(),
+        loadFilters(),
+        handler,
+        MappingConfig.getInstance().getMappings()
+    );
+  }
 
-    loadRequestProcessors();
+  long getInFlight() {
+    return inFlight.sum();
   }
 
-  private void initRateLimiter() {
-    Integer maxRequestsPerSecond = Configurator.getInstance().getThrottle();
-    if (null != maxRequestsPerSecond) {
-      rateLimiter = RateLimiter.create(maxRequestsPerSecond);
-    }
+  /**
+   * Marks the server as shutting down, connections are closed once the requests received on them are responded
+   */
+  void drain() {
+    draining = true;
+  }
+
+  boolean isDraining() {
+    return draining;
   }
 
-  private void loadRequestProcessors() {
+  /**
+   * Stops the business and validation executors, once the requests in flight are drained
+   *
+   * @param deadline in {@link System#nanoTime()}
+   */
+  void shutdown(long deadline) {
+    dispatcher.shutdown(deadline);
+    handler.shutdown(deadline);
+    Metrics.ADMISSION_CONTROLLERS.remove(admissionController);
+  }
+
+  /**
+   * @return null if the metrics are not enabled
+   */
+  static RequestMetrics getRequestMetrics() {
+    return Metrics.REQUEST_METRICS;
+  }
+
+  private List<RequestProcessor> loadRequestProcessors() {
+    List<RequestProcessor> requestProcessors = new ArrayList<>();
     ServiceLoader.load(RequestProcessor.class).forEach(requestProcessors::add);
     requestProcessors.sort(Comparator.comparingInt(RequestProcessor::getOrder));
-    requestProcessors.add(new DefaultRequestProcessor());
+    return requestProcessors;
+  }
+
+  /**
+   * @return empty if there's no application context, such as when the server is run without the service
+   */
+  private List<Filter> loadFilters() {
+    ApplicationContext applicationContext = LaputaService.getInstance().getApplicationContext();
+    if (null == applicationContext) {
+      return new ArrayList<>();
+    }
+    List<Filter> filters = new ArrayList<>(applicationContext.getBeansOfType(Filter.class).values());
+    filters.sort(Comparator.comparingInt(Filter::getOrder));
+    return filters;
   }
 
-  void handleRequest(ChannelHandlerContext ctx, FullHttpRequest req) {
-    if (LOGGER.isInfoEnabled()) {
-      simpleMeter.mark();
+  /**
+   * @param sequencer orders the responses of the connection, null if they are not to be ordered
+   */
+  void handleRequest(ChannelHandlerContext ctx, FullHttpRequest req, ResponseSequencer sequencer) {
+    long start = System.nanoTime();
+    inFlight.increment();
+    if (null != Metrics.REQUESTS) {
+      Metrics.REQUESTS.mark();
     }
 
-    RequestWrapper requestWrapper = getRequestWrapper(req);
+    RequestWrapper requestWrapper = req instanceof StreamedHttpRequest ?
+        ((StreamedHttpRequest) req).getRequestWrapper() :
+        getRequestWrapper(req);
 
     String mediaType = MIMETYPES_FILE_TYPE_MAP.getContentType(requestWrapper.getPath());
     ResponseWrapper responseWrapper = new ResponseWrapper(mediaType);
+    responseWrapper.setStartNanos(start);
+    ResponseSequencer.Slot slot = null == sequencer ? ResponseSequencer.UNORDERED : sequencer.reserve();
+
+    long routing = System.nanoTime();
+    RequestMapping mapping = getRequestMapping(requestWrapper);
+    responseWrapper.setRoutingNanos(System.nanoTime() - routing);
+    if (null != mapping && !mapping.isCompressible()) {
+      responseWrapper.setCompressible(false);
+    }
+    long delay = admissionController.admit(mapping, ctx.channel().remoteAddress());
+    if (AdmissionController.REJECTED == delay) {
+      responseWrapper.setStatus(TOO_MANY_REQUESTS);
+      respond(ctx, req, requestWrapper, responseWrapper, slot);
+      return;
+    }
+
+    if (0L == delay) {
+      dispatch(ctx, req, requestWrapper, responseWrapper, mapping, slot);
+      return;
+    }
 
+    req.retain();
     try {
-      if (null != rateLimiter && !rateLimiter.tryAcquire(200, TimeUnit.MILLISECONDS)) {
-        responseWrapper.setStatus(TOO_MANY_REQUESTS);
-      }
+      ctx.executor().schedule(() -> {
+        try {
+          dispatch(ctx, req, requestWrapper, responseWrapper, mapping, slot);
+          ctx.flush();
+        } finally {
+          req.release();
+        }
+      }, delay, TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      LOGGER.warn("Event loop is shutting down, rejecting deferred: {}", requestWrapper.getPath());
+      req.release();
+      responseWrapper.setStatus(SERVICE_UNAVAILABLE);
+      respond(ctx, req, requestWrapper, responseWrapper, slot);
+    }
+  }
+
+  private void dispatch(ChannelHandlerContext ctx,
+                        FullHttpRequest req,
+                        RequestWrapper requestWrapper,
+                        ResponseWrapper responseWrapper,
+                        RequestMapping mapping,
+                        ResponseSequencer.Slot slot) {
+    Executor executor = dispatcher.getExecutor(mapping);
+    if (null == executor) {
+      process(ctx, req, requestWrapper, responseWrapper, mapping, slot, null);
+      return;
+    }
+
+    req.retain();
+    try {
+      executor.execute(() -> process(ctx, req, requestWrapper, responseWrapper, mapping, slot, executor));
+    } catch (RejectedExecutionException e) {
+      LOGGER.warn("Business executor is saturated, rejecting: {}", requestWrapper.getPath());
+      req.release();
+      responseWrapper.setStatus(SERVICE_UNAVAILABLE);
+      respond(ctx, req, requestWrapper, responseWrapper, slot);
+    }
+  }
+
+  /**
+   * Requests of @Streaming routes come routed already
+   */
+  private RequestMapping getRequestMapping(RequestWrapper requestWrapper) {
+    if (null != requestWrapper.getRouteMatch()) {
+      return requestWrapper.getRouteMatch().getMapping();
+    }
+
+    RouteMatch routeMatch = MappingConfig.getInstance().match(
+        requestWrapper.getPath(),
+        HTTPMethod.of(requestWrapper.getHttpMethod())
+    );
+    if (null == routeMatch) {
+      return null;
+    }
+
+    requestWrapper.setRouteMatch(routeMatch);
+    return routeMatch.getMapping();
+  }
 
-      long start = System.currentTimeMillis();
+  /**
+   * @param mapping  the route of the request, null if not routed
+   * @param executor the business executor this is running on, null if running inline on the event loop,
+   *                 in which case the request has not been retained.
+   */
+  private void process(ChannelHandlerContext ctx,
+                       FullHttpRequest req,
+                       RequestWrapper requestWrapper,
+                       ResponseWrapper responseWrapper,
+                       RequestMapping mapping,
+                       ResponseSequencer.Slot slot,
+                       Executor executor) {
+    CompletionStage<?> pending = null;
+    try {
+      long start = System.nanoTime();
+
+      processRequest(requestWrapper, responseWrapper, mapping);
 
-      processRequest(requestWrapper, responseWrapper);
-      translateContent(requestWrapper, responseWrapper);
+      Object result = responseWrapper.getResult();
+      if (result instanceof CompletionStage) {
+        pending = (CompletionStage<?>) result;
+      } else {
+        translateContent(requestWrapper, responseWrapper, ctx.alloc());
+      }
 
-      long end = System.currentTimeMillis();
       if (LOGGER.isDebugEnabled()) {
-        LOGGER.debug("{} took: {}ms", requestWrapper.getPath(), (end - start));
+        long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOGGER.debug("{} took: {}ms", requestWrapper.getPath(), took);
       }
 
     } catch (Exception e) {
-      LOGGER.error(e.getMessage(), e);
-      responseWrapper.setTemplate("/500");
-      responseWrapper.setMediaType(TEXT_PLAIN.getValue());
-      responseWrapper.setStatus(INTERNAL_SERVER_ERROR);
-      if (null != e.getMessage()) {
-        responseWrapper.setContent(e.getMessage().getBytes());
+      onError(responseWrapper, e);
+    }
+
+    if (null != pending) {
+      resumeOnCompletion(ctx, req, requestWrapper, responseWrapper, slot, pending, executor);
+    } else if (null != executor) {
+      respondOnEventLoop(ctx, req, requestWrapper, responseWrapper, slot);
+    } else {
+      respond(ctx, req, requestWrapper, responseWrapper, slot);
+    }
+  }
+
+  /**
+   * No thread is held while the controller's stage is pending, it's cancelled if the connection is closed meanwhile.
+   * Once completed, the content is translated on the route's business executor,
+   * or on the channel's event loop for inline routes, then responded on the event loop.
+   */
+  private void resumeOnCompletion(ChannelHandlerContext ctx,
+                                  FullHttpRequest req,
+                                  RequestWrapper requestWrapper,
+                                  ResponseWrapper responseWrapper,
+                                  ResponseSequencer.Slot slot,
+                                  CompletionStage<?> pending,
+                                  Executor executor) {
+    if (null == executor) {
+      req.retain();
+    }
+
+    long start = System.nanoTime();
+    Executor continuation = null != executor ? executor : ctx.executor();
+    ChannelFutureListener cancelOnClose = null;
+    if (pending instanceof Future) {
+      cancelOnClose = future -> ((Future<?>) pending).cancel(false);
+      ctx.channel().closeFuture().addListener(cancelOnClose);
+    }
+    ChannelFutureListener registered = cancelOnClose;
+    pending.whenComplete((value, error) -> {
+      if (null != registered) {
+        ctx.channel().closeFuture().removeListener(registered);
       }
+      try {
+        continuation.execute(() -> {
+          try {
+            if (error instanceof CancellationException) {
+              LOGGER.debug("{} cancelled, the connection is closed", requestWrapper.getPath());
+              responseWrapper.setStatus(SERVICE_UNAVAILABLE);
+            } else if (null != error) {
+              onError(responseWrapper, AsyncResults.unwrap(error));
+            } else {
+              responseWrapper.setResult(value);
+              translateContent(requestWrapper, responseWrapper, ctx.alloc());
+            }
+
+            if (LOGGER.isDebugEnabled()) {
+              LOGGER.debug("{} completed after: {}ms",
+                  requestWrapper.getPath(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+
+          } catch (Exception e) {
+            onError(responseWrapper, e);
+          } finally {
+            respondOnEventLoop(ctx, req, requestWrapper, responseWrapper, slot);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        LOGGER.warn("Executor is saturated, rejecting completed: {}", requestWrapper.getPath());
+        responseWrapper.setStatus(SERVICE_UNAVAILABLE);
+        respondOnEventLoop(ctx, req, requestWrapper, responseWrapper, slot);
+      }
+    });
+  }
+
+  private void onError(ResponseWrapper responseWrapper, Throwable e) {
+    LOGGER.error(e.getMessage(), e);
+    responseWrapper.setTemplate("/500");
+    responseWrapper.setMediaType(TEXT_PLAIN.getValue());
+    responseWrapper.setStatus(INTERNAL_SERVER_ERROR);
+    if (null != e.getMessage()) {
+      responseWrapper.setContent(e.getMessage().getBytes());
+    }
+  }
+
+  /**
+   * Writes are done on the channel's own event loop, and flushed explicitly,
+   * as `channelReadComplete()` has already been fired by the time the response is ready.
+   */
+  private void respondOnEventLoop(ChannelHandlerContext ctx,
+                                  FullHttpRequest req,
+                                  RequestWrapper requestWrapper,
+                                  ResponseWrapper responseWrapper,
+                                  ResponseSequencer.Slot slot) {
+    try {
+      ctx.executor().execute(() -> {
+        try {
+          respond(ctx, req, requestWrapper, responseWrapper, slot);
+          ctx.flush();
+        } finally {
+          req.release();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      LOGGER.warn("Event loop is shutting down, dropped response of: {}", requestWrapper.getPath());
+      drop(req, responseWrapper, slot);
+    }
+  }
 
+  /**
+   * Completes the slot without writing, so the responses after it are not held forever,
+   * done on the calling thread, as the event loop has stopped taking tasks.
+   */
+  private void drop(FullHttpRequest req, ResponseWrapper responseWrapper, ResponseSequencer.Slot slot) {
+    try {
+      slot.respond(req, () -> {
+        responseWrapper.releaseContentBuffer();
+        inFlight.decrement();
+      });
     } finally {
+      req.release();
+    }
+  }
+
+  /**
+   * Written once the responses of the requests received before it on the connection are written.
+   */
+  private void respond(ChannelHandlerContext ctx,
+                       FullHttpRequest req,
+                       RequestWrapper requestWrapper,
+                       ResponseWrapper responseWrapper,
+                       ResponseSequencer.Slot slot) {
+    slot.respond(req, () -> {
+      long start = System.nanoTime();
       try {
         translateResponse(ctx, req, responseWrapper);
       } catch (Exception e) {
         LOGGER.error(e.getMessage(), e);
         render500(requestWrapper, responseWrapper);
+      } finally {
+        responseWrapper.releaseContentBuffer();
+        recordMetrics(requestWrapper, responseWrapper, start);
+        inFlight.decrement();
       }
+    });
+  }
+
+  private void recordMetrics(RequestWrapper requestWrapper, ResponseWrapper responseWrapper, long writeStart) {
+    if (null == Metrics.REQUEST_METRICS) {
+      return;
     }
+
+    long end = System.nanoTime();
+    Metrics.REQUEST_METRICS.record(
+        requestWrapper.getRouteMatch(),
+        responseWrapper,
+        end - writeStart,
+        end - responseWrapper.getStartNanos()
+    );
   }
 
-  private void processRequest(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
-    for (RequestProcessor requestProcessor : requestProcessors) {
-      requestProcessor.handleRequest(requestWrapper, responseWrapper);
-      if (responseWrapper.hasContent()) {
-        return;
-      }
+  private void processRequest(RequestWrapper requestWrapper, ResponseWrapper responseWrapper, RequestMapping mapping) {
+    try {
+      pipeline.getChain(mapping).doFilter(requestWrapper, responseWrapper);
+    } catch (RequestProcessingException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RequestProcessingException(e.getMessage(), e);
     }
   }
 
-  private void translateContent(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
+  private void translateContent(RequestWrapper requestWrapper,
+                                ResponseWrapper responseWrapper,
+                                ByteBufAllocator allocator) {
     if (null != responseWrapper.getMessenger().getRedirectTo()) {
       return;
     }
@@ -170,9 +491,11 @@ class LaputaRequestProcessor {
     }
 
     try {
-      byte[] content = translator.translate(requestWrapper, responseWrapper);
+      long start = System.nanoTime();
+      ByteBuf content = translator.translate(requestWrapper, responseWrapper, allocator);
+      responseWrapper.setTranslateNanos(System.nanoTime() - start);
       responseWrapper.setContent(content);
-      responseWrapper.setMediaType(MediaType.TEXT_HTML.getValue());
+      responseWrapper.setMediaType(translator.getMediaType());
 
     } catch (IOException e) {
       throw new RequestProcessingException(e.getMessage(), e);
@@ -235,14 +558,7 @@ class LaputaRequestProcessor {
 
     try {
       for (InterfaceHttpData bodyData : bodyDatas) {
-        if (HttpDataType.Attribute == bodyData.getHttpDataType()) {
-          Attribute attribute = (Attribute) bodyData;
-          addToParameters(parameters, attribute);
-
-        } else if (HttpDataType.FileUpload == bodyData.getHttpDataType()) {
-          FileUpload fileUpload = (FileUpload) bodyData;
-          addToParameters(parameters, fileUpload);
-        }
+        addToParameters(parameters, bodyData);
       }
 
       return new RequestWrapper(request.method(), request.headers(), uri, uri, parameters, data);
@@ -255,7 +571,16 @@ class LaputaRequestProcessor {
     }
   }
 
-  private void addToParameters(Map<String, List<String>> parameters, Attribute attribute) {
+  static void addToParameters(Map<String, List<String>> parameters, InterfaceHttpData bodyData) {
+    if (HttpDataType.Attribute == bodyData.getHttpDataType()) {
+      addToParameters(parameters, (Attribute) bodyData);
+
+    } else if (HttpDataType.FileUpload == bodyData.getHttpDataType()) {
+      addToParameters(parameters, (FileUpload) bodyData);
+    }
+  }
+
+  private static void addToParameters(Map<String, List<String>> parameters, Attribute attribute) {
     try {
       String value = attribute.getValue();
       if (Strings.isNullOrEmpty(value)) {
@@ -270,7 +595,7 @@ class LaputaRequestProcessor {
     }
   }
 
-  private void addToParameters(Map<String, List<String>> parameters, FileUpload fileUpload) {
+  private static void addToParameters(Map<String, List<String>> parameters, FileUpload fileUpload) {
     try {
       File uploadedFile = fileUpload.getFile();
       parameters.put(fileUpload.getName() + FILE, Lists.newArrayList(uploadedFile.getAbsolutePath()));
@@ -293,7 +618,7 @@ class LaputaRequestProcessor {
     return request.content().toString(CharsetUtil.UTF_8);
   }
 
-  private QueryStringDecoder getQueryStringDecoder(String uri) {
+  static QueryStringDecoder getQueryStringDecoder(String uri) {
     Charset charset = Configurator.getInstance().getCharset();
     if (null != charset) {
       return new QueryStringDecoder(uri, charset);
@@ -301,4 +626,40 @@ class LaputaRequestProcessor {
       return new QueryStringDecoder(uri);
     }
   }
+
+  /**
+   * The metrics are rendered process wide, so they are created once and shared by all the processors
+   */
+  private static class Metrics {
+
+    private static final SimpleMeter REQUESTS;
+    private static final RequestMetrics REQUEST_METRICS;
+
+    /**
+     * Of the processors not shut down, the admission gauges are the sums of them
+     */
+    private static final Set<AdmissionController> ADMISSION_CONTROLLERS = ConcurrentHashMap.newKeySet();
+
+    static {
+      if (LOGGER.isInfoEnabled() || MetricsEndpoint.isEnabled()) {
+        SimpleMetrics metrics = SimpleMetrics.create(LOGGER);
+        REQUESTS = metrics.meter(METER_REQUESTS);
+        REQUEST_METRICS = new RequestMetrics(metrics);
+        metrics.gauge("requests.admitted", () -> sum(AdmissionController::getAdmitted));
+        metrics.gauge("requests.deferred", () -> sum(AdmissionController::getDeferred));
+        metrics.gauge("requests.rejected", () -> sum(AdmissionController::getRejected));
+      } else {
+        REQUESTS = null;
+        REQUEST_METRICS = null;
+      }
+    }
+
+    private static String sum(ToLongFunction<AdmissionController> counter) {
+      long sum = 0;
+      for (AdmissionController admissionController : ADMISSION_CONTROLLERS) {
+        sum += counter.applyAsLong(admissionController);
+      }
+      return String.valueOf(sum);
+    }
+  }
 }
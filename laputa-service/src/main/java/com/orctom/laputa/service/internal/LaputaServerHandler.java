@@ -2,8 +2,6 @@ package com.orctom.laputa.service.internal;
 
 import com.orctom.laputa.service.config.Configurator;
 import com.typesafe.config.Config;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufHolder;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
@@ -22,11 +20,14 @@ import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
 import io.netty.handler.codec.http.websocketx.WebSocketServerHandshakerFactory;
 import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 
+import static com.orctom.laputa.service.Constants.CFG_SERVER_PIPELINING_MAX_IN_FLIGHT;
 import static com.orctom.laputa.service.Constants.CFG_UPLOAD_DIR;
 import static com.orctom.laputa.service.Constants.CFG_WEBSOCKET_PATH;
 import static io.netty.handler.codec.http.HttpResponseStatus.CONTINUE;
@@ -39,15 +40,22 @@ public class LaputaServerHandler extends ChannelInboundHandlerAdapter {
   private static final int MAX_FRAME_PAYLOAD_LENGTH = 5 * 1024 * 1024;
 
   private static String webSocketPath;
+  private static int pipeliningMaxInFlight;
 
   private final boolean isUseSSL;
   private final LaputaRequestProcessor requestProcessor;
+  private final boolean pipelined;
 
   private WebSocketServerHandshaker handshaker;
+  private ResponseSequencer sequencer;
 
   static {
     Config config = Configurator.getInstance().getConfig();
     String uploadDir = config.getString(CFG_UPLOAD_DIR);
+    File dir = new File(uploadDir);
+    if (!dir.exists() && !dir.mkdirs()) {
+      LOGGER.warn("Failed to create `{}`: {}", CFG_UPLOAD_DIR, uploadDir);
+    }
 
     DiskFileUpload.deleteOnExitTemporaryFile = true;
     DiskFileUpload.baseDirectory = uploadDir;
@@ -55,25 +63,58 @@ public class LaputaServerHandler extends ChannelInboundHandlerAdapter {
     DiskAttribute.baseDirectory = uploadDir;
 
     webSocketPath = config.getString(CFG_WEBSOCKET_PATH);
+    pipeliningMaxInFlight = config.getInt(CFG_SERVER_PIPELINING_MAX_IN_FLIGHT);
   }
 
-  public LaputaServerHandler(boolean isUseSSL, LaputaRequestProcessor requestProcessor) {
+  /**
+   * @param pipelined whether requests can be pipelined on the connection, of which the responses are to be ordered,
+   *                  false for HTTP/2 streams.
+   */
+  public LaputaServerHandler(boolean isUseSSL, LaputaRequestProcessor requestProcessor, boolean pipelined) {
     this.isUseSSL = isUseSSL;
     this.requestProcessor = requestProcessor;
+    this.pipelined = pipelined;
+  }
+
+  @Override
+  public void handlerAdded(ChannelHandlerContext ctx) {
+    if (pipelined) {
+      sequencer = new ResponseSequencer(ctx.channel(), pipeliningMaxInFlight);
+    }
   }
 
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    if (null != sequencer) {
+      sequencer.close();
+    }
+    super.channelInactive(ctx);
+  }
+
+  /**
+   * Requests already read from the connection are still served, after which it's closed, done on its event loop.
+   * HTTP/2 streams are left to the GOAWAY of their connection.
+   */
+  void drain() {
+    if (null != sequencer) {
+      sequencer.drain();
+    }
+  }
+
+  /**
+   * Connections accepted just before the listeners were closed might have missed the drain,
+   * they are drained after the requests of their first read.
+   */
   @Override
   public void channelReadComplete(ChannelHandlerContext ctx) {
     ctx.flush();
+    if (requestProcessor.isDraining()) {
+      drain();
+    }
   }
 
   @Override
   public void channelRead(ChannelHandlerContext ctx, Object msg) {
-    ByteBuf byteBuf = null;
-    if (msg instanceof ByteBufHolder) {
-      byteBuf = ((ByteBufHolder) msg).content();
-    }
-
     try {
       if (msg instanceof FullHttpRequest) {
         handleHttpRequest(ctx, (FullHttpRequest) msg);
@@ -90,9 +131,7 @@ public class LaputaServerHandler extends ChannelInboundHandlerAdapter {
       LOGGER.error(e.getMessage(), e);
 
     } finally {
-      if (null != byteBuf) {
-        byteBuf.release();
-      }
+      ReferenceCountUtil.release(msg);
     }
   }
 
@@ -116,7 +155,13 @@ public class LaputaServerHandler extends ChannelInboundHandlerAdapter {
       return;
     }
 
-    requestProcessor.handleRequest(ctx, req);
+    if (MetricsEndpoint.isServedWithService(req)) {
+      ResponseSequencer.Slot slot = null == sequencer ? ResponseSequencer.UNORDERED : sequencer.reserve();
+      slot.respond(req, () -> MetricsEndpoint.respond(ctx, req));
+      return;
+    }
+
+    requestProcessor.handleRequest(ctx, req, sequencer);
   }
 
   private String getWebSocketLocation(FullHttpRequest req) {
@@ -1,54 +1,194 @@
 package com.orctom.laputa.service.internal;
 
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.config.MappingConfig;
+import com.typesafe.config.Config;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.cors.CorsConfig;
 import io.netty.handler.codec.http.cors.CorsHandler;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
+import io.netty.handler.codec.http2.Http2Codec;
+import io.netty.handler.codec.http2.Http2ServerDowngrader;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.CharsetUtil;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import static com.orctom.laputa.service.Constants.*;
+
+/**
+ * HTTP/1.1 connections and each HTTP/2 stream get the same handlers for requests,
+ * HTTP/2 streams are converted to and from HTTP/1.1 objects in their own child channels.
+ * <p>
+ * HTTP/2 is negotiated with ALPN over TLS, or detected by its connection preface over cleartext (h2c prior knowledge).
+ */
 class LaputaServerInitializer extends ChannelInitializer<SocketChannel> {
 
+  private static final byte[] HTTP2_PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(CharsetUtil.US_ASCII);
+
   private final SslContext sslContext;
   private final CorsConfig corsConfig;
   private final String webSocketPath;
   private final LaputaRequestProcessor requestProcessor;
+  private final ChannelGroup connections;
+  private final boolean http2OverTls;
+  private final boolean http2Cleartext;
+  private final int flushExplicitAfter;
+  private final boolean flushWhenNoReadInProgress;
+  private final ContentCompressor.Settings compression;
+
+  private final ChannelInitializer<Channel> http2StreamInitializer = new ChannelInitializer<Channel>() {
+    @Override
+    protected void initChannel(Channel ch) {
+      ChannelPipeline p = ch.pipeline();
+      p.addLast(new Http2ServerDowngrader());
+      p.addLast(new ContentCompressor(compression));
+      addRequestHandlers(p, false);
+    }
+  };
 
   LaputaServerInitializer(SslContext sslContext,
                           CorsConfig corsConfig,
                           String webSocketPath,
-                          LaputaRequestProcessor requestProcessor) {
+                          LaputaRequestProcessor requestProcessor,
+                          ChannelGroup connections,
+                          boolean http2Cleartext) {
     this.sslContext = sslContext;
     this.corsConfig = corsConfig;
     this.webSocketPath = webSocketPath;
     this.requestProcessor = requestProcessor;
+    this.connections = connections;
+    this.http2OverTls = null != sslContext &&
+        sslContext.applicationProtocolNegotiator().protocols().contains(ApplicationProtocolNames.HTTP_2);
+    this.http2Cleartext = null == sslContext && http2Cleartext;
+
+    Config config = Configurator.getInstance().getConfig();
+    this.flushExplicitAfter = config.getInt(CFG_SERVER_FLUSH_EXPLICIT_AFTER);
+    this.flushWhenNoReadInProgress = config.getBoolean(CFG_SERVER_FLUSH_WHEN_NO_READ_IN_PROGRESS);
+    this.compression = new ContentCompressor.Settings(
+        config.getBoolean(CFG_SERVER_COMPRESSION_ENABLED),
+        config.getInt(CFG_SERVER_COMPRESSION_LEVEL),
+        config.getBytes(CFG_SERVER_COMPRESSION_MIN_SIZE),
+        config.getStringList(CFG_SERVER_COMPRESSION_MEDIA_TYPES),
+        config.getStringList(CFG_SERVER_COMPRESSION_EXCLUDED_MEDIA_TYPES)
+    );
   }
 
   @Override
   public void initChannel(SocketChannel ch) {
+    connections.add(ch);
     ChannelPipeline p = ch.pipeline();
     p.addLast(new ReadTimeoutHandler(60, TimeUnit.SECONDS));
     if (sslContext != null) {
       p.addLast(sslContext.newHandler(ch.alloc()));
     }
-    p.addLast(new HttpContentCompressor(5));
+    p.addLast(new FlushConsolidationHandler(flushExplicitAfter, flushWhenNoReadInProgress));
+
+    if (http2OverTls) {
+      p.addLast(new ProtocolNegotiationHandler());
+    } else if (http2Cleartext) {
+      p.addLast(new PriorKnowledgeDetector());
+    } else {
+      configureHttp1(p);
+    }
+  }
+
+  private void configureHttp1(ChannelPipeline p) {
     p.addLast(new HttpServerCodec());
-    p.addLast(new HttpObjectAggregator(1048576));
+    p.addLast(new ContentCompressor(compression));
+    addRequestHandlers(p, true);
+  }
+
+  private void configureHttp2(ChannelPipeline p) {
+    p.addLast(new Http2Codec(true, http2StreamInitializer));
+  }
+
+  /**
+   * @param http1 HTTP/1.1 connections support websocket and pipelining, HTTP/2 streams don't
+   */
+  private void addRequestHandlers(ChannelPipeline p, boolean http1) {
+    if (MappingConfig.getInstance().isStreamingMappingsPresent()) {
+      p.addLast(new StreamingRequestHandler());
+    }
+    p.addLast(new HttpObjectAggregator(Configurator.getInstance().getMaxContentLength()));
     p.addLast(new ChunkedWriteHandler());
     if (null != corsConfig) {
       p.addLast(new CorsHandler(corsConfig));
     }
-    p.addLast(new WebSocketServerCompressionHandler());
-    p.addLast(new WebSocketServerProtocolHandler(webSocketPath, null, true));
-    p.addLast(new LaputaServerHandler(null != sslContext, requestProcessor));
+    if (http1) {
+      p.addLast(new WebSocketServerCompressionHandler());
+      p.addLast(new WebSocketServerProtocolHandler(webSocketPath, null, true));
+    }
+    p.addLast(new LaputaServerHandler(null != sslContext, requestProcessor, http1));
+  }
+
+  private class ProtocolNegotiationHandler extends ApplicationProtocolNegotiationHandler {
+
+    ProtocolNegotiationHandler() {
+      super(ApplicationProtocolNames.HTTP_1_1);
+    }
+
+    @Override
+    protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+      if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+        configureHttp2(ctx.pipeline());
+        return;
+      }
+
+      if (ApplicationProtocolNames.HTTP_1_1.equals(protocol)) {
+        configureHttp1(ctx.pipeline());
+        return;
+      }
+
+      throw new IllegalStateException("Unsupported protocol: " + protocol);
+    }
+  }
+
+  /**
+   * Looks at the first bytes of the connection, the buffered ones are passed on when removed.
+   */
+  private class PriorKnowledgeDetector extends ByteToMessageDecoder {
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+      int length = Math.min(in.readableBytes(), HTTP2_PREFACE.length);
+      int start = in.readerIndex();
+      for (int i = 0; i < length; i++) {
+        if (HTTP2_PREFACE[i] != in.getByte(start + i)) {
+          configure(ctx, false);
+          return;
+        }
+      }
+
+      if (length == HTTP2_PREFACE.length) {
+        configure(ctx, true);
+      }
+    }
+
+    private void configure(ChannelHandlerContext ctx, boolean http2) {
+      ChannelPipeline p = ctx.pipeline();
+      if (http2) {
+        configureHttp2(p);
+      } else {
+        configureHttp1(p);
+      }
+      p.remove(this);
+    }
   }
 }
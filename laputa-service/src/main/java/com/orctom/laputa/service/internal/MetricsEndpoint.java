@@ -0,0 +1,117 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.util.HttpDateClock;
+import com.typesafe.config.Config;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.orctom.laputa.service.Constants.*;
+import static io.netty.handler.codec.http.HttpHeaderNames.*;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * Serves the metrics rendered by {@link OpenMetricsRenderer} at `server.metrics.path`,
+ * either on the service ports, in turn with the other requests of the connection,
+ * or on `server.metrics.port` by the admin event loops, apart from the service traffic.
+ */
+class MetricsEndpoint {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MetricsEndpoint.class);
+
+  private static final String ALLOWED_METHODS = HttpMethod.GET + ", " + HttpMethod.HEAD;
+
+  private static final boolean ENABLED;
+  private static final String PATH;
+  private static final boolean SEPARATE_PORT;
+
+  private static final OpenMetricsRenderer RENDERER = new OpenMetricsRenderer();
+
+  static {
+    Config config = Configurator.getInstance().getConfig();
+    ENABLED = config.getBoolean(CFG_SERVER_METRICS_ENABLED);
+    PATH = config.getString(CFG_SERVER_METRICS_PATH);
+    SEPARATE_PORT = config.hasPath(CFG_SERVER_METRICS_PORT);
+  }
+
+  static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * @return whether it's to be served on the service ports, and the request is for it
+   */
+  static boolean isServedWithService(HttpRequest req) {
+    return ENABLED && !SEPARATE_PORT && isRequested(req);
+  }
+
+  private static boolean isRequested(HttpRequest req) {
+    String uri = req.uri();
+    int query = uri.indexOf('?');
+    int length = query < 0 ? uri.length() : query;
+    return PATH.length() == length && uri.startsWith(PATH);
+  }
+
+  static void respond(ChannelHandlerContext ctx, FullHttpRequest req) {
+    FullHttpResponse res;
+    HttpMethod method = req.method();
+    if (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)) {
+      res = new DefaultFullHttpResponse(HTTP_1_1, HttpResponseStatus.OK, RENDERER.render(ctx.alloc()));
+      res.headers().set(CONTENT_TYPE, OpenMetricsRenderer.CONTENT_TYPE);
+      res.headers().set(CACHE_CONTROL, HEADER_CACHE_CONTROL_NO_CACHE);
+    } else {
+      res = new DefaultFullHttpResponse(HTTP_1_1, HttpResponseStatus.METHOD_NOT_ALLOWED);
+      res.headers().set(ALLOW, ALLOWED_METHODS);
+    }
+    write(ctx, req, res);
+  }
+
+  private static void write(ChannelHandlerContext ctx, FullHttpRequest req, FullHttpResponse res) {
+    res.headers().set(DATE, HttpDateClock.now());
+    HttpUtil.setContentLength(res, res.content().readableBytes());
+    if (HttpUtil.isKeepAlive(req)) {
+      res.headers().set(CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+      ctx.write(res);
+    } else {
+      res.headers().set(CONNECTION, HttpHeaderValues.CLOSE);
+      ctx.writeAndFlush(res).addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+
+  /**
+   * The only handler of the requests on the separate port
+   */
+  static class Handler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest req) {
+      if (isRequested(req)) {
+        respond(ctx, req);
+      } else {
+        write(ctx, req, new DefaultFullHttpResponse(HTTP_1_1, HttpResponseStatus.NOT_FOUND));
+      }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+      ctx.flush();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      LOGGER.debug(cause.getMessage(), cause);
+      ctx.close();
+    }
+  }
+}
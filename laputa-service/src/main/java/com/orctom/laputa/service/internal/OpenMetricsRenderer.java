@@ -0,0 +1,514 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.utils.SimpleHistogram;
+import com.orctom.laputa.utils.SimpleMeter;
+import com.orctom.laputa.utils.SimpleMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+import io.netty.buffer.Unpooled;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the metrics of the process in the OpenMetrics text format, to be scraped by Prometheus:
+ * the meters, gauges and histograms of all the {@link SimpleMetrics}, latencies of the requests by route and status,
+ * the health of the event loops, the pooled buffers of netty, and the memory, GC and buffer pools of the JVM.
+ * <p>
+ * The text is rendered into a buffer kept across the scrapes, numbers are written as ASCII digits in place,
+ * then copied out as the body of the response, so a scrape allocates little more than the response itself.
+ */
+class OpenMetricsRenderer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OpenMetricsRenderer.class);
+
+  static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+  private static final String NAMESPACE = "laputa_";
+  private static final String COUNTER = "counter";
+  private static final String GAUGE = "gauge";
+  private static final String HISTOGRAM = "histogram";
+  private static final String SUMMARY = "summary";
+
+  private static final long[] LATENCY_BUCKETS = {
+      100_000, 250_000, 500_000,
+      1_000_000, 2_500_000, 5_000_000,
+      10_000_000, 25_000_000, 50_000_000,
+      100_000_000, 250_000_000, 500_000_000,
+      1_000_000_000, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+  };
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  private final ByteBuf buffer = Unpooled.buffer(64 * 1024);
+  private final byte[] digits = new byte[20];
+  private final long[] bucketCounts = new long[LATENCY_BUCKETS.length];
+  private final Set<String> families = new HashSet<>();
+  private final Map<String, String> names = new HashMap<>();
+
+  private final List<GarbageCollectorMXBean> garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+  private final List<BufferPoolMXBean> bufferPools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+
+  /**
+   * @param alloc of the channel, the pooled buffers of which are rendered, and by which the returned one is allocated
+   */
+  synchronized ByteBuf render(ByteBufAllocator alloc) {
+    buffer.clear();
+    families.clear();
+
+    renderRequests();
+    renderSimpleMetrics();
+    renderEventLoops();
+    renderAllocator(alloc);
+    renderJvm();
+    ascii("# EOF\n");
+
+    int length = buffer.readableBytes();
+    return alloc.buffer(length).writeBytes(buffer, buffer.readerIndex(), length);
+  }
+
+  /**
+   * The phases never recorded for a route and status, such as invoking for the unrouted ones, are skipped
+   */
+  private void renderRequests() {
+    RequestMetrics requestMetrics = LaputaRequestProcessor.getRequestMetrics();
+    if (null == requestMetrics) {
+      return;
+    }
+
+    String name = NAMESPACE + "request_duration_seconds";
+    family(name, HISTOGRAM, "Latencies of the phases of the requests, by route and response status");
+    requestMetrics.forEach((route, status, phase, histogram) -> {
+      long count = histogram.getCountsAtOrBelow(LATENCY_BUCKETS, bucketCounts);
+      if (0 == count) {
+        return;
+      }
+      for (int i = 0; i <= LATENCY_BUCKETS.length; i++) {
+        requestLabels(name, "_bucket", route, status, phase);
+        bucket(i, count);
+      }
+      requestLabels(name, "_count", route, status, phase);
+      ascii("} ");
+      number(count);
+      newLine();
+      requestLabels(name, "_sum", route, status, phase);
+      ascii("} ");
+      seconds(histogram.getSum());
+      newLine();
+    });
+  }
+
+  private void requestLabels(String name, String suffix, String route, int status, RequestMetrics.Phase phase) {
+    ascii(name);
+    ascii(suffix);
+    ascii("{route=\"");
+    labelValue(route);
+    ascii("\",status=\"");
+    number(status);
+    ascii("\",phase=\"");
+    ascii(phase.getKey());
+    buffer.writeByte('"');
+  }
+
+  /**
+   * Ends the labels of a bucket sample with `le`, the last one is `+Inf`, as filled in {@link #bucketCounts}
+   */
+  private void bucket(int index, long count) {
+    if (index < LATENCY_BUCKETS.length) {
+      ascii(",le=\"");
+      seconds(LATENCY_BUCKETS[index]);
+      ascii("\"} ");
+      number(bucketCounts[index]);
+    } else {
+      ascii(",le=\"+Inf\"} ");
+      number(count);
+    }
+    newLine();
+  }
+
+  /**
+   * Meters as counters, gauges as they are if numeric, histograms other than the ones of the requests as summaries.
+   * Metrics of the same name in more than one of them are rendered only once.
+   */
+  private void renderSimpleMetrics() {
+    for (SimpleMetrics metrics : SimpleMetrics.getInstances()) {
+      for (Map.Entry<String, SimpleMeter> entry : metrics.getMeters().entrySet()) {
+        if (isLabelled(entry.getKey())) {
+          continue;
+        }
+        String name = nameOf(entry.getKey());
+        if (family(name, COUNTER, null)) {
+          sample(name, "_total", entry.getValue().getCount());
+        }
+      }
+
+      for (Map.Entry<String, Callable<String>> entry : metrics.getGauges().entrySet()) {
+        String value = gaugeValue(entry.getKey(), entry.getValue());
+        String name = nameOf(entry.getKey());
+        if (null != value && family(name, GAUGE, null)) {
+          ascii(name);
+          buffer.writeByte(' ');
+          ascii(value);
+          newLine();
+        }
+      }
+
+      for (Map.Entry<String, SimpleHistogram> entry : metrics.getHistograms().entrySet()) {
+        if (isLabelled(entry.getKey())) {
+          continue;
+        }
+        String name = nameOf(entry.getKey());
+        if (family(name, SUMMARY, null)) {
+          summary(name, entry.getValue().snapshot());
+        }
+      }
+    }
+  }
+
+  /**
+   * @return whether it's rendered with labels, apart from the other metrics
+   */
+  private static boolean isLabelled(String key) {
+    return key.startsWith(RequestMetrics.PREFIX) || key.startsWith(EventLoopMonitor.PREFIX);
+  }
+
+  private String gaugeValue(String key, Callable<String> gauge) {
+    try {
+      String value = gauge.call();
+      if (null == value) {
+        return null;
+      }
+      value = value.trim();
+      Double.parseDouble(value);
+      return value;
+    } catch (Exception e) {
+      LOGGER.debug("Skipped non-numeric gauge: {}, {}", key, e.getMessage());
+      return null;
+    }
+  }
+
+  private void summary(String name, SimpleHistogram.Snapshot snapshot) {
+    for (double quantile : QUANTILES) {
+      ascii(name);
+      ascii("{quantile=\"");
+      ascii(Double.toString(quantile));
+      ascii("\"} ");
+      number(snapshot.getValueAtPercentile(quantile * 100));
+      newLine();
+    }
+    sample(name, "_count", snapshot.getCount());
+    sample(name, "_sum", snapshot.getSum());
+  }
+
+  private void renderEventLoops() {
+    if (!EventLoopMonitor.isWatching()) {
+      return;
+    }
+
+    String pending = NAMESPACE + "event_loop_pending_tasks";
+    family(pending, GAUGE, "Tasks queued on the event loops, as counted by the latest probes");
+    EventLoopMonitor.forEach((group, index, loop) -> {
+      loopLabels(pending, "", group, index);
+      ascii("} ");
+      number(loop.getPendingTasks());
+      newLine();
+    });
+
+    String blocked = NAMESPACE + "event_loop_blocked";
+    family(blocked, COUNTER, "Times the event loops have been found blocked");
+    EventLoopMonitor.forEach((group, index, loop) -> {
+      loopLabels(blocked, "_total", group, index);
+      ascii("} ");
+      number(loop.getBlocked().getCount());
+      newLine();
+    });
+
+    String delay = NAMESPACE + "event_loop_delay_seconds";
+    family(delay, HISTOGRAM, "How long the probes waited to be run by the event loops");
+    EventLoopMonitor.forEach((group, index, loop) -> {
+      long count = loop.getDelay().getCountsAtOrBelow(LATENCY_BUCKETS, bucketCounts);
+      for (int i = 0; i <= LATENCY_BUCKETS.length; i++) {
+        loopLabels(delay, "_bucket", group, index);
+        bucket(i, count);
+      }
+      loopLabels(delay, "_count", group, index);
+      ascii("} ");
+      number(count);
+      newLine();
+      loopLabels(delay, "_sum", group, index);
+      ascii("} ");
+      seconds(loop.getDelay().getSum());
+      newLine();
+    });
+  }
+
+  private void loopLabels(String name, String suffix, String group, int index) {
+    ascii(name);
+    ascii(suffix);
+    ascii("{group=\"");
+    labelValue(group);
+    ascii("\",loop=\"");
+    number(index);
+    buffer.writeByte('"');
+  }
+
+  private void renderAllocator(ByteBufAllocator alloc) {
+    if (!(alloc instanceof PooledByteBufAllocator)) {
+      return;
+    }
+
+    PooledByteBufAllocatorMetric metric = ((PooledByteBufAllocator) alloc).metric();
+    String used = "netty_allocator_used_bytes";
+    family(used, GAUGE, "Memory held by the chunks of the pooled allocator");
+    typedSample(used, "", "heap", metric.usedHeapMemory());
+    typedSample(used, "", "direct", metric.usedDirectMemory());
+
+    String arenas = "netty_allocator_arenas";
+    family(arenas, GAUGE, null);
+    typedSample(arenas, "", "heap", metric.numHeapArenas());
+    typedSample(arenas, "", "direct", metric.numDirectArenas());
+
+    String caches = "netty_allocator_thread_local_caches";
+    family(caches, GAUGE, null);
+    sample(caches, "", metric.numThreadLocalCaches());
+
+    String allocations = "netty_allocator_allocations";
+    family(allocations, COUNTER, null);
+    typedSample(allocations, "_total", "heap", sumOfAllocations(metric.heapArenas()));
+    typedSample(allocations, "_total", "direct", sumOfAllocations(metric.directArenas()));
+
+    String active = "netty_allocator_active_allocations";
+    family(active, GAUGE, null);
+    typedSample(active, "", "heap", sumOfActiveAllocations(metric.heapArenas()));
+    typedSample(active, "", "direct", sumOfActiveAllocations(metric.directArenas()));
+  }
+
+  private static long sumOfAllocations(List<PoolArenaMetric> arenas) {
+    long sum = 0;
+    for (PoolArenaMetric arena : arenas) {
+      sum += arena.numAllocations();
+    }
+    return sum;
+  }
+
+  private static long sumOfActiveAllocations(List<PoolArenaMetric> arenas) {
+    long sum = 0;
+    for (PoolArenaMetric arena : arenas) {
+      sum += arena.numActiveAllocations();
+    }
+    return sum;
+  }
+
+  private void renderJvm() {
+    MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+    memory("jvm_memory_used_bytes", heap.getUsed(), nonHeap.getUsed());
+    memory("jvm_memory_committed_bytes", heap.getCommitted(), nonHeap.getCommitted());
+    memory("jvm_memory_max_bytes", heap.getMax(), nonHeap.getMax());
+
+    String collections = "jvm_gc_collections";
+    family(collections, COUNTER, null);
+    for (GarbageCollectorMXBean gc : garbageCollectors) {
+      gcSample(collections, gc.getName(), Math.max(0, gc.getCollectionCount()));
+    }
+
+    String collectionTime = "jvm_gc_collection_seconds";
+    family(collectionTime, COUNTER, "Accumulated time spent on collections");
+    for (GarbageCollectorMXBean gc : garbageCollectors) {
+      ascii(collectionTime);
+      ascii("_total{gc=\"");
+      labelValue(gc.getName());
+      ascii("\"} ");
+      seconds(TimeUnit.MILLISECONDS.toNanos(Math.max(0, gc.getCollectionTime())));
+      newLine();
+    }
+
+    String bufferPoolUsed = "jvm_buffer_pool_used_bytes";
+    family(bufferPoolUsed, GAUGE, "Direct and mapped buffers of the JVM, including the ones of the static contents");
+    for (BufferPoolMXBean pool : bufferPools) {
+      ascii(bufferPoolUsed);
+      ascii("{pool=\"");
+      labelValue(pool.getName());
+      ascii("\"} ");
+      number(pool.getMemoryUsed());
+      newLine();
+    }
+
+    String threads = "jvm_threads";
+    family(threads, GAUGE, null);
+    sample(threads, "", ManagementFactory.getThreadMXBean().getThreadCount());
+  }
+
+  private void memory(String name, long heap, long nonHeap) {
+    family(name, GAUGE, null);
+    if (heap >= 0) {
+      areaSample(name, "heap", heap);
+    }
+    if (nonHeap >= 0) {
+      areaSample(name, "nonheap", nonHeap);
+    }
+  }
+
+  private void areaSample(String name, String area, long value) {
+    ascii(name);
+    ascii("{area=\"");
+    ascii(area);
+    ascii("\"} ");
+    number(value);
+    newLine();
+  }
+
+  private void gcSample(String name, String gc, long value) {
+    ascii(name);
+    ascii("_total{gc=\"");
+    labelValue(gc);
+    ascii("\"} ");
+    number(value);
+    newLine();
+  }
+
+  private void typedSample(String name, String suffix, String type, long value) {
+    ascii(name);
+    ascii(suffix);
+    ascii("{type=\"");
+    ascii(type);
+    ascii("\"} ");
+    number(value);
+    newLine();
+  }
+
+  /**
+   * @return false if the family has been rendered
+   */
+  private boolean family(String name, String type, String help) {
+    if (!families.add(name)) {
+      return false;
+    }
+
+    ascii("# TYPE ");
+    ascii(name);
+    buffer.writeByte(' ');
+    ascii(type);
+    newLine();
+    if (null != help) {
+      ascii("# HELP ");
+      ascii(name);
+      buffer.writeByte(' ');
+      ascii(help);
+      newLine();
+    }
+    return true;
+  }
+
+  private void sample(String name, String suffix, long value) {
+    ascii(name);
+    ascii(suffix);
+    buffer.writeByte(' ');
+    number(value);
+    newLine();
+  }
+
+  /**
+   * `static.cache.hits` to `laputa_static_cache_hits`
+   */
+  private String nameOf(String key) {
+    String name = names.get(key);
+    if (null != name) {
+      return name;
+    }
+
+    StringBuilder builder = new StringBuilder(NAMESPACE.length() + key.length()).append(NAMESPACE);
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || '_' == c;
+      builder.append(valid ? c : '_');
+    }
+    name = builder.toString();
+    names.put(key, name);
+    return name;
+  }
+
+  private void ascii(CharSequence value) {
+    ByteBufUtil.writeAscii(buffer, value);
+  }
+
+  private void newLine() {
+    buffer.writeByte('\n');
+  }
+
+  private void labelValue(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if ('\\' == c || '"' == c || '\n' == c || c > 127) {
+        ByteBufUtil.writeUtf8(buffer, value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+        return;
+      }
+    }
+    ascii(value);
+  }
+
+  private void number(long value) {
+    if (value < 0) {
+      if (Long.MIN_VALUE == value) {
+        ascii(Long.toString(value));
+        return;
+      }
+      buffer.writeByte('-');
+      value = -value;
+    }
+
+    int length = 0;
+    do {
+      digits[length++] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+    while (length > 0) {
+      buffer.writeByte(digits[--length]);
+    }
+  }
+
+  /**
+   * Exact, as the integral seconds, then the nanos without the trailing zeros
+   */
+  private void seconds(long nanos) {
+    number(nanos / 1_000_000_000L);
+    long fraction = Math.abs(nanos % 1_000_000_000L);
+    if (0 == fraction) {
+      return;
+    }
+
+    int scale = 9;
+    while (0 == fraction % 10) {
+      fraction /= 10;
+      scale--;
+    }
+    buffer.writeByte('.');
+    for (int zeros = scale - digitsOf(fraction); zeros > 0; zeros--) {
+      buffer.writeByte('0');
+    }
+    number(fraction);
+  }
+
+  private static int digitsOf(long value) {
+    int digits = 1;
+    while (value >= 10) {
+      value /= 10;
+      digits++;
+    }
+    return digits;
+  }
+}
@@ -0,0 +1,132 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.exception.RequestProcessingException;
+import com.typesafe.config.Config;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.orctom.laputa.service.Constants.CFG_SERVER_PUBLISHER_MAX_ELEMENTS;
+import static com.orctom.laputa.service.Constants.CFG_SERVER_PUBLISHER_TIMEOUT;
+
+/**
+ * Only loaded when reactive-streams is on the classpath, see {@link AsyncResults}.
+ * <p>
+ * At most `server.publisher.maxElements` are requested, the request fails if the publisher has more,
+ * or has not completed in `server.publisher.timeout`. The subscription is cancelled once the future is
+ * completed other than by the publisher, such as failed so, or cancelled as the connection is closed.
+ */
+final class PublisherAdapter {
+
+  private static final int MAX_ELEMENTS;
+  private static final long TIMEOUT_NANOS;
+
+  static {
+    Config config = Configurator.getInstance().getConfig();
+    MAX_ELEMENTS = config.getInt(CFG_SERVER_PUBLISHER_MAX_ELEMENTS);
+    TIMEOUT_NANOS = config.getDuration(CFG_SERVER_PUBLISHER_TIMEOUT, TimeUnit.NANOSECONDS);
+  }
+
+  private PublisherAdapter() {
+  }
+
+  static boolean isPublisher(Object result) {
+    return result instanceof Publisher;
+  }
+
+  static CompletableFuture<List<Object>> collect(Object result) {
+    return collect(result, MAX_ELEMENTS, TIMEOUT_NANOS);
+  }
+
+  /**
+   * @param timeoutNanos 0 means no timeout
+   */
+  @SuppressWarnings("unchecked")
+  static CompletableFuture<List<Object>> collect(Object result, int maxElements, long timeoutNanos) {
+    CollectingSubscriber subscriber = new CollectingSubscriber(maxElements);
+    if (timeoutNanos > 0) {
+      ScheduledFuture<?> timeout = GlobalEventExecutor.INSTANCE.schedule(
+          () -> subscriber.future.completeExceptionally(
+              new TimeoutException("Publisher not completed in " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms")),
+          timeoutNanos,
+          TimeUnit.NANOSECONDS
+      );
+      subscriber.future.whenComplete((elements, error) -> timeout.cancel(false));
+    }
+    ((Publisher<Object>) result).subscribe(subscriber);
+    return subscriber.future;
+  }
+
+  /**
+   * Signals are serialized by the publisher per the spec,
+   * the list is handed over through the future once completed.
+   */
+  private static class CollectingSubscriber implements Subscriber<Object> {
+
+    private final CompletableFuture<List<Object>> future = new CompletableFuture<>();
+    private final List<Object> elements = new ArrayList<>();
+    private final int maxElements;
+    private volatile Subscription subscription;
+
+    CollectingSubscriber(int maxElements) {
+      this.maxElements = maxElements;
+      future.whenComplete((value, error) -> {
+        if (null != error) {
+          cancel();
+        }
+      });
+    }
+
+    /**
+     * One more than the max is requested, to tell if there are more
+     */
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+      if (future.isDone()) {
+        subscription.cancel();
+        return;
+      }
+      subscription.request(maxElements + 1L);
+    }
+
+    private void cancel() {
+      Subscription s = subscription;
+      if (null != s) {
+        s.cancel();
+      }
+    }
+
+    @Override
+    public void onNext(Object element) {
+      if (future.isDone()) {
+        return;
+      }
+      if (elements.size() == maxElements) {
+        future.completeExceptionally(
+            new RequestProcessingException("Publisher has more than " + maxElements + " elements"));
+        return;
+      }
+      elements.add(element);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      future.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      future.complete(elements);
+    }
+  }
+}
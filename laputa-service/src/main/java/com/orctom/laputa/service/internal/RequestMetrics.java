@@ -0,0 +1,154 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.model.RequestMapping;
+import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.service.model.RouteMatch;
+import com.orctom.laputa.service.model.StaticMapping;
+import com.orctom.laputa.utils.SimpleHistogram;
+import com.orctom.laputa.utils.SimpleMetrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Latency histograms of the requests, in nanos, keyed by the route pattern and the response status,
+ * one for each of the phases, and one for the whole request from being received to being written.
+ * <p>
+ * The histograms of a route and status are created the first time it's responded,
+ * afterwards recording is a couple of lookups by identity and index, and doesn't allocate.
+ */
+class RequestMetrics {
+
+  static final String PREFIX = "latency.";
+  private static final String UNROUTED = "unrouted";
+  private static final String STATIC = "static ";
+
+  private static final long LOWEST_DISCERNIBLE_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+  private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private static final int MIN_STATUS = 100;
+  private static final int MAX_STATUS = 599;
+
+  enum Phase {
+    ROUTING,
+    BINDING,
+    INVOKE,
+    TRANSLATE,
+    WRITE,
+    TOTAL;
+
+    private final String key = name().toLowerCase();
+
+    String getKey() {
+      return key;
+    }
+  }
+
+  @FunctionalInterface
+  interface Series {
+
+    void accept(String route, int status, Phase phase, SimpleHistogram histogram);
+  }
+
+  private final SimpleMetrics metrics;
+  private final Map<Object, Route> routes = new ConcurrentHashMap<>();
+  private final Route unrouted;
+
+  RequestMetrics(SimpleMetrics metrics) {
+    this.metrics = metrics;
+    this.unrouted = new Route(UNROUTED);
+  }
+
+  /**
+   * @param routeMatch null if not routed
+   * @param writeNanos spent on translating the response and writing it to the channel
+   * @param totalNanos since the request was received
+   */
+  void record(RouteMatch routeMatch, ResponseWrapper responseWrapper, long writeNanos, long totalNanos) {
+    SimpleHistogram[] histograms = getRoute(routeMatch).getHistograms(responseWrapper.getStatus().code());
+    histograms[Phase.ROUTING.ordinal()].record(responseWrapper.getRoutingNanos());
+    if (responseWrapper.getInvokeNanos() > 0) {
+      histograms[Phase.BINDING.ordinal()].record(responseWrapper.getBindingNanos());
+      histograms[Phase.INVOKE.ordinal()].record(responseWrapper.getInvokeNanos());
+    }
+    if (responseWrapper.getTranslateNanos() > 0) {
+      histograms[Phase.TRANSLATE.ordinal()].record(responseWrapper.getTranslateNanos());
+    }
+    histograms[Phase.WRITE.ordinal()].record(writeNanos);
+    histograms[Phase.TOTAL.ordinal()].record(totalNanos);
+  }
+
+  /**
+   * Visits the histograms created so far, grouped by route then status
+   */
+  void forEach(Series series) {
+    unrouted.forEach(series);
+    routes.values().forEach(route -> route.forEach(series));
+  }
+
+  private Route getRoute(RouteMatch routeMatch) {
+    if (null == routeMatch) {
+      return unrouted;
+    }
+
+    Object key = null != routeMatch.getMapping() ? routeMatch.getMapping() : routeMatch.getStaticMapping();
+    if (null == key) {
+      return unrouted;
+    }
+
+    Route route = routes.get(key);
+    if (null != route) {
+      return route;
+    }
+    return routes.computeIfAbsent(key, k -> new Route(getName(k)));
+  }
+
+  private static String getName(Object key) {
+    if (key instanceof RequestMapping) {
+      RequestMapping mapping = (RequestMapping) key;
+      return mapping.getHttpMethod().substring(1).toUpperCase() + " " + mapping.getUriPattern();
+    }
+    return STATIC + ((StaticMapping) key).getUri();
+  }
+
+  private class Route {
+
+    private final String name;
+    private final AtomicReferenceArray<SimpleHistogram[]> byStatus =
+        new AtomicReferenceArray<>(MAX_STATUS - MIN_STATUS + 1);
+
+    private Route(String name) {
+      this.name = name;
+    }
+
+    private SimpleHistogram[] getHistograms(int status) {
+      int index = Math.min(Math.max(status, MIN_STATUS), MAX_STATUS) - MIN_STATUS;
+      SimpleHistogram[] histograms = byStatus.get(index);
+      if (null != histograms) {
+        return histograms;
+      }
+
+      histograms = new SimpleHistogram[Phase.values().length];
+      for (Phase phase : Phase.values()) {
+        String key = PREFIX + phase.key + "." + name + "." + (index + MIN_STATUS);
+        histograms[phase.ordinal()] = metrics.histogram(key, LOWEST_DISCERNIBLE_NANOS, HIGHEST_TRACKABLE_NANOS);
+      }
+      byStatus.compareAndSet(index, null, histograms);
+      return byStatus.get(index);
+    }
+
+    private void forEach(Series series) {
+      for (int index = 0; index < byStatus.length(); index++) {
+        SimpleHistogram[] histograms = byStatus.get(index);
+        if (null == histograms) {
+          continue;
+        }
+        for (Phase phase : Phase.values()) {
+          series.accept(name, index + MIN_STATUS, phase, histograms[phase.ordinal()]);
+        }
+      }
+    }
+  }
+}
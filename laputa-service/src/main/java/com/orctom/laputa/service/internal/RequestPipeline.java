@@ -0,0 +1,118 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.filter.Filter;
+import com.orctom.laputa.service.filter.FilterChain;
+import com.orctom.laputa.service.model.RequestMapping;
+import com.orctom.laputa.service.model.RequestWrapper;
+import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.service.processor.RequestProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The request processors, the filters and the handler, linked up once per route at startup.
+ * <p>
+ * Processors run in order till one of them has the content ready, then the filters applied to the route,
+ * then the handler. Requests not routed go through the filters that are not limited to any paths.
+ */
+class RequestPipeline {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RequestPipeline.class);
+
+  private static final PathMatcher PATH_MATCHER = new AntPathMatcher();
+
+  private final Map<RequestMapping, FilterChain> chains = new IdentityHashMap<>();
+  private final FilterChain unrouted;
+
+  RequestPipeline(List<RequestProcessor> processors,
+                  List<Filter> filters,
+                  DefaultRequestProcessor handler,
+                  Collection<RequestMapping> mappings) {
+    for (RequestMapping mapping : mappings) {
+      chains.put(mapping, link(processors, filters, handler, mapping));
+    }
+    unrouted = link(processors, filters, handler, null);
+  }
+
+  /**
+   * @param mapping null if not routed
+   */
+  FilterChain getChain(RequestMapping mapping) {
+    if (null == mapping) {
+      return unrouted;
+    }
+
+    FilterChain chain = chains.get(mapping);
+    return null == chain ? unrouted : chain;
+  }
+
+  private static FilterChain link(List<RequestProcessor> processors,
+                                  List<Filter> filters,
+                                  DefaultRequestProcessor handler,
+                                  RequestMapping mapping) {
+    FilterChain chain = handler::service;
+
+    List<Filter> applied = new ArrayList<>();
+    for (int i = filters.size() - 1; i >= 0; i--) {
+      Filter filter = filters.get(i);
+      if (isApplied(filter, mapping)) {
+        chain = new LaputaFilterChain(filter, chain);
+        applied.add(0, filter);
+      }
+    }
+
+    for (int i = processors.size() - 1; i >= 0; i--) {
+      chain = new ProcessorLink(processors.get(i), chain);
+    }
+
+    if (null != mapping && !applied.isEmpty() && LOGGER.isDebugEnabled()) {
+      LOGGER.debug("Filters of {}: {}", mapping.getUriPattern(), applied);
+    }
+    return chain;
+  }
+
+  private static boolean isApplied(Filter filter, RequestMapping mapping) {
+    String[] paths = filter.getPaths();
+    if (null == paths || 0 == paths.length) {
+      return true;
+    }
+    if (null == mapping) {
+      return false;
+    }
+
+    String uriPattern = mapping.getUriPattern();
+    for (String path : paths) {
+      if (PATH_MATCHER.match(path, uriPattern)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static class ProcessorLink implements FilterChain {
+
+    private final RequestProcessor processor;
+    private final FilterChain next;
+
+    ProcessorLink(RequestProcessor processor, FilterChain next) {
+      this.processor = processor;
+      this.next = next;
+    }
+
+    @Override
+    public void doFilter(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
+      processor.handleRequest(requestWrapper, responseWrapper);
+      if (!responseWrapper.hasContent()) {
+        next.doFilter(requestWrapper, responseWrapper);
+      }
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the responses of pipelined HTTP/1.1 requests on one connection in the order the requests were received,
+ * as requests dispatched to other threads can be done in any order.
+ * <p>
+ * Each request reserves a {@link Slot} when taken, a response ready ahead of its turn is held,
+ * and written right after the one before it. Reading from the connection is paused
+ * while more than `maxInFlight` requests are not responded yet, so held responses can not pile up without bound.
+ * <p>
+ * Once draining, reading is stopped for good, the last response of the requests received is sent with
+ * `Connection: close`, and the connection is closed after it's written.
+ * <p>
+ * Everything is done on the event loop of the connection.
+ */
+class ResponseSequencer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResponseSequencer.class);
+
+  /**
+   * For connections of which the responses are not ordered, such as HTTP/2 streams
+   */
+  static final Slot UNORDERED = (request, writer) -> writer.run();
+
+  private final Channel channel;
+  private final int maxInFlight;
+  private final IntObjectMap<Runnable> held = new IntObjectHashMap<>();
+
+  private int reserved;
+  private int next;
+  private boolean closed;
+  private boolean draining;
+
+  ResponseSequencer(Channel channel, int maxInFlight) {
+    this.channel = channel;
+    this.maxInFlight = maxInFlight;
+  }
+
+  Slot reserve() {
+    int sequence = reserved++;
+    if (reserved - next > maxInFlight && channel.config().isAutoRead()) {
+      LOGGER.debug("Pausing reading, {} requests in flight: {}", reserved - next, channel);
+      channel.config().setAutoRead(false);
+    }
+    return (request, writer) -> respond(sequence, request, writer);
+  }
+
+  private void respond(int sequence, ReferenceCounted request, Runnable writer) {
+    if (closed) {
+      writer.run();
+      return;
+    }
+
+    if (sequence != next) {
+      request.retain();
+      held.put(sequence, () -> {
+        try {
+          markIfLast(request);
+          writer.run();
+        } finally {
+          request.release();
+        }
+      });
+      return;
+    }
+
+    markIfLast(request);
+    write(writer);
+    Runnable heldWriter;
+    while (null != (heldWriter = held.remove(next))) {
+      write(heldWriter);
+    }
+
+    if (draining) {
+      closeIfDrained();
+    } else if (!channel.config().isAutoRead() && reserved - next <= maxInFlight) {
+      channel.config().setAutoRead(true);
+    }
+  }
+
+  /**
+   * Has the response of the last request received while draining written with `Connection: close`
+   */
+  private void markIfLast(ReferenceCounted request) {
+    if (draining && next == reserved - 1 && request instanceof HttpMessage) {
+      HttpUtil.setKeepAlive((HttpMessage) request, false);
+    }
+  }
+
+  private void write(Runnable writer) {
+    try {
+      writer.run();
+    } catch (Exception e) {
+      LOGGER.error(e.getMessage(), e);
+    } finally {
+      next++;
+    }
+  }
+
+  /**
+   * Stops reading from the connection, which is closed once the requests received are responded,
+   * or right away if there's none in flight.
+   */
+  void drain() {
+    draining = true;
+    channel.config().setAutoRead(false);
+    closeIfDrained();
+  }
+
+  /**
+   * Closed after the responses written are flushed
+   */
+  private void closeIfDrained() {
+    if (reserved == next) {
+      channel.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+
+  /**
+   * Writes out the held responses, to nowhere, only to have their buffers released, so are the responses to come.
+   */
+  void close() {
+    closed = true;
+    int[] sequences = held.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    for (int sequence : sequences) {
+      write(held.remove(sequence));
+    }
+  }
+
+  @FunctionalInterface
+  interface Slot {
+
+    /**
+     * @param request retained while the response is held
+     * @param writer  writes the response, run at once if it's the turn of this slot
+     */
+    void respond(ReferenceCounted request, Runnable writer);
+  }
+}
@@ -0,0 +1,45 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.model.RequestWrapper;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+
+/**
+ * Request of a @Streaming route, of which the body has already been consumed while being received.
+ * It's passed down the pipeline like an aggregated one, and cleans up the decoded data (e.g. the spilled files)
+ * once released, which is after the response is sent.
+ */
+class StreamedHttpRequest extends DefaultFullHttpRequest {
+
+  private final RequestWrapper requestWrapper;
+  private final Runnable cleanup;
+
+  StreamedHttpRequest(HttpRequest request, HttpHeaders trailingHeaders, RequestWrapper requestWrapper, Runnable cleanup) {
+    super(request.protocolVersion(), request.method(), request.uri(), Unpooled.buffer(0), request.headers(), trailingHeaders);
+    this.requestWrapper = requestWrapper;
+    this.cleanup = cleanup;
+  }
+
+  RequestWrapper getRequestWrapper() {
+    return requestWrapper;
+  }
+
+  @Override
+  public boolean release() {
+    return onRelease(super.release());
+  }
+
+  @Override
+  public boolean release(int decrement) {
+    return onRelease(super.release(decrement));
+  }
+
+  private boolean onRelease(boolean deallocated) {
+    if (deallocated) {
+      cleanup.run();
+    }
+    return deallocated;
+  }
+}
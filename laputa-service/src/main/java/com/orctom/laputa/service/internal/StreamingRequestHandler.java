@@ -0,0 +1,379 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.exception.IllegalConfigException;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.config.MappingConfig;
+import com.orctom.laputa.service.model.BodySink;
+import com.orctom.laputa.service.model.HTTPMethod;
+import com.orctom.laputa.service.model.RequestMapping;
+import com.orctom.laputa.service.model.RequestWrapper;
+import com.orctom.laputa.service.model.RouteMatch;
+import com.orctom.laputa.service.util.PathUtils;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
+import io.netty.handler.codec.http.multipart.InterfaceHttpData;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.*;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+/**
+ * Sits before `HttpObjectAggregator`, takes over requests of @Streaming routes,
+ * feeding the body chunks into an incremental form decoder or the route's {@link BodySink} as they arrive,
+ * then passes a {@link StreamedHttpRequest} down, which is not aggregated again.
+ * Other requests are passed through untouched.
+ * <p>
+ * While the sink is finishing its writes of a complete body, reading is paused,
+ * and what's read already is held, then passed on after the request, keeping the order of pipelined requests.
+ */
+class StreamingRequestHandler extends ChannelInboundHandlerAdapter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StreamingRequestHandler.class);
+
+  private final long maxContentLength;
+  private final int discardThreshold;
+
+  private StreamedBody body;
+  private boolean discarding;
+
+  /**
+   * Messages read while a body is being completed
+   */
+  private final Queue<Object> held = new ArrayDeque<>();
+  private boolean completing;
+
+  StreamingRequestHandler() {
+    Configurator configurator = Configurator.getInstance();
+    this.maxContentLength = configurator.getStreamingMaxContentLength();
+    this.discardThreshold = (int) Math.min(Integer.MAX_VALUE, configurator.getPostDataUseDiskThreshold());
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) {
+    if (completing) {
+      held.add(msg);
+      return;
+    }
+
+    if (msg instanceof HttpRequest) {
+      onRequest(ctx, (HttpRequest) msg);
+      return;
+    }
+
+    if (msg instanceof HttpContent && (discarding || null != body)) {
+      onContent(ctx, (HttpContent) msg);
+      return;
+    }
+
+    ctx.fireChannelRead(msg);
+  }
+
+  private void onRequest(ChannelHandlerContext ctx, HttpRequest request) {
+    discarding = false;
+    String path = getPath(request);
+    HTTPMethod httpMethod = HTTPMethod.of(request.method());
+    MappingConfig mappingConfig = MappingConfig.getInstance();
+    if (!mappingConfig.isStreamingCandidate(path, httpMethod)) {
+      ctx.fireChannelRead(request);
+      return;
+    }
+
+    RouteMatch routeMatch = mappingConfig.match(path, httpMethod);
+    RequestMapping mapping = null == routeMatch ? null : routeMatch.getMapping();
+    if (null == mapping || !mapping.isStreaming()) {
+      ctx.fireChannelRead(request);
+      return;
+    }
+
+    if (HttpUtil.getContentLength(request, -1L) > maxContentLength) {
+      ReferenceCountUtil.release(request);
+      reject(ctx, REQUEST_ENTITY_TOO_LARGE);
+      return;
+    }
+
+    try {
+      body = new StreamedBody(getHead(request), routeMatch);
+    } catch (Exception e) {
+      LOGGER.warn("Failed to decode: {}, {}", request.uri(), e.getMessage());
+      ReferenceCountUtil.release(request);
+      reject(ctx, BAD_REQUEST);
+      return;
+    }
+
+    if (request instanceof FullHttpRequest) {
+      onContent(ctx, (FullHttpRequest) request);
+      return;
+    }
+
+    ReferenceCountUtil.release(request);
+    if (HttpUtil.is100ContinueExpected(request)) {
+      request.headers().remove(HttpHeaderNames.EXPECT);
+      ctx.writeAndFlush(new DefaultFullHttpResponse(HTTP_1_1, CONTINUE, Unpooled.EMPTY_BUFFER));
+    }
+  }
+
+  /**
+   * Requests of HTTP/2 streams ended by their headers come as a whole, such as without a body,
+   * of which only the head is taken, the content is offered as the last one.
+   */
+  private HttpRequest getHead(HttpRequest request) {
+    if (!(request instanceof FullHttpRequest)) {
+      return request;
+    }
+    return new DefaultHttpRequest(request.protocolVersion(), request.method(), request.uri(), request.headers());
+  }
+
+  private String getPath(HttpRequest request) {
+    return PathUtils.removeDuplicatedSlashes(new QueryStringDecoder(request.uri()).path());
+  }
+
+  private void onContent(ChannelHandlerContext ctx, HttpContent content) {
+    try {
+      if (discarding) {
+        return;
+      }
+
+      if (!body.offer(content)) {
+        abort();
+        reject(ctx, REQUEST_ENTITY_TOO_LARGE);
+        return;
+      }
+
+      if (content instanceof LastHttpContent) {
+        CompletableFuture<StreamedHttpRequest> request =
+            body.complete((LastHttpContent) content).toCompletableFuture();
+        StreamedBody completed = body;
+        body = null;
+        if (request.isDone() && !request.isCompletedExceptionally()) {
+          ctx.fireChannelRead(request.join());
+        } else {
+          await(ctx, completed, request);
+        }
+      }
+
+    } catch (Exception e) {
+      LOGGER.warn("Failed to receive body: {}", e.getMessage());
+      abort();
+      reject(ctx, BAD_REQUEST);
+
+    } finally {
+      if (content instanceof LastHttpContent) {
+        discarding = false;
+      }
+      content.release();
+    }
+  }
+
+  /**
+   * Reading is paused till the body is completed, then resumed if it was paused here.
+   */
+  private void await(ChannelHandlerContext ctx, StreamedBody completed, CompletionStage<StreamedHttpRequest> request) {
+    completing = true;
+    ChannelConfig config = ctx.channel().config();
+    boolean pausedReading = config.isAutoRead();
+    config.setAutoRead(false);
+    request.whenComplete((req, error) -> {
+      try {
+        ctx.executor().execute(() -> resume(ctx, completed, req, error, pausedReading));
+      } catch (RejectedExecutionException e) {
+        LOGGER.warn("Event loop is shutting down, dropped: {}", completed.request.uri());
+        if (null != req) {
+          req.release();
+        } else {
+          completed.close();
+        }
+      }
+    });
+  }
+
+  private void resume(ChannelHandlerContext ctx,
+                      StreamedBody completed,
+                      StreamedHttpRequest request,
+                      Throwable error,
+                      boolean pausedReading) {
+    completing = false;
+    if (pausedReading) {
+      ctx.channel().config().setAutoRead(true);
+    }
+
+    if (null != error) {
+      LOGGER.warn("Failed to receive body: {}, {}", completed.request.uri(), error.getMessage());
+      completed.close();
+      if (ctx.channel().isActive()) {
+        reject(ctx, INTERNAL_SERVER_ERROR);
+      }
+    } else if (!ctx.channel().isActive()) {
+      request.release();
+    } else {
+      ctx.fireChannelRead(request);
+    }
+
+    Object msg;
+    while (!completing && null != (msg = held.poll())) {
+      channelRead(ctx, msg);
+    }
+    ctx.fireChannelReadComplete();
+  }
+
+  /**
+   * The rest of the body is discarded, and the connection is closed after responding,
+   * as there's no point reading possibly a lot of data to keep it alive.
+   */
+  private void reject(ChannelHandlerContext ctx, HttpResponseStatus status) {
+    discarding = true;
+    FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, status, Unpooled.EMPTY_BUFFER);
+    HttpUtil.setContentLength(response, 0);
+    response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+    ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+  }
+
+  private void abort() {
+    if (null != body) {
+      body.close();
+      body = null;
+    }
+
+    Object msg;
+    while (null != (msg = held.poll())) {
+      ReferenceCountUtil.release(msg);
+    }
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    abort();
+    super.channelInactive(ctx);
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) {
+    abort();
+  }
+
+  /**
+   * Body of one request, either a form decoded incrementally, or raw data written to a sink.
+   */
+  private class StreamedBody {
+
+    private final HttpRequest request;
+    private final RouteMatch routeMatch;
+    private final HttpPostRequestDecoder decoder;
+    private final BodySink sink;
+    private long received;
+
+    StreamedBody(HttpRequest request, RouteMatch routeMatch) {
+      this.request = request;
+      this.routeMatch = routeMatch;
+      if (isForm(request)) {
+        decoder = new HttpPostRequestDecoder(LaputaRequestProcessor.HTTP_DATA_FACTORY, request);
+        decoder.setDiscardThreshold(discardThreshold);
+        sink = null;
+      } else {
+        decoder = null;
+        sink = createSink(routeMatch.getMapping().getBodySinkType());
+      }
+    }
+
+    private BodySink createSink(Class<? extends BodySink> type) {
+      try {
+        return type.newInstance();
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalConfigException("Failed to create sink: " + type + ", " + e.getMessage(), e);
+      }
+    }
+
+    private boolean isForm(HttpRequest request) {
+      if (HttpPostRequestDecoder.isMultipart(request)) {
+        return true;
+      }
+      String contentType = request.headers().get(HttpHeaderNames.CONTENT_TYPE);
+      return null != contentType &&
+          contentType.regionMatches(true, 0, HttpHeaderValues.APPLICATION_X_WWW_FORM_URLENCODED.toString(), 0,
+              HttpHeaderValues.APPLICATION_X_WWW_FORM_URLENCODED.length());
+    }
+
+    /**
+     * @return false if exceeding the max content length
+     */
+    boolean offer(HttpContent content) throws Exception {
+      received += content.content().readableBytes();
+      if (received > maxContentLength) {
+        return false;
+      }
+
+      if (null != decoder) {
+        decoder.offer(content);
+      } else if (content.content().isReadable()) {
+        sink.write(content.content());
+      }
+      return true;
+    }
+
+    /**
+     * @return completed once the sink has done its writes
+     */
+    CompletionStage<StreamedHttpRequest> complete(LastHttpContent last) throws Exception {
+      QueryStringDecoder queryStringDecoder = LaputaRequestProcessor.getQueryStringDecoder(request.uri());
+      Map<String, List<String>> parameters = new HashMap<>(queryStringDecoder.parameters());
+
+      CompletionStage<Void> received;
+      if (null != decoder) {
+        for (InterfaceHttpData bodyData : decoder.getBodyHttpDatas()) {
+          LaputaRequestProcessor.addToParameters(parameters, bodyData);
+        }
+        received = CompletableFuture.completedFuture(null);
+      } else {
+        received = sink.complete();
+      }
+
+      HttpHeaders trailingHeaders = last.trailingHeaders();
+      return received.thenApply(ignored -> {
+        RequestWrapper requestWrapper = new RequestWrapper(
+            request.method(), request.headers(), request.uri(), routeMatch.getPath(), parameters, null);
+        requestWrapper.setRouteMatch(routeMatch);
+        requestWrapper.setBodySink(sink);
+        return new StreamedHttpRequest(request, trailingHeaders, requestWrapper, this::close);
+      });
+    }
+
+    void close() {
+      try {
+        if (null != decoder) {
+          decoder.destroy();
+        } else {
+          sink.close();
+        }
+      } catch (Exception e) {
+        LOGGER.warn("Failed to clean up body of: {}, {}", request.uri(), e.getMessage());
+      }
+    }
+  }
+}
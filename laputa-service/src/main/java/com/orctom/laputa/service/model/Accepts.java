@@ -1,9 +1,7 @@
 package com.orctom.laputa.service.model;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -12,38 +10,139 @@ import java.util.stream.Collectors;
  */
 public class Accepts {
 
-  private static Map<String, List<String>> cache = new HashMap<>();
+  private static final int MAX_QUALITY = 1000;
 
+  /**
+   * @return the media ranges of the header, most preferred first, in the order of the header for the equally preferred
+   */
   public static List<String> sortAsList(String accept) {
     if (null == accept) {
       return null;
     }
 
-    List<String> sorted = cache.get(accept);
-    if (null != sorted) {
-      return sorted;
+    List<Tuple<String, Integer>> accepts = new ArrayList<>();
+    int length = accept.length();
+    for (int start = 0; start < length; ) {
+      int end = endOfRange(accept, start);
+      int typeStart = skipSpaces(accept, start, end);
+      int typeEnd = endOfType(accept, typeStart, end);
+      if (typeEnd > typeStart) {
+        accepts.add(new Tuple<>(accept.substring(typeStart, typeEnd), quality(accept, typeEnd, end)));
+      }
+      start = end + 1;
     }
 
-    String[] acceptArray = accept.split(",");
-    int len = acceptArray.length;
+    accepts.sort((o1, o2) -> o2.getValue().compareTo(o1.getValue()));
+    return accepts.stream().map(Tuple::getKey).collect(Collectors.toList());
+  }
 
-    List<Tuple<String, String>> accepts = new ArrayList<>(len);
+  /**
+   * Scans the header in place, without allocating, for the one of the media types that's most preferred,
+   * the first one in the header for the equally preferred. Wildcards are not expanded,
+   * and the media ranges with `q=0` are taken as not acceptable.
+   *
+   * @param mediaTypes in lower case
+   * @return the index of it in the media types, -1 if none is acceptable
+   */
+  public static int indexOfPreferred(String accept, String[] mediaTypes) {
+    int preferred = -1;
+    int preferredQuality = 0;
+    int length = accept.length();
+    for (int start = 0; start < length; ) {
+      int end = endOfRange(accept, start);
+      int typeStart = skipSpaces(accept, start, end);
+      int typeEnd = endOfType(accept, typeStart, end);
+      int index = indexOf(accept, typeStart, typeEnd, mediaTypes);
+      if (index >= 0) {
+        int quality = quality(accept, typeEnd, end);
+        if (quality > preferredQuality) {
+          preferred = index;
+          preferredQuality = quality;
+          if (MAX_QUALITY == quality) {
+            return preferred;
+          }
+        }
+      }
+      start = end + 1;
+    }
+    return preferred;
+  }
 
-    for (String item : acceptArray) {
-      int semiColonIndex = item.indexOf(";");
-      if (semiColonIndex > 0) {
-        String key = item.substring(0, semiColonIndex);
-        String value = item.substring(semiColonIndex + 1);
-        accepts.add(new Tuple<>(key, value));
-      } else {
-        accepts.add(new Tuple<>(item, "q=1.0"));
+  private static int indexOf(String accept, int start, int end, String[] mediaTypes) {
+    int length = end - start;
+    for (int i = 0; i < mediaTypes.length; i++) {
+      String mediaType = mediaTypes[i];
+      if (mediaType.length() == length && accept.regionMatches(true, start, mediaType, 0, length)) {
+        return i;
       }
     }
+    return -1;
+  }
+
+  private static int endOfRange(String accept, int start) {
+    int end = accept.indexOf(',', start);
+    return end < 0 ? accept.length() : end;
+  }
+
+  private static int skipSpaces(String accept, int start, int end) {
+    while (start < end && isSpace(accept.charAt(start))) {
+      start++;
+    }
+    return start;
+  }
 
-    accepts.sort((o1, o2) -> o2.getValue().compareTo(o1.getValue()));
-    sorted = accepts.stream().map(Tuple::getKey).collect(Collectors.toList());
-    cache.put(accept, sorted);
+  private static int endOfType(String accept, int start, int end) {
+    int typeEnd = start;
+    while (typeEnd < end && ';' != accept.charAt(typeEnd) && !isSpace(accept.charAt(typeEnd))) {
+      typeEnd++;
+    }
+    return typeEnd;
+  }
+
+  /**
+   * @return the `q` parameter of the media range in thousandths, 1000 if absent or malformed
+   */
+  private static int quality(String accept, int start, int end) {
+    for (int i = accept.indexOf(';', start); i >= 0 && i < end; i = accept.indexOf(';', i + 1)) {
+      int name = skipSpaces(accept, i + 1, end);
+      if (name + 1 < end && ('q' == accept.charAt(name) || 'Q' == accept.charAt(name))
+          && '=' == accept.charAt(name + 1)) {
+        return parseQuality(accept, name + 2, end);
+      }
+    }
+    return MAX_QUALITY;
+  }
+
+  /**
+   * qvalue = ( "0" [ "." 0*3DIGIT ] ) / ( "1" [ "." 0*3("0") ] )
+   */
+  private static int parseQuality(String accept, int start, int end) {
+    if (start >= end) {
+      return MAX_QUALITY;
+    }
+
+    char first = accept.charAt(start);
+    if ('1' == first) {
+      return MAX_QUALITY;
+    }
+    if ('0' != first) {
+      return MAX_QUALITY;
+    }
+
+    int quality = 0;
+    int scale = 100;
+    for (int i = start + 2; i < end && i < start + 5 && '.' == accept.charAt(start + 1); i++) {
+      int digit = accept.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        break;
+      }
+      quality += digit * scale;
+      scale /= 10;
+    }
+    return quality;
+  }
 
-    return sorted;
+  private static boolean isSpace(char c) {
+    return ' ' == c || '\t' == c;
   }
 }
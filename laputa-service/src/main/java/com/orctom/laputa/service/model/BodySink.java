@@ -0,0 +1,34 @@
+package com.orctom.laputa.service.model;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Receives the raw request body of a @Streaming route chunk by chunk, instead of having it buffered in memory.
+ * A new instance is created per request, and can be declared as a parameter of the controller method.
+ */
+public interface BodySink {
+
+  /**
+   * Called on the event loop for each chunk received, the buffer is released right after, retain it to keep it.
+   * Must not block, such as on disk writes, which are to be done asynchronously, and awaited by {@link #complete()}.
+   */
+  void write(ByteBuf content) throws IOException;
+
+  /**
+   * Called on the event loop once the whole body has been received,
+   * the controller is invoked after the returned stage completes, failed with a 500 if it fails.
+   */
+  default CompletionStage<Void> complete() throws IOException {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Called once the response has been sent, or the request has failed, to release any resources held.
+   */
+  default void close() {
+  }
+}
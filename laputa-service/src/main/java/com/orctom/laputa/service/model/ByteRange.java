@@ -0,0 +1,150 @@
+package com.orctom.laputa.service.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * One range of bytes, of which the end is inclusive, as in `Range: bytes=0-499`
+ */
+public class ByteRange {
+
+  private static final String UNIT = "bytes=";
+
+  /**
+   * More ranges than this are not honored, the whole content is sent instead
+   */
+  private static final int MAX_RANGES = 16;
+
+  private final long start;
+  private final long end;
+
+  public ByteRange(long start, long end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  public long getEnd() {
+    return end;
+  }
+
+  public long getLength() {
+    return end - start + 1;
+  }
+
+  /**
+   * @return the value of `Content-Range` for this range
+   */
+  public String toContentRange(long contentLength) {
+    return "bytes " + start + "-" + end + "/" + contentLength;
+  }
+
+  /**
+   * Overlapping and adjacent ranges are coalesced, the ones left are sorted by their start.
+   *
+   * @param range         value of the `Range` header
+   * @param contentLength length of the whole content
+   * @return null if the header is to be ignored (absent, malformed or too many ranges),
+   * empty if none of the ranges is satisfiable
+   */
+  public static List<ByteRange> parse(String range, long contentLength) {
+    if (null == range || !range.regionMatches(true, 0, UNIT, 0, UNIT.length())) {
+      return null;
+    }
+
+    String[] specs = range.substring(UNIT.length()).split(",");
+    if (specs.length > MAX_RANGES) {
+      return null;
+    }
+
+    List<ByteRange> ranges = new ArrayList<>(specs.length);
+    for (String spec : specs) {
+      spec = spec.trim();
+      int dash = spec.indexOf('-');
+      if (dash < 0) {
+        return null;
+      }
+
+      long start;
+      long end;
+      try {
+        if (0 == dash) {
+          long suffixLength = Long.parseLong(spec.substring(1));
+          start = contentLength - Math.min(suffixLength, contentLength);
+          end = 0 == suffixLength ? -1 : contentLength - 1;
+        } else {
+          start = Long.parseLong(spec.substring(0, dash));
+          if (dash == spec.length() - 1) {
+            end = contentLength - 1;
+          } else {
+            end = Long.parseLong(spec.substring(dash + 1));
+            if (end < start) {
+              return null;
+            }
+          }
+        }
+      } catch (NumberFormatException e) {
+        return null;
+      }
+
+      if (start < 0) {
+        return null;
+      }
+      if (start >= contentLength || end < start) {
+        continue;
+      }
+      ranges.add(new ByteRange(start, Math.min(end, contentLength - 1)));
+    }
+
+    return coalesce(ranges);
+  }
+
+  private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+    if (ranges.size() < 2) {
+      return ranges;
+    }
+
+    ranges.sort(Comparator.comparingLong(ByteRange::getStart));
+    List<ByteRange> coalesced = new ArrayList<>(ranges.size());
+    ByteRange current = ranges.get(0);
+    for (int i = 1; i < ranges.size(); i++) {
+      ByteRange next = ranges.get(i);
+      if (next.start <= current.end + 1) {
+        current = new ByteRange(current.start, Math.max(current.end, next.end));
+      } else {
+        coalesced.add(current);
+        current = next;
+      }
+    }
+    coalesced.add(current);
+    return Collections.unmodifiableList(coalesced);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    ByteRange that = (ByteRange) o;
+    return start == that.start && end == that.end;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Long.hashCode(start) + Long.hashCode(end);
+  }
+
+  @Override
+  public String toString() {
+    return start + "-" + end;
+  }
+}
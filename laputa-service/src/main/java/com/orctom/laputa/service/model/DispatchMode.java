@@ -0,0 +1,22 @@
+package com.orctom.laputa.service.model;
+
+/**
+ * Where a controller method gets invoked
+ */
+public enum DispatchMode {
+
+  /**
+   * On the netty event loop that read the request
+   */
+  INLINE,
+
+  /**
+   * On the bounded business thread pool
+   */
+  POOL,
+
+  /**
+   * On a new virtual thread per request, requires JDK 21+ (falls back to POOL otherwise)
+   */
+  VIRTUAL
+}
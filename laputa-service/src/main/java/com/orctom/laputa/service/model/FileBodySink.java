@@ -0,0 +1,172 @@
+package com.orctom.laputa.service.model;
+
+import com.orctom.laputa.service.config.Configurator;
+import io.netty.buffer.ByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.orctom.laputa.service.Constants.CFG_UPLOAD_DIR;
+
+/**
+ * Default sink of @Streaming routes, writes the body to a temporary file under `upload.dir` progressively.
+ * The file is deleted once the response is sent, move it in the controller to keep it.
+ * <p>
+ * The writes are asynchronous, each chunk is written at its own position, off the event loop,
+ * the body is complete once the last chunk arrived and all the writes are done.
+ */
+public class FileBodySink implements BodySink {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileBodySink.class);
+
+  private static final String PREFIX = "body-";
+  private static final String SUFFIX = ".tmp";
+
+  private File file;
+  private AsynchronousFileChannel channel;
+  private long size;
+
+  /**
+   * Writes in progress, plus one till the body ends, either completed or closed
+   */
+  private final AtomicInteger pending = new AtomicInteger(1);
+  private final AtomicBoolean ended = new AtomicBoolean();
+  private final CompletableFuture<Void> written = new CompletableFuture<>();
+  private volatile boolean closed;
+  private volatile Throwable failure;
+
+  @Override
+  public void write(ByteBuf content) throws IOException {
+    if (null != failure) {
+      throw new IOException("Failed to write: " + file + ", " + failure.getMessage(), failure);
+    }
+    if (null == channel) {
+      open();
+    }
+
+    ByteBuf retained = content.retain();
+    ByteBuffer buffer = retained.nioBuffer();
+    long start = size;
+    size += buffer.remaining();
+    pending.incrementAndGet();
+    write(retained, buffer, start);
+  }
+
+  private void open() throws IOException {
+    File dir = new File(Configurator.getInstance().getConfig().getString(CFG_UPLOAD_DIR));
+    if (!dir.exists() && !dir.mkdirs()) {
+      throw new IOException("Failed to create dir: " + dir);
+    }
+    file = File.createTempFile(PREFIX, SUFFIX, dir);
+    channel = AsynchronousFileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+  }
+
+  private void write(ByteBuf chunk, ByteBuffer buffer, long start) {
+    int offset = buffer.position();
+    channel.write(buffer, start, null, new CompletionHandler<Integer, Void>() {
+      @Override
+      public void completed(Integer count, Void attachment) {
+        if (buffer.hasRemaining() && null == failure && !closed) {
+          channel.write(buffer, start + buffer.position() - offset, null, this);
+          return;
+        }
+        chunk.release();
+        writeDone();
+      }
+
+      @Override
+      public void failed(Throwable cause, Void attachment) {
+        failure = cause;
+        chunk.release();
+        writeDone();
+      }
+    });
+  }
+
+  @Override
+  public CompletionStage<Void> complete() {
+    end();
+    return written;
+  }
+
+  /**
+   * The file is deleted once the writes in progress are done
+   */
+  @Override
+  public void close() {
+    closed = true;
+    if (!end() && 0 == pending.get()) {
+      deleteFile();
+    }
+  }
+
+  /**
+   * @return false if already ended
+   */
+  private boolean end() {
+    if (!ended.compareAndSet(false, true)) {
+      return false;
+    }
+    writeDone();
+    return true;
+  }
+
+  private void writeDone() {
+    if (0 != pending.decrementAndGet()) {
+      return;
+    }
+
+    closeChannel();
+    if (closed) {
+      deleteFile();
+      written.cancel(false);
+    } else if (null != failure) {
+      written.completeExceptionally(failure);
+    } else {
+      written.complete(null);
+    }
+  }
+
+  private void closeChannel() {
+    if (null == channel) {
+      return;
+    }
+
+    try {
+      channel.close();
+    } catch (IOException e) {
+      LOGGER.warn("Failed to close: {}, {}", file, e.getMessage());
+      if (null == failure) {
+        failure = e;
+      }
+    }
+  }
+
+  private void deleteFile() {
+    closeChannel();
+    if (null != file && file.exists() && !file.delete()) {
+      LOGGER.warn("Failed to delete: {}", file);
+    }
+  }
+
+  /**
+   * @return null if the body is empty
+   */
+  public File getFile() {
+    return file;
+  }
+
+  public long getSize() {
+    return size;
+  }
+}
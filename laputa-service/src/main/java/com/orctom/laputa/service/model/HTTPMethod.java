@@ -1,5 +1,10 @@
 package com.orctom.laputa.service.model;
 
+import com.google.common.collect.ImmutableMap;
+import io.netty.handler.codec.http.HttpMethod;
+
+import java.util.Map;
+
 public enum HTTPMethod {
 
   GET("@get"),
@@ -9,6 +14,14 @@ public enum HTTPMethod {
   HEAD("@head"),
   OPTIONS("@options");
 
+  private static final Map<HttpMethod, HTTPMethod> HTTP_METHODS = ImmutableMap.of(
+      HttpMethod.DELETE, DELETE,
+      HttpMethod.HEAD, HEAD,
+      HttpMethod.OPTIONS, OPTIONS,
+      HttpMethod.POST, POST,
+      HttpMethod.PUT, PUT
+  );
+
   private String key;
 
   HTTPMethod(String key) {
@@ -18,4 +31,16 @@ public enum HTTPMethod {
   public String getKey() {
     return key;
   }
+
+  /**
+   * Maps netty http method to the routing one, anything unknown is treated as GET
+   */
+  public static HTTPMethod of(HttpMethod method) {
+    HTTPMethod httpMethod = HTTP_METHODS.get(method);
+    if (null != httpMethod) {
+      return httpMethod;
+    }
+
+    return GET;
+  }
 }
@@ -1,14 +1,23 @@
 package com.orctom.laputa.service.model;
 
 import com.orctom.laputa.service.annotation.Data;
+import com.orctom.laputa.service.annotation.Dispatch;
+import com.orctom.laputa.service.annotation.NoCompression;
+import com.orctom.laputa.service.annotation.Streaming;
+import com.orctom.laputa.service.annotation.Throttle;
+import com.orctom.laputa.service.util.ArgsBinder;
+import com.orctom.laputa.service.util.ValidationUtil;
 import org.springframework.cglib.reflect.FastClass;
 import org.springframework.cglib.reflect.FastMethod;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.orctom.laputa.service.util.ParamResolver.getDefaultValue;
@@ -20,10 +29,18 @@ public class RequestMapping {
   private Object target;
   private FastMethod handlerMethod;
   private Map<String, ParamInfo> handlerParameters = Collections.emptyMap();
+  private Map<String, String> defaultValues = Collections.emptyMap();
+  private ArgsBinder argsBinder = ArgsBinder.create(Collections.emptyMap());
   private Class<?> dataType;
   private String httpMethod;
   private String redirectTo;
   private boolean honorExtension;
+  private DispatchMode dispatchMode;
+  private Double throttle;
+  private boolean compressible;
+  private Class<? extends BodySink> bodySinkType;
+  private String[] pathVariables;
+  private boolean constrained;
 
   public static RequestMappingBuilder builder() {
     return new RequestMappingBuilder();
@@ -42,9 +59,62 @@ public class RequestMapping {
     this.httpMethod = httpMethod;
     this.redirectTo = redirectTo;
     this.honorExtension = honorExtension;
+    this.dispatchMode = getDispatchMode(handlerClass, handlerMethod);
+    this.throttle = getThrottle(handlerClass, handlerMethod);
+    this.compressible = !handlerMethod.isAnnotationPresent(NoCompression.class) &&
+        !handlerClass.isAnnotationPresent(NoCompression.class);
+    this.bodySinkType = getBodySinkType(handlerMethod);
+    this.pathVariables = getPathVariables(uriPattern);
+    initConstraints(handlerClass, handlerMethod);
     init(handlerMethod);
   }
 
+  private DispatchMode getDispatchMode(Class<?> handlerClass, Method handlerMethod) {
+    Dispatch dispatch = handlerMethod.getAnnotation(Dispatch.class);
+    if (null == dispatch) {
+      dispatch = handlerClass.getAnnotation(Dispatch.class);
+    }
+    return null == dispatch ? null : dispatch.value();
+  }
+
+  private Double getThrottle(Class<?> handlerClass, Method handlerMethod) {
+    Throttle throttle = handlerMethod.getAnnotation(Throttle.class);
+    if (null == throttle) {
+      throttle = handlerClass.getAnnotation(Throttle.class);
+    }
+    return null == throttle ? null : throttle.value();
+  }
+
+  private Class<? extends BodySink> getBodySinkType(Method handlerMethod) {
+    Streaming streaming = handlerMethod.getAnnotation(Streaming.class);
+    return null == streaming ? null : streaming.sink();
+  }
+
+  /**
+   * Methods that can't be introspected are always validated
+   */
+  private void initConstraints(Class<?> handlerClass, Method handlerMethod) {
+    try {
+      constrained = ValidationUtil.isConstrained(handlerClass, handlerMethod);
+    } catch (IllegalStateException e) {
+      constrained = true;
+    }
+  }
+
+  private String[] getPathVariables(String uriPattern) {
+    List<String> variables = new ArrayList<>();
+    int start = uriPattern.indexOf('{');
+    while (start >= 0) {
+      int end = uriPattern.indexOf('}', start);
+      if (end < 0) {
+        break;
+      }
+      variables.add(uriPattern.substring(start + 1, end));
+      start = uriPattern.indexOf('{', end);
+    }
+    return variables.toArray(new String[variables.size()]);
+  }
+
   private void init(Method handlerMethod) {
     Parameter[] parameters = handlerMethod.getParameters();
     int paramLength = parameters.length;
@@ -67,6 +137,11 @@ public class RequestMapping {
         continue;
       }
 
+      if (BodySink.class.isAssignableFrom(paramType)) {
+        _handlerParameters.put("_bodySink_", new ParamInfo(paramType));
+        continue;
+      }
+
       String paramName = getParamName(parameter, handlerMethod);
 
       Annotation[] annotations = parameter.getAnnotations();
@@ -74,6 +149,11 @@ public class RequestMapping {
     }
 
     handlerParameters = Collections.unmodifiableMap(_handlerParameters);
+
+    Map<String, String> _defaultValues = new HashMap<>(2 * _handlerParameters.size());
+    _handlerParameters.forEach((key, value) -> _defaultValues.put(key, value.getDefaultValue()));
+    defaultValues = Collections.unmodifiableMap(_defaultValues);
+    argsBinder = ArgsBinder.create(handlerParameters);
   }
 
   public String getUriPattern() {
@@ -92,6 +172,17 @@ public class RequestMapping {
     return handlerParameters;
   }
 
+  /**
+   * @return default values of the handler parameters by name, null if not annotated with @DefaultValue
+   */
+  public Map<String, String> getDefaultValues() {
+    return defaultValues;
+  }
+
+  public ArgsBinder getArgsBinder() {
+    return argsBinder;
+  }
+
   public Class<?> getDataType() {
     return dataType;
   }
@@ -108,6 +199,52 @@ public class RequestMapping {
     return honorExtension;
   }
 
+  /**
+   * @return null if not overridden by @Dispatch
+   */
+  public DispatchMode getDispatchMode() {
+    return dispatchMode;
+  }
+
+  /**
+   * @return requests per second allowed, null if not overridden by @Throttle
+   */
+  public Double getThrottle() {
+    return throttle;
+  }
+
+  /**
+   * @return false if annotated with @NoCompression
+   */
+  public boolean isCompressible() {
+    return compressible;
+  }
+
+  public boolean isStreaming() {
+    return null != bodySinkType;
+  }
+
+  /**
+   * @return null if not annotated with @Streaming
+   */
+  public Class<? extends BodySink> getBodySinkType() {
+    return bodySinkType;
+  }
+
+  /**
+   * @return whether the params of the handler method need to be validated
+   */
+  public boolean isConstrained() {
+    return constrained;
+  }
+
+  /**
+   * @return names of the path variables, in the order they appear in the uri pattern
+   */
+  public String[] getPathVariables() {
+    return pathVariables;
+  }
+
   @Override
   public String toString() {
     return uriPattern + " " + httpMethod + " -> " + handlerMethod.getJavaMethod().toGenericString();
@@ -30,6 +30,8 @@ public class RequestWrapper {
   private Map<String, List<String>> params;
   private String data;
   private Map<String, String> cookies;
+  private BodySink bodySink;
+  private RouteMatch routeMatch;
 
   public RequestWrapper(
       HttpMethod httpMethod,
@@ -77,6 +79,7 @@ public class RequestWrapper {
 
   public void setHttpMethod(HttpMethod httpMethod) {
     this.httpMethod = httpMethod;
+    this.routeMatch = null;
   }
 
   public HttpHeaders getHeaders() {
@@ -89,6 +92,7 @@ public class RequestWrapper {
 
   public void setPath(String path) {
     this.path = PathUtils.removeDuplicatedSlashes(path);
+    this.routeMatch = null;
   }
 
   public String getUri() {
@@ -119,6 +123,28 @@ public class RequestWrapper {
     return cookies;
   }
 
+  /**
+   * @return the sink that received the body of a @Streaming route, null otherwise
+   */
+  public BodySink getBodySink() {
+    return bodySink;
+  }
+
+  public void setBodySink(BodySink bodySink) {
+    this.bodySink = bodySink;
+  }
+
+  /**
+   * @return the route matched for the current path and http method, null if not routed yet
+   */
+  public RouteMatch getRouteMatch() {
+    return routeMatch;
+  }
+
+  public void setRouteMatch(RouteMatch routeMatch) {
+    this.routeMatch = routeMatch;
+  }
+
   @Override
   public String toString() {
     return "path: " + path + ", params: " + params;
@@ -1,5 +1,6 @@
 package com.orctom.laputa.service.model;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.HttpResponseStatus;
 
 import java.io.File;
@@ -17,11 +18,19 @@ public class ResponseWrapper {
   private String mediaType;
   private Object result;
   private byte[] content;
+  private ByteBuf contentBuffer;
   private String template;
   private File file;
+  private String eTag;
   private HttpResponseStatus status = OK;
   private boolean permanentRedirect;
+  private boolean compressible = true;
   private Messenger messenger = new Messenger();
+  private long startNanos;
+  private long routingNanos;
+  private long bindingNanos;
+  private long invokeNanos;
+  private long translateNanos;
 
   public ResponseWrapper(String mediaType) {
     this.mediaType = mediaType;
@@ -48,9 +57,42 @@ public class ResponseWrapper {
   }
 
   public void setContent(byte[] content) {
+    releaseContentBuffer();
     this.content = content;
   }
 
+  /**
+   * Content encoded straight into a buffer, which is owned by this wrapper until taken.
+   */
+  public void setContent(ByteBuf contentBuffer) {
+    releaseContentBuffer();
+    this.content = null;
+    this.contentBuffer = contentBuffer;
+  }
+
+  public ByteBuf getContentBuffer() {
+    return contentBuffer;
+  }
+
+  /**
+   * Transfers the ownership of the content buffer to the caller.
+   */
+  public ByteBuf takeContentBuffer() {
+    ByteBuf buffer = contentBuffer;
+    contentBuffer = null;
+    return buffer;
+  }
+
+  /**
+   * Releases the content buffer if it has not been taken, e.g. when the response failed to be written.
+   */
+  public void releaseContentBuffer() {
+    if (null != contentBuffer) {
+      contentBuffer.release();
+      contentBuffer = null;
+    }
+  }
+
   public String getTemplate() {
     return template;
   }
@@ -67,6 +109,17 @@ public class ResponseWrapper {
     this.file = file;
   }
 
+  public String getETag() {
+    return eTag;
+  }
+
+  /**
+   * @param eTag entity tag of the content, quoted, for the conditional requests to be evaluated against
+   */
+  public void setETag(String eTag) {
+    this.eTag = eTag;
+  }
+
   public HttpResponseStatus getStatus() {
     return status;
   }
@@ -91,6 +144,17 @@ public class ResponseWrapper {
     this.permanentRedirect = permanentRedirect;
   }
 
+  public boolean isCompressible() {
+    return compressible;
+  }
+
+  /**
+   * @param compressible false to send the content as is, no matter the type and size of it
+   */
+  public void setCompressible(boolean compressible) {
+    this.compressible = compressible;
+  }
+
   public Messenger getMessenger() {
     return messenger;
   }
@@ -121,6 +185,58 @@ public class ResponseWrapper {
   }
 
   public boolean hasContent() {
-    return null != result || OK != status || null != messenger.getRedirectTo() || null != content || null != file;
+    return null != result || OK != status || null != messenger.getRedirectTo() || null != content || null != contentBuffer || null != file;
+  }
+
+  /**
+   * @return {@link System#nanoTime()} when the request was received, for the latency metrics
+   */
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  public void setStartNanos(long startNanos) {
+    this.startNanos = startNanos;
+  }
+
+  public long getRoutingNanos() {
+    return routingNanos;
+  }
+
+  public void setRoutingNanos(long routingNanos) {
+    this.routingNanos = routingNanos;
+  }
+
+  /**
+   * @return nanos spent on extracting and binding the arguments of the handler, and validating them
+   */
+  public long getBindingNanos() {
+    return bindingNanos;
+  }
+
+  public void setBindingNanos(long bindingNanos) {
+    this.bindingNanos = bindingNanos;
+  }
+
+  /**
+   * @return nanos spent in the handler, till it returned, not till the result it returned completed if async
+   */
+  public long getInvokeNanos() {
+    return invokeNanos;
+  }
+
+  public void setInvokeNanos(long invokeNanos) {
+    this.invokeNanos = invokeNanos;
+  }
+
+  /**
+   * @return nanos spent on translating the result to the content
+   */
+  public long getTranslateNanos() {
+    return translateNanos;
+  }
+
+  public void setTranslateNanos(long translateNanos) {
+    this.translateNanos = translateNanos;
   }
 }
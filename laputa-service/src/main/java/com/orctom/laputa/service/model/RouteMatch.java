@@ -0,0 +1,76 @@
+package com.orctom.laputa.service.model;
+
+/**
+ * Result of routing a request path, holding the matched mapping,
+ * and the offsets of the path variables in the path, which are only sliced out when asked.
+ * Or the static mapping the path falls in, which has no request mapping.
+ */
+public class RouteMatch {
+
+  private final RequestMapping mapping;
+  private final StaticMapping staticMapping;
+  private final String path;
+  private final int[] captures;
+
+  public RouteMatch(RequestMapping mapping, String path, int[] captures) {
+    this.mapping = mapping;
+    this.staticMapping = null;
+    this.path = path;
+    this.captures = captures;
+  }
+
+  public RouteMatch(StaticMapping staticMapping, String path) {
+    this.mapping = null;
+    this.staticMapping = staticMapping;
+    this.path = path;
+    this.captures = null;
+  }
+
+  /**
+   * @return null if it's a static match
+   */
+  public RequestMapping getMapping() {
+    return mapping;
+  }
+
+  /**
+   * @return null if it's not a static match
+   */
+  public StaticMapping getStaticMapping() {
+    return staticMapping;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public int getPathVariableCount() {
+    return mapping.getPathVariables().length;
+  }
+
+  public String getPathVariableName(int index) {
+    return mapping.getPathVariables()[index];
+  }
+
+  public String getPathVariable(int index) {
+    return path.substring(captures[2 * index], captures[2 * index + 1]);
+  }
+
+  /**
+   * @return null if no such path variable
+   */
+  public String getPathVariable(String name) {
+    String[] names = mapping.getPathVariables();
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(name)) {
+        return getPathVariable(i);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return path + " -> " + (null != mapping ? mapping : staticMapping);
+  }
+}
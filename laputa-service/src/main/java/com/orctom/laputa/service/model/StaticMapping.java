@@ -0,0 +1,55 @@
+package com.orctom.laputa.service.model;
+
+/**
+ * Paths starting with the `uri` are served from the `path`, either a folder or `classpath:` prefixed
+ */
+public class StaticMapping {
+
+  private final String uri;
+  private final String path;
+
+  public StaticMapping(String uri, String path) {
+    this.uri = uri;
+    this.path = path;
+  }
+
+  /**
+   * @return the uri prefix, without trailing `/`
+   */
+  public String getUri() {
+    return uri;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * The root `/`, of which the uri is empty, is only a fallback of the paths not routed to any controller
+   */
+  public boolean isRoot() {
+    return uri.isEmpty();
+  }
+
+  /**
+   * @return the part of the request path to be looked up in the `path`: empty if it's the uri itself,
+   * such as of a file mapped, the whole path for the root, otherwise the path without its top dir,
+   * as in `/static/js/app.js` of `/static/js` looked up as `/js/app.js`
+   */
+  public String getRelativePath(String requestPath) {
+    if (isRoot()) {
+      return requestPath;
+    }
+    if (requestPath.equals(uri)) {
+      return "";
+    }
+
+    int index = requestPath.indexOf('/', 1);
+    return index > 0 ? requestPath.substring(index) : requestPath;
+  }
+
+  @Override
+  public String toString() {
+    return uri + " -> " + path;
+  }
+}
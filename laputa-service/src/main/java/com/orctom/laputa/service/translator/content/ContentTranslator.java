@@ -3,6 +3,9 @@ package com.orctom.laputa.service.translator.content;
 import com.orctom.laputa.service.config.Configurator;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -20,12 +23,23 @@ public interface ContentTranslator {
 
   byte[] translate(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) throws IOException;
 
-  default byte[] toBytes(String string) {
+  /**
+   * Encodes straight into a buffer from the channel's allocator, avoiding the intermediate String and byte[].
+   * The returned buffer is owned by the caller, it's released once written.
+   * Defaults to wrapping {@link #translate(RequestWrapper, ResponseWrapper)}, which does not copy.
+   */
+  default ByteBuf translate(RequestWrapper requestWrapper,
+                            ResponseWrapper responseWrapper,
+                            ByteBufAllocator allocator) throws IOException {
+    return Unpooled.wrappedBuffer(translate(requestWrapper, responseWrapper));
+  }
+
+  default Charset getCharset() {
     Charset charset = Configurator.getInstance().getCharset();
-    if (null != charset) {
-      return string.getBytes(charset);
-    } else {
-      return string.getBytes();
-    }
+    return null != charset ? charset : Charset.defaultCharset();
+  }
+
+  default byte[] toBytes(String string) {
+    return string.getBytes(getCharset());
   }
 }
@@ -1,6 +1,8 @@
 package com.orctom.laputa.service.translator.content;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.orctom.laputa.service.model.Accepts;
 import com.orctom.laputa.service.model.MediaType;
 import com.orctom.laputa.service.model.RequestWrapper;
@@ -10,19 +12,32 @@ import io.netty.handler.codec.http.HttpHeaderNames;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ResponseTranslator registry
+ * <p>
+ * The translator negotiated for an `Accept` header is kept in a bounded cache shared by all the threads,
+ * so that the few headers the browsers and clients send are resolved once.
+ * Headers too long to be kept are negotiated by scanning them in place, which doesn't allocate.
  * Created by hao on 11/25/15.
  */
 public abstract class ContentTranslators {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ContentTranslators.class);
 
-  private static final Map<String, ContentTranslator> REGISTRY = new HashMap<>();
+  private static final int MAX_NEGOTIATED = 1024;
+  private static final int MAX_NEGOTIATED_ACCEPT_LENGTH = 256;
+
+  private static final Map<String, ContentTranslator> REGISTRY = new ConcurrentHashMap<>();
+
+  private static final Cache<String, ContentTranslator> NEGOTIATED = CacheBuilder.newBuilder()
+      .maximumSize(MAX_NEGOTIATED)
+      .build();
+
+  private static volatile Negotiation negotiation;
 
   static {
     JsonContentTranslator jsonResponseTranslator = new JsonContentTranslator();
@@ -33,6 +48,7 @@ public abstract class ContentTranslators {
 
     ProtoBufContentTranslator protoBufResponseTranslator = new ProtoBufContentTranslator();
     registerTranslator(ProtoBufContentTranslator.TYPE, protoBufResponseTranslator);
+    updateNegotiation();
   }
 
   private static void registerTranslator(MediaType mediaType, ContentTranslator contentTranslator) {
@@ -40,10 +56,28 @@ public abstract class ContentTranslators {
     REGISTRY.put(mediaType.getValue(), contentTranslator);
   }
 
-  public static void register(ContentTranslator contentTranslator) {
+  public static synchronized void register(ContentTranslator contentTranslator) {
     LOGGER.info("Registered ResponseTranslator: {}} -> {}", contentTranslator.getMediaType(), contentTranslator);
     REGISTRY.put(contentTranslator.getExtension(), contentTranslator);
     REGISTRY.put(contentTranslator.getMediaType(), contentTranslator);
+    updateNegotiation();
+  }
+
+  /**
+   * Takes a snapshot of the media types for scanning the `Accept` headers, and drops what's negotiated before
+   */
+  private static void updateNegotiation() {
+    Map<String, ContentTranslator> byMediaType = new LinkedHashMap<>();
+    REGISTRY.forEach((key, translator) -> {
+      if (key.indexOf('/') > 0) {
+        byMediaType.put(key.toLowerCase(), translator);
+      }
+    });
+    negotiation = new Negotiation(
+        byMediaType.keySet().toArray(new String[0]),
+        byMediaType.values().toArray(new ContentTranslator[0])
+    );
+    NEGOTIATED.invalidateAll();
   }
 
   public static ContentTranslator getTranslator(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
@@ -68,22 +102,46 @@ public abstract class ContentTranslators {
       return getResponseTranslatorOfType(MediaType.APPLICATION_JSON);
     }
 
-    List<String> accepts = Accepts.sortAsList(accept);
-    if (null == accepts) {
-      return getResponseTranslatorOfType(MediaType.APPLICATION_JSON);
+    return negotiate(accept);
+  }
+
+  /**
+   * @return the translator of the most preferred media type in the `Accept` header, json if none is acceptable
+   */
+  static ContentTranslator negotiate(String accept) {
+    if (accept.length() > MAX_NEGOTIATED_ACCEPT_LENGTH) {
+      return scan(accept);
     }
 
-    for (String type : accepts) {
-      ContentTranslator translator = REGISTRY.get(type);
-      if (null != translator) {
-        return translator;
-      }
+    ContentTranslator translator = NEGOTIATED.getIfPresent(accept);
+    if (null == translator) {
+      translator = scan(accept);
+      NEGOTIATED.put(accept, translator);
     }
+    return translator;
+  }
 
-    return getResponseTranslatorOfType(MediaType.APPLICATION_JSON);
+  static ContentTranslator scan(String accept) {
+    Negotiation negotiation = ContentTranslators.negotiation;
+    int index = Accepts.indexOfPreferred(accept, negotiation.mediaTypes);
+    if (index < 0) {
+      return getResponseTranslatorOfType(MediaType.APPLICATION_JSON);
+    }
+    return negotiation.translators[index];
   }
 
   private static ContentTranslator getResponseTranslatorOfType(MediaType mediaType) {
     return REGISTRY.get(mediaType.getValue());
   }
+
+  private static class Negotiation {
+
+    private final String[] mediaTypes;
+    private final ContentTranslator[] translators;
+
+    private Negotiation(String[] mediaTypes, ContentTranslator[] translators) {
+      this.mediaTypes = mediaTypes;
+      this.translators = translators;
+    }
+  }
 }
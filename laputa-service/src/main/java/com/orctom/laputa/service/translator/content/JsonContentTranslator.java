@@ -4,6 +4,9 @@ import com.alibaba.fastjson.JSON;
 import com.orctom.laputa.service.model.MediaType;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
 
 import java.io.IOException;
 
@@ -29,4 +32,18 @@ class JsonContentTranslator implements ContentTranslator {
   public byte[] translate(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) throws IOException {
     return toBytes(JSON.toJSONString(responseWrapper.getResult()));
   }
+
+  @Override
+  public ByteBuf translate(RequestWrapper requestWrapper,
+                           ResponseWrapper responseWrapper,
+                           ByteBufAllocator allocator) throws IOException {
+    ByteBuf buffer = allocator.ioBuffer();
+    try {
+      JSON.writeJSONString(new ByteBufOutputStream(buffer), getCharset(), responseWrapper.getResult());
+      return buffer;
+    } catch (IOException | RuntimeException e) {
+      buffer.release();
+      throw e;
+    }
+  }
 }
@@ -6,6 +6,10 @@ import com.google.common.cache.LoadingCache;
 import com.orctom.laputa.service.model.MediaType;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.util.concurrent.FastThreadLocal;
 import io.protostuff.GraphIOUtil;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.Schema;
@@ -31,6 +35,13 @@ class ProtoBufContentTranslator implements ContentTranslator {
         }
       });
 
+  private static final FastThreadLocal<LinkedBuffer> BUFFERS = new FastThreadLocal<LinkedBuffer>() {
+    @Override
+    protected LinkedBuffer initialValue() {
+      return LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+    }
+  };
+
   @Override
   public String getMediaType() {
     return TYPE.getValue();
@@ -45,12 +56,33 @@ class ProtoBufContentTranslator implements ContentTranslator {
   @SuppressWarnings("unchecked")
   public byte[] translate(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) throws IOException {
     Object result = responseWrapper.getResult();
-    Schema schema;
+    return GraphIOUtil.toByteArray(result, getSchema(result), LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ByteBuf translate(RequestWrapper requestWrapper,
+                           ResponseWrapper responseWrapper,
+                           ByteBufAllocator allocator) throws IOException {
+    Object result = responseWrapper.getResult();
+    ByteBuf buffer = allocator.ioBuffer();
+    LinkedBuffer linkedBuffer = BUFFERS.get();
+    try {
+      GraphIOUtil.writeTo(new ByteBufOutputStream(buffer), result, getSchema(result), linkedBuffer);
+      return buffer;
+    } catch (IOException | RuntimeException e) {
+      buffer.release();
+      throw e;
+    } finally {
+      linkedBuffer.clear();
+    }
+  }
+
+  private Schema getSchema(Object result) {
     try {
-      schema = schemaCache.get(result.getClass());
+      return schemaCache.get(result.getClass());
     } catch (ExecutionException e) {
-      schema = RuntimeSchema.getSchema(result.getClass());
+      return RuntimeSchema.getSchema(result.getClass());
     }
-    return GraphIOUtil.toByteArray(result, schema, LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
   }
 }
@@ -1,30 +1,22 @@
 package com.orctom.laputa.service.translator.content;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.io.ByteStreams;
+import com.orctom.laputa.service.cache.StaticContent;
+import com.orctom.laputa.service.cache.StaticContentCache;
 import com.orctom.laputa.service.exception.PathNotFoundException;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.nio.file.Files;
 
 public class StreamTranslator implements ContentTranslator {
 
-  private static LoadingCache<File, byte[]> fileCache = CacheBuilder.newBuilder()
-      .maximumSize(1000)
-      .expireAfterWrite(10, TimeUnit.MINUTES)
-      .build(
-          new CacheLoader<File, byte[]>() {
-            public byte[] load(File file) throws IOException {
-              return ByteStreams.toByteArray(new FileInputStream(file));
-            }
-          });
+  private static final StaticContentCache STATIC_CONTENT_CACHE = StaticContentCache.getInstance();
 
   private String mediaType;
   private String extension;
@@ -52,14 +44,40 @@ public class StreamTranslator implements ContentTranslator {
     }
 
     if (result instanceof File) {
-      File file = (File) result;
+      ByteBuf content = getFileContent((File) result);
       try {
-        return fileCache.get(file);
-      } catch (ExecutionException e) {
-        throw new PathNotFoundException(e.getMessage(), e);
+        return ByteBufUtil.getBytes(content);
+      } finally {
+        content.release();
       }
     }
 
     return responseWrapper.getResult().toString().getBytes();
   }
+
+  /**
+   * Files are served from the static content cache as they are, without being copied
+   */
+  @Override
+  public ByteBuf translate(RequestWrapper requestWrapper,
+                           ResponseWrapper responseWrapper,
+                           ByteBufAllocator allocator) throws IOException {
+    Object result = responseWrapper.getResult();
+    if (result instanceof File) {
+      return getFileContent((File) result);
+    }
+    return Unpooled.wrappedBuffer(translate(requestWrapper, responseWrapper));
+  }
+
+  private ByteBuf getFileContent(File file) {
+    try {
+      StaticContent content = STATIC_CONTENT_CACHE.get(file);
+      if (null != content) {
+        return content.retainedContent();
+      }
+      return Unpooled.wrappedBuffer(Files.readAllBytes(file.toPath()));
+    } catch (IOException e) {
+      throw new PathNotFoundException(e.getMessage(), e);
+    }
+  }
 }
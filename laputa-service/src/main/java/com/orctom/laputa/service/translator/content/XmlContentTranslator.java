@@ -4,8 +4,13 @@ import com.orctom.laputa.service.model.MediaType;
 import com.orctom.laputa.service.model.RequestWrapper;
 import com.orctom.laputa.service.model.ResponseWrapper;
 import com.thoughtworks.xstream.XStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 
 /**
  * Encode data to xml
@@ -31,4 +36,20 @@ class XmlContentTranslator implements ContentTranslator {
   public byte[] translate(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) throws IOException {
     return toBytes(xstream.toXML(responseWrapper.getResult()));
   }
+
+  @Override
+  public ByteBuf translate(RequestWrapper requestWrapper,
+                           ResponseWrapper responseWrapper,
+                           ByteBufAllocator allocator) throws IOException {
+    ByteBuf buffer = allocator.ioBuffer();
+    try {
+      Writer writer = new OutputStreamWriter(new ByteBufOutputStream(buffer), getCharset());
+      xstream.toXML(responseWrapper.getResult(), writer);
+      writer.flush();
+      return buffer;
+    } catch (IOException | RuntimeException e) {
+      buffer.release();
+      throw e;
+    }
+  }
 }
@@ -2,6 +2,8 @@ package com.orctom.laputa.service.translator.response;
 
 import com.orctom.laputa.service.model.ResponseCookie;
 import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.service.util.HttpDateClock;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
@@ -9,10 +11,10 @@ import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
-import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +32,22 @@ public abstract class AbstractResponseTranslator {
   protected static final String CONTENT_TYPE = ".contentType";
 
   protected FullHttpResponse createHttpResponse(ResponseWrapper responseWrapper) {
+    FullHttpResponse res = newHttpResponse(responseWrapper);
+    if (null != responseWrapper.getETag()) {
+      res.headers().set(ETAG, responseWrapper.getETag());
+    }
+    if (!responseWrapper.isCompressible()) {
+      setUncompressed(res);
+    }
+    return res;
+  }
+
+  private FullHttpResponse newHttpResponse(ResponseWrapper responseWrapper) {
+    ByteBuf contentBuffer = responseWrapper.takeContentBuffer();
+    if (null != contentBuffer) {
+      return new DefaultFullHttpResponse(HTTP_1_1, responseWrapper.getStatus(), contentBuffer);
+    }
+
     if (null == responseWrapper.getContent()) {
       return new DefaultFullHttpResponse(HTTP_1_1, responseWrapper.getStatus());
     }
@@ -41,6 +59,13 @@ public abstract class AbstractResponseTranslator {
     );
   }
 
+  /**
+   * Marks the response to be sent as is, the mark is taken off by the compressor of the server
+   */
+  protected void setUncompressed(HttpResponse res) {
+    res.headers().set(CONTENT_ENCODING, HttpHeaderValues.IDENTITY);
+  }
+
   protected void setCookies(FullHttpResponse res, Set<ResponseCookie> cookies) {
     if (null == cookies || cookies.isEmpty()) {
       return;
@@ -68,17 +93,25 @@ public abstract class AbstractResponseTranslator {
       res.headers().set(CONNECTION, HttpHeaderValues.KEEP_ALIVE);
       ctx.write(res);
     } else {
+      res.headers().set(CONNECTION, HttpHeaderValues.CLOSE);
       ctx.writeAndFlush(res).addListener(ChannelFutureListener.CLOSE);
     }
   }
 
+  /**
+   * `Last-Modified` is kept if set by the translator, otherwise it's now, or the one the client has for 304s
+   */
   private void setDateHeader(FullHttpRequest req, FullHttpResponse res, HttpResponseStatus status) {
-    String date = req.headers().get(IF_MODIFIED_SINCE);
-    if (NOT_MODIFIED != status) {
-      date = DateTime.now().toString(HTTP_DATE_FORMATTER);
+    CharSequence now = HttpDateClock.now();
+    res.headers().set(DATE, now);
+    if (res.headers().contains(LAST_MODIFIED)) {
+      return;
+    }
+
+    CharSequence lastModified = NOT_MODIFIED == status ? req.headers().get(IF_MODIFIED_SINCE) : now;
+    if (null != lastModified) {
+      res.headers().set(LAST_MODIFIED, lastModified);
     }
-    res.headers().set(DATE, date);
-    res.headers().set(LAST_MODIFIED, date);
   }
 
   protected void setNoCacheHeader(FullHttpResponse res) {
@@ -13,14 +13,19 @@ public abstract class ResponseTranslators {
 
   private static final List<ResponseTranslator> REGISTRY = new ArrayList<>();
 
+  private static final ResponseTranslator CONTENT_RESPONSE_TRANSLATOR = new ContentResponseTranslator();
+
   static {
     REGISTRY.add(new RedirectResponseTranslator());
-    REGISTRY.add(new ContentResponseTranslator());
+    REGISTRY.add(CONTENT_RESPONSE_TRANSLATOR);
     REGISTRY.add(new ErrorResponseTranslator());
   }
 
+  /**
+   * Registered ones are searched before the content translator, which fits any response.
+   */
   public synchronized static void register(ResponseTranslator translator) {
-    REGISTRY.add(REGISTRY.size() - 1, translator);
+    REGISTRY.add(REGISTRY.indexOf(CONTENT_RESPONSE_TRANSLATOR), translator);
     LOGGER.info("Registered ResponseTranslator: {}", translator);
   }
 
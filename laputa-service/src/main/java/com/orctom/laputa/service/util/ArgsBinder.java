@@ -0,0 +1,246 @@
+package com.orctom.laputa.service.util;
+
+import com.orctom.laputa.service.annotation.Cookie;
+import com.orctom.laputa.service.annotation.Cookies;
+import com.orctom.laputa.service.annotation.HttpHeader;
+import com.orctom.laputa.service.annotation.HttpHeaders;
+import com.orctom.laputa.service.exception.ParameterValidationException;
+import com.orctom.laputa.service.model.BodySink;
+import com.orctom.laputa.service.model.Messenger;
+import com.orctom.laputa.service.model.ParamInfo;
+import com.orctom.laputa.service.model.RequestWrapper;
+import com.orctom.laputa.utils.ClassUtils;
+import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.orctom.laputa.service.Constants.SIGN_DOT;
+
+/**
+ * Binds the args of one handler method, the way to resolve each param is decided once when the mapping is created,
+ * so that binding a request is only about converting the values.
+ * <p>
+ * Simple typed params are bound first, taking their values out, the rest goes to the complex typed params.
+ */
+public class ArgsBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ArgsBinder.class);
+
+  private static final ArgsBinder NO_ARGS = new ArgsBinder(new ArgBinder[0], new int[0], new int[0]);
+
+  private final ArgBinder[] binders;
+  private final int[] simpleIndexes;
+  private final int[] complexIndexes;
+
+  private ArgsBinder(ArgBinder[] binders, int[] simpleIndexes, int[] complexIndexes) {
+    this.binders = binders;
+    this.simpleIndexes = simpleIndexes;
+    this.complexIndexes = complexIndexes;
+  }
+
+  public static ArgsBinder create(Map<String, ParamInfo> parameters) {
+    if (parameters.isEmpty()) {
+      return NO_ARGS;
+    }
+
+    int size = parameters.size();
+    ArgBinder[] binders = new ArgBinder[size];
+    int[] simpleIndexes = new int[size];
+    int[] complexIndexes = new int[size];
+    int simple = 0, complex = 0, i = 0;
+    for (Map.Entry<String, ParamInfo> entry : parameters.entrySet()) {
+      ArgBinder binder = createSimpleBinder(entry.getKey(), entry.getValue());
+      if (null != binder) {
+        simpleIndexes[simple++] = i;
+      } else {
+        binder = createComplexBinder(entry.getKey(), entry.getValue());
+        complexIndexes[complex++] = i;
+      }
+      binders[i++] = binder;
+    }
+
+    return new ArgsBinder(binders, trim(simpleIndexes, simple), trim(complexIndexes, complex));
+  }
+
+  private static int[] trim(int[] indexes, int length) {
+    int[] trimmed = new int[length];
+    System.arraycopy(indexes, 0, trimmed, 0, length);
+    return trimmed;
+  }
+
+  /**
+   * @return null if the handler has no params
+   */
+  public Object[] bind(Map<String, String> paramValues, RequestWrapper requestWrapper, Messenger messenger) {
+    if (0 == binders.length) {
+      return null;
+    }
+
+    Object[] args = new Object[binders.length];
+    for (int index : simpleIndexes) {
+      args[index] = binders[index].bind(paramValues, requestWrapper, messenger);
+    }
+    for (int index : complexIndexes) {
+      args[index] = binders[index].bind(paramValues, requestWrapper, messenger);
+    }
+    return args;
+  }
+
+  private static ArgBinder createSimpleBinder(String paramName, ParamInfo paramInfo) {
+    String defaultValue = paramInfo.getDefaultValue();
+
+    if (null != paramInfo.getAnnotation(Cookies.class)) {
+      return (paramValues, requestWrapper, messenger) -> requestWrapper.getCookies();
+    }
+
+    Cookie cookie = paramInfo.getAnnotation(Cookie.class);
+    if (null != cookie) {
+      String name = cookie.value();
+      return (paramValues, requestWrapper, messenger) -> {
+        Map<String, String> cookies = requestWrapper.getCookies();
+        String value = null == cookies ? null : cookies.get(name);
+        return null == value ? defaultValue : value;
+      };
+    }
+
+    if (null != paramInfo.getAnnotation(HttpHeaders.class)) {
+      return (paramValues, requestWrapper, messenger) -> requestWrapper.getHeaders().entries().stream()
+          .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (first, second) -> first));
+    }
+
+    HttpHeader httpHeader = paramInfo.getAnnotation(HttpHeader.class);
+    if (null != httpHeader) {
+      String name = httpHeader.value();
+      return (paramValues, requestWrapper, messenger) -> {
+        String value = requestWrapper.getHeaders().get(name);
+        return null == value ? defaultValue : value;
+      };
+    }
+
+    Class<?> type = paramInfo.getType();
+    if (BodySink.class.isAssignableFrom(type)) {
+      return (paramValues, requestWrapper, messenger) -> {
+        BodySink bodySink = requestWrapper.getBodySink();
+        return type.isInstance(bodySink) ? bodySink : null;
+      };
+    }
+
+    if (ClassUtils.isSimpleValueType(type)) {
+      Function<String, Object> converter = getConverter(paramName, type);
+      return (paramValues, requestWrapper, messenger) -> converter.apply(paramValues.remove(paramName));
+    }
+
+    return null;
+  }
+
+  private static ArgBinder createComplexBinder(String paramName, ParamInfo paramInfo) {
+    Class<?> type = paramInfo.getType();
+    if (Messenger.class.isAssignableFrom(type)) {
+      return (paramValues, requestWrapper, messenger) -> messenger;
+    }
+
+    BeanBinder beanBinder = BeanBinder.of(type);
+    return (paramValues, requestWrapper, messenger) -> {
+      Map<String, String> params = retrieveParams(paramValues, paramName);
+      if (params.isEmpty()) {
+        params = paramValues;
+      }
+
+      try {
+        if (null != beanBinder) {
+          Object bean = beanBinder.newInstance();
+          beanBinder.populate(bean, params);
+          return bean;
+        }
+
+        Object bean = BeanUtil.createNewInstance(type);
+        BeanUtils.populate(bean, params);
+        return bean;
+
+      } catch (Exception e) {
+        LOGGER.error(e.getMessage(), e);
+        return null;
+      }
+    };
+  }
+
+  /**
+   * Params prefixed with the param name, with the prefix removed
+   */
+  private static Map<String, String> retrieveParams(Map<String, String> paramValues, String paramName) {
+    Map<String, String> params = new HashMap<>();
+    String prefix = paramName + SIGN_DOT;
+    for (Map.Entry<String, String> entry : paramValues.entrySet()) {
+      String key = entry.getKey();
+      if (!key.startsWith(paramName) || key.length() <= paramName.length()) {
+        continue;
+      }
+
+      int start = key.indexOf(prefix);
+      params.put(start >= 0 ? key.substring(start + prefix.length()) : key, entry.getValue());
+    }
+    return params;
+  }
+
+  private static Function<String, Object> getConverter(String paramName, Class<?> type) {
+    if (String.class == type) {
+      return value -> value;
+    }
+    if (Integer.class == type) {
+      return value -> null == value ? null : parse(value, type, Integer::valueOf);
+    }
+    if (int.class == type) {
+      return value -> null == value ? 0 : parse(value, type, Integer::valueOf);
+    }
+    if (Double.class == type) {
+      return value -> null == value ? null : parse(value, type, Double::valueOf);
+    }
+    if (double.class == type) {
+      return value -> null == value ? 0.0d : parse(value, type, Double::valueOf);
+    }
+    if (Float.class == type) {
+      return value -> null == value ? null : parse(value, type, Float::valueOf);
+    }
+    if (float.class == type) {
+      return value -> null == value ? 0.0F : parse(value, type, Float::valueOf);
+    }
+    if (Long.class == type) {
+      return value -> null == value ? null : parse(value, type, Long::valueOf);
+    }
+    if (long.class == type) {
+      return value -> null == value ? 0L : parse(value, type, Long::valueOf);
+    }
+    if (Boolean.class == type) {
+      return value -> null == value ? null : Boolean.valueOf(value);
+    }
+    if (boolean.class == type) {
+      return value -> null != value && Boolean.valueOf(value);
+    }
+
+    if (null == ConvertUtils.lookup(type)) {
+      return value -> {
+        throw new IllegalArgumentException("Unsupported param type" + type + " " + paramName);
+      };
+    }
+    return value -> null == value ? null : ConvertUtils.convert(value, type);
+  }
+
+  private static Object parse(String value, Class<?> type, Function<String, Object> parser) {
+    try {
+      return parser.apply(value);
+    } catch (NumberFormatException e) {
+      throw new ParameterValidationException("Invalid param value: " + value + ", is not " + type.getSimpleName());
+    }
+  }
+
+  @FunctionalInterface
+  interface ArgBinder {
+    Object bind(Map<String, String> paramValues, RequestWrapper requestWrapper, Messenger messenger);
+  }
+}
@@ -0,0 +1,258 @@
+package com.orctom.laputa.service.util;
+
+import com.orctom.laputa.utils.ClassUtils;
+import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cglib.reflect.FastClass;
+import org.springframework.cglib.reflect.FastMethod;
+
+import java.beans.PropertyDescriptor;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Populates beans of one type from flat params like `name` or `category.id`, through generated accessors,
+ * with the property converters looked up once.
+ * Anything else, like indexed or mapped properties, is handed over to `BeanUtils.populate()`.
+ * <p>
+ * Instances are created the way {@link BeanUtil#createNewInstance(Class)} does, with bean properties pre-initialized.
+ */
+class BeanBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BeanBinder.class);
+  private static final String EMPTY = "EMPTY";
+
+  private static final ConcurrentMap<Class<?>, BeanBinder> BINDERS = new ConcurrentHashMap<>();
+  private static final BeanBinder UNSUPPORTED = new BeanBinder();
+
+  private final Class<?> type;
+  private final FastClass fastClass;
+  private final Map<String, Property> properties;
+  private final Property[] initialized;
+
+  private BeanBinder() {
+    this.type = null;
+    this.fastClass = null;
+    this.properties = null;
+    this.initialized = null;
+  }
+
+  private BeanBinder(Class<?> type) {
+    this.type = type;
+    this.fastClass = FastClass.create(type);
+    this.properties = new HashMap<>();
+    for (PropertyDescriptor descriptor : PropertyUtils.getPropertyDescriptors(type)) {
+      Method writeMethod = descriptor.getWriteMethod();
+      if (null == writeMethod || null == descriptor.getPropertyType()) {
+        continue;
+      }
+      properties.put(descriptor.getName(), new Property(fastClass, descriptor));
+    }
+    this.initialized = getInitializedProperties(type);
+  }
+
+  /**
+   * @return null if the type can't be instantiated directly, like interfaces
+   */
+  static BeanBinder of(Class<?> type) {
+    BeanBinder binder = BINDERS.get(type);
+    if (null == binder) {
+      binder = create(type);
+      BeanBinder existing = BINDERS.putIfAbsent(type, binder);
+      if (null != existing) {
+        binder = existing;
+      }
+    }
+    return UNSUPPORTED == binder ? null : binder;
+  }
+
+  private static BeanBinder create(Class<?> type) {
+    if (!isInstantiable(type)) {
+      return UNSUPPORTED;
+    }
+
+    try {
+      return new BeanBinder(type);
+    } catch (Exception e) {
+      LOGGER.warn("Falling back to reflection to populate: {}, {}", type, e.getMessage());
+      return UNSUPPORTED;
+    }
+  }
+
+  private static boolean isInstantiable(Class<?> type) {
+    if (type.isInterface() || type.isArray() || type.isPrimitive() || Modifier.isAbstract(type.getModifiers())) {
+      return false;
+    }
+    try {
+      return Modifier.isPublic(type.getConstructor().getModifiers());
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Same as {@link BeanUtil#initializeProperties(Object, Class)}, non-simple fields with accessors are initialized.
+   */
+  private Property[] getInitializedProperties(Class<?> type) {
+    Set<Field> fields = new HashSet<>();
+    fields.addAll(Arrays.asList(type.getFields()));
+    fields.addAll(Arrays.asList(type.getDeclaredFields()));
+
+    List<Property> initialized = new ArrayList<>();
+    for (Field field : fields) {
+      if (EMPTY.equals(field.getName()) || field.isSynthetic() || Modifier.isStatic(field.getModifiers())) {
+        continue;
+      }
+
+      Class<?> propertyType = field.getType();
+      if (ClassUtils.isSimpleValueType(propertyType) || propertyType.isAssignableFrom(File.class)) {
+        continue;
+      }
+
+      Property property = properties.get(field.getName());
+      if (null != property && property.isReadable()) {
+        initialized.add(property);
+      }
+    }
+    return initialized.toArray(new Property[initialized.size()]);
+  }
+
+  Object newInstance() throws InvocationTargetException {
+    Object bean = fastClass.newInstance();
+    for (Property property : initialized) {
+      if (null == property.get(bean)) {
+        property.set(bean, property.newValue());
+      }
+    }
+    return bean;
+  }
+
+  void populate(Object bean, Map<String, String> values) throws Exception {
+    Map<String, String> rest = null;
+    for (Map.Entry<String, String> entry : values.entrySet()) {
+      String key = entry.getKey();
+      if (null == key || populate(bean, key, 0, entry.getValue())) {
+        continue;
+      }
+
+      if (null == rest) {
+        rest = new HashMap<>();
+      }
+      rest.put(key, entry.getValue());
+    }
+
+    if (null != rest) {
+      BeanUtils.populate(bean, rest);
+    }
+  }
+
+  /**
+   * @return false if it is to be populated by `BeanUtils`
+   */
+  private boolean populate(Object bean, String key, int start, String value) throws InvocationTargetException {
+    int dot = key.indexOf('.', start);
+    int end = dot < 0 ? key.length() : dot;
+    for (int i = start; i < end; i++) {
+      char c = key.charAt(i);
+      if ('[' == c || '(' == c) {
+        return false;
+      }
+    }
+
+    Property property = properties.get(0 == start && dot < 0 ? key : key.substring(start, end));
+    if (null == property) {
+      return true;
+    }
+
+    if (dot < 0) {
+      if (null == property.converter) {
+        return false;
+      }
+      property.set(bean, property.convert(value));
+      return true;
+    }
+
+    BeanBinder nested = property.getNestedBinder();
+    if (null == nested || !property.isReadable()) {
+      return false;
+    }
+
+    Object child = property.get(bean);
+    if (null == child) {
+      child = nested.newInstance();
+      property.set(bean, child);
+    }
+    return nested.populate(child, key, dot + 1, value);
+  }
+
+  @Override
+  public String toString() {
+    return "BeanBinder: " + type;
+  }
+
+  private static class Property {
+
+    private final Class<?> type;
+    private final FastMethod getter;
+    private final FastMethod setter;
+    private final Converter converter;
+    private volatile BeanBinder nested;
+
+    Property(FastClass fastClass, PropertyDescriptor descriptor) {
+      this.type = descriptor.getPropertyType();
+      Method readMethod = descriptor.getReadMethod();
+      this.getter = null == readMethod ? null : fastClass.getMethod(readMethod);
+      this.setter = fastClass.getMethod(descriptor.getWriteMethod());
+      this.converter = ConvertUtils.lookup(type);
+    }
+
+    boolean isReadable() {
+      return null != getter;
+    }
+
+    Object get(Object bean) throws InvocationTargetException {
+      return getter.invoke(bean, null);
+    }
+
+    void set(Object bean, Object value) throws InvocationTargetException {
+      setter.invoke(bean, new Object[]{value});
+    }
+
+    Object convert(String value) {
+      return converter.convert(type, value);
+    }
+
+    Object newValue() throws InvocationTargetException {
+      BeanBinder binder = getNestedBinder();
+      return null != binder ? binder.newInstance() : BeanUtil.createNewInstance(type);
+    }
+
+    /**
+     * Resolved lazily, as beans can refer to each other
+     */
+    BeanBinder getNestedBinder() {
+      BeanBinder binder = nested;
+      if (null == binder) {
+        binder = null == converter ? BeanBinder.of(type) : null;
+        nested = null == binder ? UNSUPPORTED : binder;
+      }
+      return UNSUPPORTED == binder ? null : binder;
+    }
+  }
+}
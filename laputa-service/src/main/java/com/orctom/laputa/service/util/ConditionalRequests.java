@@ -0,0 +1,163 @@
+package com.orctom.laputa.service.util;
+
+import com.google.common.hash.Hashing;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import org.joda.time.DateTime;
+
+import java.io.File;
+
+import static com.orctom.laputa.service.Constants.HTTP_DATE_FORMATTER;
+
+/**
+ * Entity tags, and the evaluation of the preconditions of a request against them and the last modified time,
+ * in the order of RFC 7232: If-Match, If-Unmodified-Since, If-None-Match, If-Modified-Since.
+ * <p>
+ * Times are compared in seconds, the precision of HTTP dates, a last modified time not positive is taken as unknown.
+ */
+public abstract class ConditionalRequests {
+
+  private static final String WEAK_PREFIX = "W/";
+
+  public enum Outcome {
+    PROCEED,
+    NOT_MODIFIED,
+    PRECONDITION_FAILED
+  }
+
+  /**
+   * @return a strong entity tag out of the length and the last modified time of the file
+   */
+  public static String eTag(File file) {
+    return eTag(file.length(), file.lastModified());
+  }
+
+  public static String eTag(long length, long lastModified) {
+    return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+  }
+
+  /**
+   * @return a strong entity tag out of the hash of the content
+   */
+  public static String eTag(byte[] content) {
+    return "\"" + Hashing.murmur3_128().hashBytes(content) + "\"";
+  }
+
+  /**
+   * For the representations that are only semantically equivalent, such as the ones compressed on the fly
+   */
+  public static String weaken(String eTag) {
+    return isWeak(eTag) ? eTag : WEAK_PREFIX + eTag;
+  }
+
+  public static Outcome evaluate(HttpMethod method, HttpHeaders headers, String eTag, long lastModified) {
+    String ifMatch = headers.get(HttpHeaderNames.IF_MATCH);
+    if (null != ifMatch) {
+      if (!matches(ifMatch, eTag, false)) {
+        return Outcome.PRECONDITION_FAILED;
+      }
+    } else if (isModifiedSince(headers.get(HttpHeaderNames.IF_UNMODIFIED_SINCE), lastModified, false)) {
+      return Outcome.PRECONDITION_FAILED;
+    }
+
+    boolean isGetOrHead = HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method);
+    String ifNoneMatch = headers.get(HttpHeaderNames.IF_NONE_MATCH);
+    if (null != ifNoneMatch) {
+      if (matches(ifNoneMatch, eTag, true)) {
+        return isGetOrHead ? Outcome.NOT_MODIFIED : Outcome.PRECONDITION_FAILED;
+      }
+    } else if (isGetOrHead && !isModifiedSince(headers.get(HttpHeaderNames.IF_MODIFIED_SINCE), lastModified, true)) {
+      return Outcome.NOT_MODIFIED;
+    }
+
+    return Outcome.PROCEED;
+  }
+
+  /**
+   * @return true if there's no `If-Range`, or it's the current strong entity tag or the exact last modified time,
+   * i.e. the `Range` of the request is to be honored
+   */
+  public static boolean isRangeApplicable(HttpHeaders headers, String eTag, long lastModified) {
+    String ifRange = headers.get(HttpHeaderNames.IF_RANGE);
+    if (null == ifRange) {
+      return true;
+    }
+
+    ifRange = ifRange.trim();
+    if (ifRange.startsWith("\"") || isWeak(ifRange)) {
+      return !isWeak(ifRange) && null != eTag && !isWeak(eTag) && ifRange.equals(eTag);
+    }
+
+    long date = parseDate(ifRange);
+    return date >= 0 && lastModified > 0 && toSeconds(date) == toSeconds(lastModified);
+  }
+
+  /**
+   * @param weak the weak comparison ignores the weakness of the tags, while the strong one rejects weak tags
+   */
+  static boolean matches(String header, String eTag, boolean weak) {
+    if (null == eTag) {
+      return false;
+    }
+    if ("*".equals(header.trim())) {
+      return true;
+    }
+    if (!weak && isWeak(eTag)) {
+      return false;
+    }
+
+    String opaqueTag = opaqueTag(eTag);
+    for (String candidate : header.split(",")) {
+      candidate = candidate.trim();
+      if (!weak && isWeak(candidate)) {
+        continue;
+      }
+      if (opaqueTag(candidate).equals(opaqueTag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param unknown the result when either the date or the last modified time is unknown
+   */
+  private static boolean isModifiedSince(String header, long lastModified, boolean unknown) {
+    long date = parseDate(header);
+    if (date < 0 || lastModified <= 0) {
+      return unknown;
+    }
+    return toSeconds(lastModified) > toSeconds(date);
+  }
+
+  private static boolean isWeak(String eTag) {
+    return eTag.startsWith(WEAK_PREFIX);
+  }
+
+  private static String opaqueTag(String eTag) {
+    return isWeak(eTag) ? eTag.substring(WEAK_PREFIX.length()) : eTag;
+  }
+
+  /**
+   * Accepts the formats of RFC 7231, and the one this server used to write, which clients may still echo back.
+   *
+   * @return negative if it's not a date
+   */
+  private static long parseDate(String date) {
+    long parsed = HttpDateClock.parse(date);
+    if (parsed >= 0 || null == date) {
+      return parsed;
+    }
+
+    try {
+      return DateTime.parse(date, HTTP_DATE_FORMATTER).getMillis();
+    } catch (IllegalArgumentException e) {
+      return -1;
+    }
+  }
+
+  private static long toSeconds(long millis) {
+    return millis / 1000;
+  }
+}
@@ -0,0 +1,213 @@
+package com.orctom.laputa.service.util;
+
+import io.netty.handler.codec.DateFormatter;
+import io.netty.util.AsciiString;
+
+import java.util.Date;
+
+/**
+ * HTTP dates (IMF-fixdate of RFC 7231) of the current second, optionally shifted by a fixed number of seconds,
+ * such as for `Expires`.
+ * <p>
+ * The date is rendered once per second, the first time it's asked for in that second, and the same
+ * {@link AsciiString} is shared by all the responses until the next second, which the encoders write as is.
+ */
+public class HttpDateClock {
+
+  private static final HttpDateClock NOW = new HttpDateClock(0);
+
+  private static final int IMF_FIXDATE_LENGTH = "Sun, 06 Nov 1994 08:49:37 GMT".length();
+
+  private static final String[] DAYS_OF_WEEK = {"Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat"};
+  private static final String[] MONTHS =
+      {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+  private final long offsetMillis;
+
+  private volatile Tick tick = new Tick(Long.MIN_VALUE, null);
+
+  /**
+   * @param offsetSeconds to be added to the current time
+   */
+  public HttpDateClock(int offsetSeconds) {
+    this.offsetMillis = offsetSeconds * 1000L;
+  }
+
+  /**
+   * @return the current date, for the `Date` header
+   */
+  public static AsciiString now() {
+    return NOW.get();
+  }
+
+  public AsciiString get() {
+    long second = System.currentTimeMillis() / 1000;
+    Tick current = tick;
+    if (current.second != second) {
+      current = new Tick(second, format(second * 1000 + offsetMillis));
+      tick = current;
+    }
+    return current.date;
+  }
+
+  /**
+   * Rendered in place, as {@link DateFormatter#format(Date)} doesn't pad the day of month
+   */
+  public static AsciiString format(long millis) {
+    long seconds = Math.floorDiv(millis, 1000L);
+    long days = Math.floorDiv(seconds, 86400L);
+    int secondOfDay = (int) (seconds - days * 86400L);
+
+    long dayOfEra = days + 719468;
+    long era = Math.floorDiv(dayOfEra, 146097L);
+    dayOfEra -= era * 146097L;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    int dayOfYear = (int) (dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100));
+    int shiftedMonth = (5 * dayOfYear + 2) / 153;
+    int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+    byte[] date = new byte[IMF_FIXDATE_LENGTH];
+    copy(DAYS_OF_WEEK[(int) Math.floorMod(days + 4, 7L)], date, 0);
+    date[3] = ',';
+    date[4] = ' ';
+    write(day, 2, date, 5);
+    date[7] = ' ';
+    copy(MONTHS[month - 1], date, 8);
+    date[11] = ' ';
+    write((int) year, 4, date, 12);
+    date[16] = ' ';
+    write(secondOfDay / 3600, 2, date, 17);
+    date[19] = ':';
+    write(secondOfDay / 60 % 60, 2, date, 20);
+    date[22] = ':';
+    write(secondOfDay % 60, 2, date, 23);
+    copy(" GMT", date, 25);
+    return new AsciiString(date, false);
+  }
+
+  private static void copy(String value, byte[] date, int start) {
+    for (int i = 0; i < value.length(); i++) {
+      date[start + i] = (byte) value.charAt(i);
+    }
+  }
+
+  private static void write(int value, int length, byte[] date, int start) {
+    for (int i = start + length - 1; i >= start; i--) {
+      date[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+  }
+
+  /**
+   * IMF-fixdates, what the clients send mostly, are parsed in place, the obsolete formats by {@link DateFormatter}.
+   *
+   * @return the time in millis, or negative if it's not a valid HTTP date
+   */
+  public static long parse(CharSequence date) {
+    if (null == date) {
+      return -1;
+    }
+
+    long millis = parseFixdate(date);
+    if (millis >= 0) {
+      return millis;
+    }
+
+    Date parsed = DateFormatter.parseHttpDate(date);
+    return null == parsed ? -1 : parsed.getTime();
+  }
+
+  /**
+   * `Sun, 06 Nov 1994 08:49:37 GMT`
+   */
+  private static long parseFixdate(CharSequence date) {
+    if (IMF_FIXDATE_LENGTH != date.length()
+        || ',' != date.charAt(3) || ' ' != date.charAt(4) || ' ' != date.charAt(7) || ' ' != date.charAt(11)
+        || ' ' != date.charAt(16) || ':' != date.charAt(19) || ':' != date.charAt(22) || ' ' != date.charAt(25)
+        || 'G' != date.charAt(26) || 'M' != date.charAt(27) || 'T' != date.charAt(28)) {
+      return -1;
+    }
+
+    int day = digits(date, 5, 2);
+    int month = month(date.charAt(8), date.charAt(9), date.charAt(10));
+    int year = digits(date, 12, 4);
+    int hour = digits(date, 17, 2);
+    int minute = digits(date, 20, 2);
+    int second = digits(date, 23, 2);
+    if (day < 1 || day > 31 || month < 1 || year < 1970 || hour > 23 || minute > 59 || second > 59) {
+      return -1;
+    }
+
+    return ((daysSinceEpoch(year, month, day) * 24 + hour) * 60 + minute) * 60_000L + second * 1000L;
+  }
+
+  /**
+   * @return negative if any of the chars is not a digit
+   */
+  private static int digits(CharSequence date, int start, int length) {
+    int value = 0;
+    for (int i = start; i < start + length; i++) {
+      int digit = date.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  private static int month(char c0, char c1, char c2) {
+    switch (c0) {
+      case 'J':
+        if ('a' == c1 && 'n' == c2) return 1;
+        if ('u' == c1 && 'n' == c2) return 6;
+        if ('u' == c1 && 'l' == c2) return 7;
+        return -1;
+      case 'F':
+        return 'e' == c1 && 'b' == c2 ? 2 : -1;
+      case 'M':
+        if ('a' == c1 && 'r' == c2) return 3;
+        if ('a' == c1 && 'y' == c2) return 5;
+        return -1;
+      case 'A':
+        if ('p' == c1 && 'r' == c2) return 4;
+        if ('u' == c1 && 'g' == c2) return 8;
+        return -1;
+      case 'S':
+        return 'e' == c1 && 'p' == c2 ? 9 : -1;
+      case 'O':
+        return 'c' == c1 && 't' == c2 ? 10 : -1;
+      case 'N':
+        return 'o' == c1 && 'v' == c2 ? 11 : -1;
+      case 'D':
+        return 'e' == c1 && 'c' == c2 ? 12 : -1;
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Days since 1970-01-01 of the date in the proleptic Gregorian calendar, for the years not before 1970
+   */
+  private static long daysSinceEpoch(int year, int month, int day) {
+    int y = month <= 2 ? year - 1 : year;
+    int era = y / 400;
+    int yearOfEra = y - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097L + dayOfEra - 719468;
+  }
+
+  private static class Tick {
+
+    private final long second;
+    private final AsciiString date;
+
+    private Tick(long second, AsciiString date) {
+      this.second = second;
+      this.date = date;
+    }
+  }
+}
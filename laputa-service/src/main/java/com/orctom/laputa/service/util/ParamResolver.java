@@ -10,6 +10,7 @@ import com.orctom.laputa.service.annotation.HttpHeaders;
 import com.orctom.laputa.service.annotation.Param;
 import com.orctom.laputa.service.model.RequestMapping;
 import com.orctom.laputa.service.model.RequestWrapper;
+import com.orctom.laputa.service.model.RouteMatch;
 import com.orctom.laputa.utils.ClassUtils;
 
 import java.lang.reflect.Method;
@@ -20,44 +21,30 @@ import java.util.List;
 import java.util.Map;
 
 import static com.orctom.laputa.service.Constants.PATH_SEPARATOR;
-import static com.orctom.laputa.service.Constants.SIGN_DOT;
 
 public class ParamResolver {
 
-  public static Map<String, String> extractParams(RequestMapping mapping, RequestWrapper requestWrapper) {
-    String path = processExtention(mapping, requestWrapper.getPath());
-    Map<String, List<String>> queryParameters = requestWrapper.getParams();
+  /**
+   * Merges the default values, the query params and the path variables captured by the router, in that priority.
+   */
+  public static Map<String, String> extractParams(RouteMatch routeMatch, RequestWrapper requestWrapper) {
+    RequestMapping mapping = routeMatch.getMapping();
+    Map<String, String> params = new HashMap<>(mapping.getDefaultValues());
 
-    String pattern = mapping.getUriPattern();
-    Map<String, String> params = new HashMap<>();
-
-    params.putAll(extractDefaultValues(mapping));
-    params.putAll(extractQueryParams(queryParameters));
-    params.putAll(extractPathParams(pattern, path));
+    addQueryParams(params, requestWrapper.getParams());
 
-    return params;
-  }
-
-  private static String processExtention(RequestMapping mapping, String path) {
-    if (mapping.isHonorExtension()) {
-      return path;
+    for (int i = 0, count = routeMatch.getPathVariableCount(); i < count; i++) {
+      params.put(routeMatch.getPathVariableName(i), routeMatch.getPathVariable(i));
     }
 
-    return removeExtension(path);
-  }
-
-  public static Map<String, String> extractDefaultValues(RequestMapping mapping) {
-    Map<String, String> defaultValues = new HashMap<>();
-    mapping.getHandlerParameters().forEach((key, value) -> defaultValues.put(key, value.getDefaultValue()));
-    return defaultValues;
+    return params;
   }
 
-  public static Map<String, String> extractQueryParams(Map<String, List<String>> queryParameters) {
+  private static void addQueryParams(Map<String, String> params, Map<String, List<String>> queryParameters) {
     if (null == queryParameters || queryParameters.isEmpty()) {
-      return Collections.emptyMap();
+      return;
     }
 
-    Map<String, String> queryParams = new HashMap<>();
     for (Map.Entry<String, List<String>> entry : queryParameters.entrySet()) {
       List<String> values = entry.getValue();
       if (null == values || values.isEmpty()) {
@@ -67,15 +54,13 @@ public class ParamResolver {
       int sizeOfValues = values.size();
 
       if (1 == sizeOfValues) {
-        queryParams.put(entry.getKey(), values.get(0));
+        params.put(entry.getKey(), values.get(0));
       } else {
         for (int i = 0; i < sizeOfValues; i++) {
-          queryParams.put(entry.getKey() + "[" + i + "]", values.get(i));
+          params.put(entry.getKey() + "[" + i + "]", values.get(i));
         }
       }
     }
-
-    return queryParams;
   }
 
   public static Map<String, String> extractPathParams(String pattern, String path) {
@@ -113,14 +98,6 @@ public class ParamResolver {
     return params;
   }
 
-  private static String removeExtension(String path) {
-    int dotIndex = path.indexOf(SIGN_DOT);
-    if (-1 == dotIndex) {
-      return path;
-    }
-    return path.substring(0, dotIndex);
-  }
-
   public static String getDefaultValue(Parameter parameter) {
     DefaultValue defaultValue = parameter.getAnnotation(DefaultValue.class);
     if (null != defaultValue && ClassUtils.isSimpleValueType(parameter.getType())) {
@@ -142,7 +119,7 @@ public class ParamResolver {
 
     Cookie cookie = parameter.getAnnotation(Cookie.class);
     if (null != cookie) {
-      return "_cookie_";
+      return "_cookie_" + cookie.value();
     }
 
     HttpHeaders httpHeaders = parameter.getAnnotation(HttpHeaders.class);
@@ -152,7 +129,7 @@ public class ParamResolver {
 
     HttpHeader httpHeader = parameter.getAnnotation(HttpHeader.class);
     if (null != httpHeader) {
-      return "_httpHeader_";
+      return "_httpHeader_" + httpHeader.value();
     }
 
     if (parameter.isAnnotationPresent(Data.class)) {
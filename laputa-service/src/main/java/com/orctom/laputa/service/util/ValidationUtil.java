@@ -0,0 +1,38 @@
+package com.orctom.laputa.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.metadata.MethodDescriptor;
+import java.lang.reflect.Method;
+
+/**
+ * Bean Validation for handler methods, with the constraints metadata looked up once per method, to skip the unconstrained ones.
+ */
+public abstract class ValidationUtil {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ValidationUtil.class);
+
+  private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+
+  public static Validator getValidator() {
+    return VALIDATOR;
+  }
+
+  /**
+   * @return false if none of the params is constrained or marked with @Valid, in which case validation can be skipped
+   * @throws IllegalStateException if the metadata of the method can't be looked up
+   */
+  public static boolean isConstrained(Class<?> type, Method method) {
+    try {
+      MethodDescriptor descriptor = VALIDATOR.getConstraintsForClass(type)
+          .getConstraintsForMethod(method.getName(), method.getParameterTypes());
+      return null != descriptor && descriptor.hasConstrainedParameters();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Failed to look up constraints of: {}, {}", method, e.getMessage());
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.orctom.laputa.service.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class StaticContentCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private StaticContentCache cache = new StaticContentCache(1024, 512, 256);
+
+  @Test
+  public void testShared() throws IOException {
+    File file = newFile("a.txt", 100);
+    StaticContent content = cache.get(file);
+    assertThat(cache.get(file), sameInstance(content));
+    assertThat(cache.getStats().hitCount(), equalTo(1L));
+    assertThat(cache.getStats().missCount(), equalTo(1L));
+    assertThat(cache.getBytes(), equalTo(100L));
+
+    ByteBuf first = content.retainedContent();
+    ByteBuf second = content.retainedContent();
+    first.skipBytes(10);
+    assertThat(second.readableBytes(), equalTo(100));
+    assertThat(first.isReadOnly(), equalTo(true));
+    assertThat(ByteBufUtil.getBytes(second), equalTo(Files.readAllBytes(file.toPath())));
+    first.release();
+    second.release();
+  }
+
+  @Test
+  public void testMapped() throws IOException {
+    File file = newFile("a.txt", 300);
+    ByteBuf content = cache.get(file).retainedContent();
+    assertThat(content.isDirect(), equalTo(true));
+    assertThat(ByteBufUtil.getBytes(content), equalTo(Files.readAllBytes(file.toPath())));
+    content.release();
+  }
+
+  @Test
+  public void testModified() throws IOException {
+    File file = newFile("a.txt", 100);
+    StaticContent content = cache.get(file);
+
+    Files.write(file.toPath(), new byte[120]);
+    StaticContent modified = cache.get(file);
+    assertThat(modified, not(sameInstance(content)));
+    assertThat(modified.getLength(), equalTo(120));
+    assertThat(modified.getETag(), not(equalTo(content.getETag())));
+    assertThat(cache.getBytes(), equalTo(120L));
+  }
+
+  @Test
+  public void testBoundedByBytes() throws IOException {
+    for (int i = 0; i < 10; i++) {
+      cache.get(newFile(i + ".txt", 400));
+    }
+    assertThat(cache.getBytes() <= 1024, equalTo(true));
+    assertThat(cache.getStats().evictionCount() > 0, equalTo(true));
+  }
+
+  @Test
+  public void testTooLarge() throws IOException {
+    assertThat(cache.get(newFile("a.txt", 513)), nullValue());
+    assertThat(cache.getBytes(), equalTo(0L));
+  }
+
+  @Test
+  public void testResource() throws IOException {
+    StaticContentCache cache = new StaticContentCache(1 << 20, 1 << 20, 1 << 20);
+    StaticContent inFolder = cache.get(getClass().getResource("/reference.conf"));
+    assertThat(inFolder.getLastModified() > 0, equalTo(true));
+
+    URL resource = Test.class.getResource("Test.class");
+    StaticContent inJar = cache.get(resource);
+    assertThat(inJar.getLastModified(), equalTo(0L));
+    assertThat(cache.get(resource), sameInstance(inJar));
+  }
+
+  private File newFile(String name, int length) throws IOException {
+    File file = folder.newFile(name);
+    Files.write(file.toPath(), new byte[length]);
+    return file;
+  }
+}
@@ -0,0 +1,93 @@
+package com.orctom.laputa.service.config;
+
+import com.orctom.laputa.service.model.HTTPMethod;
+import com.orctom.laputa.service.model.RequestMapping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route lookups against a table of `routes * 4` patterns, half static, half with path variables.
+ * Run with `main()` from the IDE, or via the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+  @Param({"256", "1024"})
+  private int routes;
+
+  private Router router;
+  private int[] captures;
+  private String[] staticPaths;
+  private String[] paramPaths;
+  private String[] missingPaths;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    router = new Router();
+    for (int i = 0; i < routes; i++) {
+      add("/service" + i + "/items");
+      add("/service" + i + "/items/latest");
+      add("/service" + i + "/items/{id}");
+      add("/service" + i + "/items/{id}/attributes/{attid}");
+    }
+    router.compile();
+    captures = new int[2 * router.getMaxVariables()];
+
+    staticPaths = new String[64];
+    paramPaths = new String[64];
+    missingPaths = new String[64];
+    for (int i = 0; i < 64; i++) {
+      int service = i * (routes / 64);
+      staticPaths[i] = "/service" + service + "/items/latest";
+      paramPaths[i] = "/service" + service + "/items/" + i + "/attributes/" + (i * 7) + ".json";
+      missingPaths[i] = "/service" + service + "/others/" + i;
+    }
+  }
+
+  private void add(String uriPattern) {
+    router.add(HTTPMethod.GET, RouterTest.mapping(uriPattern, HTTPMethod.GET, false));
+  }
+
+  private int next() {
+    return index = (index + 1) & 63;
+  }
+
+  @Benchmark
+  public RequestMapping staticRoute() {
+    return router.route(staticPaths[next()], HTTPMethod.GET, captures);
+  }
+
+  @Benchmark
+  public RequestMapping paramRoute() {
+    return router.route(paramPaths[next()], HTTPMethod.GET, captures);
+  }
+
+  @Benchmark
+  public RequestMapping missingRoute() {
+    return router.route(missingPaths[next()], HTTPMethod.GET, captures);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RouterBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,207 @@
+package com.orctom.laputa.service.config;
+
+import com.orctom.laputa.exception.IllegalConfigException;
+import com.orctom.laputa.service.model.HTTPMethod;
+import com.orctom.laputa.service.model.RequestMapping;
+import com.orctom.laputa.service.model.RouteMatch;
+import com.orctom.laputa.service.model.StaticMapping;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class RouterTest {
+
+  private Router router;
+
+  @Before
+  public void setUp() {
+    router = new Router();
+    add("/products", HTTPMethod.GET, false);
+    add("/products", HTTPMethod.POST, false);
+    add("/products/{id}", HTTPMethod.GET, false);
+    add("/products/new", HTTPMethod.GET, false);
+    add("/products/{id}/attributes/{attid}", HTTPMethod.GET, false);
+    add("/a/b/c", HTTPMethod.GET, false);
+    add("/a/{x}/d", HTTPMethod.GET, false);
+    add("/hello/say{sth}to", HTTPMethod.GET, false);
+    add("/hello/{sth}", HTTPMethod.GET, false);
+    add("/docs/index", HTTPMethod.GET, false);
+    add("/files/{name}", HTTPMethod.GET, true);
+    router.compile();
+  }
+
+  private void add(String uriPattern, HTTPMethod httpMethod, boolean honorExtension) {
+    router.add(httpMethod, mapping(uriPattern, httpMethod, honorExtension));
+  }
+
+  static RequestMapping mapping(String uriPattern, HTTPMethod httpMethod, boolean honorExtension) {
+    try {
+      return RequestMapping.builder()
+          .uriPattern(uriPattern)
+          .target(new Handler())
+          .handlerClass(Handler.class)
+          .handlerMethod(Handler.class.getMethod("handle"))
+          .httpMethod(httpMethod.getKey())
+          .honorExtension(honorExtension)
+          .build();
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private String route(String path, HTTPMethod httpMethod) {
+    RequestMapping mapping = router.route(path, httpMethod, null);
+    return null == mapping ? null : mapping.getUriPattern();
+  }
+
+  @Test
+  public void testStatic() {
+    assertThat(route("/products", HTTPMethod.GET), equalTo("/products"));
+    assertThat(route("/products.json", HTTPMethod.GET), equalTo("/products"));
+    assertThat(route("//products/", HTTPMethod.GET), equalTo("/products"));
+    assertThat(route("/products/new", HTTPMethod.GET), equalTo("/products/new"));
+    assertThat(route("/product", HTTPMethod.GET), nullValue());
+    assertThat(route("/", HTTPMethod.GET), nullValue());
+  }
+
+  @Test
+  public void testMethods() {
+    assertThat(route("/products", HTTPMethod.POST), equalTo("/products"));
+    assertThat(route("/products", HTTPMethod.DELETE), nullValue());
+    assertThat(route("/products/1", HTTPMethod.POST), nullValue());
+  }
+
+  @Test
+  public void testParams() {
+    int[] captures = new int[2 * router.getMaxVariables()];
+    String path = "/products/123/attributes/456.json";
+    RequestMapping mapping = router.route(path, HTTPMethod.GET, captures);
+    assertThat(mapping.getUriPattern(), equalTo("/products/{id}/attributes/{attid}"));
+    assertThat(path.substring(captures[0], captures[1]), equalTo("123"));
+    assertThat(path.substring(captures[2], captures[3]), equalTo("456"));
+
+    RouteMatch routeMatch = new RouteMatch(mapping, path, captures);
+    assertThat(routeMatch.getPathVariableCount(), equalTo(2));
+    assertThat(routeMatch.getPathVariable("id"), equalTo("123"));
+    assertThat(routeMatch.getPathVariable("attid"), equalTo("456"));
+    assertThat(routeMatch.getPathVariable("other"), nullValue());
+  }
+
+  @Test
+  public void testPrefixAndSuffix() {
+    int[] captures = new int[2 * router.getMaxVariables()];
+    String path = "/hello/sayhito";
+    assertThat(router.route(path, HTTPMethod.GET, captures).getUriPattern(), equalTo("/hello/say{sth}to"));
+    assertThat(path.substring(captures[0], captures[1]), equalTo("hi"));
+    assertThat(route("/hello/sayto", HTTPMethod.GET), equalTo("/hello/{sth}"));
+    assertThat(route("/hello/world", HTTPMethod.GET), equalTo("/hello/{sth}"));
+  }
+
+  @Test
+  public void testBacktracking() {
+    assertThat(route("/a/b/c", HTTPMethod.GET), equalTo("/a/b/c"));
+    assertThat(route("/a/b/d", HTTPMethod.GET), equalTo("/a/{x}/d"));
+    assertThat(route("/a/b/e", HTTPMethod.GET), nullValue());
+  }
+
+  @Test
+  public void testIndex() {
+    assertThat(route("/docs/", HTTPMethod.GET), equalTo("/docs/index"));
+    assertThat(route("/docs", HTTPMethod.GET), nullValue());
+  }
+
+  @Test
+  public void testExtension() {
+    int[] captures = new int[2 * router.getMaxVariables()];
+    String path = "/files/report.pdf";
+    assertThat(router.route(path, HTTPMethod.GET, captures).getUriPattern(), equalTo("/files/{name}"));
+    assertThat(path.substring(captures[0], captures[1]), equalTo("report.pdf"));
+  }
+
+  @Test
+  public void testStaticMappings() {
+    router.addStaticMapping(new StaticMapping("/js", "classpath:/theme/js"));
+    router.addStaticMapping(new StaticMapping("/js/vendor", "/opt/vendor"));
+    router.addStaticMapping(new StaticMapping("/favicon.ico", "classpath:/theme/ico/favicon.ico"));
+    router.addStaticMapping(new StaticMapping("/products/images", "/opt/images"));
+    router.compile();
+
+    assertThat(routeStatic("/js/app.js"), equalTo("/js"));
+    assertThat(routeStatic("/js"), equalTo("/js"));
+    assertThat(routeStatic("/js/vendor/jquery.js"), equalTo("/js/vendor"));
+    assertThat(routeStatic("/js/vendors.js"), equalTo("/js"));
+    assertThat(routeStatic("/favicon.ico"), equalTo("/favicon.ico"));
+    assertThat(routeStatic("/json"), nullValue());
+    assertThat(routeStatic("/products/images/1.png"), equalTo("/products/images"));
+    assertThat(routeStatic("/products/1"), nullValue());
+    assertThat(routeStatic("//js/app.js"), nullValue());
+    assertThat(routeStatic("/"), nullValue());
+
+    assertThat(route("/products/1", HTTPMethod.GET), equalTo("/products/{id}"));
+  }
+
+  @Test
+  public void testRootStaticMapping() {
+    router.addStaticMapping(new StaticMapping("", "/opt/www"));
+    router.addStaticMapping(new StaticMapping("/js", "classpath:/theme/js"));
+    router.compile();
+
+    assertThat(routeStatic("/js/app.js"), equalTo("/js"));
+    assertThat(routeStatic("/app.js"), nullValue());
+    assertThat(routeStatic("/"), nullValue());
+    assertThat(route("/products/1", HTTPMethod.GET), equalTo("/products/{id}"));
+    assertThat(router.getRootStaticMapping().getPath(), equalTo("/opt/www"));
+
+    StaticMapping root = router.getRootStaticMapping();
+    assertThat(root.getRelativePath("/index.html"), equalTo("/index.html"));
+    assertThat(root.getRelativePath("/assets/app.js"), equalTo("/assets/app.js"));
+  }
+
+  @Test
+  public void testMultiSegmentStaticMappings() {
+    router.addStaticMapping(new StaticMapping("/static/js", "/opt/js"));
+    router.addStaticMapping(new StaticMapping("/static/ico/favicon.ico", "/opt/ico/favicon.ico"));
+    router.compile();
+
+    StaticMapping js = router.routeStatic("/static/js/lib/app.js");
+    assertThat(js.getUri(), equalTo("/static/js"));
+    assertThat(js.getRelativePath("/static/js/lib/app.js"), equalTo("/js/lib/app.js"));
+    assertThat(routeStatic("/static/css/app.css"), nullValue());
+
+    StaticMapping favicon = router.routeStatic("/static/ico/favicon.ico");
+    assertThat(favicon.getUri(), equalTo("/static/ico/favicon.ico"));
+    assertThat(favicon.getRelativePath("/static/ico/favicon.ico"), equalTo(""));
+    assertThat(router.getRootStaticMapping(), nullValue());
+  }
+
+  private String routeStatic(String path) {
+    StaticMapping staticMapping = router.routeStatic(path);
+    return null == staticMapping ? null : staticMapping.getUri();
+  }
+
+  @Test
+  public void testConflicts() {
+    Router router = new Router();
+    router.add(HTTPMethod.GET, mapping("/products/{id}", HTTPMethod.GET, false));
+    try {
+      router.add(HTTPMethod.GET, mapping("/products/{sku}", HTTPMethod.GET, false));
+      throw new AssertionError("conflicts expected");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage().startsWith("Conflicts found"), equalTo(true));
+    }
+  }
+
+  @Test(expected = IllegalConfigException.class)
+  public void testMultipleVariablesInOneSegment() {
+    new Router().add(HTTPMethod.GET, mapping("/products/{id}-{name}", HTTPMethod.GET, false));
+  }
+
+  public static class Handler {
+    public String handle() {
+      return "ok";
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.annotation.Throttle;
+import com.orctom.laputa.service.model.HTTPMethod;
+import com.orctom.laputa.service.model.RequestMapping;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class AdmissionControllerTest {
+
+  private static final InetSocketAddress CLIENT_A = new InetSocketAddress("10.0.0.1", 10000);
+  private static final InetSocketAddress CLIENT_B = new InetSocketAddress("10.0.0.2", 10000);
+
+  @Test
+  public void testClientRefundedOnGlobalRejection() throws InterruptedException {
+    AdmissionController controller = new AdmissionController(20D, null, 1D, 0.05, 0, 100);
+    assertThat(controller.admit(null, CLIENT_A), equalTo(0L));
+    assertThat(controller.admit(null, CLIENT_B), equalTo(AdmissionController.REJECTED));
+
+    TimeUnit.MILLISECONDS.sleep(60);
+    assertThat(controller.admit(null, CLIENT_B), equalTo(0L));
+    assertThat(controller.getRejected(), equalTo(1L));
+  }
+
+  @Test
+  public void testClientRefundedOnRouteRejection() throws InterruptedException {
+    AdmissionController controller = new AdmissionController(null, 20D, 1D, 0.05, 0, 100);
+    RequestMapping mapping = mapping("/product/{id}");
+    assertThat(controller.admit(mapping, CLIENT_A), equalTo(0L));
+    assertThat(controller.admit(mapping, CLIENT_B), equalTo(AdmissionController.REJECTED));
+
+    TimeUnit.MILLISECONDS.sleep(60);
+    assertThat(controller.admit(mapping, CLIENT_B), equalTo(0L));
+  }
+
+  /**
+   * GET and POST of one pattern throttled differently, each by its own
+   */
+  @Test
+  public void testRoutesByMethod() {
+    AdmissionController controller = new AdmissionController(null, null, null, 0.05, 0, 100);
+    RequestMapping post = mapping("/product/{id}", HTTPMethod.POST, "throttled");
+    RequestMapping get = mapping("/product/{id}", HTTPMethod.GET, "handle");
+    assertThat(controller.admit(post, CLIENT_A), equalTo(0L));
+    assertThat(controller.admit(post, CLIENT_A), equalTo(AdmissionController.REJECTED));
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(controller.admit(get, CLIENT_A), equalTo(0L));
+    }
+  }
+
+  @Test
+  public void testWholeRateFromOneThread() {
+    AdmissionController controller = new AdmissionController(1000D, null, null, 0.008, 0, 100);
+    int admitted = 0;
+    for (int i = 0; i < 8; i++) {
+      if (0L == controller.admit(null, CLIENT_A)) {
+        admitted++;
+      }
+    }
+    assertThat(admitted, equalTo(8));
+  }
+
+  private static RequestMapping mapping(String uriPattern) {
+    return mapping(uriPattern, HTTPMethod.GET, "handle");
+  }
+
+  private static RequestMapping mapping(String uriPattern, HTTPMethod httpMethod, String handlerMethod) {
+    try {
+      return RequestMapping.builder()
+          .uriPattern(uriPattern)
+          .target(new Target())
+          .handlerClass(Target.class)
+          .handlerMethod(Target.class.getMethod(handlerMethod))
+          .httpMethod(httpMethod.getKey())
+          .build();
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static class Target {
+
+    public String handle() {
+      return "ok";
+    }
+
+    @Throttle(20)
+    public String throttled() {
+      return "ok";
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.annotation.GET;
+import com.orctom.laputa.service.annotation.PATH;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.config.MappingConfig;
+import com.orctom.laputa.service.controller.DefaultController;
+import io.netty.channel.Channel;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.stereotype.Controller;
+
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.orctom.laputa.service.internal.HttpSockets.*;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+/**
+ * The listeners sharing the event loops, and the connections drained on shutdown, over plain sockets.
+ */
+public class BootstrapperTest {
+
+  private static final long SLOW_MILLIS = 1000;
+
+  private static ScheduledExecutorService scheduler;
+
+  @BeforeClass
+  public static void beforeClass() {
+    Configurator.getInstance();
+    AnnotationConfigApplicationContext applicationContext = new AnnotationConfigApplicationContext();
+    applicationContext.register(DefaultController.class, DrainController.class);
+    applicationContext.refresh();
+    MappingConfig.getInstance().scan(applicationContext);
+
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void testSharedGroups() throws Exception {
+    Bootstrapper bootstrapper = new Bootstrapper();
+    try {
+      bootstrapper.listen(0, false);
+      bootstrapper.listen(0, false);
+      bootstrapper.listenMetrics(0);
+      assertThat(bootstrapper.getListeners().size(), equalTo(3));
+
+      Channel first = bootstrapper.getListeners().get(0);
+      for (Channel listener : bootstrapper.getListeners()) {
+        assertThat(listener.eventLoop().parent(), sameInstance(first.eventLoop().parent()));
+      }
+
+      String firstThread = get(port(bootstrapper.getListeners().get(0)), "/drain/thread");
+      String secondThread = get(port(bootstrapper.getListeners().get(1)), "/drain/thread");
+      assertThat(firstThread, containsString("laputa-worker-"));
+      assertThat(secondThread, containsString(workerPrefix(firstThread)));
+    } finally {
+      bootstrapper.shutdown();
+    }
+  }
+
+  @Test
+  public void testDrain() throws Exception {
+    Bootstrapper bootstrapper = new Bootstrapper();
+    bootstrapper.listen(0, false);
+    int port = port(bootstrapper.getListeners().get(0));
+
+    Thread shutdown = new Thread(bootstrapper::shutdown);
+    try (Socket idle = connect(port); Socket pipelined = connect(port)) {
+      write(idle, request("/drain/thread"));
+      assertThat(readResponse(idle.getInputStream()), startsWith("http/1.1 200"));
+
+      DrainController.started = new CountDownLatch(2);
+      DrainController.completed.set(0);
+      write(pipelined, request("/drain/slow") + request("/drain/slow"));
+      assertThat(DrainController.started.await(5, TimeUnit.SECONDS), equalTo(true));
+
+      shutdown.start();
+      assertThat(idle.getInputStream().read(), equalTo(-1));
+      assertThat(DrainController.completed.get(), equalTo(0));
+
+      String first = readResponse(pipelined.getInputStream());
+      assertThat(first, startsWith("http/1.1 200"));
+      assertThat(first, not(containsString("connection: close")));
+      String second = readResponse(pipelined.getInputStream());
+      assertThat(second, startsWith("http/1.1 200"));
+      assertThat(second, containsString("connection: close"));
+      assertThat(pipelined.getInputStream().read(), equalTo(-1));
+    } finally {
+      shutdown.join(TimeUnit.SECONDS.toMillis(30));
+    }
+  }
+
+  private static String workerPrefix(String threadName) {
+    int start = threadName.indexOf("laputa-worker-");
+    return threadName.substring(start, threadName.indexOf('-', start + "laputa-worker-".length()) + 1);
+  }
+
+  @Controller
+  public static class DrainController {
+
+    private static volatile CountDownLatch started = new CountDownLatch(0);
+    private static final AtomicInteger completed = new AtomicInteger();
+
+    @GET
+    @PATH("/drain/slow")
+    public CompletableFuture<String> slow() {
+      CompletableFuture<String> result = new CompletableFuture<>();
+      scheduler.schedule(() -> {
+        completed.incrementAndGet();
+        result.complete("slow");
+      }, SLOW_MILLIS, TimeUnit.MILLISECONDS);
+      started.countDown();
+      return result;
+    }
+
+    @GET
+    @PATH("/drain/thread")
+    public String thread() {
+      return Thread.currentThread().getName();
+    }
+  }
+}
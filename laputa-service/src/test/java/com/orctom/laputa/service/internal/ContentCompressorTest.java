@@ -0,0 +1,144 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ContentCompressorTest {
+
+  private EmbeddedChannel channel;
+
+  @Before
+  public void setUp() {
+    ContentCompressor.Settings settings = new ContentCompressor.Settings(
+        true,
+        5,
+        1024,
+        Arrays.asList("text/*", "application/json", "application/*+json"),
+        Collections.singletonList("text/event-stream")
+    );
+    channel = new EmbeddedChannel(new ContentCompressor(settings));
+  }
+
+  @Test
+  public void testCompressed() {
+    assertThat(getContentEncoding("text/html; charset=UTF-8", 2048), equalTo("gzip"));
+    assertThat(getContentEncoding("application/hal+json", 2048), equalTo("gzip"));
+  }
+
+  @Test
+  public void testSmallerThanMinSize() {
+    assertThat(getContentEncoding("application/json", 100), nullValue());
+  }
+
+  @Test
+  public void testMediaTypeNotCompressible() {
+    assertThat(getContentEncoding("image/png", 2048), nullValue());
+    assertThat(getContentEncoding("text/event-stream", 2048), nullValue());
+    assertThat(getContentEncoding(null, 2048), nullValue());
+  }
+
+  @Test
+  public void testIdentityMarkRemoved() {
+    assertThat(getContentEncoding(markUncompressed(newResponse("text/css", 2048))), nullValue());
+  }
+
+  @Test
+  public void testIdentityMarkRemovedFromPassedThrough() {
+    FullHttpResponse head = markUncompressed(newResponse("text/css", 2048));
+    assertThat(getContentEncoding(newRequest(HttpVersion.HTTP_1_1, HttpMethod.HEAD), head), nullValue());
+
+    FullHttpResponse http10 = markUncompressed(newResponse("text/css", 2048));
+    assertThat(getContentEncoding(newRequest(HttpVersion.HTTP_1_0, HttpMethod.GET), http10), nullValue());
+
+    FullHttpResponse notModified = markUncompressed(newResponse("text/css", 0));
+    notModified.setStatus(HttpResponseStatus.NOT_MODIFIED);
+    assertThat(getContentEncoding(notModified), nullValue());
+
+    FullHttpResponse noContent = markUncompressed(newResponse(null, 0));
+    noContent.setStatus(HttpResponseStatus.NO_CONTENT);
+    assertThat(getContentEncoding(noContent), nullValue());
+
+    assertThat(getContentEncoding(markUncompressed(newResponse("text/css", 0))), nullValue());
+  }
+
+  @Test
+  public void testIdentityMarkNotCarriedOver() {
+    getContentEncoding(markUncompressed(newResponse("text/css", 0)));
+    assertThat(getContentEncoding("text/css", 2048), equalTo("gzip"));
+  }
+
+  @Test
+  public void testAlreadyEncoded() {
+    FullHttpResponse res = newResponse("text/css", 2048);
+    res.headers().set(HttpHeaderNames.CONTENT_ENCODING, "br");
+    assertThat(getContentEncoding(res), equalTo("br"));
+  }
+
+  private String getContentEncoding(String contentType, int size) {
+    return getContentEncoding(newResponse(contentType, size));
+  }
+
+  private String getContentEncoding(FullHttpResponse res) {
+    return getContentEncoding(newRequest(HttpVersion.HTTP_1_1, HttpMethod.GET), res);
+  }
+
+  private String getContentEncoding(FullHttpRequest req, FullHttpResponse res) {
+    channel.writeInbound(req);
+    ReferenceCountUtil.release(channel.readInbound());
+
+    channel.writeOutbound(res);
+    Object written;
+    HttpResponse head = null;
+    while (null != (written = channel.readOutbound())) {
+      if (null == head && written instanceof HttpResponse) {
+        head = (HttpResponse) written;
+      }
+      ReferenceCountUtil.release(written);
+    }
+    return head.headers().get(HttpHeaderNames.CONTENT_ENCODING);
+  }
+
+  private FullHttpRequest newRequest(HttpVersion version, HttpMethod method) {
+    FullHttpRequest req = new DefaultFullHttpRequest(version, method, "/");
+    req.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip, deflate");
+    return req;
+  }
+
+  private FullHttpResponse markUncompressed(FullHttpResponse res) {
+    res.headers().set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.IDENTITY);
+    return res;
+  }
+
+  private FullHttpResponse newResponse(String contentType, int size) {
+    FullHttpResponse res = new DefaultFullHttpResponse(
+        HttpVersion.HTTP_1_1,
+        HttpResponseStatus.OK,
+        Unpooled.wrappedBuffer(new byte[size])
+    );
+    if (null != contentType) {
+      res.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+    }
+    res.headers().set(HttpHeaderNames.CONTENT_LENGTH, size);
+    return res;
+  }
+}
@@ -0,0 +1,99 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.annotation.GET;
+import com.orctom.laputa.service.annotation.PATH;
+import com.orctom.laputa.service.annotation.Param;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.config.MappingConfig;
+import com.orctom.laputa.service.controller.DefaultController;
+import com.orctom.laputa.service.model.DispatchMode;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.stereotype.Controller;
+
+import javax.validation.constraints.Size;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Constrained handlers validated on the validation executor.
+ */
+public class DefaultRequestProcessorTest {
+
+  @BeforeClass
+  public static void beforeClass() {
+    Configurator.getInstance();
+    AnnotationConfigApplicationContext applicationContext = new AnnotationConfigApplicationContext();
+    applicationContext.register(DefaultController.class, ValidatingController.class);
+    applicationContext.refresh();
+    MappingConfig.getInstance().scan(applicationContext);
+  }
+
+  /**
+   * One validation thread busy and one request queued, the next one is rejected right on the event loop
+   */
+  @Test
+  public void testSaturated() throws Exception {
+    DefaultRequestProcessor handler = new DefaultRequestProcessor(1, 1);
+    LaputaRequestProcessor requestProcessor = new LaputaRequestProcessor(new Dispatcher(DispatchMode.INLINE, 1, 1), handler);
+    EmbeddedChannel channel = new EmbeddedChannel(new LaputaServerHandler(false, requestProcessor, true));
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch blocked = new CountDownLatch(1);
+    try {
+      ExecutorService validationExecutor = handler.getValidationExecutor();
+      Runnable blocking = () -> {
+        started.countDown();
+        try {
+          blocked.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      };
+      validationExecutor.execute(blocking);
+      validationExecutor.execute(blocking);
+      assertThat(started.await(5, TimeUnit.SECONDS), equalTo(true));
+
+      FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/validating?name=laputa");
+      request.headers().set(HttpHeaderNames.HOST, "localhost");
+      channel.writeInbound(request);
+      channel.runPendingTasks();
+
+      FullHttpResponse response = channel.readOutbound();
+      try {
+        assertThat(response, notNullValue());
+        assertThat(response.status(), equalTo(HttpResponseStatus.SERVICE_UNAVAILABLE));
+      } finally {
+        response.release();
+      }
+      assertThat(requestProcessor.getInFlight(), equalTo(0L));
+    } finally {
+      blocked.countDown();
+      channel.finishAndReleaseAll();
+      requestProcessor.shutdown(System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+    }
+  }
+
+  @Controller
+  public static class ValidatingController {
+
+    @GET
+    @PATH("/validating")
+    public String validating(@Param("name") @Size(max = 8) String name) {
+      return name;
+    }
+  }
+}
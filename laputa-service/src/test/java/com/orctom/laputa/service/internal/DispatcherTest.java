@@ -0,0 +1,195 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.annotation.Dispatch;
+import com.orctom.laputa.service.annotation.GET;
+import com.orctom.laputa.service.annotation.PATH;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.config.MappingConfig;
+import com.orctom.laputa.service.controller.DefaultController;
+import com.orctom.laputa.service.model.DispatchMode;
+import com.orctom.laputa.service.model.HTTPMethod;
+import com.orctom.laputa.service.model.RequestMapping;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.stereotype.Controller;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.orctom.laputa.service.internal.HttpSockets.*;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Requests processed inline on the event loop, or dispatched to the business pool and virtual threads.
+ */
+public class DispatcherTest {
+
+  @BeforeClass
+  public static void beforeClass() {
+    Configurator.getInstance();
+    AnnotationConfigApplicationContext applicationContext = new AnnotationConfigApplicationContext();
+    applicationContext.register(DefaultController.class, DispatchController.class);
+    applicationContext.refresh();
+    MappingConfig.getInstance().scan(applicationContext);
+  }
+
+  @Test
+  public void testGetExecutor() {
+    Dispatcher dispatcher = new Dispatcher(DispatchMode.INLINE, 1, 1);
+    try {
+      assertThat(dispatcher.getExecutor(mapping("/dispatch/inline")), nullValue());
+      assertThat(dispatcher.getExecutor(null), nullValue());
+      assertThat(dispatcher.getExecutor(mapping("/dispatch/pool")), notNullValue());
+    } finally {
+      dispatcher.shutdown(System.nanoTime());
+    }
+
+    Dispatcher pooled = new Dispatcher(DispatchMode.POOL, 1, 1);
+    try {
+      assertThat(pooled.getExecutor(null), sameInstance(pooled.getExecutor(mapping("/dispatch/pool"))));
+      assertThat(pooled.getExecutor(mapping("/dispatch/inline")), nullValue());
+    } finally {
+      pooled.shutdown(System.nanoTime());
+    }
+  }
+
+  @Test
+  public void testVirtualFallsBackToPool() {
+    Assume.assumeFalse(hasVirtualThreads());
+    Dispatcher dispatcher = new Dispatcher(DispatchMode.INLINE, 1, 1);
+    try {
+      assertThat(dispatcher.getExecutor(mapping("/dispatch/virtual")),
+          sameInstance(dispatcher.getExecutor(mapping("/dispatch/pool"))));
+    } finally {
+      dispatcher.shutdown(System.nanoTime());
+    }
+  }
+
+  @Test
+  public void testThreads() throws Exception {
+    Bootstrapper bootstrapper = new Bootstrapper();
+    try {
+      bootstrapper.listen(0, false);
+      int port = port(bootstrapper.getListeners().get(0));
+
+      String inline = get(port, "/dispatch/inline");
+      assertThat(inline, containsString("laputa-worker-"));
+      String pool = get(port, "/dispatch/pool");
+      assertThat(pool, containsString("laputa-dispatch-"));
+      assertThat(pool, not(containsString("laputa-worker-")));
+      String virtual = get(port, "/dispatch/virtual");
+      assertThat(virtual, not(containsString("laputa-worker-")));
+      if (!hasVirtualThreads()) {
+        assertThat(virtual, containsString("laputa-dispatch-"));
+      }
+    } finally {
+      bootstrapper.shutdown();
+    }
+  }
+
+  /**
+   * One business thread busy and one request queued, the next one is rejected right on the event loop
+   */
+  @Test
+  public void testSaturated() throws Exception {
+    Dispatcher dispatcher = new Dispatcher(DispatchMode.INLINE, 1, 1);
+    LaputaRequestProcessor requestProcessor = new LaputaRequestProcessor(dispatcher, new DefaultRequestProcessor());
+    EmbeddedChannel channel = new EmbeddedChannel(new LaputaServerHandler(false, requestProcessor, true));
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch blocked = new CountDownLatch(1);
+    try {
+      Executor pool = dispatcher.getExecutor(mapping("/dispatch/pool"));
+      Runnable blocking = () -> {
+        started.countDown();
+        try {
+          blocked.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      };
+      pool.execute(blocking);
+      pool.execute(blocking);
+      assertThat(started.await(5, TimeUnit.SECONDS), equalTo(true));
+
+      FullHttpRequest request = request("/dispatch/pool");
+      channel.writeInbound(request);
+      channel.runPendingTasks();
+
+      FullHttpResponse response = channel.readOutbound();
+      try {
+        assertThat(response, notNullValue());
+        assertThat(response.status(), equalTo(HttpResponseStatus.SERVICE_UNAVAILABLE));
+      } finally {
+        response.release();
+      }
+      assertThat(request.refCnt(), equalTo(0));
+      assertThat(requestProcessor.getInFlight(), equalTo(0L));
+    } finally {
+      blocked.countDown();
+      channel.finishAndReleaseAll();
+      requestProcessor.shutdown(System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+    }
+  }
+
+  private static boolean hasVirtualThreads() {
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static RequestMapping mapping(String path) {
+    return MappingConfig.getInstance().match(path, HTTPMethod.GET).getMapping();
+  }
+
+  private static FullHttpRequest request(String uri) {
+    FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    request.headers().set(HttpHeaderNames.HOST, "localhost");
+    return request;
+  }
+
+  @Controller
+  public static class DispatchController {
+
+    @GET
+    @PATH("/dispatch/inline")
+    @Dispatch(DispatchMode.INLINE)
+    public String inline() {
+      return Thread.currentThread().getName();
+    }
+
+    @GET
+    @PATH("/dispatch/pool")
+    @Dispatch(DispatchMode.POOL)
+    public String pool() {
+      return Thread.currentThread().getName();
+    }
+
+    @GET
+    @PATH("/dispatch/virtual")
+    @Dispatch(DispatchMode.VIRTUAL)
+    public String virtual() {
+      return Thread.currentThread().getName();
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.config.Configurator;
+import io.netty.channel.DefaultEventLoopGroup;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class EventLoopMonitorTest {
+
+  @BeforeClass
+  public static void beforeClass() {
+    Configurator.getInstance();
+  }
+
+  @Test
+  public void testBlockedLoop() throws InterruptedException {
+    DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+    EventLoopMonitor.register("blocking", group);
+    try {
+      EventLoopMonitor.Loop loop = getLoop("blocking");
+      assertThat(loop, notNullValue());
+      awaitProbes(loop, 1);
+
+      CountDownLatch unblocked = new CountDownLatch(1);
+      group.execute(() -> {
+        try {
+          TimeUnit.MILLISECONDS.sleep(1500);
+        } catch (InterruptedException ignored) {
+        }
+        unblocked.countDown();
+      });
+      assertTrue(unblocked.await(5, TimeUnit.SECONDS));
+
+      long probes = loop.getDelay().snapshot().getCount();
+      awaitProbes(loop, probes + 1);
+      assertThat(loop.getBlocked().getCount(), equalTo(1L));
+      assertTrue(loop.getDelay().snapshot().getMax() >= TimeUnit.SECONDS.toNanos(1));
+
+    } finally {
+      EventLoopMonitor.unregister("blocking");
+      group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+  }
+
+  private EventLoopMonitor.Loop getLoop(String group) {
+    AtomicReference<EventLoopMonitor.Loop> found = new AtomicReference<>();
+    EventLoopMonitor.forEach((name, index, loop) -> {
+      if (group.equals(name)) {
+        found.set(loop);
+      }
+    });
+    return found.get();
+  }
+
+  private void awaitProbes(EventLoopMonitor.Loop loop, long probes) throws InterruptedException {
+    for (int i = 0; i < 50 && loop.getDelay().snapshot().getCount() < probes; i++) {
+      TimeUnit.MILLISECONDS.sleep(50);
+    }
+    assertTrue(loop.getDelay().snapshot().getCount() >= probes);
+  }
+}
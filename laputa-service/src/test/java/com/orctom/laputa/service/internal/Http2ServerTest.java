@@ -0,0 +1,299 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.annotation.PATH;
+import com.orctom.laputa.service.annotation.POST;
+import com.orctom.laputa.service.annotation.Streaming;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.config.MappingConfig;
+import com.orctom.laputa.service.controller.DefaultController;
+import com.orctom.laputa.service.model.BodySink;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpScheme;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.DefaultHttp2Connection;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.InboundHttp2ToHttpAdapterBuilder;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.stereotype.Controller;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Requests over HTTP/2 streams, through the same pipeline as the server's, to a @Streaming route.
+ */
+public class Http2ServerTest {
+
+  private static final int MAX_CONTENT_LENGTH = 1024 * 1024;
+
+  private static EventLoopGroup group;
+  private static LaputaRequestProcessor requestProcessor;
+  private static SelfSignedCertificate certificate;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    Configurator.getInstance();
+    AnnotationConfigApplicationContext applicationContext = new AnnotationConfigApplicationContext();
+    applicationContext.register(DefaultController.class, UploadController.class);
+    applicationContext.refresh();
+    MappingConfig.getInstance().scan(applicationContext);
+
+    group = new NioEventLoopGroup(2);
+    requestProcessor = new LaputaRequestProcessor();
+    certificate = new SelfSignedCertificate();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    requestProcessor.shutdown(System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+    group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    certificate.delete();
+  }
+
+  @Test
+  public void testCleartext() throws Exception {
+    Channel server = bind(null);
+    Client client = connect(server, null);
+    try {
+      assertUploads(client);
+    } finally {
+      client.channel.close().sync();
+      server.close().sync();
+    }
+  }
+
+  @Test
+  public void testAlpn() throws Exception {
+    SslContext serverContext = buildSslContext(true);
+    Channel server = bind(serverContext);
+    Client client = connect(server, buildSslContext(false));
+    try {
+      SslHandler sslHandler = client.channel.pipeline().get(SslHandler.class);
+      sslHandler.handshakeFuture().sync();
+      assertThat(sslHandler.applicationProtocol(), equalTo(ApplicationProtocolNames.HTTP_2));
+      assertUploads(client);
+    } finally {
+      client.channel.close().sync();
+      server.close().sync();
+    }
+  }
+
+  @Test
+  public void testGoAwayOnDrain() throws Exception {
+    ChannelGroup connections = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    Channel server = bind(null, connections);
+    Client client = connect(server, null);
+    try {
+      assertUploads(client);
+      assertThat(connections.size(), equalTo(1));
+
+      Channel connection = connections.iterator().next();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      connection.eventLoop().execute(() -> Bootstrapper.drain(connection, deadline));
+      assertThat(client.channel.closeFuture().await(5, TimeUnit.SECONDS), is(true));
+      assertThat(client.connection.goAwayReceived(), is(true));
+    } finally {
+      client.channel.close().sync();
+      server.close().sync();
+    }
+  }
+
+  private void assertUploads(Client client) throws InterruptedException {
+    FullHttpResponse empty = client.send(request(3, Unpooled.EMPTY_BUFFER));
+    try {
+      assertThat(empty.status(), equalTo(HttpResponseStatus.OK));
+      assertThat(empty.content().toString(CharsetUtil.UTF_8), containsString("received: 0"));
+    } finally {
+      empty.release();
+    }
+
+    FullHttpResponse sent = client.send(request(5, Unpooled.copiedBuffer("hello http/2", CharsetUtil.UTF_8)));
+    try {
+      assertThat(sent.status(), equalTo(HttpResponseStatus.OK));
+      assertThat(sent.content().toString(CharsetUtil.UTF_8), containsString("received: 12"));
+    } finally {
+      sent.release();
+    }
+  }
+
+  private FullHttpRequest request(int streamId, ByteBuf content) {
+    FullHttpRequest request = new DefaultFullHttpRequest(
+        HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload", content);
+    request.headers().set(HttpHeaderNames.HOST, "localhost");
+    request.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/octet-stream");
+    request.headers().setInt(HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text(), streamId);
+    request.headers().set(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text(), HttpScheme.HTTP.name());
+    if (content.isReadable()) {
+      HttpUtil.setContentLength(request, content.readableBytes());
+    }
+    return request;
+  }
+
+  /**
+   * Skipped if neither OpenSSL nor the JDK supports ALPN in this environment
+   */
+  private SslContext buildSslContext(boolean server) throws Exception {
+    SslProvider provider = OpenSsl.isAlpnSupported() ? SslProvider.OPENSSL : SslProvider.JDK;
+    SslContextBuilder builder = server ?
+        SslContextBuilder.forServer(certificate.certificate(), certificate.privateKey()) :
+        SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE);
+    try {
+      SslContext context = builder
+          .sslProvider(provider)
+          .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+          .applicationProtocolConfig(new ApplicationProtocolConfig(
+              ApplicationProtocolConfig.Protocol.ALPN,
+              ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+              ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+              ApplicationProtocolNames.HTTP_2))
+          .build();
+      context.newEngine(UnpooledByteBufAllocator.DEFAULT);
+      return context;
+    } catch (RuntimeException | LinkageError e) {
+      Assume.assumeTrue("ALPN is not supported: " + e.getMessage(), false);
+      return null;
+    }
+  }
+
+  private Channel bind(SslContext sslContext) throws InterruptedException {
+    return bind(sslContext, new DefaultChannelGroup(GlobalEventExecutor.INSTANCE));
+  }
+
+  private Channel bind(SslContext sslContext, ChannelGroup connections) throws InterruptedException {
+    LaputaServerInitializer initializer = new LaputaServerInitializer(
+        sslContext,
+        null,
+        "/websocket",
+        requestProcessor,
+        connections,
+        true
+    );
+    return new ServerBootstrap()
+        .group(group)
+        .channel(NioServerSocketChannel.class)
+        .childHandler(initializer)
+        .bind("127.0.0.1", 0)
+        .sync()
+        .channel();
+  }
+
+  private Client connect(Channel server, SslContext sslContext) throws InterruptedException {
+    Client client = new Client();
+    client.channel = new Bootstrap()
+        .group(group)
+        .channel(NioSocketChannel.class)
+        .handler(new ChannelInitializer<Channel>() {
+          @Override
+          protected void initChannel(Channel ch) {
+            if (null != sslContext) {
+              ch.pipeline().addLast(sslContext.newHandler(ch.alloc()));
+            }
+            Http2Connection connection = new DefaultHttp2Connection(false);
+            client.connection = connection;
+            ch.pipeline().addLast(new HttpToHttp2ConnectionHandlerBuilder()
+                .connection(connection)
+                .frameListener(new InboundHttp2ToHttpAdapterBuilder(connection)
+                    .maxContentLength(MAX_CONTENT_LENGTH)
+                    .propagateSettings(false)
+                    .build())
+                .build());
+            ch.pipeline().addLast(client);
+          }
+        })
+        .connect(server.localAddress())
+        .sync()
+        .channel();
+    return client;
+  }
+
+  private static class Client extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+    private final BlockingQueue<FullHttpResponse> responses = new LinkedBlockingQueue<>();
+    private Channel channel;
+    private Http2Connection connection;
+
+    Client() {
+      super(false);
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+      responses.add(response);
+    }
+
+    FullHttpResponse send(FullHttpRequest request) throws InterruptedException {
+      channel.writeAndFlush(request);
+      FullHttpResponse response = responses.poll(5, TimeUnit.SECONDS);
+      assertThat("response of " + request.uri() + " over " + channel.localAddress(), response, notNullValue());
+      return response;
+    }
+  }
+
+  @Controller
+  public static class UploadController {
+
+    @POST
+    @Streaming(sink = CountingBodySink.class)
+    @PATH("/upload")
+    public String upload(CountingBodySink body) {
+      return "received: " + body.size;
+    }
+  }
+
+  public static class CountingBodySink implements BodySink {
+
+    private long size;
+
+    @Override
+    public void write(ByteBuf content) {
+      size += content.readableBytes();
+    }
+  }
+}
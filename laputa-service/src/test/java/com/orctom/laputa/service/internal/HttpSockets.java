@@ -0,0 +1,81 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.channel.Channel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plain HTTP/1.1 over sockets, for the tests against a listening server.
+ */
+class HttpSockets {
+
+  private HttpSockets() {
+  }
+
+  static int port(Channel listener) {
+    return ((InetSocketAddress) listener.localAddress()).getPort();
+  }
+
+  static Socket connect(int port) throws IOException {
+    Socket socket = new Socket("127.0.0.1", port);
+    socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(5));
+    return socket;
+  }
+
+  static String request(String uri) {
+    return "GET " + uri + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+  }
+
+  static void write(Socket socket, String requests) throws IOException {
+    socket.getOutputStream().write(requests.getBytes(StandardCharsets.US_ASCII));
+    socket.getOutputStream().flush();
+  }
+
+  static String get(int port, String uri) throws IOException {
+    try (Socket socket = connect(port)) {
+      write(socket, request(uri));
+      return readResponse(socket.getInputStream());
+    }
+  }
+
+  /**
+   * @return the status line, the headers in lower case, and the content of one response
+   */
+  static String readResponse(InputStream in) throws IOException {
+    ByteArrayOutputStream head = new ByteArrayOutputStream();
+    int matched = 0;
+    while (matched < 4) {
+      int b = in.read();
+      if (-1 == b) {
+        throw new IOException("closed before the response, got: " + head);
+      }
+      head.write(b);
+      matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : ('\r' == b ? 1 : 0);
+    }
+
+    String headers = head.toString(StandardCharsets.US_ASCII.name()).toLowerCase(Locale.ROOT);
+    int contentLength = 0;
+    for (String line : headers.split("\r\n")) {
+      if (line.startsWith("content-length:")) {
+        contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+      }
+    }
+
+    byte[] content = new byte[contentLength];
+    for (int read = 0; read < contentLength; ) {
+      int n = in.read(content, read, contentLength - read);
+      if (-1 == n) {
+        throw new IOException("closed in the content, got: " + headers);
+      }
+      read += n;
+    }
+    return headers + new String(content, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,199 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.annotation.PATH;
+import com.orctom.laputa.service.annotation.Param;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.config.MappingConfig;
+import com.orctom.laputa.service.controller.DefaultController;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.stereotype.Controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Controllers returning CompletionStages and Publishers, through the server handler on an embedded channel.
+ */
+public class LaputaRequestProcessorTest {
+
+  private static LaputaRequestProcessor requestProcessor;
+
+  private EmbeddedChannel channel;
+
+  @BeforeClass
+  public static void beforeClass() {
+    Configurator.getInstance();
+    AnnotationConfigApplicationContext applicationContext = new AnnotationConfigApplicationContext();
+    applicationContext.register(DefaultController.class, AsyncController.class);
+    applicationContext.refresh();
+    MappingConfig.getInstance().scan(applicationContext);
+
+    requestProcessor = new LaputaRequestProcessor();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    requestProcessor.shutdown(System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+  }
+
+  @Before
+  public void setUp() {
+    AsyncController.later = new CompletableFuture<>();
+    AsyncController.publisher = null;
+    channel = new EmbeddedChannel(new LaputaServerHandler(false, requestProcessor, true));
+  }
+
+  @After
+  public void tearDown() {
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testCompleted() {
+    channel.writeInbound(request("/async/now?name=laputa"));
+    assertResponse(HttpResponseStatus.OK, "laputa");
+  }
+
+  @Test
+  public void testFailed() {
+    channel.writeInbound(request("/async/failed"));
+    assertResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR, "failed to complete");
+  }
+
+  /**
+   * Completed on another thread, written by the event loop, after the response of the request before it
+   */
+  @Test
+  public void testCompletedOffEventLoop() throws InterruptedException {
+    channel.writeInbound(request("/async/later"), request("/async/now?name=next"));
+    channel.runPendingTasks();
+    assertThat(channel.readOutbound(), nullValue());
+
+    Thread completing = new Thread(() -> AsyncController.later.complete("later"));
+    completing.start();
+    completing.join();
+    assertThat(channel.readOutbound(), nullValue());
+
+    assertResponse(HttpResponseStatus.OK, "later");
+    assertResponse(HttpResponseStatus.OK, "next");
+  }
+
+  @Test
+  public void testPublisherEmpty() {
+    AsyncController.publisher = new ListPublisher(Collections.emptyList());
+    channel.writeInbound(request("/async/publisher"));
+    assertResponse(HttpResponseStatus.OK, "[]");
+  }
+
+  @Test
+  public void testPublisherElements() {
+    List<String> elements = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      elements.add("element-" + i);
+    }
+    AsyncController.publisher = new ListPublisher(elements);
+    channel.writeInbound(request("/async/publisher"));
+    String content = assertResponse(HttpResponseStatus.OK, "element-0");
+    assertThat(content, containsString("element-99"));
+  }
+
+  @Test
+  public void testPublisherError() {
+    AsyncController.publisher = new ListPublisher(
+        Arrays.asList("a"), new IllegalStateException("failed to emit"), true);
+    channel.writeInbound(request("/async/publisher"));
+    assertResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR, "failed to emit");
+  }
+
+  @Test
+  public void testPublisherCancelledOnClose() {
+    ListPublisher publisher = new ListPublisher(Arrays.asList("a"), null, false);
+    AsyncController.publisher = publisher;
+    channel.writeInbound(request("/async/publisher"));
+    channel.runPendingTasks();
+    assertThat(publisher.isCancelled(), equalTo(false));
+
+    channel.close();
+    assertThat(publisher.isCancelled(), equalTo(true));
+    assertThat(requestProcessor.getInFlight(), equalTo(0L));
+  }
+
+  private static FullHttpRequest request(String uri) {
+    FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    request.headers().set(HttpHeaderNames.HOST, "localhost");
+    request.headers().set(HttpHeaderNames.ACCEPT, "application/json");
+    return request;
+  }
+
+  /**
+   * @return the content
+   */
+  private String assertResponse(HttpResponseStatus status, String content) {
+    channel.runPendingTasks();
+    FullHttpResponse response = channel.readOutbound();
+    assertThat(response, notNullValue());
+    try {
+      String body = response.content().toString(CharsetUtil.UTF_8);
+      assertThat(body, response.status(), equalTo(status));
+      assertThat(body, containsString(content));
+      return body;
+    } finally {
+      response.release();
+    }
+  }
+
+  @Controller
+  public static class AsyncController {
+
+    private static volatile CompletableFuture<String> later;
+    private static volatile Publisher<Object> publisher;
+
+    @PATH("/async/now")
+    public CompletionStage<String> now(@Param("name") String name) {
+      return CompletableFuture.completedFuture(name);
+    }
+
+    @PATH("/async/later")
+    public CompletionStage<String> later() {
+      return later;
+    }
+
+    @PATH("/async/failed")
+    public CompletionStage<String> failed() {
+      CompletableFuture<String> failed = new CompletableFuture<>();
+      failed.completeExceptionally(new IllegalStateException("failed to complete"));
+      return failed;
+    }
+
+    @PATH("/async/publisher")
+    public Publisher<Object> publisher() {
+      return publisher;
+    }
+  }
+}
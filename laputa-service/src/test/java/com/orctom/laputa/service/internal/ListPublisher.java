@@ -0,0 +1,71 @@
+package com.orctom.laputa.service.internal;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.List;
+
+/**
+ * Emits the elements as requested, then completes, fails with the error if any,
+ * or holds the completion back, if not completing.
+ */
+class ListPublisher implements Publisher<Object> {
+
+  private final List<?> elements;
+  private final Throwable error;
+  private final boolean completing;
+
+  private volatile boolean cancelled;
+  private volatile long requested;
+
+  ListPublisher(List<?> elements) {
+    this(elements, null, true);
+  }
+
+  ListPublisher(List<?> elements, Throwable error, boolean completing) {
+    this.elements = elements;
+    this.error = error;
+    this.completing = completing;
+  }
+
+  boolean isCancelled() {
+    return cancelled;
+  }
+
+  long getRequested() {
+    return requested;
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super Object> subscriber) {
+    subscriber.onSubscribe(new Subscription() {
+
+      private int next;
+      private boolean done;
+
+      @Override
+      public void request(long n) {
+        requested += n;
+        for (long i = 0; i < n && !cancelled && next < elements.size(); i++) {
+          subscriber.onNext(elements.get(next++));
+        }
+        if (cancelled || done || next < elements.size() || !completing) {
+          return;
+        }
+
+        done = true;
+        if (null != error) {
+          subscriber.onError(error);
+        } else {
+          subscriber.onComplete();
+        }
+      }
+
+      @Override
+      public void cancel() {
+        cancelled = true;
+      }
+    });
+  }
+}
@@ -0,0 +1,69 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.utils.SimpleMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.util.CharsetUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class OpenMetricsRendererTest {
+
+  @BeforeClass
+  public static void beforeClass() {
+    Configurator.getInstance();
+  }
+
+  @Test
+  public void testRender() throws InterruptedException {
+    SimpleMetrics metrics = SimpleMetrics.create(LoggerFactory.getLogger(OpenMetricsRendererTest.class), 1, TimeUnit.HOURS);
+    metrics.meter("test.requests").increaseBy(3);
+    metrics.gauge("test.size", () -> "42");
+    metrics.gauge("test.name", () -> "not a number");
+    metrics.histogram("test.sizes", 1, 1000).record(10);
+
+    DefaultEventLoopGroup group = new DefaultEventLoopGroup(2);
+    EventLoopMonitor.register("test", group);
+    try {
+      OpenMetricsRenderer renderer = new OpenMetricsRenderer();
+      render(renderer);
+      String text = render(renderer);
+
+      assertThat(text, containsString("# TYPE laputa_test_requests counter\nlaputa_test_requests_total 3\n"));
+      assertThat(text, containsString("# TYPE laputa_test_size gauge\nlaputa_test_size 42\n"));
+      assertThat(text, not(containsString("laputa_test_name")));
+      assertThat(text, containsString("laputa_test_sizes{quantile=\"0.5\"} 10\n"));
+      assertThat(text, containsString("laputa_test_sizes_count 1\n"));
+      assertThat(text, containsString("laputa_event_loop_pending_tasks{group=\"test\",loop=\"1\"} 0\n"));
+      assertThat(text, containsString("laputa_event_loop_blocked_total{group=\"test\",loop=\"0\"} 0\n"));
+      assertThat(text, containsString("laputa_event_loop_delay_seconds_bucket{group=\"test\",loop=\"0\",le=\"+Inf\"} "));
+      assertThat(text, containsString("netty_allocator_used_bytes{type=\"direct\"} "));
+      assertThat(text, containsString("jvm_memory_used_bytes{area=\"heap\"} "));
+      assertThat(text, containsString("jvm_gc_collection_seconds_total{gc=\""));
+      assertThat(text, endsWith("\n# EOF\n"));
+
+    } finally {
+      EventLoopMonitor.unregister("test");
+      group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+  }
+
+  private String render(OpenMetricsRenderer renderer) {
+    ByteBuf buf = renderer.render(PooledByteBufAllocator.DEFAULT);
+    try {
+      return buf.toString(CharsetUtil.UTF_8);
+    } finally {
+      buf.release();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.exception.RequestProcessingException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PublisherAdapterTest {
+
+  @BeforeClass
+  public static void beforeClass() {
+    Configurator.getInstance();
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    CompletableFuture<List<Object>> elements = PublisherAdapter.collect(new ListPublisher(Collections.emptyList()));
+    assertThat(elements.get(1, TimeUnit.SECONDS), equalTo(Collections.emptyList()));
+  }
+
+  @Test
+  public void testElements() throws Exception {
+    CompletableFuture<List<Object>> elements = PublisherAdapter.collect(new ListPublisher(Arrays.asList("a", "b", "c")));
+    assertThat(elements.get(1, TimeUnit.SECONDS), equalTo(Arrays.asList("a", "b", "c")));
+  }
+
+  @Test
+  public void testError() {
+    IllegalStateException error = new IllegalStateException("failed to emit");
+    ListPublisher publisher = new ListPublisher(Arrays.asList("a"), error, true);
+    assertThat(failure(PublisherAdapter.collect(publisher)), sameInstance(error));
+  }
+
+  @Test
+  public void testTooManyElements() {
+    ListPublisher publisher = new ListPublisher(Arrays.asList(1, 2, 3, 4, 5));
+    Throwable failure = failure(PublisherAdapter.collect(publisher, 3, 0));
+    assertThat(failure, instanceOf(RequestProcessingException.class));
+    assertThat(publisher.getRequested(), equalTo(4L));
+    assertThat(publisher.isCancelled(), equalTo(true));
+  }
+
+  @Test
+  public void testTimeout() {
+    ListPublisher publisher = new ListPublisher(Arrays.asList(1), null, false);
+    Throwable failure = failure(PublisherAdapter.collect(publisher, 10, TimeUnit.MILLISECONDS.toNanos(50)));
+    assertThat(failure, instanceOf(TimeoutException.class));
+    assertThat(publisher.isCancelled(), equalTo(true));
+  }
+
+  @Test
+  public void testCancelled() {
+    ListPublisher publisher = new ListPublisher(Arrays.asList(1), null, false);
+    CompletableFuture<List<Object>> elements = PublisherAdapter.collect(publisher);
+    assertThat(publisher.isCancelled(), equalTo(false));
+
+    elements.cancel(false);
+    assertThat(publisher.isCancelled(), equalTo(true));
+  }
+
+  private static Throwable failure(CompletableFuture<?> future) {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("expected to fail");
+      return null;
+    } catch (ExecutionException e) {
+      return e.getCause();
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+  }
+}
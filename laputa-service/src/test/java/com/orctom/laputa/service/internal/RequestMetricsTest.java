@@ -0,0 +1,215 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.annotation.GET;
+import com.orctom.laputa.service.annotation.PATH;
+import com.orctom.laputa.service.annotation.Param;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.config.MappingConfig;
+import com.orctom.laputa.service.controller.DefaultController;
+import com.orctom.laputa.service.model.DispatchMode;
+import com.orctom.laputa.service.model.HTTPMethod;
+import com.orctom.laputa.service.model.MediaType;
+import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.utils.SimpleMetrics;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.stereotype.Controller;
+
+import javax.validation.constraints.Size;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import static com.orctom.laputa.service.internal.HttpSockets.*;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Latencies recorded by route, status and phase, for the requests processed inline, asynchronously,
+ * and on the validation executor, through a server with a validation thread.
+ */
+public class RequestMetricsTest {
+
+  private static EventLoopGroup group;
+  private static LaputaRequestProcessor requestProcessor;
+  private static Channel server;
+
+  @BeforeClass
+  public static void beforeClass() throws InterruptedException {
+    Configurator.getInstance();
+    AnnotationConfigApplicationContext applicationContext = new AnnotationConfigApplicationContext();
+    applicationContext.register(DefaultController.class, LatencyController.class);
+    applicationContext.refresh();
+    MappingConfig.getInstance().scan(applicationContext);
+
+    group = new NioEventLoopGroup(1);
+    requestProcessor = new LaputaRequestProcessor(
+        new Dispatcher(DispatchMode.INLINE, 1, 1),
+        new DefaultRequestProcessor(1, 1)
+    );
+    LaputaServerInitializer initializer = new LaputaServerInitializer(
+        null,
+        null,
+        "/websocket",
+        requestProcessor,
+        new DefaultChannelGroup(GlobalEventExecutor.INSTANCE),
+        false
+    );
+    server = new ServerBootstrap()
+        .group(group)
+        .channel(NioServerSocketChannel.class)
+        .childHandler(initializer)
+        .bind("127.0.0.1", 0)
+        .sync()
+        .channel();
+  }
+
+  @AfterClass
+  public static void afterClass() throws InterruptedException {
+    server.close().sync();
+    requestProcessor.shutdown(System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+    group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testRecord() {
+    SimpleMetrics metrics = SimpleMetrics.create(LoggerFactory.getLogger(RequestMetricsTest.class), 1, TimeUnit.HOURS);
+    RequestMetrics requestMetrics = new RequestMetrics(metrics);
+
+    ResponseWrapper invoked = new ResponseWrapper(MediaType.APPLICATION_JSON.getValue());
+    invoked.setRoutingNanos(1_000);
+    invoked.setBindingNanos(2_000);
+    invoked.setInvokeNanos(3_000);
+    invoked.setTranslateNanos(4_000);
+    requestMetrics.record(MappingConfig.getInstance().match("/latency/sync", HTTPMethod.GET), invoked, 5_000, 20_000);
+
+    ResponseWrapper notFound = new ResponseWrapper(MediaType.APPLICATION_JSON.getValue());
+    notFound.setStatus(HttpResponseStatus.NOT_FOUND);
+    requestMetrics.record(null, notFound, 5_000, 10_000);
+
+    Map<String, Long> counts = counts(requestMetrics);
+    for (RequestMetrics.Phase phase : RequestMetrics.Phase.values()) {
+      assertThat(phase.getKey(), counts.get("GET /latency/sync 200 " + phase.getKey()), equalTo(1L));
+    }
+    assertThat(counts.get("unrouted 404 routing"), equalTo(1L));
+    assertThat(counts.get("unrouted 404 invoke"), equalTo(0L));
+    assertThat(counts.get("unrouted 404 total"), equalTo(1L));
+    assertThat(counts.size(), equalTo(2 * RequestMetrics.Phase.values().length));
+  }
+
+  @Test
+  public void testInline() throws Exception {
+    assertRecorded("/latency/sync", "GET /latency/sync", "sync");
+  }
+
+  @Test
+  public void testAsync() throws Exception {
+    assertRecorded("/latency/async", "GET /latency/async", "async");
+  }
+
+  @Test
+  public void testValidated() throws Exception {
+    assertRecorded("/latency/validated?name=laputa", "GET /latency/validated", "laputa-validation");
+  }
+
+  @Test
+  public void testUnroutedNotLabelled() throws Exception {
+    RequestMetrics requestMetrics = LaputaRequestProcessor.getRequestMetrics();
+    assertThat(requestMetrics, notNullValue());
+    Long before = counts(requestMetrics).get("unrouted 404 total");
+    long expected = (null == before ? 0 : before) + 20;
+
+    for (int i = 0; i < 20; i++) {
+      assertThat(get(port(server), "/latency/unrouted-" + i), startsWith("http/1.1 404"));
+    }
+
+    awaitCount("unrouted 404 total", expected);
+    for (String route : routes(requestMetrics)) {
+      assertThat(route.contains("unrouted-"), equalTo(false));
+    }
+  }
+
+  private void assertRecorded(String uri, String route, String content) throws Exception {
+    RequestMetrics requestMetrics = LaputaRequestProcessor.getRequestMetrics();
+    assertThat(requestMetrics, notNullValue());
+
+    String response = get(port(server), uri);
+    assertThat(response, startsWith("http/1.1 200"));
+    assertThat(response, containsString(content));
+
+    awaitCount(route + " 200 total", 1);
+    Map<String, Long> counts = counts(requestMetrics);
+    for (RequestMetrics.Phase phase : RequestMetrics.Phase.values()) {
+      assertThat(phase.getKey(), counts.get(route + " 200 " + phase.getKey()), equalTo(1L));
+    }
+  }
+
+  /**
+   * Recorded once the response is written, which can be after the client read it
+   */
+  private static void awaitCount(String key, long expected) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    Long count;
+    while (!Long.valueOf(expected).equals(count = counts(LaputaRequestProcessor.getRequestMetrics()).get(key))
+        && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    assertThat(key, count, equalTo(expected));
+  }
+
+  /**
+   * @return counts keyed by "route status phase"
+   */
+  private static Map<String, Long> counts(RequestMetrics requestMetrics) {
+    Map<String, Long> counts = new HashMap<>();
+    requestMetrics.forEach((route, status, phase, histogram) ->
+        counts.put(route + " " + status + " " + phase.getKey(), histogram.snapshot().getCount()));
+    return counts;
+  }
+
+  private static Set<String> routes(RequestMetrics requestMetrics) {
+    Set<String> routes = new HashSet<>();
+    requestMetrics.forEach((route, status, phase, histogram) -> routes.add(route));
+    return routes;
+  }
+
+  @Controller
+  public static class LatencyController {
+
+    @GET
+    @PATH("/latency/sync")
+    public String sync() {
+      return "sync";
+    }
+
+    @GET
+    @PATH("/latency/async")
+    public CompletionStage<String> async() {
+      return CompletableFuture.supplyAsync(() -> "async");
+    }
+
+    @GET
+    @PATH("/latency/validated")
+    public String validated(@Param("name") @Size(max = 8) String name) {
+      return Thread.currentThread().getName();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.filter.Filter;
+import com.orctom.laputa.service.filter.FilterChain;
+import com.orctom.laputa.service.model.HTTPMethod;
+import com.orctom.laputa.service.model.RequestMapping;
+import com.orctom.laputa.service.model.RequestWrapper;
+import com.orctom.laputa.service.model.ResponseWrapper;
+import com.orctom.laputa.service.model.RouteMatch;
+import com.orctom.laputa.service.processor.RequestProcessor;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class RequestPipelineTest {
+
+  private List<String> calls;
+
+  private RequestMapping product;
+  private RequestMapping store;
+  private RequestPipeline pipeline;
+
+  @Before
+  public void setUp() {
+    calls = new ArrayList<>();
+    product = mapping("/product/sku/{id}");
+    store = mapping("/store/{id}");
+
+    List<RequestProcessor> processors = Collections.singletonList(new RequestProcessor() {
+      @Override
+      public void handleRequest(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
+        calls.add("processor");
+        if (requestWrapper.getPath().startsWith("/static")) {
+          responseWrapper.setContent("static".getBytes());
+        }
+      }
+    });
+    List<Filter> filters = Arrays.asList(
+        filter("all", null),
+        filter("product", new String[]{"/product/**"}),
+        filter("store", new String[]{"/store/*", "/none"})
+    );
+
+    pipeline = new RequestPipeline(processors, filters, new Handler(), Arrays.asList(product, store));
+  }
+
+  @Test
+  public void testScopedFilters() {
+    run(product, "/product/sku/1");
+    assertThat(calls, equalTo(Arrays.asList("processor", "all", "product", "/product/sku/{id}")));
+
+    calls.clear();
+    run(store, "/store/1");
+    assertThat(calls, equalTo(Arrays.asList("processor", "all", "store", "/store/{id}")));
+  }
+
+  @Test
+  public void testUnrouted() {
+    run(null, "/unknown");
+    assertThat(calls, equalTo(Arrays.asList("processor", "all", "404")));
+    assertThat(pipeline.getChain(mapping("/unknown")), sameInstance(pipeline.getChain(null)));
+  }
+
+  @Test
+  public void testProcessorResponded() {
+    run(null, "/static/app.js");
+    assertThat(calls, equalTo(Collections.singletonList("processor")));
+  }
+
+  @Test
+  public void testChainsReused() {
+    assertThat(pipeline.getChain(product), sameInstance(pipeline.getChain(product)));
+  }
+
+  private void run(RequestMapping mapping, String path) {
+    RequestWrapper requestWrapper = new RequestWrapper(
+        HttpMethod.GET, new DefaultHttpHeaders(), path, path, Collections.emptyMap(), "");
+    requestWrapper.setRouteMatch(null == mapping ? null : new RouteMatch(mapping, path, null));
+    pipeline.getChain(mapping).doFilter(requestWrapper, new ResponseWrapper(null));
+  }
+
+  private Filter filter(String name, String[] paths) {
+    return new Filter() {
+      @Override
+      public String[] getPaths() {
+        return paths;
+      }
+
+      @Override
+      public void doFilter(RequestWrapper requestWrapper, ResponseWrapper responseWrapper, FilterChain filterChain) {
+        calls.add(name);
+        filterChain.doFilter(requestWrapper, responseWrapper);
+      }
+    };
+  }
+
+  private static RequestMapping mapping(String uriPattern) {
+    try {
+      return RequestMapping.builder()
+          .uriPattern(uriPattern)
+          .target(new Target())
+          .handlerClass(Target.class)
+          .handlerMethod(Target.class.getMethod("handle"))
+          .httpMethod(HTTPMethod.GET.getKey())
+          .build();
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private class Handler extends DefaultRequestProcessor {
+
+    @Override
+    void service(RequestWrapper requestWrapper, ResponseWrapper responseWrapper) {
+      RouteMatch routeMatch = requestWrapper.getRouteMatch();
+      calls.add(null == routeMatch ? "404" : routeMatch.getMapping().getUriPattern());
+    }
+  }
+
+  public static class Target {
+
+    public String handle() {
+      return "handled";
+    }
+  }
+}
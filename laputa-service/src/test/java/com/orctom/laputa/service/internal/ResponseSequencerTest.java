@@ -0,0 +1,124 @@
+package com.orctom.laputa.service.internal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class ResponseSequencerTest {
+
+  private EmbeddedChannel channel;
+  private ResponseSequencer sequencer;
+  private List<Integer> written;
+
+  @Before
+  public void setUp() {
+    channel = new EmbeddedChannel();
+    sequencer = new ResponseSequencer(channel, 2);
+    written = new ArrayList<>();
+  }
+
+  @Test
+  public void testOrdered() {
+    ResponseSequencer.Slot first = sequencer.reserve();
+    ResponseSequencer.Slot second = sequencer.reserve();
+    ResponseSequencer.Slot third = sequencer.reserve();
+
+    ByteBuf request = Unpooled.buffer();
+    third.respond(request, () -> written.add(3));
+    second.respond(request, () -> written.add(2));
+    assertThat(written.isEmpty(), equalTo(true));
+    assertThat(request.refCnt(), equalTo(3));
+
+    first.respond(request, () -> written.add(1));
+    assertThat(written, equalTo(Arrays.asList(1, 2, 3)));
+    assertThat(request.refCnt(), equalTo(1));
+  }
+
+  @Test
+  public void testReadingPaused() {
+    ResponseSequencer.Slot first = sequencer.reserve();
+    sequencer.reserve().respond(Unpooled.buffer(), () -> written.add(2));
+    assertThat(channel.config().isAutoRead(), equalTo(true));
+
+    ResponseSequencer.Slot third = sequencer.reserve();
+    assertThat(channel.config().isAutoRead(), equalTo(false));
+
+    first.respond(Unpooled.buffer(), () -> written.add(1));
+    assertThat(channel.config().isAutoRead(), equalTo(true));
+
+    third.respond(Unpooled.buffer(), () -> written.add(3));
+    assertThat(written, equalTo(Arrays.asList(1, 2, 3)));
+  }
+
+  @Test
+  public void testFailedWriterNotBlocking() {
+    ResponseSequencer.Slot first = sequencer.reserve();
+    ResponseSequencer.Slot second = sequencer.reserve();
+    second.respond(Unpooled.buffer(), () -> written.add(2));
+    first.respond(Unpooled.buffer(), () -> {
+      throw new IllegalStateException("failed to translate");
+    });
+    assertThat(written, equalTo(Arrays.asList(2)));
+  }
+
+  @Test
+  public void testClosed() {
+    sequencer.reserve();
+    ResponseSequencer.Slot second = sequencer.reserve();
+    ResponseSequencer.Slot third = sequencer.reserve();
+
+    ByteBuf request = Unpooled.buffer();
+    second.respond(request, () -> written.add(2));
+    sequencer.close();
+    assertThat(written, equalTo(Arrays.asList(2)));
+    assertThat(request.refCnt(), equalTo(1));
+
+    third.respond(request, () -> written.add(3));
+    assertThat(written, equalTo(Arrays.asList(2, 3)));
+  }
+
+  @Test
+  public void testDrainedIdle() {
+    sequencer.reserve().respond(Unpooled.buffer(), () -> written.add(1));
+    assertThat(channel.isOpen(), equalTo(true));
+
+    sequencer.drain();
+    assertThat(channel.config().isAutoRead(), equalTo(false));
+    assertThat(channel.isOpen(), equalTo(false));
+  }
+
+  @Test
+  public void testDrainedAfterLastResponse() {
+    ResponseSequencer.Slot first = sequencer.reserve();
+    ResponseSequencer.Slot second = sequencer.reserve();
+    sequencer.drain();
+    assertThat(channel.config().isAutoRead(), equalTo(false));
+    assertThat(channel.isOpen(), equalTo(true));
+
+    FullHttpRequest firstRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/1");
+    FullHttpRequest secondRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/2");
+    second.respond(secondRequest, () -> written.add(2));
+    assertThat(channel.isOpen(), equalTo(true));
+
+    first.respond(firstRequest, () -> written.add(1));
+    assertThat(written, equalTo(Arrays.asList(1, 2)));
+    assertThat(HttpUtil.isKeepAlive(firstRequest), equalTo(true));
+    assertThat(HttpUtil.isKeepAlive(secondRequest), equalTo(false));
+    assertThat(channel.config().isAutoRead(), equalTo(false));
+    assertThat(channel.isOpen(), equalTo(false));
+  }
+}
@@ -0,0 +1,257 @@
+package com.orctom.laputa.service.internal;
+
+import com.orctom.laputa.service.annotation.GET;
+import com.orctom.laputa.service.annotation.PATH;
+import com.orctom.laputa.service.annotation.POST;
+import com.orctom.laputa.service.annotation.Param;
+import com.orctom.laputa.service.annotation.Streaming;
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.config.MappingConfig;
+import com.orctom.laputa.service.controller.DefaultController;
+import com.orctom.laputa.service.model.FileBodySink;
+import com.orctom.laputa.service.model.HTTPMethod;
+import com.orctom.laputa.service.model.RequestWrapper;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.stereotype.Controller;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static com.orctom.laputa.service.Constants.CFG_UPLOAD_DIR;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Bodies of @Streaming routes, fed through the handler on an embedded channel.
+ */
+public class StreamingRequestHandlerTest {
+
+  private static final String BOUNDARY = "----laputa";
+
+  private static File uploadDir;
+
+  private EmbeddedChannel channel;
+
+  @BeforeClass
+  public static void beforeClass() {
+    Configurator configurator = Configurator.getInstance();
+    AnnotationConfigApplicationContext applicationContext = new AnnotationConfigApplicationContext();
+    applicationContext.register(DefaultController.class, StreamingController.class);
+    applicationContext.refresh();
+    MappingConfig.getInstance().scan(applicationContext);
+
+    uploadDir = new File(configurator.getConfig().getString(CFG_UPLOAD_DIR));
+  }
+
+  @Before
+  public void setUp() {
+    channel = new EmbeddedChannel(new StreamingRequestHandler());
+  }
+
+  @After
+  public void tearDown() {
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testStreamingCandidate() {
+    MappingConfig mappingConfig = MappingConfig.getInstance();
+    assertThat(mappingConfig.isStreamingCandidate("/streaming/raw", HTTPMethod.POST), equalTo(true));
+    assertThat(mappingConfig.isStreamingCandidate("/streaming/raw", HTTPMethod.GET), equalTo(false));
+    assertThat(mappingConfig.isStreamingCandidate("/plain", HTTPMethod.POST), equalTo(false));
+  }
+
+  @Test
+  public void testNotStreamingPassedThrough() {
+    HttpRequest request = request(HttpMethod.GET, "/streaming/plain");
+    channel.writeInbound(request);
+    assertThat(channel.readInbound(), sameInstance(request));
+  }
+
+  /**
+   * With a file part over `server.postData.useDisk.threshold`, which is written to disk as it's decoded
+   */
+  @Test
+  public void testMultipartForm() throws Exception {
+    char[] doc = new char[(int) Configurator.getInstance().getPostDataUseDiskThreshold() + 100];
+    Arrays.fill(doc, 'x');
+    String body = "--" + BOUNDARY + "\r\n" +
+        "Content-Disposition: form-data; name=\"name\"\r\n\r\n" +
+        "laputa\r\n" +
+        "--" + BOUNDARY + "\r\n" +
+        "Content-Disposition: form-data; name=\"doc\"; filename=\"doc.txt\"\r\n" +
+        "Content-Type: text/plain\r\n\r\n" +
+        new String(doc) + "\r\n" +
+        "--" + BOUNDARY + "--\r\n";
+    HttpRequest request = request(HttpMethod.POST, "/streaming/form?id=1");
+    request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + BOUNDARY);
+    HttpUtil.setContentLength(request, body.length());
+
+    int third = body.length() / 3;
+    channel.writeInbound(
+        request,
+        content(body.substring(0, third)),
+        content(body.substring(third, 2 * third)),
+        last(body.substring(2 * third))
+    );
+
+    StreamedHttpRequest streamed = channel.readInbound();
+    try {
+      RequestWrapper requestWrapper = streamed.getRequestWrapper();
+      assertThat(requestWrapper.getPath(), equalTo("/streaming/form"));
+      assertThat(requestWrapper.getRouteMatch().getMapping().isStreaming(), equalTo(true));
+      assertThat(requestWrapper.getParams().get("id"), equalTo(Arrays.asList("1")));
+      assertThat(requestWrapper.getParams().get("name"), equalTo(Arrays.asList("laputa")));
+      assertThat(requestWrapper.getParams().get("doc.originalFilename"), equalTo(Arrays.asList("doc.txt")));
+      File file = new File(requestWrapper.getParams().get("doc.file").get(0));
+      assertThat(file.length(), equalTo((long) doc.length));
+    } finally {
+      streamed.release();
+    }
+  }
+
+  @Test
+  public void testRawSink() throws Exception {
+    HttpRequest request = request(HttpMethod.POST, "/streaming/raw");
+    request.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_OCTET_STREAM);
+    HttpRequest next = request(HttpMethod.GET, "/streaming/plain");
+    channel.writeInbound(request, content("hello "), content("raw "), last("sink"), next);
+
+    StreamedHttpRequest streamed = awaitInbound();
+    try {
+      FileBodySink sink = (FileBodySink) streamed.getRequestWrapper().getBodySink();
+      assertThat(sink.getSize(), equalTo(14L));
+      assertThat(new String(Files.readAllBytes(sink.getFile().toPath()), CharsetUtil.UTF_8), equalTo("hello raw sink"));
+      assertThat(channel.readInbound(), sameInstance(next));
+      assertThat(channel.config().isAutoRead(), equalTo(true));
+    } finally {
+      streamed.release();
+    }
+    assertThat(bodyFiles(), equalTo(0));
+  }
+
+  @Test
+  public void testTooLarge() {
+    HttpRequest request = request(HttpMethod.POST, "/streaming/raw");
+    HttpUtil.setContentLength(request, Configurator.getInstance().getStreamingMaxContentLength() + 1);
+    channel.writeInbound(request);
+
+    FullHttpResponse response = channel.readOutbound();
+    try {
+      assertThat(response.status(), equalTo(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE));
+      assertThat(channel.isOpen(), equalTo(false));
+    } finally {
+      response.release();
+    }
+  }
+
+  @Test
+  public void testContinue() {
+    HttpRequest request = request(HttpMethod.POST, "/streaming/raw");
+    request.headers().set(HttpHeaderNames.EXPECT, HttpHeaderValues.CONTINUE);
+    HttpUtil.setContentLength(request, 4);
+    channel.writeInbound(request);
+
+    FullHttpResponse response = channel.readOutbound();
+    try {
+      assertThat(response.status(), equalTo(HttpResponseStatus.CONTINUE));
+      assertThat(channel.isOpen(), equalTo(true));
+    } finally {
+      response.release();
+    }
+  }
+
+  @Test
+  public void testTempFileDeletedOnAbort() throws Exception {
+    int before = bodyFiles();
+    channel.writeInbound(request(HttpMethod.POST, "/streaming/raw"), content("partial"));
+    assertThat(bodyFiles(), equalTo(before + 1));
+
+    channel.close();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (bodyFiles() > before && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    assertThat(bodyFiles(), equalTo(before));
+  }
+
+  private <T> T awaitInbound() throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    T msg;
+    while (null == (msg = channel.readInbound()) && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+      channel.runPendingTasks();
+    }
+    assertThat(msg, notNullValue());
+    assertThat(msg, instanceOf(StreamedHttpRequest.class));
+    return msg;
+  }
+
+  private static int bodyFiles() {
+    File[] files = uploadDir.listFiles((dir, name) -> name.startsWith("body-"));
+    return null == files ? 0 : files.length;
+  }
+
+  private static HttpRequest request(HttpMethod method, String uri) {
+    HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, uri);
+    request.headers().set(HttpHeaderNames.HOST, "localhost");
+    return request;
+  }
+
+  private static HttpContent content(String content) {
+    return new DefaultHttpContent(Unpooled.copiedBuffer(content, CharsetUtil.UTF_8));
+  }
+
+  private static LastHttpContent last(String content) {
+    return new DefaultLastHttpContent(Unpooled.copiedBuffer(content, CharsetUtil.UTF_8));
+  }
+
+  @Controller
+  public static class StreamingController {
+
+    @POST
+    @Streaming
+    @PATH("/streaming/form")
+    public String form(@Param("name") String name) {
+      return name;
+    }
+
+    @POST
+    @Streaming
+    @PATH("/streaming/raw")
+    public String raw(FileBodySink body) {
+      return String.valueOf(body.getSize());
+    }
+
+    @GET
+    @PATH("/streaming/plain")
+    public String plain() {
+      return "plain";
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.orctom.laputa.service.model;
+
+import com.orctom.laputa.service.annotation.Param;
+import org.junit.Test;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RequestMappingTest {
+
+  @Test
+  public void testUnconstrained() throws NoSuchMethodException {
+    assertThat(mapping("none").isConstrained(), is(false));
+    assertThat(mapping("plain", String.class).isConstrained(), is(false));
+    assertThat(mapping("plainBean", Bean.class).isConstrained(), is(false));
+  }
+
+  @Test
+  public void testConstrained() throws NoSuchMethodException {
+    assertThat(mapping("notNull", String.class).isConstrained(), is(true));
+    assertThat(mapping("valid", Bean.class).isConstrained(), is(true));
+  }
+
+  private static RequestMapping mapping(String method, Class<?>... paramTypes) throws NoSuchMethodException {
+    return RequestMapping.builder()
+        .uriPattern("/" + method)
+        .target(new Target())
+        .handlerClass(Target.class)
+        .handlerMethod(Target.class.getMethod(method, paramTypes))
+        .httpMethod(HTTPMethod.GET.getKey())
+        .build();
+  }
+
+  public static class Target {
+
+    public String none() {
+      return "none";
+    }
+
+    public String plain(@Param("id") String id) {
+      return id;
+    }
+
+    public String plainBean(@Param("bean") Bean bean) {
+      return bean.name;
+    }
+
+    public String notNull(@Param("id") @NotNull String id) {
+      return id;
+    }
+
+    public String valid(@Param("bean") @Valid Bean bean) {
+      return bean.name;
+    }
+  }
+
+  public static class Bean {
+
+    @Size(max = 8)
+    private String name;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.orctom.laputa.service.translator.content;
+
+import com.orctom.laputa.service.config.Configurator;
+import com.orctom.laputa.service.domain.Category;
+import com.orctom.laputa.service.domain.SKU;
+import com.orctom.laputa.service.model.ResponseWrapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ContentTranslatorTest {
+
+  @BeforeClass
+  public static void beforeClass() {
+    Configurator.getInstance();
+  }
+
+  @Test
+  public void testJson() throws Exception {
+    assertSameContent(new JsonContentTranslator());
+  }
+
+  @Test
+  public void testXml() throws Exception {
+    assertSameContent(new XmlContentTranslator());
+  }
+
+  @Test
+  public void testProtoBuf() throws Exception {
+    assertSameContent(new ProtoBufContentTranslator());
+  }
+
+  private void assertSameContent(ContentTranslator translator) throws Exception {
+    ResponseWrapper responseWrapper = new ResponseWrapper(null);
+    responseWrapper.setResult(new SKU(1L, "sku", new Category(1L, "category")));
+
+    byte[] expected = translator.translate(null, responseWrapper);
+    ByteBuf actual = translator.translate(null, responseWrapper, PooledByteBufAllocator.DEFAULT);
+    try {
+      assertArrayEquals(expected, ByteBufUtil.getBytes(actual));
+    } finally {
+      actual.release();
+    }
+    assertEquals(0, actual.refCnt());
+  }
+}
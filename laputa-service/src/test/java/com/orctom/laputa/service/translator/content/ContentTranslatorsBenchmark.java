@@ -0,0 +1,100 @@
+package com.orctom.laputa.service.translator.content;
+
+import com.orctom.laputa.service.model.Accepts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * `Accept` negotiation over the headers of browsers and http clients, weighted roughly by how often they're seen.
+ * `sortAsList` is the way it was done before, sorting the header then looking up each of the media types.
+ * Each request gets its own copy of the header, as from the decoder, so that hash codes are not cached.
+ * Run with `main()` from the IDE, or via the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ContentTranslatorsBenchmark {
+
+  private static final String CHROME =
+      "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,image/apng,*/*;q=0.8," +
+          "application/signed-exchange;v=b3;q=0.7";
+  private static final String FIREFOX =
+      "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8";
+  private static final String SAFARI = "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8";
+  private static final String EDGE_LEGACY = "text/html, application/xhtml+xml, image/jxr, */*";
+  private static final String AXIOS = "application/json, text/plain, */*";
+  private static final String JQUERY = "application/json, text/javascript, */*; q=0.01";
+  private static final String FETCH = "*/*";
+  private static final String XML_CLIENT = "application/xml";
+  private static final String PROTOBUF_CLIENT = "application/protobuf, application/json;q=0.5";
+  private static final String IMAGES = "image/avif,image/webp,image/apng,image/svg+xml,image/*,*/*;q=0.8";
+
+  private static final String[] HEADERS = {
+      CHROME, CHROME, CHROME, CHROME, CHROME, CHROME, CHROME, CHROME, CHROME, CHROME, CHROME, CHROME,
+      FIREFOX, FIREFOX, FIREFOX, SAFARI, SAFARI, SAFARI, EDGE_LEGACY,
+      AXIOS, AXIOS, AXIOS, AXIOS, AXIOS, AXIOS, JQUERY, JQUERY, JQUERY,
+      FETCH, FETCH, FETCH, FETCH, XML_CLIENT, PROTOBUF_CLIENT, IMAGES, IMAGES
+  };
+
+  private Map<String, ContentTranslator> registry;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    registry = new HashMap<>();
+    for (ContentTranslator translator : new ContentTranslator[]{
+        new JsonContentTranslator(), new XmlContentTranslator(), new ProtoBufContentTranslator()}) {
+      registry.put(translator.getMediaType(), translator);
+    }
+  }
+
+  private String next() {
+    index = (index + 1) % HEADERS.length;
+    return new String(HEADERS[index].toCharArray());
+  }
+
+  @Benchmark
+  public ContentTranslator negotiate() {
+    return ContentTranslators.negotiate(next());
+  }
+
+  @Benchmark
+  public ContentTranslator scan() {
+    return ContentTranslators.scan(next());
+  }
+
+  @Benchmark
+  public ContentTranslator sortAsList() {
+    for (String type : Accepts.sortAsList(next())) {
+      ContentTranslator translator = registry.get(type);
+      if (null != translator) {
+        return translator;
+      }
+    }
+    return registry.get(JsonContentTranslator.TYPE.getValue());
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ContentTranslatorsBenchmark.class.getSimpleName()).build()).run();
+  }
+}
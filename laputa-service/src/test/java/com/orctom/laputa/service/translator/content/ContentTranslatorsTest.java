@@ -0,0 +1,57 @@
+package com.orctom.laputa.service.translator.content;
+
+import com.google.common.base.Strings;
+import com.orctom.laputa.service.model.Accepts;
+import com.orctom.laputa.service.model.MediaType;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ContentTranslatorsTest {
+
+  private static final String[] MEDIA_TYPES = {"application/json", "application/xml", "text/html"};
+
+  @Test
+  public void testSortAsList() {
+    assertThat(
+        Accepts.sortAsList("application/xml;q=0.9, text/html, */*;q=0.8, application/json;level=1"),
+        equalTo(Arrays.asList("text/html", "application/json", "application/xml", "*/*"))
+    );
+  }
+
+  @Test
+  public void testIndexOfPreferred() {
+    assertThat(indexOfPreferred("text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8"), equalTo(2));
+    assertThat(indexOfPreferred("application/xml;q=0.9, application/json"), equalTo(0));
+    assertThat(indexOfPreferred("application/xml; charset=utf-8; q=0.5, application/json;q=0.25"), equalTo(1));
+    assertThat(indexOfPreferred("application/xml;q=0.5,application/json;q=0.5"), equalTo(1));
+    assertThat(indexOfPreferred("  Application/JSON  ;Q=1"), equalTo(0));
+    assertThat(indexOfPreferred("application/json;q=0, text/plain"), equalTo(-1));
+    assertThat(indexOfPreferred("application/json;q=0.001, */*"), equalTo(0));
+    assertThat(indexOfPreferred("*/*"), equalTo(-1));
+    assertThat(indexOfPreferred("application/jsonx, application/jso, ,;,"), equalTo(-1));
+    assertThat(indexOfPreferred(""), equalTo(-1));
+  }
+
+  @Test
+  public void testNegotiate() {
+    ContentTranslator xml = ContentTranslators.negotiate("application/xml, application/json;q=0.9");
+    assertThat(xml, instanceOf(XmlContentTranslator.class));
+    assertThat(ContentTranslators.negotiate("application/xml, application/json;q=0.9"), sameInstance(xml));
+
+    assertThat(ContentTranslators.negotiate("image/webp,*/*"), instanceOf(JsonContentTranslator.class));
+    assertThat(ContentTranslators.negotiate(MediaType.PROTO_BUF.getValue()), instanceOf(ProtoBufContentTranslator.class));
+
+    String unusual = Strings.repeat("image/webp;q=0.9,", 20) + "application/xml";
+    assertThat(ContentTranslators.negotiate(unusual), instanceOf(XmlContentTranslator.class));
+  }
+
+  private int indexOfPreferred(String accept) {
+    return Accepts.indexOfPreferred(accept, MEDIA_TYPES);
+  }
+}
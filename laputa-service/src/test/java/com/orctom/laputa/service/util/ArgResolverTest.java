@@ -2,6 +2,8 @@ package com.orctom.laputa.service.util;
 
 import com.google.common.collect.Lists;
 import com.orctom.laputa.service.annotation.Data;
+import com.orctom.laputa.service.annotation.DefaultValue;
+import com.orctom.laputa.service.annotation.HttpHeader;
 import com.orctom.laputa.service.annotation.Param;
 import com.orctom.laputa.service.config.Configurator;
 import com.orctom.laputa.service.domain.Categories;
@@ -10,6 +12,8 @@ import com.orctom.laputa.service.domain.SKU;
 import com.orctom.laputa.service.model.Messenger;
 import com.orctom.laputa.service.model.ParamInfo;
 import com.orctom.laputa.service.model.RequestWrapper;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
 import org.joda.time.DateTime;
 import org.junit.BeforeClass;
@@ -20,6 +24,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static com.orctom.laputa.service.util.ParamResolver.getDefaultValue;
@@ -52,6 +57,12 @@ public class ArgResolverTest {
 
     public void indexed(@Param("skus") Categories categories) {
     }
+
+    public void annotated(@HttpHeader("X-Token") String token,
+                          @HttpHeader("X-Missing") @DefaultValue("none") String missing,
+                          @Param("count") int count,
+                          @Param("ratio") Double ratio) {
+    }
   }
 
   private RequestWrapper requestMapper = new RequestWrapper(
@@ -168,8 +179,22 @@ public class ArgResolverTest {
     assertArrayEquals(expected, actual);
   }
 
+  @Test
+  public void testAnnotated() throws Exception {
+    Method method = Dummy.class.getDeclaredMethod("annotated", String.class, String.class, int.class, Double.class);
+    HttpHeaders headers = new DefaultHttpHeaders();
+    headers.set("X-Token", "abc");
+    RequestWrapper requestWrapper = new RequestWrapper(HttpMethod.GET, headers, "/", "/", Collections.emptyMap(), "");
+    Map<String, String> paramValues = new HashMap<>();
+    paramValues.put("ratio", "0.5");
+
+    Object[] expected = new Object[]{"abc", "none", 0, 0.5D};
+    Object[] actual = ArgsResolver.resolveArgs(paramValues, getParams(method), requestWrapper, new Messenger());
+    assertArrayEquals(expected, actual);
+  }
+
   private Map<String, ParamInfo> getParams(Method handlerMethod) {
-    Map<String, ParamInfo> handlerParams = new HashMap<>();
+    Map<String, ParamInfo> handlerParams = new LinkedHashMap<>();
     Parameter[] parameters = handlerMethod.getParameters();
     int paramLength = parameters.length;
     if (0 == paramLength) {
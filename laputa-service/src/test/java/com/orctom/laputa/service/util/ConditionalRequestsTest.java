@@ -0,0 +1,94 @@
+package com.orctom.laputa.service.util;
+
+import com.orctom.laputa.service.model.ByteRange;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.orctom.laputa.service.util.ConditionalRequests.Outcome.NOT_MODIFIED;
+import static com.orctom.laputa.service.util.ConditionalRequests.Outcome.PRECONDITION_FAILED;
+import static com.orctom.laputa.service.util.ConditionalRequests.Outcome.PROCEED;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ConditionalRequestsTest {
+
+  private static final String ETAG = "\"abc\"";
+  private static final long LAST_MODIFIED = 1445412480000L;
+  private static final String LAST_MODIFIED_DATE = "Wed, 21 Oct 2015 07:28:00 GMT";
+  private static final String EARLIER_DATE = "Wed, 21 Oct 2015 07:27:59 GMT";
+
+  @Test
+  public void testIfNoneMatch() {
+    assertThat(evaluate(HttpHeaderNames.IF_NONE_MATCH, ETAG), equalTo(NOT_MODIFIED));
+    assertThat(evaluate(HttpHeaderNames.IF_NONE_MATCH, "\"x\", W/\"abc\""), equalTo(NOT_MODIFIED));
+    assertThat(evaluate(HttpHeaderNames.IF_NONE_MATCH, "*"), equalTo(NOT_MODIFIED));
+    assertThat(evaluate(HttpHeaderNames.IF_NONE_MATCH, "\"x\""), equalTo(PROCEED));
+  }
+
+  @Test
+  public void testIfNoneMatchOverIfModifiedSince() {
+    HttpHeaders headers = new DefaultHttpHeaders()
+        .set(HttpHeaderNames.IF_NONE_MATCH, "\"x\"")
+        .set(HttpHeaderNames.IF_MODIFIED_SINCE, LAST_MODIFIED_DATE);
+    assertThat(ConditionalRequests.evaluate(HttpMethod.GET, headers, ETAG, LAST_MODIFIED), equalTo(PROCEED));
+  }
+
+  @Test
+  public void testIfModifiedSince() {
+    assertThat(evaluate(HttpHeaderNames.IF_MODIFIED_SINCE, LAST_MODIFIED_DATE), equalTo(NOT_MODIFIED));
+    assertThat(evaluate(HttpHeaderNames.IF_MODIFIED_SINCE, EARLIER_DATE), equalTo(PROCEED));
+    assertThat(evaluate(HttpHeaderNames.IF_MODIFIED_SINCE, "not a date"), equalTo(PROCEED));
+
+    HttpHeaders headers = new DefaultHttpHeaders().set(HttpHeaderNames.IF_MODIFIED_SINCE, LAST_MODIFIED_DATE);
+    assertThat(ConditionalRequests.evaluate(HttpMethod.GET, headers, ETAG, 0), equalTo(PROCEED));
+  }
+
+  @Test
+  public void testIfMatch() {
+    assertThat(evaluate(HttpHeaderNames.IF_MATCH, ETAG), equalTo(PROCEED));
+    assertThat(evaluate(HttpHeaderNames.IF_MATCH, "W/\"abc\""), equalTo(PRECONDITION_FAILED));
+    assertThat(evaluate(HttpHeaderNames.IF_UNMODIFIED_SINCE, EARLIER_DATE), equalTo(PRECONDITION_FAILED));
+    assertThat(evaluate(HttpHeaderNames.IF_UNMODIFIED_SINCE, LAST_MODIFIED_DATE), equalTo(PROCEED));
+  }
+
+  @Test
+  public void testIfRange() {
+    assertThat(isRangeApplicable(ETAG), equalTo(true));
+    assertThat(isRangeApplicable("W/\"abc\""), equalTo(false));
+    assertThat(isRangeApplicable(LAST_MODIFIED_DATE), equalTo(true));
+    assertThat(isRangeApplicable(EARLIER_DATE), equalTo(false));
+  }
+
+  @Test
+  public void testByteRanges() {
+    assertThat(ByteRange.parse("bytes=0-499", 1000), equalTo(Collections.singletonList(new ByteRange(0, 499))));
+    assertThat(ByteRange.parse("bytes=900-", 1000), equalTo(Collections.singletonList(new ByteRange(900, 999))));
+    assertThat(ByteRange.parse("bytes=-100", 1000), equalTo(Collections.singletonList(new ByteRange(900, 999))));
+    assertThat(ByteRange.parse("bytes=990-2000", 1000), equalTo(Collections.singletonList(new ByteRange(990, 999))));
+    assertThat(
+        ByteRange.parse("bytes=500-599, 0-99, 50-149, 600-700", 1000),
+        equalTo(Arrays.asList(new ByteRange(0, 149), new ByteRange(500, 700)))
+    );
+    assertThat(ByteRange.parse("bytes=1000-", 1000).isEmpty(), equalTo(true));
+    assertThat(ByteRange.parse("bytes=5-1", 1000), nullValue());
+    assertThat(ByteRange.parse("items=0-1", 1000), nullValue());
+    assertThat(ByteRange.parse("bytes=a-b", 1000), nullValue());
+  }
+
+  private ConditionalRequests.Outcome evaluate(CharSequence header, String value) {
+    HttpHeaders headers = new DefaultHttpHeaders().set(header, value);
+    return ConditionalRequests.evaluate(HttpMethod.GET, headers, ETAG, LAST_MODIFIED);
+  }
+
+  private boolean isRangeApplicable(String ifRange) {
+    HttpHeaders headers = new DefaultHttpHeaders().set(HttpHeaderNames.IF_RANGE, ifRange);
+    return ConditionalRequests.isRangeApplicable(headers, ETAG, LAST_MODIFIED);
+  }
+}
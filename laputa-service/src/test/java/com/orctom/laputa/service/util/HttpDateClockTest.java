@@ -0,0 +1,72 @@
+package com.orctom.laputa.service.util;
+
+import io.netty.handler.codec.DateFormatter;
+import io.netty.util.AsciiString;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class HttpDateClockTest {
+
+  @Test
+  public void testNow() {
+    long seconds;
+    AsciiString first;
+    AsciiString next;
+    do {
+      seconds = System.currentTimeMillis() / 1000;
+      first = HttpDateClock.now();
+      next = HttpDateClock.now();
+    } while (System.currentTimeMillis() / 1000 != seconds);
+
+    assertThat(next, sameInstance(first));
+    assertThat(HttpDateClock.parse(first), equalTo(seconds * 1000));
+  }
+
+  @Test
+  public void testOffset() {
+    HttpDateClock clock = new HttpDateClock(3600);
+    long seconds;
+    AsciiString date;
+    do {
+      seconds = System.currentTimeMillis() / 1000;
+      date = clock.get();
+    } while (System.currentTimeMillis() / 1000 != seconds);
+
+    assertThat(HttpDateClock.parse(date), equalTo((seconds + 3600) * 1000));
+  }
+
+  @Test
+  public void testFormat() {
+    assertThat(HttpDateClock.format(784111777000L).toString(), equalTo("Sun, 06 Nov 1994 08:49:37 GMT"));
+  }
+
+  @Test
+  public void testParse() {
+    assertThat(HttpDateClock.parse("Sun, 06 Nov 1994 08:49:37 GMT"), equalTo(784111777000L));
+    assertThat(HttpDateClock.parse("Sunday, 06-Nov-94 08:49:37 GMT"), equalTo(784111777000L));
+    assertThat(HttpDateClock.parse("Sun Nov  6 08:49:37 1994"), equalTo(784111777000L));
+    assertThat(HttpDateClock.parse("Thu, 29 Feb 2024 23:59:59 GMT"), equalTo(1709251199000L));
+
+    assertThat(HttpDateClock.parse(null) < 0, equalTo(true));
+    assertThat(HttpDateClock.parse("Sun, 06 Now 1994 08:49:37 GMT") < 0, equalTo(true));
+    assertThat(HttpDateClock.parse("Sun, 06 Nov 1994 24:49:37 GMT") < 0, equalTo(true));
+    assertThat(HttpDateClock.parse("not a date") < 0, equalTo(true));
+  }
+
+  @Test
+  public void testRoundTrip() {
+    Random random = new Random(0);
+    for (int i = 0; i < 10_000; i++) {
+      long millis = (random.nextLong() & Long.MAX_VALUE) % 7258118400000L / 1000 * 1000;
+      AsciiString date = HttpDateClock.format(millis);
+      assertThat(date.toString(), HttpDateClock.parse(date), equalTo(millis));
+      assertThat(date.toString(), DateFormatter.parseHttpDate(date), equalTo(new Date(millis)));
+    }
+  }
+}
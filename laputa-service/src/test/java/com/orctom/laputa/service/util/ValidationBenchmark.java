@@ -0,0 +1,94 @@
+package com.orctom.laputa.service.util;
+
+import com.orctom.laputa.service.annotation.Param;
+import com.orctom.laputa.service.model.RequestMapping;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.constraints.Size;
+import javax.validation.executable.ExecutableValidator;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validating handler params on every request, against skipping handlers known to be unconstrained.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+  private final Handler handler = new Handler();
+  private final Object[] args = new Object[]{"hello"};
+  private ExecutableValidator validator;
+  private RequestMapping unconstrained;
+  private RequestMapping constrained;
+
+  @Setup
+  public void setUp() throws Exception {
+    validator = ValidationUtil.getValidator().forExecutables();
+    unconstrained = mapping(Handler.class.getMethod("plain", String.class));
+    constrained = mapping(Handler.class.getMethod("sized", String.class));
+  }
+
+  private RequestMapping mapping(Method method) {
+    return RequestMapping.builder()
+        .uriPattern("/" + method.getName())
+        .target(handler)
+        .handlerClass(Handler.class)
+        .handlerMethod(method)
+        .httpMethod("@get")
+        .build();
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<Object>> unconstrainedAlways() {
+    return validate(unconstrained);
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<Object>> unconstrainedSkipped() {
+    return unconstrained.isConstrained() ? validate(unconstrained) : Collections.emptySet();
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<Object>> constrained() {
+    return constrained.isConstrained() ? validate(constrained) : Collections.emptySet();
+  }
+
+  private Set<ConstraintViolation<Object>> validate(RequestMapping mapping) {
+    return validator.validateParameters(handler, mapping.getHandlerMethod().getJavaMethod(), args);
+  }
+
+  public static class Handler {
+
+    public String plain(@Param("name") String name) {
+      return name;
+    }
+
+    public String sized(@Size(min = 3, max = 10) @Param("name") String name) {
+      return name;
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ValidationBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -1,19 +1,23 @@
 package com.orctom.laputa.utils;
 
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 /**
  * A simple counter ¯\_(ツ)_/¯
+ * <p>
+ * The counter of a key is created once and kept, resetting takes off what's been read,
+ * so that the counts made meanwhile are kept for the next round.
  * Created by chenhao on 11/30/16.
  */
 public class SimpleCounter {
 
-  private Map<String, LongAdder> counters = new HashMap<>();
+  private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
 
   public void count(String key) {
     getCounter(key).increment();
@@ -29,14 +33,7 @@ public class SimpleCounter {
       return counter;
     }
 
-    counter = new LongAdder();
-    synchronized (this) {
-      LongAdder old = counters.put(key, counter);
-      if (null != old) {
-        counter.add(old.longValue());
-      }
-    }
-    return counter;
+    return counters.computeIfAbsent(key, k -> new LongAdder());
   }
 
   public List<Map.Entry<String, LongAdder>> getResult() {
@@ -46,6 +43,8 @@ public class SimpleCounter {
   }
 
   public void reset() {
-    counters = new HashMap<>();
+    for (LongAdder counter : counters.values()) {
+      counter.add(-counter.sum());
+    }
   }
 }
@@ -0,0 +1,217 @@
+package com.orctom.laputa.utils;
+
+import com.orctom.laputa.exception.IllegalArgException;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of long values, such as latencies in nanos, for percentiles.
+ * <p>
+ * Values are counted in log-linear buckets, like HdrHistogram: each power of two is split into 16 linear sub-buckets,
+ * so that the values reported are within 1/32 of the recorded ones.
+ * Values below `lowestDiscernibleValue` are counted as is, only in coarser buckets,
+ * the ones above `highestTrackableValue` are counted in the last bucket, the max is always exact.
+ * <p>
+ * Recording takes an atomic increment and doesn't allocate, it's fine to be done on every request.
+ * <p>
+ * Counts are cumulative, intervals are taken as the difference from the previous interval snapshot,
+ * so that nothing recorded is lost or counted twice, and the reporter never writes to what the recorders write.
+ */
+public class SimpleHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private final int unitShift;
+  private final AtomicLongArray counts;
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  private Snapshot reported;
+
+  public SimpleHistogram(long lowestDiscernibleValue, long highestTrackableValue) {
+    if (lowestDiscernibleValue < 1 || highestTrackableValue < 2 * lowestDiscernibleValue) {
+      throw new IllegalArgException(
+          "Illegal range: " + lowestDiscernibleValue + " - " + highestTrackableValue + " of histogram.");
+    }
+    this.unitShift = 63 - Long.numberOfLeadingZeros(lowestDiscernibleValue);
+    this.counts = new AtomicLongArray(indexOf(highestTrackableValue >>> unitShift) + 1);
+    this.reported = new Snapshot(new long[counts.length()], 0, 0);
+  }
+
+  /**
+   * @param value negative ones are counted as 0
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(Math.min(indexOf(value >>> unitShift), counts.length() - 1));
+    sum.add(value);
+
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  /**
+   * @return all the values recorded so far
+   */
+  public Snapshot snapshot() {
+    long[] snapshot = new long[counts.length()];
+    for (int i = 0; i < snapshot.length; i++) {
+      snapshot[i] = counts.get(i);
+    }
+    return new Snapshot(snapshot, sum.sum(), max.get());
+  }
+
+  /**
+   * Reads the live counts in one pass without taking a snapshot, such as for exporting the cumulative buckets.
+   *
+   * @param values ascending
+   * @param counts to be filled with the number of the values recorded not greater than each of the values,
+   *               within the precision of the buckets
+   * @return number of all the values recorded
+   */
+  public long getCountsAtOrBelow(long[] values, long[] counts) {
+    long seen = 0;
+    int next = 0;
+    for (int i = 0; i < this.counts.length(); i++) {
+      while (next < values.length && lowestValueOf(i) << unitShift > values[next]) {
+        counts[next++] = seen;
+      }
+      seen += this.counts.get(i);
+    }
+    while (next < values.length) {
+      counts[next++] = seen;
+    }
+    return seen;
+  }
+
+  /**
+   * @return sum of all the values recorded
+   */
+  public long getSum() {
+    return sum.sum();
+  }
+
+  /**
+   * For a single reporter, the values recorded meanwhile go to either this interval or the next one.
+   *
+   * @return the values recorded since the previous call, the max of which is within the precision of the buckets
+   */
+  public synchronized Snapshot intervalSnapshot() {
+    Snapshot current = snapshot();
+    Snapshot previous = reported;
+    reported = current;
+
+    long[] interval = new long[current.counts.length];
+    int highest = -1;
+    for (int i = 0; i < interval.length; i++) {
+      interval[i] = current.counts[i] - previous.counts[i];
+      if (interval[i] > 0) {
+        highest = i;
+      }
+    }
+    long intervalMax = highest < 0 ? 0 : current.max;
+    if (highest >= 0 && highest < interval.length - 1) {
+      intervalMax = Math.min(intervalMax, highestValueOf(highest));
+    }
+    return new Snapshot(interval, current.sum - previous.sum, intervalMax);
+  }
+
+  private static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  private static long lowestValueOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    return (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+  }
+
+  private static long widthOf(int index) {
+    return index < SUB_BUCKETS ? 1 : 1L << ((index >>> SUB_BUCKET_BITS) - 1);
+  }
+
+  private long highestValueOf(int index) {
+    return ((lowestValueOf(index) + widthOf(index)) << unitShift) - 1;
+  }
+
+  public class Snapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    private Snapshot(long[] counts, long sum, long max) {
+      this.counts = counts;
+      long count = 0;
+      for (long c : counts) {
+        count += c;
+      }
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getSum() {
+      return sum;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    public double getMean() {
+      return 0 == count ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @param percentile such as 99.9
+     * @return the middle of the bucket the percentile falls in, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+      if (0 == count) {
+        return 0;
+      }
+
+      long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          long middle = ((lowestValueOf(i) << unitShift) + ((widthOf(i) << unitShift) >>> 1));
+          return Math.min(middle, max);
+        }
+      }
+      return max;
+    }
+
+    /**
+     * @return number of the values recorded not greater than the value, within the precision of the buckets
+     */
+    public long getCountAtOrBelow(long value) {
+      int last = Math.min(indexOf(Math.max(0, value) >>> unitShift), counts.length - 1);
+      long seen = 0;
+      for (int i = 0; i <= last; i++) {
+        seen += counts[i];
+      }
+      return seen;
+    }
+  }
+}
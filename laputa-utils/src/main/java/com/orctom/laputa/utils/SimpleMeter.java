@@ -4,30 +4,49 @@ import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Mutable Integer
+ * <p>
+ * The count is cumulative, the value is the count since the last reset, which is taken as the difference from
+ * the count then, so that resetting never loses a mark, and never writes to what the marks write.
  * Created by hao on 8/7/16.
  */
 public class SimpleMeter implements Comparable<SimpleMeter> {
 
-  private LongAdder value;
+  private final LongAdder count = new LongAdder();
+  private volatile long base;
 
-  public SimpleMeter() {
-    this.value = new LongAdder();
+  public int getValue() {
+    return (int) (count.sum() - base);
   }
 
-  public int getValue() {
-    return value.intValue();
+  /**
+   * @return marks since created, never reset
+   */
+  public long getCount() {
+    return count.sum();
   }
 
   public void mark() {
-    value.increment();
+    count.increment();
   }
 
   public void increaseBy(int delta) {
-    value.add(delta);
+    count.add(delta);
+  }
+
+  public synchronized void reset() {
+    base = count.sum();
   }
 
-  public void reset() {
-    value.reset();
+  /**
+   * For a single reporter, the marks made meanwhile go to either this interval or the next one.
+   *
+   * @return the marks since the last reset, and resets
+   */
+  public synchronized long intervalCount() {
+    long current = count.sum();
+    long interval = current - base;
+    base = current;
+    return interval;
   }
 
   @Override
@@ -37,6 +56,6 @@ public class SimpleMeter implements Comparable<SimpleMeter> {
 
   @Override
   public String toString() {
-    return String.valueOf(value.longValue());
+    return String.valueOf(getValue());
   }
 }
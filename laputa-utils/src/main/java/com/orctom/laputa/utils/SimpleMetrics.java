@@ -5,24 +5,36 @@ import com.orctom.laputa.model.Metric;
 import com.orctom.laputa.model.MetricCallback;
 import org.slf4j.Logger;
 
-import java.util.LinkedHashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Simple metrics counter
+ * <p>
+ * Metrics are registered once per key and kept, the handles returned are safe to be held and used by any thread.
+ * Meters and histograms are cumulative, each report takes the difference from the previous one,
+ * so that reporting never loses what's recorded meanwhile, nor writes to what the recorders write.
  * Created by hao on 8/7/16.
  */
 public class SimpleMetrics {
 
+  private static final Set<SimpleMetrics> INSTANCES = ConcurrentHashMap.newKeySet();
+
   private final Logger logger;
   private final long period;
   private final TimeUnit unit;
-  private Map<String, SimpleMeter> meters;
-  private Map<String, Callable<String>> gauges = new LinkedHashMap<>();
+  private ConcurrentMap<String, SimpleMeter> meters = new ConcurrentSkipListMap<>();
+  private ConcurrentMap<String, Callable<String>> gauges = new ConcurrentSkipListMap<>();
+  private ConcurrentMap<String, SimpleHistogram> histograms = new ConcurrentSkipListMap<>();
   private MetricCallback callback;
 
   private ScheduledExecutorService es = Executors.newSingleThreadScheduledExecutor(r -> {
@@ -39,8 +51,8 @@ public class SimpleMetrics {
     this.logger = logger;
     this.period = period;
     this.unit = unit;
-    resetMeters();
     startReporter();
+    INSTANCES.add(this);
   }
 
   public static SimpleMetrics create(Logger logger) {
@@ -51,8 +63,22 @@ public class SimpleMetrics {
     return new SimpleMetrics(logger, period, unit);
   }
 
+  /**
+   * @return the ones created and not shut down, such as for exporting all the metrics of the process
+   */
+  public static Collection<SimpleMetrics> getInstances() {
+    return Collections.unmodifiableSet(INSTANCES);
+  }
+
+  public String getName() {
+    return logger.getName();
+  }
+
+  /**
+   * Resets the values of the meters, which are kept registered
+   */
   public void resetMeters() {
-    meters = new LinkedHashMap<>();
+    meters.values().forEach(SimpleMeter::reset);
   }
 
   private void startReporter() {
@@ -60,6 +86,7 @@ public class SimpleMetrics {
   }
 
   public void shutdown() {
+    INSTANCES.remove(this);
     try {
       unit.sleep(period);
     } catch (InterruptedException ignored) {
@@ -68,26 +95,47 @@ public class SimpleMetrics {
 
     meters = null;
     gauges = null;
+    histograms = null;
   }
 
   public void mark(String key) {
     meter(key).mark();
   }
 
+  /**
+   * @return the same meter for the key, every time
+   */
   public SimpleMeter meter(String key) {
     SimpleMeter meter = meters.get(key);
     if (null != meter) {
       return meter;
     }
+    return meters.computeIfAbsent(key, k -> new SimpleMeter());
+  }
 
-    meter = new SimpleMeter();
-    synchronized (this) {
-      SimpleMeter old = meters.put(key, meter);
-      if (null != old) {
-        meter.increaseBy(old.getValue());
-      }
+  public Map<String, SimpleMeter> getMeters() {
+    return Collections.unmodifiableMap(meters);
+  }
+
+  public Map<String, Callable<String>> getGauges() {
+    return Collections.unmodifiableMap(gauges);
+  }
+
+  public Map<String, SimpleHistogram> getHistograms() {
+    return Collections.unmodifiableMap(histograms);
+  }
+
+  /**
+   * Values recorded are reported as percentiles of each period.
+   *
+   * @see SimpleHistogram#SimpleHistogram(long, long)
+   */
+  public SimpleHistogram histogram(String key, long lowestDiscernibleValue, long highestTrackableValue) {
+    SimpleHistogram histogram = histograms.get(key);
+    if (null != histogram) {
+      return histogram;
     }
-    return meter;
+    return histograms.computeIfAbsent(key, k -> new SimpleHistogram(lowestDiscernibleValue, highestTrackableValue));
   }
 
   public void gauge(String key, Callable<String> callable) {
@@ -105,6 +153,7 @@ public class SimpleMetrics {
   private void report() {
     reportGauges();
     reportMeters();
+    reportHistograms();
   }
 
   private void reportGauges() {
@@ -125,15 +174,40 @@ public class SimpleMetrics {
     float duration = unit.toSeconds(period);
     for (Map.Entry<String, SimpleMeter> entry : meters.entrySet()) {
       String key = entry.getKey();
-      SimpleMeter meter = entry.getValue();
-      int count = meter.getValue();
-      meter.reset();
+      int count = (int) entry.getValue().intervalCount();
       float rate = count / duration;
       logger.info("meter: {}, count: {}, mean: {}/s", entry.getKey(), count, rate);
       sendToCallback(key, count, rate);
     }
   }
 
+  /**
+   * The ones with nothing recorded in the period are skipped
+   */
+  private void reportHistograms() {
+    float duration = unit.toSeconds(period);
+    for (Map.Entry<String, SimpleHistogram> entry : histograms.entrySet()) {
+      String key = entry.getKey();
+      SimpleHistogram.Snapshot snapshot = entry.getValue().intervalSnapshot();
+      if (0 == snapshot.getCount()) {
+        continue;
+      }
+
+      long p50 = snapshot.getValueAtPercentile(50);
+      long p90 = snapshot.getValueAtPercentile(90);
+      long p99 = snapshot.getValueAtPercentile(99);
+      long p999 = snapshot.getValueAtPercentile(99.9);
+      logger.info("histogram: {}, count: {}, p50: {}, p90: {}, p99: {}, p999: {}, max: {}",
+          key, snapshot.getCount(), p50, p90, p99, p999, snapshot.getMax());
+      sendToCallback(key, (int) snapshot.getCount(), snapshot.getCount() / duration);
+      sendToCallback(key + ".p50", String.valueOf(p50));
+      sendToCallback(key + ".p90", String.valueOf(p90));
+      sendToCallback(key + ".p99", String.valueOf(p99));
+      sendToCallback(key + ".p999", String.valueOf(p999));
+      sendToCallback(key + ".max", String.valueOf(snapshot.getMax()));
+    }
+  }
+
   private void sendToCallback(String key, String value) {
     if (null != callback) {
       callback.onMetric(new Metric(key, value));
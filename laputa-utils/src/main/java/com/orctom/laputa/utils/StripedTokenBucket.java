@@ -0,0 +1,63 @@
+package com.orctom.laputa.utils;
+
+import com.orctom.laputa.exception.IllegalArgException;
+
+/**
+ * Splits the rate over several {@link TokenBucket}s to avoid CAS contention among many cores.
+ * A thread always starts from its own stripe, and takes from the other ones before giving up,
+ * so the whole rate is available even when there are fewer threads than stripes.
+ */
+public class StripedTokenBucket {
+
+  private final TokenBucket[] stripes;
+  private final int mask;
+
+  /**
+   * A bucket admits at least one at once, so there are no more stripes than the burst,
+   * which is split over them with the remainder going to the first ones, to keep the total as configured.
+   */
+  public StripedTokenBucket(double permitsPerSecond, int burst, int concurrency) {
+    if (permitsPerSecond <= 0) {
+      throw new IllegalArgException("permitsPerSecond should be positive, but was: " + permitsPerSecond);
+    }
+    int size = Integer.highestOneBit(Math.max(1, Math.min(concurrency, burst)));
+    this.stripes = new TokenBucket[size];
+    this.mask = size - 1;
+    for (int i = 0; i < size; i++) {
+      stripes[i] = new TokenBucket(permitsPerSecond / size, burst / size + (i < burst % size ? 1 : 0));
+    }
+  }
+
+  public boolean tryAcquire() {
+    return 0L == reserve(0L);
+  }
+
+  /**
+   * @see TokenBucket#reserve(long)
+   */
+  public long reserve(long maxDelayNanos) {
+    int index = getIndex();
+    long delay = stripes[index].reserve(maxDelayNanos);
+    for (int i = 1; TokenBucket.REJECTED == delay && i < stripes.length; i++) {
+      delay = stripes[(index + i) & mask].reserve(maxDelayNanos);
+    }
+    return delay;
+  }
+
+  /**
+   * Gives back a permit to the stripe of the calling thread
+   *
+   * @see TokenBucket#refund()
+   */
+  public void refund() {
+    stripes[getIndex()].refund();
+  }
+
+  private int getIndex() {
+    return (int) Thread.currentThread().getId() & mask;
+  }
+
+  public int getStripes() {
+    return stripes.length;
+  }
+}
@@ -0,0 +1,76 @@
+package com.orctom.laputa.utils;
+
+import com.orctom.laputa.exception.IllegalArgException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking token bucket, implemented as GCRA (generic cell rate algorithm):
+ * only the theoretical arrival time of the next permit is kept, and updated with a single CAS.
+ * It never sleeps, callers decide what to do with the returned delay.
+ */
+public class TokenBucket {
+
+  public static final long REJECTED = -1L;
+
+  private final long interval;
+  private final long tolerance;
+  private final AtomicLong arrival;
+
+  /**
+   * @param burst permits that can be acquired at once, after being idle long enough
+   */
+  public TokenBucket(double permitsPerSecond, int burst) {
+    if (permitsPerSecond <= 0) {
+      throw new IllegalArgException("permitsPerSecond should be positive, but was: " + permitsPerSecond);
+    }
+    this.interval = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+    this.tolerance = interval * (Math.max(1, burst) - 1);
+    this.arrival = new AtomicLong(System.nanoTime());
+  }
+
+  public boolean tryAcquire() {
+    return 0L == reserve(0L);
+  }
+
+  /**
+   * @param maxDelayNanos how long the caller is willing to defer the permitted action
+   * @return {@link #REJECTED}, or the nanos the caller has to wait before going on, `0` means right away.
+   */
+  public long reserve(long maxDelayNanos) {
+    long now = System.nanoTime();
+    while (true) {
+      long current = arrival.get();
+      long delay = current - tolerance - now;
+      if (delay > maxDelayNanos) {
+        return REJECTED;
+      }
+
+      long next = (current - now > 0 ? current : now) + interval;
+      if (arrival.compareAndSet(current, next)) {
+        return delay > 0 ? delay : 0L;
+      }
+    }
+  }
+
+  /**
+   * Gives back a permit reserved before but not used, such as when the action is rejected by some other limit.
+   * The bucket never gets more than its burst back.
+   */
+  public void refund() {
+    long now = System.nanoTime();
+    while (true) {
+      long current = arrival.get();
+      if (current - now <= 0) {
+        return;
+      }
+
+      long previous = current - interval;
+      long next = previous - now > 0 ? previous : now;
+      if (arrival.compareAndSet(current, next)) {
+        return;
+      }
+    }
+  }
+}
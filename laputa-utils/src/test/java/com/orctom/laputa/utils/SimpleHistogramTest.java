@@ -0,0 +1,128 @@
+package com.orctom.laputa.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class SimpleHistogramTest {
+
+  @Test
+  public void testPercentiles() {
+    SimpleHistogram histogram = new SimpleHistogram(1, TimeUnit.MINUTES.toNanos(1));
+    for (int i = 1; i <= 10_000; i++) {
+      histogram.record(i * 1000L);
+    }
+
+    SimpleHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(10_000L, snapshot.getCount());
+    assertEquals(10_000_000L, snapshot.getMax());
+    assertEquals(5_000_500d, snapshot.getMean(), 0.001);
+    assertWithin(5_000_000L, snapshot.getValueAtPercentile(50));
+    assertWithin(9_000_000L, snapshot.getValueAtPercentile(90));
+    assertWithin(9_900_000L, snapshot.getValueAtPercentile(99));
+    assertWithin(9_990_000L, snapshot.getValueAtPercentile(99.9));
+    assertEquals(10_000_000L, snapshot.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void testSmallValuesAreExact() {
+    SimpleHistogram histogram = new SimpleHistogram(1, 1000);
+    for (int i = 0; i < 16; i++) {
+      histogram.record(i);
+    }
+    SimpleHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(7L, snapshot.getValueAtPercentile(50));
+    assertEquals(8L, snapshot.getCountAtOrBelow(7));
+  }
+
+  @Test
+  public void testCountsAtOrBelow() {
+    SimpleHistogram histogram = new SimpleHistogram(1000, TimeUnit.SECONDS.toNanos(10));
+    Random random = new Random(7);
+    for (int i = 0; i < 10_000; i++) {
+      histogram.record(random.nextInt(Integer.MAX_VALUE) >>> random.nextInt(30));
+    }
+
+    long[] values = {0, 999, 1000, 100_000, 2_500_000, 1_000_000_000, Long.MAX_VALUE};
+    long[] counts = new long[values.length];
+    assertEquals(10_000L, histogram.getCountsAtOrBelow(values, counts));
+
+    SimpleHistogram.Snapshot snapshot = histogram.snapshot();
+    for (int i = 0; i < values.length; i++) {
+      assertEquals(snapshot.getCountAtOrBelow(values[i]), counts[i]);
+    }
+    assertEquals(10_000L, counts[values.length - 1]);
+    assertEquals(snapshot.getSum(), histogram.getSum());
+  }
+
+  @Test
+  public void testLowestDiscernibleAndHighestTrackable() {
+    SimpleHistogram histogram = new SimpleHistogram(1000, 1_000_000);
+    histogram.record(-5);
+    histogram.record(400);
+    histogram.record(5_000_000_000L);
+
+    SimpleHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(3L, snapshot.getCount());
+    assertThat(snapshot.getValueAtPercentile(50), lessThan(1024L));
+    assertEquals(5_000_000_000L, snapshot.getMax());
+    assertWithin(1_000_000L, snapshot.getValueAtPercentile(99));
+  }
+
+  @Test
+  public void testIntervalSnapshot() {
+    SimpleHistogram histogram = new SimpleHistogram(1, 1000);
+    histogram.record(10);
+    assertEquals(1L, histogram.intervalSnapshot().getCount());
+
+    SimpleHistogram.Snapshot snapshot = histogram.intervalSnapshot();
+    assertEquals(0L, snapshot.getCount());
+    assertEquals(0L, snapshot.getMax());
+    assertEquals(0L, snapshot.getValueAtPercentile(99));
+
+    histogram.record(3);
+    snapshot = histogram.intervalSnapshot();
+    assertEquals(1L, snapshot.getCount());
+    assertEquals(3L, snapshot.getMax());
+    assertEquals(3L, snapshot.getSum());
+    assertEquals(2L, histogram.snapshot().getCount());
+  }
+
+  @Test
+  public void testConcurrentRecording() throws InterruptedException {
+    SimpleHistogram histogram = new SimpleHistogram(1, TimeUnit.SECONDS.toNanos(1));
+    int threads = 4;
+    int values = 100_000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch latch = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      executor.execute(() -> {
+        Random random = new Random();
+        for (int i = 0; i < values; i++) {
+          histogram.record(random.nextInt(1_000_000));
+        }
+        latch.countDown();
+      });
+    }
+    long intervals = 0;
+    while (latch.getCount() > 0) {
+      intervals += histogram.intervalSnapshot().getCount();
+    }
+    executor.shutdown();
+    intervals += histogram.intervalSnapshot().getCount();
+
+    assertEquals((long) threads * values, histogram.snapshot().getCount());
+    assertEquals((long) threads * values, intervals);
+  }
+
+  private void assertWithin(long expected, long actual) {
+    assertThat(actual, allOf(greaterThanOrEqualTo(expected - expected / 32), lessThanOrEqualTo(expected + expected / 32)));
+  }
+}
@@ -0,0 +1,71 @@
+package com.orctom.laputa.utils;
+
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class SimpleMetricsTest {
+
+  private final SimpleMetrics metrics =
+      SimpleMetrics.create(LoggerFactory.getLogger(SimpleMetricsTest.class), 1, TimeUnit.HOURS);
+
+  @Test
+  public void testMeterIsKeptOverResets() {
+    SimpleMeter meter = metrics.meter("requests");
+    meter.mark();
+    metrics.resetMeters();
+    meter.mark();
+    meter.mark();
+
+    assertThat(metrics.meter("requests"), sameInstance(meter));
+    assertEquals(2, meter.getValue());
+    assertEquals(3L, meter.getCount());
+    assertEquals(2L, meter.intervalCount());
+    assertEquals(0L, meter.intervalCount());
+  }
+
+  @Test
+  public void testConcurrentMarking() throws InterruptedException {
+    int threads = 4;
+    int marks = 100_000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch latch = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      executor.execute(() -> {
+        for (int i = 0; i < marks; i++) {
+          metrics.mark("key-" + (i % 8));
+        }
+        latch.countDown();
+      });
+    }
+    long intervals = 0;
+    while (latch.getCount() > 0) {
+      intervals += metrics.getMeters().values().stream().mapToLong(SimpleMeter::intervalCount).sum();
+    }
+    executor.shutdown();
+    intervals += metrics.getMeters().values().stream().mapToLong(SimpleMeter::intervalCount).sum();
+
+    assertThat(metrics.getMeters().size(), equalTo(8));
+    assertEquals((long) threads * marks, metrics.getMeters().values().stream().mapToLong(SimpleMeter::getCount).sum());
+    assertEquals((long) threads * marks, intervals);
+  }
+
+  @Test
+  public void testCounterResetKeepsConcurrentCounts() {
+    SimpleCounter counter = new SimpleCounter();
+    counter.count("a");
+    counter.count("a", 2);
+    assertEquals(3L, counter.getResult().get(0).getValue().sum());
+
+    counter.reset();
+    counter.count("a");
+    assertEquals(1L, counter.getResult().get(0).getValue().sum());
+  }
+}
@@ -0,0 +1,63 @@
+package com.orctom.laputa.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StripedTokenBucketTest {
+
+  @Test
+  public void testBurstSplit() {
+    assertEquals(5, admitted(new StripedTokenBucket(100, 5, 4)));
+    assertEquals(11, admitted(new StripedTokenBucket(100, 11, 8)));
+  }
+
+  @Test
+  public void testBurstLessThanStripes() {
+    StripedTokenBucket bucket = new StripedTokenBucket(100, 3, 8);
+    assertEquals(2, bucket.getStripes());
+    assertEquals(3, admitted(bucket));
+
+    StripedTokenBucket single = new StripedTokenBucket(100, 1, 8);
+    assertEquals(1, single.getStripes());
+    assertEquals(1, admitted(single));
+  }
+
+  @Test
+  public void testNoBurst() {
+    StripedTokenBucket bucket = new StripedTokenBucket(100, 0, 8);
+    assertEquals(1, bucket.getStripes());
+    assertEquals(1, admitted(bucket));
+  }
+
+  @Test
+  public void testAdmittedFromOtherThreads() throws InterruptedException {
+    StripedTokenBucket bucket = new StripedTokenBucket(1, 6, 4);
+    int[] admitted = new int[4];
+    Thread[] threads = new Thread[admitted.length];
+    for (int i = 0; i < threads.length; i++) {
+      int index = i;
+      threads[i] = new Thread(() -> admitted[index] = admitted(bucket));
+      threads[i].start();
+    }
+    int total = 0;
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].join();
+      total += admitted[i];
+    }
+    assertEquals(6, total);
+  }
+
+  /**
+   * @return permits taken at once, the rate being too low to refill meanwhile
+   */
+  private static int admitted(StripedTokenBucket bucket) {
+    int admitted = 0;
+    for (int i = 0; i < 100; i++) {
+      if (bucket.tryAcquire()) {
+        admitted++;
+      }
+    }
+    return admitted;
+  }
+}
@@ -0,0 +1,89 @@
+package com.orctom.laputa.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+
+  @Test
+  public void testBurstThenReject() {
+    TokenBucket bucket = new TokenBucket(1, 5);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(bucket.tryAcquire());
+    }
+    assertFalse(bucket.tryAcquire());
+  }
+
+  @Test
+  public void testReserveWithinMaxDelay() {
+    TokenBucket bucket = new TokenBucket(10, 1);
+    assertEquals(0L, bucket.reserve(0));
+
+    long delay = bucket.reserve(TimeUnit.SECONDS.toNanos(1));
+    assertThat(delay, greaterThan(0L));
+    assertThat(delay, lessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100)));
+
+    assertEquals(TokenBucket.REJECTED, bucket.reserve(TimeUnit.MILLISECONDS.toNanos(100)));
+  }
+
+  @Test
+  public void testRefill() throws InterruptedException {
+    TokenBucket bucket = new TokenBucket(100, 1);
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+    TimeUnit.MILLISECONDS.sleep(20);
+    assertTrue(bucket.tryAcquire());
+  }
+
+  @Test
+  public void testStriped() {
+    StripedTokenBucket bucket = new StripedTokenBucket(100, 8, 6);
+    assertEquals(4, bucket.getStripes());
+
+    int admitted = 0;
+    for (int i = 0; i < 20; i++) {
+      if (bucket.tryAcquire()) {
+        admitted++;
+      }
+    }
+    assertEquals(8, admitted);
+  }
+
+  @Test
+  public void testRefund() {
+    TokenBucket bucket = new TokenBucket(1, 2);
+    assertTrue(bucket.tryAcquire());
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+
+    bucket.refund();
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+  }
+
+  @Test
+  public void testRefundNotOverBurst() {
+    TokenBucket bucket = new TokenBucket(1, 2);
+    bucket.refund();
+    bucket.refund();
+    assertTrue(bucket.tryAcquire());
+    assertTrue(bucket.tryAcquire());
+    assertFalse(bucket.tryAcquire());
+  }
+
+  @Test
+  public void testStripedRefund() {
+    StripedTokenBucket bucket = new StripedTokenBucket(100, 8, 4);
+    for (int i = 0; i < 8; i++) {
+      assertTrue(bucket.tryAcquire());
+    }
+    assertFalse(bucket.tryAcquire());
+
+    bucket.refund();
+    assertTrue(bucket.tryAcquire());
+  }
+}